@@ -0,0 +1,331 @@
+package genealogy.analysis;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+import java.util.function.IntFunction;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+import genealogy.graph.Family;
+import genealogy.graph.Graph;
+import genealogy.graph.Individual;
+import genealogy.index.Phonetic;
+
+/**
+ * Recherche des individus en double dans un graphe (ex: après la fusion de deux arbres).
+ * Pour éviter de comparer toutes les paires (O(N²)), les individus sont d'abord répartis
+ * dans des blocs selon deux clés :
+ * _ nom de famille normalisé + décennie de naissance,
+ * _ code Soundex du nom de famille + code Soundex du premier prénom.
+ * Un bloc trop grand est redécoupé (par prénom, ou par décennie) ; s'il le reste, il est ignoré
+ * et compté dans getSkippedBlocks(). Seules les paires d'un même bloc sont comparées, en parallèle,
+ * sur le nom, les dates, les lieux et les parents. Les résultats sont rendus du plus probable au moins probable.
+ */
+public class DuplicateFinder {
+
+    /** * Au-delà de cette taille, un bloc est redécoupé, puis ignoré s'il reste trop grand (nom trop courant). */
+    private static final int MAX_BLOCK = 2000;
+
+    /**
+     * Paire d'individus candidate, avec son score de ressemblance.
+     */
+    public static class Match {
+        private final Individual first;
+        private final Individual second;
+        private final double score;
+
+        public Match(Individual first, Individual second, double score) {
+            this.first = first;
+            this.second = second;
+            this.score = score;
+        }
+
+        public Individual getFirst() {
+            return first;
+        }
+
+        public Individual getSecond() {
+            return second;
+        }
+
+        public double getScore() {
+            return score;
+        }
+    }
+
+    /** * Le graphe analysé. */
+    private final Graph graph;
+
+    /** * Individus du graphe, indexés par leur position. */
+    private Individual[] people;
+
+    /** * Caractéristiques précalculées de chaque individu (même indice que people). */
+    private String[] names;
+    private String[] surnames;
+    private String[] sexes;
+    private int[] birthYears;
+    private int[] deathYears;
+    private String[] birthPlaces;
+    private String[] parents;
+
+    /** * Blocs ignorés par la dernière recherche et nombre d'individus qu'ils contenaient. */
+    private int skippedBlocks;
+    private int skippedPeople;
+
+    /**
+     * Constructeur.
+     * @param graph Le graphe à analyser.
+     */
+    public DuplicateFinder(Graph graph) {
+        this.graph = graph;
+    }
+
+    /**
+     * Cherche les doublons probables et les transmet au consommateur, du score le plus élevé au plus faible.
+     * @param threshold Score minimal (entre 0 et 1) pour qu'une paire soit retenue.
+     * @param limit Nombre maximal de paires transmises.
+     * @param consumer Reçoit les paires au fur et à mesure, dans l'ordre du classement.
+     * @return Le nombre de paires candidates comparées.
+     */
+    public long find(double threshold, int limit, Consumer<Match> consumer) {
+        prepare();
+        skippedBlocks = 0;
+        skippedPeople = 0;
+
+        // Deux découpages : nom + décennie (S), puis Soundex nom + prénom (P)
+        Blocks byName = new Blocks(IntStream.range(0, people.length).mapToObj(this::nameKey).toArray(String[]::new),
+                i -> String.valueOf(Phonetic.soundex(firstGiven(i))));
+        Blocks byPhonetic = new Blocks(IntStream.range(0, people.length).mapToObj(this::phoneticKey).toArray(String[]::new),
+                i -> (birthYears[i] < 0) ? "?" : String.valueOf(birthYears[i] / 10));
+
+        LongAdder compared = new LongAdder();
+        List<Match> ranked = Stream.concat(
+                        IntStream.range(0, byName.count()).parallel().mapToObj(b -> scoreBlock(byName, b, null, threshold, compared)),
+                        IntStream.range(0, byPhonetic.count()).parallel().mapToObj(b -> scoreBlock(byPhonetic, b, byName, threshold, compared)))
+                .flatMap(m -> m)
+                .sorted(Comparator.comparingDouble(Match::getScore).reversed())
+                .limit(limit)
+                .collect(Collectors.toList());
+        ranked.forEach(consumer);
+        return compared.sum();
+    }
+
+    /**
+     * @return Le nombre de blocs ignorés par la dernière recherche, trop grands même après redécoupage.
+     */
+    public int getSkippedBlocks() {
+        return skippedBlocks;
+    }
+
+    /**
+     * @return Le nombre d'individus de ces blocs (un individu peut être compté dans ses deux blocs).
+     */
+    public int getSkippedPeople() {
+        return skippedPeople;
+    }
+
+    /**
+     * Répartition des individus en blocs : les membres de chaque bloc sont rangés côte à côte
+     * dans un seul tableau d'entiers (tri par comptage sur le numéro de bloc).
+     * Un bloc trop grand est redécoupé une fois selon une clé secondaire ; s'il reste trop grand, il est ignoré.
+     */
+    private class Blocks {
+        /** * Numéro de bloc de chaque individu, -1 s'il n'a pas de clé. */
+        final int[] blockOf;
+        /** * Membres des blocs, bloc après bloc. */
+        final int[] members;
+        /** * Début de chaque bloc dans members (un élément de plus que le nombre de blocs). */
+        final int[] offsets;
+        /** * true pour un bloc trop grand, dont les paires ne sont pas comparées. */
+        final boolean[] skipped;
+
+        Blocks(String[] keys, IntFunction<String> secondary) {
+            blockOf = new int[keys.length];
+            int[] sizes = sizes(keys);
+            for (int i = 0; i < keys.length; i++) {
+                if (keys[i] != null && sizes[blockOf[i]] > MAX_BLOCK) keys[i] = keys[i] + "|" + secondary.apply(i);
+            }
+            sizes = sizes(keys);
+            int n = sizes.length;
+            offsets = new int[n + 1];
+            skipped = new boolean[n];
+            for (int b = 0; b < n; b++) {
+                offsets[b + 1] = offsets[b] + sizes[b];
+                if (sizes[b] > MAX_BLOCK) {
+                    skipped[b] = true;
+                    skippedBlocks++;
+                    skippedPeople += sizes[b];
+                }
+            }
+            members = new int[offsets[n]];
+            int[] fill = Arrays.copyOf(offsets, n);
+            for (int i = 0; i < keys.length; i++) {
+                if (blockOf[i] >= 0) members[fill[blockOf[i]]++] = i;
+            }
+        }
+
+        /**
+         * Numérote les clés distinctes (remplit blockOf) et compte les membres de chaque bloc.
+         */
+        private int[] sizes(String[] keys) {
+            Map<String, Integer> ids = new HashMap<>();
+            for (int i = 0; i < keys.length; i++) {
+                blockOf[i] = (keys[i] == null) ? -1 : ids.computeIfAbsent(keys[i], k -> ids.size());
+            }
+            int[] sizes = new int[ids.size()];
+            for (int b : blockOf) {
+                if (b >= 0) sizes[b]++;
+            }
+            return sizes;
+        }
+
+        int count() {
+            return skipped.length;
+        }
+
+        /**
+         * @return true si i et j sont dans un même bloc dont les paires ont été comparées.
+         */
+        boolean compared(int i, int j) {
+            return blockOf[i] >= 0 && blockOf[i] == blockOf[j] && !skipped[blockOf[i]];
+        }
+    }
+
+    /**
+     * Précalcule, en parallèle, les valeurs comparées pour chaque individu.
+     */
+    private void prepare() {
+        people = graph.getIndividuals().values().toArray(new Individual[0]);
+        int n = people.length;
+        names = new String[n];
+        surnames = new String[n];
+        sexes = new String[n];
+        birthYears = new int[n];
+        deathYears = new int[n];
+        birthPlaces = new String[n];
+        parents = new String[n];
+        IntStream.range(0, n).parallel().forEach(i -> {
+            Individual ind = people[i];
+            names[i] = Phonetic.normalize(ind.getGivenNames() + " " + ind.getSurname());
+            surnames[i] = Phonetic.normalize(ind.getSurname());
+            sexes[i] = ind.getTagValue("SEX");
+            birthYears[i] = ind.getBirthYear();
+            deathYears[i] = ind.getDeathYear();
+            birthPlaces[i] = Phonetic.normalize(ind.getSubTagValue("BIRT", "PLAC"));
+            parents[i] = parentNames(ind);
+        });
+    }
+
+    /**
+     * Noms normalisés du père et de la mère, pour comparer les ascendances.
+     */
+    private String parentNames(Individual ind) {
+        if (ind.getFamc() == null) return "";
+        Family fam = graph.getFamily(ind.getFamc());
+        if (fam == null) return "";
+        StringBuilder sb = new StringBuilder();
+        if (fam.getHusb() != null && graph.getIndividual(fam.getHusb()) != null) {
+            sb.append(Phonetic.normalize(graph.getIndividual(fam.getHusb()).getTagValue("NAME")));
+        }
+        sb.append('|');
+        if (fam.getWife() != null && graph.getIndividual(fam.getWife()) != null) {
+            sb.append(Phonetic.normalize(graph.getIndividual(fam.getWife()).getTagValue("NAME")));
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Clé "nom + décennie" d'un individu, null si son nom ou son année de naissance est inconnu.
+     */
+    private String nameKey(int i) {
+        if (surnames[i].isEmpty() || birthYears[i] < 0) return null;
+        return surnames[i] + ":" + (birthYears[i] / 10);
+    }
+
+    /**
+     * Clé "Soundex du nom + Soundex du premier prénom" d'un individu, null si son nom est inconnu.
+     */
+    private String phoneticKey(int i) {
+        if (surnames[i].isEmpty()) return null;
+        return Phonetic.soundex(surnames[i]) + ":" + Phonetic.soundex(firstGiven(i));
+    }
+
+    private String firstGiven(int i) {
+        String given = names[i];
+        int space = given.indexOf(' ');
+        return (space < 0) ? given : given.substring(0, space);
+    }
+
+    /**
+     * Compare toutes les paires d'un bloc (aucune si le bloc est ignoré).
+     * Dans un bloc phonétique, une paire déjà comparée dans un même bloc "nom + décennie"
+     * est sautée, ce qui évite de la compter deux fois sans garder d'ensemble des paires déjà vues.
+     * @param done Les blocs "nom + décennie", ou null pour ces blocs eux-mêmes.
+     */
+    private Stream<Match> scoreBlock(Blocks blocks, int b, Blocks done, double threshold, LongAdder compared) {
+        if (blocks.skipped[b]) return Stream.empty();
+        List<Match> matches = new ArrayList<>();
+        int pairs = 0;
+        for (int x = blocks.offsets[b]; x < blocks.offsets[b + 1]; x++) {
+            int i = blocks.members[x];
+            for (int y = x + 1; y < blocks.offsets[b + 1]; y++) {
+                int j = blocks.members[y];
+                if (done != null && done.compared(i, j)) continue;
+                pairs++;
+                double score = score(i, j);
+                if (score >= threshold) {
+                    matches.add(new Match(people[i], people[j], score));
+                }
+            }
+        }
+        compared.add(pairs);
+        return matches.stream();
+    }
+
+    /**
+     * Score de ressemblance entre deux individus, entre 0 et 1.
+     * Le nom compte pour moitié, les dates, le lieu de naissance et les parents pour le reste.
+     * Des sexes différents ou des années trop éloignées excluent la paire.
+     */
+    private double score(int i, int j) {
+        String sexA = sexes[i];
+        String sexB = sexes[j];
+        if (!sexA.equals("Unknown") && !sexB.equals("Unknown") && !sexA.equals(sexB)) return 0.0;
+
+        double total = 0.5 * Phonetic.similarity(names[i], names[j]);
+        double weight = 0.5;
+
+        double birth = yearScore(birthYears[i], birthYears[j]);
+        double death = yearScore(deathYears[i], deathYears[j]);
+        if (birth == 0.0 || death == 0.0) return 0.0;
+        total += 0.2 * (birth < 0 ? 0.5 : birth);
+        total += 0.1 * (death < 0 ? 0.5 : death);
+        weight += 0.3;
+
+        if (!birthPlaces[i].isEmpty() && !birthPlaces[j].isEmpty()) {
+            total += 0.1 * Phonetic.similarity(birthPlaces[i], birthPlaces[j]);
+            weight += 0.1;
+        }
+        if (parents[i].length() > 1 && parents[j].length() > 1) {
+            total += 0.1 * Phonetic.similarity(parents[i], parents[j]);
+            weight += 0.1;
+        }
+        return total / weight;
+    }
+
+    /**
+     * Compare deux années : 1 si égales, décroissant jusqu'à 0 au-delà de 5 ans d'écart, -1 si l'une est inconnue.
+     */
+    private static double yearScore(int a, int b) {
+        if (a < 0 || b < 0) return -1.0;
+        int diff = Math.abs(a - b);
+        return diff > 5 ? 0.0 : 1.0 - diff / 6.0;
+    }
+}
@@ -0,0 +1,156 @@
+package genealogy.analysis;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import genealogy.parsing.RecordHasher;
+
+/**
+ * Différences entre deux versions d'un fichier GEDCOM, sans charger les graphes.
+ * Chaque fichier est réduit à la table de ses empreintes (une par individu et par famille, calculées en
+ * parallèle pendant la lecture) ; les enregistrements sont appariés par ID. Un enregistrement présent des
+ * deux côtés avec des empreintes différentes est modifié : seuls les premiers modifiés (dans la limite
+ * donnée) sont relus dans les deux fichiers pour détailler les lignes de tags ajoutées et retirées.
+ */
+public class GedcomDiff {
+
+    /**
+     * Changement d'un enregistrement. Pour un enregistrement modifié, les lignes retirées et ajoutées
+     * sont au format "CHEMIN valeur" (ex: "BIRT.PLAC Lyon") ; elles sont null si le détail n'a pas été lu.
+     */
+    public static class Change {
+        private final String id;
+        private final boolean family;
+        private List<String> removed;
+        private List<String> added;
+
+        public Change(String id, boolean family) {
+            this.id = id;
+            this.family = family;
+        }
+
+        public String getId() {
+            return id;
+        }
+
+        public boolean isFamily() {
+            return family;
+        }
+
+        public List<String> getRemoved() {
+            return removed;
+        }
+
+        public List<String> getAdded() {
+            return added;
+        }
+    }
+
+    private final List<Change> added = new ArrayList<>();
+    private final List<Change> removed = new ArrayList<>();
+    private final List<Change> modified = new ArrayList<>();
+    private long bytes;
+
+    /**
+     * Compare deux fichiers GEDCOM.
+     * @param oldPath L'ancienne version.
+     * @param newPath La nouvelle version.
+     * @param details Le nombre maximal d'enregistrements modifiés dont les lignes sont détaillées.
+     * @throws IOException En cas de problème de lecture.
+     */
+    public GedcomDiff(String oldPath, String newPath, int details) throws IOException {
+        RecordHasher hasher = new RecordHasher();
+        RecordHasher.Fingerprints before = hasher.hash(oldPath);
+        RecordHasher.Fingerprints after = hasher.hash(newPath);
+        bytes = before.getBytes() + after.getBytes();
+        compare(before.getIndividuals(), after.getIndividuals(), false);
+        compare(before.getFamilies(), after.getFamilies(), true);
+
+        if (!modified.isEmpty() && details > 0) {
+            Set<String> ids = new HashSet<>();
+            for (int c = 0; c < modified.size() && c < details; c++) ids.add(modified.get(c).id);
+            Map<String, List<String>> oldLines = RecordHasher.lines(oldPath, ids);
+            Map<String, List<String>> newLines = RecordHasher.lines(newPath, ids);
+            for (int c = 0; c < modified.size() && c < details; c++) {
+                Change change = modified.get(c);
+                detail(change, oldLines.get(change.id), newLines.get(change.id));
+            }
+        }
+    }
+
+    /**
+     * Apparie les enregistrements d'un type par ID.
+     */
+    private void compare(Map<String, Long> before, Map<String, Long> after, boolean family) {
+        for (Map.Entry<String, Long> entry : before.entrySet()) {
+            Long hash = after.get(entry.getKey());
+            if (hash == null) removed.add(new Change(entry.getKey(), family));
+            else if (!hash.equals(entry.getValue())) modified.add(new Change(entry.getKey(), family));
+        }
+        for (String id : after.keySet()) {
+            if (!before.containsKey(id)) added.add(new Change(id, family));
+        }
+    }
+
+    /**
+     * Lignes retirées et ajoutées d'un enregistrement, comparées comme des multi-ensembles :
+     * des lignes seulement déplacées ne donnent aucun détail.
+     */
+    private static void detail(Change change, List<String> before, List<String> after) {
+        Map<String, int[]> counts = new HashMap<>();
+        if (after != null) {
+            for (String line : after) counts.computeIfAbsent(line, l -> new int[1])[0]++;
+        }
+        change.removed = new ArrayList<>();
+        change.added = new ArrayList<>();
+        if (before != null) {
+            for (String line : before) {
+                int[] count = counts.get(line);
+                if (count != null && count[0] > 0) count[0]--;
+                else change.removed.add(line);
+            }
+        }
+        if (after != null) {
+            for (String line : after) {
+                int[] count = counts.get(line);
+                if (count[0] > 0) {
+                    count[0]--;
+                    change.added.add(line);
+                }
+            }
+        }
+    }
+
+    /**
+     * @return Les enregistrements absents de l'ancienne version, dans l'ordre du nouveau fichier.
+     */
+    public List<Change> getAdded() {
+        return added;
+    }
+
+    /**
+     * @return Les enregistrements absents de la nouvelle version, dans l'ordre de l'ancien fichier.
+     */
+    public List<Change> getRemoved() {
+        return removed;
+    }
+
+    /**
+     * @return Les enregistrements modifiés, dans l'ordre de l'ancien fichier.
+     */
+    public List<Change> getModified() {
+        return modified;
+    }
+
+    /**
+     * @return Le nombre d'octets lus dans les deux fichiers (hors relecture des détails).
+     */
+    public long getBytes() {
+        return bytes;
+    }
+}
@@ -0,0 +1,200 @@
+package genealogy.analysis;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import genealogy.graph.Family;
+import genealogy.graph.Graph;
+import genealogy.graph.Individual;
+
+/**
+ * Numéro de génération de chaque individu, calculé une fois pour tout le graphe.
+ * Les racines (individus sans parents connus) sont à la génération 0, et chaque enfant est
+ * une génération après le plus "profond" de ses deux parents : la génération est donc la longueur
+ * de la plus longue lignée qui mène d'une racine à l'individu.
+ * Le calcul est un tri topologique (algorithme de Kahn) sur les arcs parent -> enfant des familles,
+ * en O(individus + liens), sans récursion. Les individus pris dans un cycle n'ont pas de génération (-1).
+ * L'ordre topologique obtenu est exposé pour d'autres parcours (un parent y précède toujours ses enfants).
+ */
+public class Generations {
+
+    /** * Individus, dans l'ordre du graphe : l'indice sert d'identifiant entier. */
+    private final Individual[] people;
+    private final Map<String, Integer> index;
+
+    /** * Génération de chaque individu, -1 s'il fait partie d'un cycle ou en descend. */
+    private final int[] generation;
+
+    /** * Parent par lequel passe la plus longue lignée, -1 pour une racine. */
+    private final int[] bestParent;
+
+    /** * Individus dans l'ordre topologique (les individus pris dans un cycle n'y figurent pas). */
+    private final int[] order;
+
+    /** * Version du graphe au moment du calcul. */
+    private final long version;
+
+    /**
+     * Calcule les générations de tous les individus du graphe.
+     * @param graph Le graphe.
+     */
+    public Generations(Graph graph) {
+        this.version = graph.getVersion();
+        int n = graph.getIndividuals().size();
+        people = graph.getIndividuals().values().toArray(new Individual[0]);
+        index = new HashMap<>(n * 2);
+        for (int i = 0; i < n; i++) index.put(people[i].getId(), i);
+
+        // Arcs parent -> enfant en tableaux compacts (CSR) : d'abord compter, puis remplir
+        int[] degree = new int[n];
+        int[] inDegree = new int[n];
+        for (Family fam : graph.getFamilies().values()) {
+            int father = indexOf(fam.getHusb());
+            int mother = indexOf(fam.getWife());
+            for (String childId : fam.getChildren()) {
+                int child = indexOf(childId);
+                if (child < 0) continue;
+                if (father >= 0) { degree[father]++; inDegree[child]++; }
+                if (mother >= 0) { degree[mother]++; inDegree[child]++; }
+            }
+        }
+        int[] start = new int[n + 1];
+        for (int i = 0; i < n; i++) start[i + 1] = start[i] + degree[i];
+        int[] children = new int[start[n]];
+        int[] fill = Arrays.copyOf(start, n);
+        for (Family fam : graph.getFamilies().values()) {
+            int father = indexOf(fam.getHusb());
+            int mother = indexOf(fam.getWife());
+            for (String childId : fam.getChildren()) {
+                int child = indexOf(childId);
+                if (child < 0) continue;
+                if (father >= 0) children[fill[father]++] = child;
+                if (mother >= 0) children[fill[mother]++] = child;
+            }
+        }
+
+        // Kahn : on part des racines, un enfant est traité quand tous ses parents l'ont été
+        generation = new int[n];
+        bestParent = new int[n];
+        Arrays.fill(generation, -1);
+        Arrays.fill(bestParent, -1);
+        int[] queue = new int[n];
+        int head = 0, tail = 0;
+        for (int i = 0; i < n; i++) {
+            if (inDegree[i] == 0) {
+                generation[i] = 0;
+                queue[tail++] = i;
+            }
+        }
+        while (head < tail) {
+            int parent = queue[head++];
+            for (int e = start[parent]; e < start[parent + 1]; e++) {
+                int child = children[e];
+                if (generation[parent] + 1 > generation[child]) {
+                    generation[child] = generation[parent] + 1;
+                    bestParent[child] = parent;
+                }
+                if (--inDegree[child] == 0) queue[tail++] = child;
+            }
+        }
+        order = Arrays.copyOf(queue, tail);
+
+        // Les individus jamais libérés sont dans un cycle (ou en descendent) : pas de génération
+        for (int i = 0; i < n; i++) {
+            if (inDegree[i] > 0) {
+                generation[i] = -1;
+                bestParent[i] = -1;
+            }
+        }
+    }
+
+    /**
+     * @return La version du graphe pour laquelle les générations ont été calculées.
+     */
+    public long getVersion() {
+        return version;
+    }
+
+    /**
+     * Génération d'un individu.
+     * @param id L'identifiant de l'individu.
+     * @return 0 pour une racine, n pour n générations après la racine la plus lointaine,
+     *         -1 si l'individu est inconnu ou pris dans un cycle.
+     */
+    public int getGeneration(String id) {
+        int i = indexOf(id);
+        return (i < 0) ? -1 : generation[i];
+    }
+
+    /**
+     * @return La génération la plus profonde du graphe, -1 s'il est vide.
+     */
+    public int getMaxGeneration() {
+        int max = -1;
+        for (int g : generation) max = Math.max(max, g);
+        return max;
+    }
+
+    /**
+     * @return Le nombre d'individus sans génération (cycles).
+     */
+    public int getUnlayered() {
+        return people.length - order.length;
+    }
+
+    /**
+     * Plus longue lignée qui mène à un individu, de la racine jusqu'à lui.
+     * @param id L'identifiant de l'individu.
+     * @return Les individus de la lignée, vide si l'individu est inconnu ou pris dans un cycle.
+     */
+    public List<Individual> getLineage(String id) {
+        List<Individual> lineage = new ArrayList<>();
+        int i = indexOf(id);
+        if (i < 0 || generation[i] < 0) return lineage;
+        for (; i >= 0; i = bestParent[i]) lineage.add(0, people[i]);
+        return lineage;
+    }
+
+    /**
+     * Les k individus des générations les plus profondes (fins des plus longues lignées).
+     * @param k Le nombre d'individus voulus.
+     * @return Les individus, de la génération la plus profonde à la moins profonde.
+     */
+    public List<Individual> getDeepest(int k) {
+        // Tri par paquets : les individus sont rangés par génération en un seul passage
+        int max = getMaxGeneration();
+        List<Individual> deepest = new ArrayList<>();
+        if (max < 0 || k <= 0) return deepest;
+        int[] count = new int[max + 2];
+        for (int g : generation) if (g >= 0) count[g + 1]++;
+        for (int g = 0; g < max + 1; g++) count[g + 1] += count[g];
+        int[] byGeneration = new int[order.length];
+        for (int i = 0; i < generation.length; i++) {
+            if (generation[i] >= 0) byGeneration[count[generation[i]]++] = i;
+        }
+        for (int j = byGeneration.length - 1; j >= 0 && deepest.size() < k; j--) {
+            deepest.add(people[byGeneration[j]]);
+        }
+        return deepest;
+    }
+
+    /**
+     * Ordre topologique du graphe : chaque parent apparaît avant ses enfants.
+     * Permet d'élaguer un parcours (ex: un ancêtre a toujours une génération plus petite).
+     * @return Les individus dans l'ordre topologique, sans ceux pris dans un cycle.
+     */
+    public List<Individual> getTopologicalOrder() {
+        List<Individual> list = new ArrayList<>(order.length);
+        for (int i : order) list.add(people[i]);
+        return list;
+    }
+
+    private int indexOf(String id) {
+        if (id == null) return -1;
+        Integer i = index.get(id);
+        return (i == null) ? -1 : i;
+    }
+}
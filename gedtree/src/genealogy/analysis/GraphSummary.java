@@ -0,0 +1,196 @@
+package genealogy.analysis;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.TreeMap;
+
+import genealogy.graph.Family;
+import genealogy.graph.Graph;
+import genealogy.graph.Individual;
+
+/**
+ * Statistiques globales d'un graphe, calculées en une seule passe parallèle sur les individus
+ * puis une sur les familles. Chaque thread remplit son propre accumulateur, et les accumulateurs
+ * sont fusionnés deux à deux à la fin : aucune structure n'est partagée pendant le calcul.
+ * Statistiques produites :
+ * _ fréquence des noms de famille (top K),
+ * _ répartition par sexe,
+ * _ durée de vie (années de naissance et de décès connues), par tranches de 10 ans,
+ * _ naissances par décennie,
+ * _ nombre de remariages (individus avec plusieurs familles FAMS),
+ * _ nombre d'enfants par famille.
+ */
+public class GraphSummary {
+
+    /** * Durée de vie maximale retenue : au-delà, les dates sont considérées comme fausses. */
+    private static final int MAX_LIFESPAN = 130;
+
+    /** * Tranches de 10 ans de la distribution des durées de vie. */
+    private static final int LIFESPAN_BUCKETS = MAX_LIFESPAN / 10 + 1;
+
+    /** * Dernière case de l'histogramme des tailles de famille (cette valeur et plus). */
+    public static final int MAX_CHILDREN = 15;
+
+    /**
+     * Accumulateur des statistiques sur les individus, fusionnable.
+     */
+    private static class IndividualStats {
+        final Map<String, long[]> surnames = new HashMap<>();
+        final Map<Integer, long[]> birthsPerDecade = new HashMap<>();
+        final long[] lifespans = new long[LIFESPAN_BUCKETS];
+        long individuals, males, females, lifespanCount, lifespanSum, lifespanMax;
+        long remarried, extraMarriages;
+
+        void add(Individual ind) {
+            individuals++;
+            String surname = ind.getSurname();
+            if (!surname.isEmpty()) {
+                surnames.computeIfAbsent(surname.toUpperCase(), s -> new long[1])[0]++;
+            }
+
+            String sex = ind.getTagValue("SEX");
+            if (sex.equals("M")) males++;
+            else if (sex.equals("F")) females++;
+
+            int birth = ind.getBirthYear();
+            if (birth >= 0) {
+                birthsPerDecade.computeIfAbsent(birth / 10 * 10, d -> new long[1])[0]++;
+                int death = ind.getDeathYear();
+                if (death >= birth && death - birth <= MAX_LIFESPAN) {
+                    int age = death - birth;
+                    lifespans[age / 10]++;
+                    lifespanCount++;
+                    lifespanSum += age;
+                    lifespanMax = Math.max(lifespanMax, age);
+                }
+            }
+
+            int fams = ind.getFams().size();
+            if (fams > 1) {
+                remarried++;
+                extraMarriages += fams - 1;
+            }
+        }
+
+        void merge(IndividualStats other) {
+            other.surnames.forEach((k, v) -> surnames.merge(k, v, (a, b) -> { a[0] += b[0]; return a; }));
+            other.birthsPerDecade.forEach((k, v) -> birthsPerDecade.merge(k, v, (a, b) -> { a[0] += b[0]; return a; }));
+            for (int i = 0; i < LIFESPAN_BUCKETS; i++) lifespans[i] += other.lifespans[i];
+            individuals += other.individuals;
+            males += other.males;
+            females += other.females;
+            lifespanCount += other.lifespanCount;
+            lifespanSum += other.lifespanSum;
+            lifespanMax = Math.max(lifespanMax, other.lifespanMax);
+            remarried += other.remarried;
+            extraMarriages += other.extraMarriages;
+        }
+    }
+
+    /**
+     * Accumulateur des statistiques sur les familles, fusionnable.
+     */
+    private static class FamilyStats {
+        final long[] childrenPerFamily = new long[MAX_CHILDREN + 1];
+        long families, children, maxChildren;
+
+        void add(Family fam) {
+            int n = fam.getChildren().size();
+            families++;
+            children += n;
+            maxChildren = Math.max(maxChildren, n);
+            childrenPerFamily[Math.min(n, MAX_CHILDREN)]++;
+        }
+
+        void merge(FamilyStats other) {
+            for (int i = 0; i <= MAX_CHILDREN; i++) childrenPerFamily[i] += other.childrenPerFamily[i];
+            families += other.families;
+            children += other.children;
+            maxChildren = Math.max(maxChildren, other.maxChildren);
+        }
+    }
+
+    private final IndividualStats people;
+    private final FamilyStats families;
+
+    /**
+     * Calcule les statistiques du graphe.
+     * @param graph Le graphe à analyser.
+     */
+    public GraphSummary(Graph graph) {
+        this.people = graph.getIndividuals().values().parallelStream()
+                .collect(IndividualStats::new, IndividualStats::add, IndividualStats::merge);
+        this.families = graph.getFamilies().values().parallelStream()
+                .collect(FamilyStats::new, FamilyStats::add, FamilyStats::merge);
+    }
+
+    /**
+     * Les noms de famille les plus fréquents (en majuscules), du plus au moins fréquent.
+     * @param k Le nombre de noms voulus.
+     * @return Les k noms et leur nombre de porteurs.
+     */
+    public List<Map.Entry<String, Long>> getTopSurnames(int k) {
+        // Tas des k plus grands : O(N log k) au lieu de trier tous les noms
+        PriorityQueue<Map.Entry<String, long[]>> heap = new PriorityQueue<>(
+                (a, b) -> a.getValue()[0] != b.getValue()[0]
+                        ? Long.compare(a.getValue()[0], b.getValue()[0])
+                        : b.getKey().compareTo(a.getKey()));
+        for (Map.Entry<String, long[]> e : people.surnames.entrySet()) {
+            heap.add(e);
+            if (heap.size() > k) heap.poll();
+        }
+        List<Map.Entry<String, Long>> top = new ArrayList<>();
+        while (!heap.isEmpty()) {
+            Map.Entry<String, long[]> e = heap.poll();
+            top.add(0, new java.util.AbstractMap.SimpleEntry<>(e.getKey(), e.getValue()[0]));
+        }
+        return top;
+    }
+
+    public long getIndividuals() { return people.individuals; }
+    public long getMales() { return people.males; }
+    public long getFemales() { return people.females; }
+    public long getDistinctSurnames() { return people.surnames.size(); }
+
+    /** * @return Le nombre d'individus dont la durée de vie est connue. */
+    public long getLifespanCount() { return people.lifespanCount; }
+
+    /** * @return La durée de vie moyenne en années, ou 0 si aucune n'est connue. */
+    public double getAverageLifespan() {
+        return people.lifespanCount == 0 ? 0.0 : (double) people.lifespanSum / people.lifespanCount;
+    }
+
+    public long getMaxLifespan() { return people.lifespanMax; }
+
+    /**
+     * @return Le nombre d'individus par tranche de 10 ans de durée de vie (case i : de 10*i à 10*i+9 ans).
+     */
+    public long[] getLifespanHistogram() { return people.lifespans.clone(); }
+
+    /**
+     * @return Le nombre de naissances par décennie, triées par décennie.
+     */
+    public Map<Integer, Long> getBirthsPerDecade() {
+        Map<Integer, Long> decades = new TreeMap<>();
+        people.birthsPerDecade.forEach((k, v) -> decades.put(k, v[0]));
+        return decades;
+    }
+
+    /** * @return Le nombre d'individus ayant fondé plus d'une famille. */
+    public long getRemarried() { return people.remarried; }
+
+    /** * @return Le nombre de familles au-delà de la première, tous individus confondus. */
+    public long getExtraMarriages() { return people.extraMarriages; }
+
+    public long getFamilies() { return families.families; }
+    public long getChildren() { return families.children; }
+    public long getMaxChildren() { return families.maxChildren; }
+
+    /**
+     * @return Le nombre de familles par nombre d'enfants (la dernière case regroupe MAX_CHILDREN et plus).
+     */
+    public long[] getChildrenHistogram() { return families.childrenPerFamily.clone(); }
+}
@@ -0,0 +1,267 @@
+package genealogy.analysis;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import genealogy.graph.Adjacency;
+import genealogy.graph.Graph;
+import genealogy.graph.Individual;
+
+/**
+ * Plus court chemin de parenté entre deux individus, par le sang et par les mariages.
+ * Les liens parent -> enfant, enfant -> parent et conjoint -> conjoint de toutes les familles, lus dans
+ * l'index des liens du graphe, sont rangés une fois pour toutes dans des tableaux compacts (CSR),
+ * avec le type de chaque lien.
+ * Une recherche est un parcours en largeur lancé depuis les deux individus à la fois, qui avance
+ * toujours du côté dont la frontière est la plus petite : sur un arbre où chacun a en moyenne b liens,
+ * on visite environ 2 b^(d/2) individus au lieu de b^d pour un chemin de longueur d.
+ * Les individus déjà vus sont marqués dans des tableaux d'entiers, remis à -1 après chaque recherche
+ * en ne repassant que sur les individus visités.
+ */
+public class Kinship {
+
+    /** * Type d'un lien, du point de vue de l'individu d'arrivée. */
+    public enum Relation { PARENT, CHILD, SPOUSE }
+
+    /**
+     * Étape d'un chemin : to est le parent, l'enfant ou le conjoint de from.
+     */
+    public static class Step {
+        private final Individual from;
+        private final Relation relation;
+        private final Individual to;
+
+        public Step(Individual from, Relation relation, Individual to) {
+            this.from = from;
+            this.relation = relation;
+            this.to = to;
+        }
+
+        public Individual getFrom() {
+            return from;
+        }
+
+        public Relation getRelation() {
+            return relation;
+        }
+
+        public Individual getTo() {
+            return to;
+        }
+    }
+
+    private static final Relation[] RELATIONS = Relation.values();
+
+    /** * Index des liens du graphe : ses indices d'individus servent d'identifiants entiers. */
+    private final Adjacency adj;
+
+    /** * Liens de l'individu i : links[start[i]..start[i+1]-1], de type relations[...] (ordinal de Relation). */
+    private final int[] start;
+    private final int[] links;
+    private final byte[] relations;
+
+    /** * Version du graphe au moment de la construction. */
+    private final long version;
+
+    /** * Prédécesseur de chaque individu dans chacun des deux parcours (-1 : pas encore vu), alloués à la première recherche. */
+    private int[] fromSource;
+    private int[] fromTarget;
+    private int[] sourceQueue;
+    private int[] targetQueue;
+
+    /** * Nombre d'individus visités par la dernière recherche. */
+    private int visited;
+
+    /**
+     * Construit les liens de parenté de tous les individus du graphe.
+     * @param graph Le graphe.
+     */
+    public Kinship(Graph graph) {
+        this.version = graph.getVersion();
+        // Les IDs des liens sont déjà résolus en indices par l'index des liens du graphe
+        Adjacency adj = graph.getAdjacency();
+        int n = adj.getIndividualCount();
+        this.adj = adj;
+
+        // Comptage des liens de chaque individu, puis remplissage (chaque lien est rangé dans les deux sens)
+        int[] degree = new int[n];
+        for (int f = 0; f < adj.getFamilyCount(); f++) {
+            int father = adj.husb(f);
+            int mother = adj.wife(f);
+            if (father >= 0 && mother >= 0) { degree[father]++; degree[mother]++; }
+            for (int e = adj.childStart(f); e < adj.childEnd(f); e++) {
+                int child = adj.child(e);
+                if (child < 0) continue;
+                if (father >= 0) { degree[father]++; degree[child]++; }
+                if (mother >= 0) { degree[mother]++; degree[child]++; }
+            }
+        }
+        start = new int[n + 1];
+        for (int i = 0; i < n; i++) start[i + 1] = start[i] + degree[i];
+        links = new int[start[n]];
+        relations = new byte[start[n]];
+        int[] fill = Arrays.copyOf(start, n);
+        for (int f = 0; f < adj.getFamilyCount(); f++) {
+            int father = adj.husb(f);
+            int mother = adj.wife(f);
+            if (father >= 0 && mother >= 0) {
+                link(fill, father, mother, Relation.SPOUSE);
+                link(fill, mother, father, Relation.SPOUSE);
+            }
+            for (int e = adj.childStart(f); e < adj.childEnd(f); e++) {
+                int child = adj.child(e);
+                if (child < 0) continue;
+                if (father >= 0) {
+                    link(fill, father, child, Relation.CHILD);
+                    link(fill, child, father, Relation.PARENT);
+                }
+                if (mother >= 0) {
+                    link(fill, mother, child, Relation.CHILD);
+                    link(fill, child, mother, Relation.PARENT);
+                }
+            }
+        }
+    }
+
+    private void link(int[] fill, int from, int to, Relation relation) {
+        links[fill[from]] = to;
+        relations[fill[from]++] = (byte) relation.ordinal();
+    }
+
+    /**
+     * @return La version du graphe pour laquelle les liens ont été construits.
+     */
+    public long getVersion() {
+        return version;
+    }
+
+    /**
+     * @return Le nombre de liens (chaque lien compte une fois dans chaque sens).
+     */
+    public int getLinks() {
+        return links.length;
+    }
+
+    /**
+     * @return Le nombre d'individus visités par la dernière recherche.
+     */
+    public synchronized int getVisited() {
+        return visited;
+    }
+
+    /**
+     * Plus court chemin de parenté entre deux individus.
+     * @param fromId L'identifiant du premier individu.
+     * @param toId L'identifiant du second individu.
+     * @return Les étapes du chemin (vide si les deux individus sont le même),
+     *         ou null si un individu est inconnu ou si aucun chemin ne les relie.
+     */
+    public synchronized List<Step> path(String fromId, String toId) {
+        int source = indexOf(fromId);
+        int target = indexOf(toId);
+        visited = 0;
+        if (source < 0 || target < 0) return null;
+        if (source == target) return new ArrayList<>();
+        if (fromSource == null) {
+            fromSource = new int[adj.getIndividualCount()];
+            fromTarget = new int[adj.getIndividualCount()];
+            Arrays.fill(fromSource, -1);
+            Arrays.fill(fromTarget, -1);
+            sourceQueue = new int[adj.getIndividualCount()];
+            targetQueue = new int[adj.getIndividualCount()];
+        }
+
+        fromSource[source] = source;
+        fromTarget[target] = target;
+        sourceQueue[0] = source;
+        targetQueue[0] = target;
+        int sourceHead = 0, sourceTail = 1, targetHead = 0, targetTail = 1;
+
+        // Meilleure rencontre : un lien entre meetSource (vu depuis source) et meetTarget (vu depuis target)
+        int best = Integer.MAX_VALUE;
+        int meetSource = -1, meetTarget = -1;
+        while (best == Integer.MAX_VALUE && sourceHead < sourceTail && targetHead < targetTail) {
+            // On avance d'un niveau entier, du côté dont la frontière est la plus petite
+            boolean forward = (sourceTail - sourceHead) <= (targetTail - targetHead);
+            int[] own = forward ? fromSource : fromTarget;
+            int[] other = forward ? fromTarget : fromSource;
+            int[] queue = forward ? sourceQueue : targetQueue;
+            int head = forward ? sourceHead : targetHead;
+            int tail = forward ? sourceTail : targetTail;
+            int end = tail;
+            for (; head < end; head++) {
+                int u = queue[head];
+                for (int e = start[u]; e < start[u + 1]; e++) {
+                    int v = links[e];
+                    if (own[v] < 0) {
+                        own[v] = u;
+                        queue[tail++] = v;
+                    }
+                    if (other[v] >= 0) {
+                        // Les deux parcours se rejoignent : on garde la rencontre la plus courte du niveau
+                        int length = depth(own, u) + 1 + depth(other, v);
+                        if (length < best) {
+                            best = length;
+                            meetSource = forward ? u : v;
+                            meetTarget = forward ? v : u;
+                        }
+                    }
+                }
+            }
+            if (forward) { sourceHead = head; sourceTail = tail; }
+            else { targetHead = head; targetTail = tail; }
+        }
+
+        // Chemin : source ... meetSource, puis meetTarget ... target
+        List<Step> steps = null;
+        if (best != Integer.MAX_VALUE) {
+            List<Integer> chain = new ArrayList<>();
+            for (int i = meetSource; ; i = fromSource[i]) {
+                chain.add(0, i);
+                if (i == source) break;
+            }
+            for (int i = meetTarget; ; i = fromTarget[i]) {
+                chain.add(i);
+                if (i == target) break;
+            }
+            steps = new ArrayList<>();
+            for (int k = 0; k + 1 < chain.size(); k++) {
+                int a = chain.get(k), b = chain.get(k + 1);
+                steps.add(new Step(adj.individual(a), relation(a, b), adj.individual(b)));
+            }
+        }
+
+        // Remise à zéro des seuls individus visités
+        for (int k = 0; k < sourceTail; k++) fromSource[sourceQueue[k]] = -1;
+        for (int k = 0; k < targetTail; k++) fromTarget[targetQueue[k]] = -1;
+        visited = sourceTail + targetTail;
+        return steps;
+    }
+
+    /**
+     * Distance d'un individu au point de départ de son parcours, en remontant les prédécesseurs.
+     */
+    private static int depth(int[] pred, int i) {
+        int d = 0;
+        while (pred[i] != i) {
+            i = pred[i];
+            d++;
+        }
+        return d;
+    }
+
+    /**
+     * Type du lien de a vers b (b est le parent, l'enfant ou le conjoint de a).
+     */
+    private Relation relation(int a, int b) {
+        for (int e = start[a]; e < start[a + 1]; e++) {
+            if (links[e] == b) return RELATIONS[relations[e]];
+        }
+        throw new IllegalStateException("Lien absent entre " + adj.individual(a).getId() + " et " + adj.individual(b).getId());
+    }
+
+    private int indexOf(String id) {
+        return adj.indexOf(id);
+    }
+}
@@ -0,0 +1,124 @@
+package genealogy.cache;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import genealogy.graph.Graph;
+
+/**
+ * Cache LRU des résultats de requêtes de la console (fiches INFO, listes d'enfants, réponses MARRIED...).
+ * Les résultats sont des textes déjà mis en forme, rangés par clé (ex: "INFO:@I1@").
+ * Le cache est borné en mémoire : la taille de chaque entrée est estimée, et les entrées
+ * les moins récemment utilisées sont retirées dès que le budget est dépassé.
+ * Il est vidé dès que la version du graphe change (chargement, fusion, modification).
+ */
+public class QueryCache {
+
+    /** * Coût fixe estimé d'une entrée (entrée de map, objets String, en-têtes de tableaux). */
+    private static final long ENTRY_OVERHEAD = 96;
+
+    /** * Entrées, de la moins récemment utilisée à la plus récente (ordre d'accès). */
+    private final LinkedHashMap<String, String> entries = new LinkedHashMap<>(256, 0.75f, true);
+
+    /** * Budget mémoire en octets. */
+    private final long maxBytes;
+
+    /** * Le graphe dont les résultats dépendent, et la version pour laquelle ils ont été calculés. */
+    private Graph graph;
+    private long version;
+
+    private long bytes;
+    private long hits;
+    private long misses;
+    private long evictions;
+    private long invalidations;
+
+    /**
+     * Constructeur avec un budget par défaut : 1/64 de la mémoire maximale de la JVM, plafonné à 64 Mo.
+     */
+    public QueryCache() {
+        this(Math.min(64L << 20, Runtime.getRuntime().maxMemory() / 64));
+    }
+
+    /**
+     * Constructeur.
+     * @param maxBytes Le budget mémoire du cache, en octets.
+     */
+    public QueryCache(long maxBytes) {
+        this.maxBytes = maxBytes;
+    }
+
+    /**
+     * Cherche un résultat. Le cache est d'abord vidé si le graphe a changé depuis le dernier appel.
+     * @param graph Le graphe interrogé.
+     * @param key La clé du résultat.
+     * @return Le résultat en cache, ou null s'il faut le calculer.
+     */
+    public synchronized String get(Graph graph, String key) {
+        if (graph != this.graph || graph.getVersion() != version) {
+            if (!entries.isEmpty()) invalidations++;
+            clear();
+            this.graph = graph;
+            this.version = graph.getVersion();
+        }
+        String value = entries.get(key);
+        if (value == null) misses++;
+        else hits++;
+        return value;
+    }
+
+    /**
+     * Range un résultat calculé pour la version du graphe vue au dernier get().
+     * Un résultat plus gros que tout le budget n'est pas gardé.
+     * @param key La clé du résultat.
+     * @param value Le résultat.
+     */
+    public synchronized void put(String key, String value) {
+        long size = sizeOf(key, value);
+        if (size > maxBytes) return;
+        String old = entries.put(key, value);
+        if (old != null) bytes -= sizeOf(key, old);
+        bytes += size;
+
+        // Retrait des entrées les moins récemment utilisées
+        Iterator<Map.Entry<String, String>> it = entries.entrySet().iterator();
+        while (bytes > maxBytes && it.hasNext()) {
+            Map.Entry<String, String> eldest = it.next();
+            bytes -= sizeOf(eldest.getKey(), eldest.getValue());
+            it.remove();
+            evictions++;
+        }
+    }
+
+    /**
+     * Vide le cache (les statistiques sont conservées).
+     */
+    public synchronized void clear() {
+        entries.clear();
+        bytes = 0;
+    }
+
+    public synchronized int getSize() { return entries.size(); }
+    public synchronized long getBytes() { return bytes; }
+    public long getMaxBytes() { return maxBytes; }
+    public synchronized long getHits() { return hits; }
+    public synchronized long getMisses() { return misses; }
+    public synchronized long getEvictions() { return evictions; }
+    public synchronized long getInvalidations() { return invalidations; }
+
+    /**
+     * @return La proportion de requêtes servies par le cache, entre 0 et 1.
+     */
+    public synchronized double getHitRatio() {
+        long total = hits + misses;
+        return total == 0 ? 0.0 : (double) hits / total;
+    }
+
+    /**
+     * Taille estimée d'une entrée : 2 octets par caractère plus un coût fixe.
+     */
+    private static long sizeOf(String key, String value) {
+        return ENTRY_OVERHEAD + 2L * (key.length() + value.length());
+    }
+}
@@ -3,17 +3,66 @@ package genealogy.console;
 import java.io.BufferedReader;
 import java.io.IOException;
 import java.io.InputStreamReader;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Deque;
 import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Consumer;
+import java.io.File;
 import java.io.FileOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
 import java.io.ObjectOutputStream;
+import java.io.PrintStream;
+import java.io.ByteArrayOutputStream;
 
+import genealogy.graph.Adjacency;
 import genealogy.graph.Graph;
 import genealogy.graph.Individual;
 import genealogy.graph.Family;
 import genealogy.parsing.Parser;
+import genealogy.parsing.MergeLoader;
+import genealogy.export.GedcomWriter;
+import genealogy.export.SubtreeWriter;
+import genealogy.export.GraphWriter;
+import genealogy.export.TableWriter;
+import genealogy.analysis.DuplicateFinder;
+import genealogy.analysis.GedcomDiff;
+import genealogy.analysis.Generations;
+import genealogy.analysis.Kinship;
+import genealogy.analysis.GraphSummary;
+import genealogy.cache.QueryCache;
+import genealogy.index.Phonetic;
+import genealogy.index.PhoneticIndex;
+import genealogy.index.PrefixIndex;
+import genealogy.index.YearIndex;
+import genealogy.storage.DiskIndex;
+import genealogy.storage.OffHeapStore;
+import genealogy.storage.RecordStore;
+import genealogy.query.Cursor;
+import genealogy.query.FindQuery;
+import genealogy.query.QueryPlan;
+import genealogy.query.Lineage;
+import genealogy.query.QueryOptions;
+import genealogy.perf.CommandEvent;
+import genealogy.perf.NameSearchEvent;
+import genealogy.perf.Perf;
+import genealogy.perf.Phase;
+import genealogy.perf.Profiler;
+import genealogy.progress.CancellationToken;
+import genealogy.progress.Progress;
+import genealogy.progress.ProgressListener;
+import genealogy.progress.ProgressTracker;
 import genealogy.exceptions.GenealogyErr;
 import genealogy.exceptions.exceptconsole.CommandErr;
 import genealogy.exceptions.exceptconsole.ArgNotFoundErr;
+import genealogy.exceptions.exceptgraph.ReadOnlyErr;
 
 
 /**
@@ -25,6 +74,53 @@ public class Console {
     private Graph graph;
     /** * création d'un buffer     */
     private BufferedReader buffer; 
+    /** * Lignes tapées pendant un chargement (autres que STOP), exécutées ensuite dans l'ordre. */
+    private final Deque<String> pending = new ArrayDeque<>();
+    /** * Cache des résultats de INFO, CHILD, SIBLINGS, FAMC et MARRIED, vidé quand le graphe change. */
+    private final QueryCache cache = new QueryCache();
+
+    /** * Nombre de lignes affichées par page de résultat. */
+    private static final int PAGE_SIZE = 50;
+    /** * Nombre maximal de petits-enfants affichés par enfant dans la fiche INFO. */
+    private static final int MAX_PETITS_ENFANTS = 10;
+
+    /** * Dernier résultat paginé, poursuivi par NEXT, avec le rôle affiché et la version du graphe. */
+    private Cursor<String> cursor;
+    private String cursorRole;
+    private long cursorVersion;
+
+    /** * Générations des individus, recalculées seulement quand le graphe change. */
+    private Generations generations;
+
+    /** * Liens de parenté (sang et mariages) pour PATH, reconstruits seulement quand le graphe change. */
+    private Kinship kinship;
+
+    /** * Index phonétique des noms, reconstruit seulement quand le graphe change. */
+    private PhoneticIndex phonetic;
+
+    /** * Nombre de résultats par défaut de SEARCH. */
+    private static final int SEARCH_RESULTS = 20;
+
+    /** * Index des préfixes de noms et d'IDs (autocomplétion), reconstruit seulement quand le graphe change. */
+    private PrefixIndex prefixes;
+
+    /** * Index des années de naissance et de décès (FIND), construit à la première requête qui s'en sert. */
+    private YearIndex years;
+
+    /** * Nombre de propositions par défaut de COMPLETE. */
+    private static final int COMPLETE_RESULTS = 10;
+
+    /** * Nombre d'enregistrements listés et détaillés par défaut dans chaque catégorie de DIFF. */
+    private static final int DIFF_RESULTS = 20;
+
+    /** * Stockage du graphe chargé avec LOAD ... OFFHEAP ou INDEXED, null sinon. */
+    private RecordStore store;
+
+    /** * Graphes chargés (USE, LOAD ... AS) ; graph et store sont ceux du graphe courant. */
+    private final Workspace workspace;
+
+    /** * Mémoire des caches de pages du mode indexé (16 Mo), quelle que soit la taille du fichier. */
+    private static final long INDEX_CACHE = 16L << 20;
     
     /**
      * Constructeur.
@@ -32,6 +128,7 @@ public class Console {
      */
     public Console(Graph graph) {
         this.graph = graph;
+        this.workspace = new Workspace(graph);
         // Configuration standard pour lire le clavier (System.in) avec un Buffer
         this.buffer = new BufferedReader(new InputStreamReader(System.in));
     }
@@ -43,12 +140,38 @@ public class Console {
         System.out.println("============= GedTree =============\n");
         System.out.println("Commandes disponibles :");
         System.out.println(" - LOAD <fichier.ged>     : Charger un arbre");
+        System.out.println(" - LOAD <fichier.ged> LAZY: Charger un arbre, tags décodés à la demande");
+        System.out.println(" - LOAD <fichier.ged> OFFHEAP : Charger un arbre hors du tas Java (lecture seule)");
+        System.out.println(" - LOAD <fichier.ged> INDEXED : Interroger un arbre sur disque via un index (lecture seule)");
+        System.out.println(" - LOAD <fichier.ged> [LAZY|OFFHEAP|INDEXED] AS <nom> : Charger un arbre dans un graphe nommé");
+        System.out.println(" - USE [nom] [NEW]        : Changer de graphe courant (NEW : créer un graphe vide ; sans nom : liste des graphes)");
+        System.out.println(" - STOP                   : Annuler le LOAD en cours (le graphe reste inchangé)");
+        System.out.println(" - DIFF <ancien.ged> <nouveau.ged> [LIMIT n] : Individus et familles ajoutés, retirés, modifiés");
+        System.out.println(" - MERGE <fichier1> <fichier2>... : Fusionner plusieurs arbres");
         System.out.println(" - INFO <id ou nom>       : Afficher les infos complètes d'une personne");
         System.out.println(" - CHILD <id ou nom>      : Afficher les enfants");
         System.out.println(" - SIBLINGS <id ou nom>   : Afficher les frères et soeurs");
+        System.out.println(" - DESCENDANTS <id ou nom>: Afficher tous les descendants, page par page");
+        System.out.println("   (CHILD, SIBLINGS, DESCENDANTS acceptent LIMIT n, OFFSET n, TO \"fichier\")");
+        System.out.println(" - NEXT [n]               : Page suivante du dernier résultat");
         System.out.println(" - FAMC <id ou nom>       : Afficher la famille parentale");
+        System.out.println(" - SEARCH ~<nom> [LIMIT n]: Recherche phonétique (ex: ~Dupond trouve Dupont)");
+        System.out.println(" - COMPLETE <début> [LIMIT n] : Noms ou IDs qui commencent par <début>");
+        System.out.println(" - [EXPLAIN] FIND INDI|FAM WHERE <champ><op><valeur> AND ... [LIMIT n] : Requête (ex: sex=F AND birth.date<1850 AND birth.place~\"Lyon\")");
         System.out.println(" - <Nom1> MARRIED <Nom2>  : Vérifier si deux personnes sont mariées");
         System.out.println(" - SAVE <fichier.ser>     : Sauvegarder le graphe (Sérialisation)");
+        System.out.println(" - EXPORT <fichier.ged> [PARALLEL] : Réécrire le graphe au format GEDCOM");
+        System.out.println(" - EXTRACT <id ou nom> ANCESTORS|DESCENDANTS [profondeur] <fichier.ged> : Extraire une branche");
+        System.out.println(" - EXPORTGRAPH <DOT|GRAPHML> <fichier> [id ou nom] [profondeur] : Exporter la structure du graphe");
+        System.out.println(" - EXPORTTABLE <CSV|COLUMNAR> <répertoire> [partitions] : Exporter des tables pour l'analyse");
+        System.out.println(" - DUPLICATES [seuil] [max] : Chercher les individus en double");
+        System.out.println(" - PATH <A> <B> | PATH <nom A> TO <nom B> : Plus court lien de parenté (sang et mariages)");
+        System.out.println(" - GENERATION <id ou nom> : Génération d'une personne et sa plus longue lignée");
+        System.out.println(" - LONGEST [k]            : Les k plus longues lignées de l'arbre");
+        System.out.println(" - SUMMARY [k]            : Statistiques de l'arbre (k noms les plus fréquents)");
+        System.out.println(" - PERF [JSON <fichier> | RESET] : Mesures de performance");
+        System.out.println(" - CACHE [CLEAR]          : Statistiques du cache de résultats");
+        System.out.println(" - PROFILE START|STOP <fichier.jfr> : Enregistrement Java Flight Recorder");
         System.out.println(" - EXIT                   : Quitter");
         System.out.println("\n===================================");
 
@@ -59,7 +182,7 @@ public class Console {
             String line = null;
             try {
                 // Lecture via le buffer lorsque l'utilisateur appuie sur la touche Entrée.
-                line = buffer.readLine();
+                line = pending.isEmpty() ? buffer.readLine() : pending.poll();
                 
             } catch (IOException e) { // Dans le cas où l'accès au clavier échoue.
                 System.out.println("Erreur de lecture entrée clavier : " + e.getMessage());
@@ -73,10 +196,19 @@ public class Console {
             // car elle doit être découpée différemment des autres.
             // Les autres commandes sont traitées plus bas, dans le bloc switch-case.
             if (line.toUpperCase().contains(" MARRIED ")) {
+                long debutMarried = System.nanoTime();
+                CommandEvent event = new CommandEvent();
+                event.command = "MARRIED";
+                event.arguments = line;
+                event.begin();
                 try {
                     checkMarried(line);
+                    event.success = true;
                 } catch (Exception e) {
                     System.out.println("ERREUR : " + e.getMessage());
+                } finally {
+                    event.commit();
+                    Perf.recordCommand("MARRIED", System.nanoTime() - debutMarried);
                 }
                 continue; // On passe à la boucle suivante, on ne traite pas le switch habituel
             }
@@ -95,17 +227,43 @@ public class Console {
             if (parts.length > 1) arguments = parts[1];
             else arguments = "";
             
+            // Mesure de la latence de chaque commande reconnue
+            long debutCommande = System.nanoTime();
+            boolean connue = true;
+            // Même mesure côté Java Flight Recorder (sans effet hors enregistrement)
+            CommandEvent event = new CommandEvent();
+            event.command = command;
+            event.arguments = arguments;
+            event.begin();
             try {
                 switch (command) {
                 	// Commande de sortie, le programme s'arrête.
                     case "EXIT":
                         running = false;
+                        stashGraph();
+                        workspace.close();
                         System.out.println("Au revoir.");
                         break;
                     // Commande de chargement de fichier, appel à la fonction loadFile(String file).
                     case "LOAD":
                         loadFile(arguments);
                         break;
+                    // Fusion de plusieurs fichiers, les identifiants en conflit sont renommés.
+                    case "MERGE":
+                        mergeFiles(arguments);
+                        break;
+                    // Compare deux versions d'un fichier sans les charger.
+                    case "DIFF":
+                        diffFiles(arguments);
+                        break;
+                    // Change de graphe courant, ou liste les graphes chargés.
+                    case "USE":
+                        useGraph(arguments);
+                        break;
+                    // STOP n'a d'effet que tapé pendant un chargement (voir runCancellable).
+                    case "STOP":
+                        System.out.println("Aucun chargement en cours.");
+                        break;
                      // Commande de demande d'informations sur une personne, appel à la fonction showInfo(String person).
                     case "INFO":
                         showInfo(arguments);
@@ -114,6 +272,14 @@ public class Console {
                     case "CHILD":
                         showChildren(arguments);
                         break;
+                    // Affiche les descendants d'une personne, page par page.
+                    case "DESCENDANTS":
+                        showDescendants(arguments);
+                        break;
+                    // Affiche la page suivante du dernier résultat paginé.
+                    case "NEXT":
+                        showNextPage(arguments);
+                        break;
                     // Affiche les frères et soeurs d'une personne.
                     case "SIBLINGS":
                         showSiblings(arguments);
@@ -126,56 +292,508 @@ public class Console {
                     case "SAVE":
                         saveGraph(arguments);
                         break;
+                    // Réécrit le graphe au format GEDCOM.
+                    case "EXPORT":
+                        exportGedcom(arguments);
+                        break;
+                    // Extrait les ancêtres ou les descendants d'une personne au format GEDCOM.
+                    case "EXTRACT":
+                        extractBranch(arguments);
+                        break;
+                    // Exporte la structure du graphe en DOT ou GraphML.
+                    case "EXPORTGRAPH":
+                        exportGraph(arguments);
+                        break;
+                    // Exporte les tables individus / familles / enfants.
+                    case "EXPORTTABLE":
+                        exportTables(arguments);
+                        break;
+                    // Recherche des individus en double.
+                    case "DUPLICATES":
+                        findDuplicates(arguments);
+                        break;
+                    // Plus court chemin de parenté entre deux personnes.
+                    case "PATH":
+                        showPath(arguments);
+                        break;
+                    // Génération d'une personne depuis les racines de l'arbre.
+                    case "GENERATION":
+                        showGeneration(arguments);
+                        break;
+                    // Plus longues lignées de l'arbre.
+                    case "LONGEST":
+                        showLongest(arguments);
+                        break;
+                    // Recherche phonétique d'une personne par son nom.
+                    case "SEARCH":
+                        searchPhonetic(arguments);
+                        break;
+                    // Requête déclarative sur les individus ou les familles.
+                    case "FIND":
+                        find(arguments, false);
+                        break;
+                    // Plan et temps d'exécution d'une requête FIND.
+                    case "EXPLAIN":
+                        if (!arguments.toUpperCase().startsWith("FIND ")) {
+                            System.out.println("Usage : EXPLAIN FIND INDI|FAM WHERE ...");
+                            break;
+                        }
+                        find(arguments.substring("FIND ".length()), true);
+                        break;
+                    // Autocomplétion d'un nom ou d'un ID.
+                    case "COMPLETE":
+                        complete(arguments);
+                        break;
+                    // Affiche les statistiques globales de l'arbre.
+                    case "SUMMARY":
+                        showSummary(arguments);
+                        break;
+                    // Affiche ou exporte les mesures de performance.
+                    case "PERF":
+                        showPerf(arguments);
+                        break;
+                    // Statistiques ou vidage du cache de résultats.
+                    case "CACHE":
+                        showCache(arguments);
+                        break;
+                    // Démarre ou arrête un enregistrement Java Flight Recorder.
+                    case "PROFILE":
+                        profile(arguments);
+                        break;
 
                     // Si la commande n'est pas connue, renvoie une erreur de l'exception personnalisée CommandErr.
                     default:
+                        connue = false;
                         throw new CommandErr(command);
                 }
+                event.success = true;
             } catch (GenealogyErr e) {
                 System.out.println("ERREUR : " + e.getMessage());
             } catch (Exception e) {
                 System.out.println("ERREUR SYSTEME : " + e.getMessage());
                 e.printStackTrace();
+            } finally {
+                if (connue) {
+                    event.commit();
+                    Perf.recordCommand(command, System.nanoTime() - debutCommande);
+                }
             }
         }
     }
 
     /**
      * Remplit le graphe à partir du fichier donné en argument.
+     * Si l'argument se termine par LAZY, le fichier est chargé en mode paresseux.
+     * S'il se termine par OFFHEAP, le graphe est remplacé par un graphe rangé hors du tas,
+     * et par INDEXED, par un graphe lu sur le disque à travers un index.
+     * AS n'est reconnu qu'en avant-dernier mot, suivi du nom du graphe : un chemin peut contenir " as ".
      * @param file Fichier ou chemin du fichier à charger.
      * @throws Exception
      */
     private void loadFile(String file) throws Exception {
+        boolean lazy = false;
+        file = file.trim();
+        int espace = file.lastIndexOf(' ');
+        String avant = (espace < 0) ? "" : file.substring(0, espace).trim();
+        if (avant.toUpperCase().endsWith(" AS")) {
+            loadAs(avant.substring(0, avant.length() - " AS".length()).trim(), file.substring(espace + 1));
+            return;
+        }
+        if (file.toUpperCase().endsWith(" OFFHEAP")) {
+            loadOffHeap(file.substring(0, file.length() - " OFFHEAP".length()).trim());
+            return;
+        }
+        if (file.toUpperCase().endsWith(" INDEXED")) {
+            loadIndexed(file.substring(0, file.length() - " INDEXED".length()).trim());
+            return;
+        }
+        if (file.toUpperCase().endsWith(" LAZY")) {
+            lazy = true;
+            file = file.substring(0, file.length() - " LAZY".length()).trim();
+        }
         if (file.isEmpty()) {
             System.out.println("Veuillez spécifier un nom de fichier.");
             return;
         }
 
-        // Remplit le graphe grâce au parser.
-        Parser parser = new Parser();
-        parser.parse(file, this.graph);
-        
-        System.out.println("Fichier chargé. Validation de la cohérence...");
-        this.graph.validate(); 
+        // Remplit un graphe de travail grâce au parser, sur un thread à part : le graphe courant
+        // n'est remplacé qu'une fois le fichier lu et validé, une erreur ou un STOP le laisse intact.
+        // Un graphe en lecture seule (OFFHEAP, INDEXED) n'est pas recopié : il est remplacé, et son
+        // stockage libéré, seulement après la validation.
+        Graph charge = new Graph();
+        if (store == null) charge.addAll(this.graph);
+        String chemin = file;
+        boolean paresseux = lazy;
+        ProgressLine ligne = new ProgressLine();
+        CancellationToken token = new CancellationToken();
+        try (ProgressTracker progress = new ProgressTracker(ligne, ProgressTracker.DEFAULT_PERIOD, token)) {
+            runCancellable(token, () -> {
+                long debut = System.nanoTime();
+                Parser parser = new Parser();
+                parser.setProgress(progress);
+                parser.setStringPool(workspace.newStringPool());
+                parser.parse(chemin, charge, paresseux);
+                long duree = (System.nanoTime() - debut) / 1_000_000;
+
+                ligne.message("Fichier chargé en " + duree + " ms. Validation de la cohérence...");
+                charge.validate(progress);
+                return null;
+            });
+        }
+        replaceGraph(charge, null);
         
         System.out.println("Validation OK.");
         System.out.println("Statistiques : " + graph.getIndividuals().size() + " individus importés.");
+        Perf.setCounter("graph.individus", graph.getIndividuals().size());
+        Perf.setCounter("graph.familles", graph.getFamilies().size());
+        getPhoneticIndex();
+        getPrefixIndex();
+    }
+
+    /**
+     * Charge un fichier dans un graphe nommé, qui devient le graphe courant.
+     * Un graphe qui portait déjà ce nom est remplacé, mais seulement si le chargement réussit.
+     * @param file Le fichier, suivi éventuellement de LAZY, OFFHEAP ou INDEXED.
+     * @param name Le nom du graphe (un seul mot).
+     * @throws Exception
+     */
+    private void loadAs(String file, String name) throws Exception {
+        String precedent = workspace.getCurrent();
+        stashGraph();
+        Graph ancien = workspace.getGraph(name);
+        RecordStore ancienStore = workspace.getStore(name);
+        workspace.put(name, new Graph(), null);
+        selectGraph(name);
+        try {
+            loadFile(file);
+        } catch (Exception e) {
+            // Échec : le graphe courant et celui qui portait ce nom sont remis en place
+            if (store != null) store.close();
+            workspace.use(precedent);
+            if (ancien == null) workspace.remove(name);
+            else workspace.put(name, ancien, ancienStore);
+            graph = workspace.getGraph(precedent);
+            store = workspace.getStore(precedent);
+            throw e;
+        }
+        if (ancienStore != null && ancienStore != store) ancienStore.close();
+        System.out.println("Graphe courant : " + name);
+    }
+
+    /**
+     * Commande USE : change de graphe courant, ou affiche les graphes chargés.
+     * Un graphe vide n'est créé que sur demande (USE nom NEW) : un nom mal tapé ne change pas de graphe.
+     * @param arguments Le nom du graphe suivi éventuellement de NEW (vide pour la liste).
+     */
+    private void useGraph(String arguments) {
+        if (!arguments.isEmpty()) {
+            String[] mots = arguments.trim().split("\\s+");
+            String name = mots[0];
+            boolean creer = mots.length == 2 && mots[1].equalsIgnoreCase("NEW");
+            if (mots.length > 2 || (mots.length == 2 && !creer)) {
+                System.out.println("Usage : USE [nom] [NEW]");
+                return;
+            }
+            if (creer && workspace.contains(name)) {
+                System.out.println("Le graphe " + name + " existe déjà (USE " + name + " pour le rendre courant).");
+                return;
+            }
+            if (!creer && !workspace.contains(name)) {
+                System.out.println("Aucun graphe nommé " + name + " (graphes : " + String.join(", ", workspace.getNames()) + ").");
+                System.out.println("Pour créer un graphe vide : USE " + name + " NEW, ou LOAD <fichier> AS " + name + ".");
+                return;
+            }
+            selectGraph(name);
+            System.out.println((creer ? "Nouveau graphe vide créé : " : "Graphe courant : ") + name
+                    + " (" + graph.getIndividuals().size() + " individus)");
+            return;
+        }
+        stashGraph();
+        System.out.println("Graphes chargés :");
+        for (String nom : workspace.getNames()) {
+            Graph g = workspace.getGraph(nom);
+            System.out.println((nom.equals(workspace.getCurrent()) ? " * " : "   ") + nom + " : "
+                    + g.getIndividuals().size() + " individus, " + g.getFamilies().size() + " familles"
+                    + (workspace.getStore(nom) != null ? " (lecture seule)" : ""));
+        }
+        System.out.println("Chaînes partagées : " + workspace.getStrings().size() + " distinctes, "
+                + workspace.getStrings().getHits() + " lectures évitées.");
+    }
+
+    /**
+     * Range le graphe courant dans l'espace de travail puis rend courant le graphe nommé
+     * (créé vide s'il n'existe pas). Les index et caches suivent la version du graphe et se recalculent seuls.
+     * @param name Le nom du graphe.
+     */
+    private void selectGraph(String name) {
+        stashGraph();
+        workspace.use(name);
+        graph = workspace.getGraph(name);
+        store = workspace.getStore(name);
+    }
+
+    /**
+     * Range le graphe courant (et son stockage) dans l'espace de travail.
+     */
+    private void stashGraph() {
+        workspace.put(workspace.getCurrent(), graph, store);
+    }
+
+    /**
+     * Exécute un chargement sur un thread à part. En attendant, la console continue de lire le clavier :
+     * la ligne STOP annule le chargement, les autres lignes sont gardées pour être exécutées ensuite.
+     * @param token Le jeton d'annulation consulté par le chargement.
+     * @param task Le chargement.
+     * @throws Exception L'erreur du chargement (LoadCancelledErr en cas d'annulation).
+     */
+    private void runCancellable(CancellationToken token, Callable<Void> task) throws Exception {
+        FutureTask<Void> future = new FutureTask<>(task);
+        Thread worker = new Thread(future, "gedcom-load");
+        worker.start();
+        boolean clavier = true;
+        while (!future.isDone()) {
+            try {
+                future.get(100, TimeUnit.MILLISECONDS);
+            } catch (TimeoutException e) {
+                // Lecture des lignes déjà tapées, sans bloquer
+                while (clavier && buffer.ready()) {
+                    String line = buffer.readLine();
+                    if (line == null) {
+                        clavier = false;
+                    } else if (line.trim().equalsIgnoreCase("STOP")) {
+                        token.cancel();
+                    } else {
+                        pending.add(line);
+                    }
+                }
+            } catch (ExecutionException e) {
+                break;
+            }
+        }
+        try {
+            future.get();
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof Exception) throw (Exception) e.getCause();
+            throw (Error) e.getCause();
+        }
+    }
+
+    /**
+     * Ligne d'avancement d'un chargement, réécrite sur place à chaque échantillon.
+     */
+    private static class ProgressLine implements ProgressListener {
+
+        /** * Longueur de la ligne affichée, 0 si aucune. */
+        private int width;
+
+        @Override
+        public synchronized void progress(Progress p) {
+            StringBuilder text = new StringBuilder("  [").append(p.getPhase()).append("] ");
+            boolean octets = p.getUnit().equals("octets");
+            text.append(octets ? String.format("%.1f Mo", p.getDone() / 1e6) : p.getDone() + " " + p.getUnit());
+            if (p.getTotal() > 0) {
+                text.append(" / ").append(octets ? String.format("%.1f Mo", p.getTotal() / 1e6) : String.valueOf(p.getTotal()));
+                text.append(String.format(" (%d %%)", (int) (p.getFraction() * 100)));
+            }
+            text.append(" - ").append(p.getRecords()).append(" enregistrements");
+            if (p.getEtaMillis() >= 0) {
+                text.append(" - reste ~").append((p.getEtaMillis() + 999) / 1000).append(" s");
+            }
+            String shown = text.toString();
+            System.out.print("\r" + shown + " ".repeat(Math.max(0, width - shown.length())));
+            System.out.flush();
+            width = shown.length();
+        }
+
+        /**
+         * Affiche un message sur sa propre ligne, sous la ligne d'avancement.
+         * @param message Le message.
+         */
+        synchronized void message(String message) {
+            clear();
+            System.out.println(message);
+        }
+
+        @Override
+        public synchronized void finished() {
+            clear();
+        }
+
+        private void clear() {
+            if (width == 0) return;
+            System.out.print("\r" + " ".repeat(width) + "\r");
+            width = 0;
+        }
+    }
+
+    /**
+     * Charge un fichier dans un stockage hors tas et remplace le graphe courant par ses vues.
+     * Le graphe obtenu est en lecture seule. Le graphe courant n'est remplacé (et son stockage
+     * éventuel libéré) qu'une fois le nouveau validé : une erreur le laisse intact.
+     * @param file Fichier ou chemin du fichier à charger (non compressé).
+     * @throws Exception
+     */
+    private void loadOffHeap(String file) throws Exception {
+        if (file.isEmpty()) {
+            System.out.println("Veuillez spécifier un nom de fichier.");
+            return;
+        }
+        long debut = System.nanoTime();
+        OffHeapStore nouveau;
+        try (Phase phase = Perf.start("load.offheap")) {
+            nouveau = OffHeapStore.load(file);
+            phase.setItems(nouveau.getIndividualCount() + nouveau.getFamilyCount());
+            phase.setBytes(nouveau.getUsedBytes());
+        }
+        long duree = (System.nanoTime() - debut) / 1_000_000;
+        Graph charge = nouveau.toGraph();
+        try {
+            System.out.println("Fichier chargé hors tas en " + duree + " ms ("
+                    + (nouveau.getUsedBytes() / 1024) + " Ko). Validation de la cohérence...");
+            charge.validate();
+        } catch (Exception e) {
+            nouveau.close();
+            throw e;
+        }
+        replaceGraph(charge, nouveau);
+
+        System.out.println("Validation OK.");
+        System.out.println("Statistiques : " + graph.getIndividuals().size() + " individus importés.");
+        Perf.setCounter("graph.individus", graph.getIndividuals().size());
+        Perf.setCounter("graph.familles", graph.getFamilies().size());
+        getPhoneticIndex();
+        getPrefixIndex();
+        Perf.setCounter("offheap.octets", nouveau.getUsedBytes());
+    }
+
+    /**
+     * Ouvre l'index d'un fichier (construit au premier chargement, dans fichier.ged.idx) et remplace
+     * le graphe courant par un graphe lu sur le disque. Seuls les caches de pages restent en mémoire,
+     * le graphe n'est donc pas validé en entier (ce qui reviendrait à tout lire).
+     * Le stockage précédent éventuel n'est libéré qu'une fois l'index ouvert.
+     * @param file Fichier ou chemin du fichier à interroger (non compressé).
+     * @throws Exception
+     */
+    private void loadIndexed(String file) throws Exception {
+        if (file.isEmpty()) {
+            System.out.println("Veuillez spécifier un nom de fichier.");
+            return;
+        }
+        long debut = System.nanoTime();
+        DiskIndex index;
+        try (Phase phase = Perf.start("load.index")) {
+            index = DiskIndex.open(file, INDEX_CACHE);
+            phase.setItems(index.getIndividualCount() + index.getFamilyCount());
+        }
+        long duree = (System.nanoTime() - debut) / 1_000_000;
+        replaceGraph(index.toGraph(), index);
+
+        System.out.println((index.isRebuilt() ? "Index construit" : "Index existant réutilisé")
+                + " (" + index.getIndexFile() + ") en " + duree + " ms.");
+        System.out.println("Statistiques : " + graph.getIndividuals().size() + " individus, "
+                + graph.getFamilies().size() + " familles, cache de pages limité à " + (INDEX_CACHE >> 20) + " Mo.");
+        Perf.setCounter("graph.individus", graph.getIndividuals().size());
+        Perf.setCounter("graph.familles", graph.getFamilies().size());
+    }
+
+    /**
+     * Remplace le graphe courant et son stockage (aussi dans l'espace de travail, qui ferme
+     * les stockages à la sortie), puis libère l'ancien stockage.
+     * @param nouveau Le nouveau graphe, déjà validé.
+     * @param nouveauStore Son stockage, null pour un graphe en mémoire.
+     * @throws IOException Si l'ancien stockage ne peut pas être fermé.
+     */
+    private void replaceGraph(Graph nouveau, RecordStore nouveauStore) throws IOException {
+        RecordStore ancien = this.store;
+        this.graph = nouveau;
+        this.store = nouveauStore;
+        stashGraph();
+        if (ancien != null && ancien != nouveauStore) ancien.close();
+    }
+
+    /**
+     * Fusionne plusieurs fichiers GEDCOM dans le graphe, lus en parallèle.
+     * Les identifiants déjà utilisés sont renommés, puis le graphe est validé une seule fois.
+     * La fusion se fait dans une copie : le graphe courant n'est remplacé que si elle est valide.
+     * Un graphe en lecture seule (OFFHEAP ou INDEXED) ne peut pas recevoir de fusion.
+     * @param arguments Les fichiers à fusionner, séparés par des espaces.
+     * @throws Exception ReadOnlyErr si le graphe courant est en lecture seule.
+     */
+    private void mergeFiles(String arguments) throws Exception {
+        if (arguments.isEmpty()) {
+            System.out.println("Veuillez spécifier au moins un fichier.");
+            return;
+        }
+        if (store != null) throw new ReadOnlyErr("MERGE");
+        List<String> files = Arrays.asList(arguments.trim().split("\\s+"));
+
+        long debut = System.nanoTime();
+        MergeLoader loader = new MergeLoader();
+        loader.setStringPool(workspace.newStringPool());
+        Graph fusion = new Graph();
+        fusion.addAll(this.graph);
+        loader.merge(files, fusion);
+        long duree = (System.nanoTime() - debut) / 1_000_000;
+
+        for (int i = 0; i < files.size(); i++) {
+            System.out.println("  " + files.get(i) + " : " + loader.getCounts().get(i) + " individus");
+        }
+        System.out.println(files.size() + " fichier(s) fusionné(s) en " + duree + " ms, "
+                + loader.getRenamed() + " identifiant(s) renommé(s). Validation de la cohérence...");
+        fusion.validate();
+        replaceGraph(fusion, null);
+
+        System.out.println("Validation OK.");
+        System.out.println("Statistiques : " + graph.getIndividuals().size() + " individus au total.");
+        Perf.setCounter("graph.individus", graph.getIndividuals().size());
+        Perf.setCounter("graph.familles", graph.getFamilies().size());
+        getPhoneticIndex();
+        getPrefixIndex();
     }
 
     /**
      * Affiche le rôle dans la famille, le nom et l'ID d'une personne.
+     * @param out Le flux où écrire.
      * @param role Role de la personne dans sa famille.
      * @param id Identifiant de la personne.
      */
-    private void printPersonName(String role, String id) {
+    private void printPersonName(PrintStream out, String role, String id) {
         if (id == null) return;
+        String nom = displayName(id);
+        out.println("  " + role + " : " + (nom == null ? "Inconnu" : nom) + " (" + id + ")");
+    }
+
+    /**
+     * Nom affiché pour un ID de résultat : le nom d'une personne, ou les époux d'une famille (FIND FAM).
+     * @param id Identifiant d'une personne ou d'une famille.
+     * @return Le nom, ou null si l'ID est inconnu.
+     */
+    private String displayName(String id) {
         Individual p = graph.getIndividual(id);
-        if (p != null) {
-            String nom = p.getTagValue("NAME");
-            System.out.println("  " + role + " : " + nom + " (" + id + ")");
-        } else {
-            System.out.println("  " + role + " : Inconnu (" + id + ")");
-        }
+        if (p != null) return p.getTagValue("NAME");
+        Family fam = graph.getFamily(id);
+        if (fam == null) return null;
+        // Résultat de FIND FAM : la famille est présentée par ses époux
+        Individual mari = (fam.getHusb() == null) ? null : graph.getIndividual(fam.getHusb());
+        Individual femme = (fam.getWife() == null) ? null : graph.getIndividual(fam.getWife());
+        return (mari == null ? "?" : mari.getTagValue("NAME")) + " & " + (femme == null ? "?" : femme.getTagValue("NAME"));
+    }
+
+    /**
+     * Affiche le rôle, le nom et l'ID d'une personne déjà résolue (par l'index des liens).
+     * @param out Le flux où écrire.
+     * @param role Role de la personne dans sa famille.
+     * @param p La personne, null si le lien est vide.
+     */
+    private void printPerson(PrintStream out, String role, Individual p) {
+        if (p != null) out.println("  " + role + " : " + p.getTagValue("NAME") + " (" + p.getId() + ")");
+    }
+
+    /**
+     * @return L'individu d'indice i de l'index des liens, ou null pour NONE et MISSING.
+     */
+    private static Individual person(Adjacency adj, int i) {
+        return (i < 0) ? null : adj.individual(i);
     }
 
     /**
@@ -187,57 +805,54 @@ public class Console {
         if (person.isEmpty()) return;
 
         // Partie 1 : Recherche
-        Individual ind = graph.getIndividual(person);
-        
-        if (ind == null) {
-            String recherche = person.toLowerCase(); // On cherche la personne donnée en argument, en miniscule.
-            for(Individual i : graph.getIndividuals().values()) { // On regarde chaque individu du graphe (Map).
-                String nomIndividu = i.getTagValue("NAME");
-                if (nomIndividu != null && nomIndividu.toLowerCase().contains(recherche)) {
-                	// L'individu a été trouvé, on arrête la recherche.
-                    ind = i;
-                    break;
-                }
-            }
-        }
-        
-        // Personne non trouvée, on renvoie une erreur.
-        if (ind == null) {
-            throw new ArgNotFoundErr(person);
-        }
+        Individual ind = findIndividual(person);
 
-        // Partie 2 : Affichage
-        System.out.println("\n========================================");
-        System.out.println(" FICHE DE : " + ind.getTagValue("NAME"));
-        System.out.println("========================================");
+        // Partie 2 : Affichage (fiche calculée une seule fois tant que le graphe ne change pas)
+        printCached("INFO:" + ind.getId(), out -> renderInfo(out, ind));
+    }
+
+    /**
+     * Affiche la fiche complète d'une personne : ses tags, ses parents, ses familles et sa descendance.
+     * @param out Le flux où écrire.
+     * @param ind La personne.
+     */
+    private void renderInfo(PrintStream out, Individual ind) {
+        Adjacency adj = graph.peekAdjacency();
+        if (adj != null) {
+            renderInfo(out, adj, ind);
+            return;
+        }
+        out.println("\n========================================");
+        out.println(" FICHE DE : " + ind.getTagValue("NAME"));
+        out.println("========================================");
         
         // Affichage des informations de la personne
-        ind.display(0);
+        ind.display(out, 0);
         
-        System.out.println("----------------------------------------");
+        out.println("----------------------------------------");
 
         // Affichage des parents (s'ils sont référenciés dans le fichier)
         if (ind.getFamc() != null) {
-            System.out.println(" SES PARENTS :");
+            out.println(" SES PARENTS :");
             Family familleEnfant = graph.getFamily(ind.getFamc());
             
             if (familleEnfant != null) {
-                printPersonName("Père", familleEnfant.getHusb());
-                printPersonName("Mère", familleEnfant.getWife());
+                printPersonName(out, "Père", familleEnfant.getHusb());
+                printPersonName(out, "Mère", familleEnfant.getWife());
             }
         } else {
-            System.out.println(" PARENTS : Inconnus dans la base (Souche)");
+            out.println(" PARENTS : Inconnus dans la base (Souche)");
         }
 
         // Affichage de sa famille (ID de famille, conjoint(e) et enfant(s)) s'il en a une.
         if (ind.getFams().isEmpty()) {
-            System.out.println("----------------------------------------");
-            System.out.println(" Aucune famille (conjoint/enfants) enregistrée.");
+            out.println("----------------------------------------");
+            out.println(" Aucune famille (conjoint/enfants) enregistrée.");
         } 
         else {
             for (String famsId : ind.getFams()) { // Pour toutes les familles où la personne est un parent.
-                System.out.println("----------------------------------------");
-                System.out.println(" FAMILLE (Ref " + famsId + ") :");
+                out.println("----------------------------------------");
+                out.println(" FAMILLE (Ref " + famsId + ") :");
                 
                 Family familleParent = graph.getFamily(famsId);
                 
@@ -249,28 +864,27 @@ public class Console {
                     } else {
                         idConjoint = familleParent.getHusb(); // Sinon, on affiche son mari.
                     }
-                    printPersonName("Conjoint(e)", idConjoint);
+                    printPersonName(out, "Conjoint(e)", idConjoint);
                     
                     // Enfant(s) si la personne en a.
                     List<String> enfants = familleParent.getChildren();
                     if (enfants.isEmpty()) {
-                        System.out.println("  Pas d'enfants.");
+                        out.println("  Pas d'enfants.");
                     } else {
-                        System.out.println("  Descendance (" + enfants.size() + " enfants directs) :");
+                        out.println("  Descendance (" + enfants.size() + " enfants directs) :");
                         
                         for (String enfantId : enfants) {
-                            printPersonName("  -", enfantId);
+                            printPersonName(out, "  -", enfantId);
                             
-                            // Petits-Enfants (On cherche les enfants des enfants)
+                            // Petits-Enfants (On cherche les enfants des enfants), limités pour ne pas inonder la fiche
                             Individual objetEnfant = graph.getIndividual(enfantId);
                             if (objetEnfant != null && !objetEnfant.getFams().isEmpty()) {
-                                for (String idFamilleEnfant : objetEnfant.getFams()) {
-                                    Family famillePetitEnfant = graph.getFamily(idFamilleEnfant);
-                                    if (famillePetitEnfant != null) {
-                                        for (String peId : famillePetitEnfant.getChildren()) {
-                                            printPersonName("      -> Petit-Enfant", peId);
-                                        }
-                                    }
+                                Cursor<String> petitsEnfants = new Cursor<>(Lineage.children(graph, objetEnfant));
+                                for (String peId : petitsEnfants.fetch(MAX_PETITS_ENFANTS)) {
+                                    printPersonName(out, "      -> Petit-Enfant", peId);
+                                }
+                                if (petitsEnfants.hasNext()) {
+                                    out.println("      ... (suite : DESCENDANTS " + enfantId + ")");
                                 }
                             }
                         }
@@ -278,25 +892,120 @@ public class Console {
                 }
             }
         }
-        System.out.println("========================================\n");
+        out.println("========================================\n");
     }
 
+    /**
+     * Fiche complète d'une personne d'un graphe validé : parents, conjoints et enfants sont lus
+     * dans l'index des liens, sans recherche par ID.
+     * @param out Le flux où écrire.
+     * @param adj L'index des liens du graphe.
+     * @param ind La personne.
+     */
+    private void renderInfo(PrintStream out, Adjacency adj, Individual ind) {
+        out.println("\n========================================");
+        out.println(" FICHE DE : " + ind.getTagValue("NAME"));
+        out.println("========================================");
+        ind.display(out, 0);
+        out.println("----------------------------------------");
+
+        int i = adj.indexOf(ind);
+        if (ind.getFamc() != null) {
+            out.println(" SES PARENTS :");
+            int f = adj.famc(i);
+            if (f >= 0) {
+                printPerson(out, "Père", person(adj, adj.husb(f)));
+                printPerson(out, "Mère", person(adj, adj.wife(f)));
+            }
+        } else {
+            out.println(" PARENTS : Inconnus dans la base (Souche)");
+        }
+
+        if (adj.famsStart(i) == adj.famsEnd(i)) {
+            out.println("----------------------------------------");
+            out.println(" Aucune famille (conjoint/enfants) enregistrée.");
+        }
+        for (int e = adj.famsStart(i); e < adj.famsEnd(i); e++) {
+            out.println("----------------------------------------");
+            out.println(" FAMILLE (Ref " + ind.getFams().get(e - adj.famsStart(i)) + ") :");
+            if (adj.fams(e) < 0) continue;
+            Family famille = adj.family(adj.fams(e));
+            printPerson(out, "Conjoint(e)", adj.getSpouse(ind, famille));
+
+            Individual[] enfants = adj.getChildren(famille);
+            if (enfants.length == 0) {
+                out.println("  Pas d'enfants.");
+                continue;
+            }
+            out.println("  Descendance (" + enfants.length + " enfants directs) :");
+            for (Individual enfant : enfants) {
+                printPerson(out, "  -", enfant);
+                Individual[] petitsEnfants = adj.getChildren(enfant);
+                for (int k = 0; k < Math.min(petitsEnfants.length, MAX_PETITS_ENFANTS); k++) {
+                    printPerson(out, "      -> Petit-Enfant", petitsEnfants[k]);
+                }
+                if (petitsEnfants.length > MAX_PETITS_ENFANTS) {
+                    out.println("      ... (suite : DESCENDANTS " + enfant.getId() + ")");
+                }
+            }
+        }
+        out.println("========================================\n");
+    }
+
+    /**
+     * Recherche une personne par identifiant, puis par nom (première personne dont le nom contient la recherche).
+     * @param person L'identifiant ou une partie du nom.
+     * @return L'individu trouvé.
+     * @throws ArgNotFoundErr Si aucune personne ne correspond.
+     */
     private Individual findIndividual(String person) throws ArgNotFoundErr {
-        Individual ind = graph.getIndividual(person);
-        if (ind == null) {
-            String recherche = person.toLowerCase();
-            for(Individual i : graph.getIndividuals().values()) {
-                String nomIndividu = i.getTagValue("NAME");
-                if (nomIndividu != null && nomIndividu.toLowerCase().contains(recherche)) {
-                    ind = i;
-                    break;
+        NameSearchEvent event = new NameSearchEvent();
+        event.query = person;
+        event.begin();
+        try {
+            Individual ind = graph.getIndividual(person);
+            // Une recherche par nom déjà faite sur cette version du graphe n'est pas refaite
+            String cle = "FIND:" + person.toLowerCase();
+            if (ind == null) {
+                String id = cache.get(graph, cle);
+                if (id != null) ind = graph.getIndividual(id);
+            }
+            if (ind == null) {
+                String recherche = person.toLowerCase();
+                for(Individual i : graph.getIndividuals().values()) {
+                    event.scanned++;
+                    String nomIndividu = i.getTagValue("NAME");
+                    if (nomIndividu != null && nomIndividu.toLowerCase().contains(recherche)) {
+                        ind = i;
+                        break;
+                    }
                 }
             }
+            if (ind == null) {
+                suggest(person);
+                throw new ArgNotFoundErr(person);
+            }
+            if (!ind.getId().equals(person)) cache.put(cle, ind.getId());
+            event.found = true;
+            return ind;
+        } finally {
+            event.commit();
         }
-        if (ind == null) {
-            throw new ArgNotFoundErr(person);
+    }
+
+    /**
+     * Propose les noms phonétiquement proches d'une recherche infructueuse, si l'index est déjà construit.
+     */
+    private void suggest(String person) {
+        if (phonetic == null || phonetic.getVersion() != graph.getVersion()) return;
+        List<PhoneticIndex.Match> matches = phonetic.search(person, 3);
+        if (matches.isEmpty()) return;
+        StringBuilder sb = new StringBuilder("Noms proches :");
+        for (int i = 0; i < matches.size(); i++) {
+            Individual ind = matches.get(i).getPerson();
+            sb.append(i == 0 ? " " : ", ").append(ind.getTagValue("NAME")).append(" (").append(ind.getId()).append(")");
         }
-        return ind;
+        System.out.println(sb);
     }
 
     /**
@@ -304,13 +1013,39 @@ public class Console {
      * @param person Le nom de la personne ciblée.
      * @throws ArgNotFoundErr Erreur si la personne n'est pas trouvée dans le fichier chargé.
      */
-    private void showChildren(String person) throws ArgNotFoundErr {
+    private void showChildren(String person) throws Exception {
+        QueryOptions options = QueryOptions.parse(person);
+        if (options.isPaged()) {
+            Individual ind = findIndividual(options.getTarget());
+            System.out.println("ENFANTS DE : " + ind.getTagValue("NAME"));
+            Adjacency adj = graph.peekAdjacency();
+            runCursor(" -> Enfant", options.cursor(adj != null ? Lineage.children(adj, ind) : Lineage.children(graph, ind)), options);
+            return;
+        }
         Individual ind = findIndividual(person);
-        System.out.println("ENFANTS DE : " + ind.getTagValue("NAME"));
+        printCached("CHILD:" + ind.getId(), out -> renderChildren(out, ind));
+    }
+
+    /**
+     * Affiche les enfants d'une personne, toutes familles confondues.
+     * @param out Le flux où écrire.
+     * @param ind La personne.
+     */
+    private void renderChildren(PrintStream out, Individual ind) {
+        out.println("ENFANTS DE : " + ind.getTagValue("NAME"));
         
+        // Graphe validé : enfants lus dans l'index des liens
+        Adjacency adj = graph.peekAdjacency();
+        if (adj != null) {
+            Individual[] enfants = adj.getChildren(ind);
+            if (enfants.length == 0) out.println(" -> Aucun enfant enregistré.");
+            for (Individual enfant : enfants) printPerson(out, " -> Enfant", enfant);
+            return;
+        }
+
         // Si la personne n'a pas d'enfant.
         if (ind.getFams().isEmpty()) {
-            System.out.println(" -> Aucun enfant enregistré.");
+            out.println(" -> Aucun enfant enregistré.");
             return;
         }
         // Si elle en a, on les affiche.
@@ -319,7 +1054,7 @@ public class Console {
             if (fam != null) {
                 List<String> enfants = fam.getChildren();
                 for (String enfantId : enfants) {
-                    printPersonName(" -> Enfant", enfantId);
+                    printPersonName(out, " -> Enfant", enfantId);
                 }
             }
         }
@@ -330,19 +1065,41 @@ public class Console {
      * @param person Le nom de la personne ciblée.
      * @throws ArgNotFoundErr Erreur si la personne n'est pas trouvée dans le fichier chargé.
      */
-    private void showSiblings(String person) throws ArgNotFoundErr {
+    private void showSiblings(String person) throws Exception {
+        QueryOptions options = QueryOptions.parse(person);
+        if (options.isPaged()) {
+            Individual ind = findIndividual(options.getTarget());
+            System.out.println("FRERES ET SOEURS DE : " + ind.getTagValue("NAME"));
+            Adjacency adj = graph.peekAdjacency();
+            runCursor(" -> Frère/Soeur", options.cursor(adj != null ? Lineage.siblings(adj, ind) : Lineage.siblings(graph, ind)), options);
+            return;
+        }
         Individual ind = findIndividual(person);
-        System.out.println("FRERES ET SOEURS DE : " + ind.getTagValue("NAME"));
+        printCached("SIBLINGS:" + ind.getId(), out -> renderSiblings(out, ind));
+    }
+
+    /**
+     * Affiche les autres enfants de la famille parentale d'une personne.
+     * @param out Le flux où écrire.
+     * @param ind La personne.
+     */
+    private void renderSiblings(PrintStream out, Individual ind) {
+        out.println("FRERES ET SOEURS DE : " + ind.getTagValue("NAME"));
 
         if (ind.getFamc() == null) {
-            System.out.println(" -> Aucune famille parentale connue.");
+            out.println(" -> Aucune famille parentale connue.");
+            return;
+        }
+        Adjacency adj = graph.peekAdjacency();
+        if (adj != null) {
+            for (Individual frere : adj.getSiblings(ind)) printPerson(out, " -> Frère/Soeur", frere);
             return;
         }
         Family fam = graph.getFamily(ind.getFamc());
         if (fam != null) {
             for (String enfantId : fam.getChildren()) {
                 if (!enfantId.equals(ind.getId())) {
-                    printPersonName(" -> Frère/Soeur", enfantId);
+                    printPersonName(out, " -> Frère/Soeur", enfantId);
                 }
             }
         }
@@ -355,16 +1112,35 @@ public class Console {
      */
     private void showFamc(String person) throws ArgNotFoundErr {
         Individual ind = findIndividual(person);
-        System.out.println("FAMILLE PARENTALE DE : " + ind.getTagValue("NAME"));
+        printCached("FAMC:" + ind.getId(), out -> renderFamc(out, ind));
+    }
+
+    /**
+     * Affiche le père et la mère d'une personne.
+     * @param out Le flux où écrire.
+     * @param ind La personne.
+     */
+    private void renderFamc(PrintStream out, Individual ind) {
+        out.println("FAMILLE PARENTALE DE : " + ind.getTagValue("NAME"));
 
         if (ind.getFamc() == null) {
-            System.out.println(" -> Inconnue.");
+            out.println(" -> Inconnue.");
+            return;
+        }
+        Adjacency adj = graph.peekAdjacency();
+        if (adj != null) {
+            int i = adj.indexOf(ind);
+            int f = (i < 0) ? Adjacency.NONE : adj.famc(i);
+            if (f >= 0) {
+                printPerson(out, " PERE", person(adj, adj.husb(f)));
+                printPerson(out, " MERE", person(adj, adj.wife(f)));
+            }
             return;
         }
         Family fam = graph.getFamily(ind.getFamc());
         if (fam != null) {
-            printPersonName(" PERE", fam.getHusb());
-            printPersonName(" MERE", fam.getWife());
+            printPersonName(out, " PERE", fam.getHusb());
+            printPersonName(out, " MERE", fam.getWife());
         }
     }
 
@@ -385,10 +1161,32 @@ public class Console {
 
         Individual p1 = findIndividual(parts[0].trim());
         Individual p2 = findIndividual(parts[1].trim());
+        printCached("MARRIED:" + p1.getId() + ":" + p2.getId(), out -> renderMarried(out, p1, p2));
+    }
 
-        System.out.println("Vérification Mariage entre " + p1.getTagValue("NAME") + " et " + p2.getTagValue("NAME") + "...");
+    /**
+     * Cherche une famille où les deux personnes sont époux, et affiche la réponse.
+     * @param out Le flux où écrire.
+     * @param p1 La première personne.
+     * @param p2 La seconde personne.
+     */
+    private void renderMarried(PrintStream out, Individual p1, Individual p2) {
+        out.println("Vérification Mariage entre " + p1.getTagValue("NAME") + " et " + p2.getTagValue("NAME") + "...");
 
         boolean isMarried = false;
+        Adjacency adj = graph.peekAdjacency();
+        if (adj != null) {
+            // Graphe validé : conjoints lus dans l'index des liens
+            for (Family fam : adj.getFamilies(p1)) {
+                Individual conjoint = adj.getSpouse(p1, fam);
+                if (conjoint != null && conjoint.getId().equals(p2.getId())) {
+                    out.println(" -> OUI, ils sont mariés dans la famille " + fam.getId());
+                    return;
+                }
+            }
+            out.println(" -> NON, aucun lien de mariage trouvé.");
+            return;
+        }
         for (String famsId : p1.getFams()) {
             Family fam = graph.getFamily(famsId);
             if (fam != null) {
@@ -398,31 +1196,816 @@ public class Console {
                 if ((p1.getId().equals(epoux) && p2.getId().equals(epouse)) ||
                     (p1.getId().equals(epouse) && p2.getId().equals(epoux))) {
                     isMarried = true;
-                    System.out.println(" -> OUI, ils sont mariés dans la famille " + famsId);
+                    out.println(" -> OUI, ils sont mariés dans la famille " + famsId);
                     break;
                 }
             }
         }
 
         if (!isMarried) {
-            System.out.println(" -> NON, aucun lien de mariage trouvé.");
+            out.println(" -> NON, aucun lien de mariage trouvé.");
         }
     }
 
     /**
      * Sauvegarde le graphe par sérialisation à l'appel de la commande SAVE.
+     * Un graphe en lecture seule (OFFHEAP ou INDEXED) n'est pas sérialisable : ses entités sont dans le stockage.
      * @param filename Le fichier à sauvegarder.
-     * @throws Exception
+     * @throws Exception ReadOnlyErr si le graphe courant est en lecture seule.
      */
     private void saveGraph(String filename) throws Exception {
         if (filename.isEmpty()) {
             System.out.println("Veuillez spécifier un fichier.");
             return;
         }
+        if (store != null) throw new ReadOnlyErr("SAVE");
         System.out.println("Sauvegarde dans " + filename + "...");
-        try (ObjectOutputStream oos = new ObjectOutputStream(new FileOutputStream(filename))) {
+        try (Phase phase = Perf.start("save");
+             ObjectOutputStream oos = new ObjectOutputStream(new FileOutputStream(filename))) {
             oos.writeObject(this.graph);
+            oos.flush();
+            phase.setItems(graph.getIndividuals().size() + graph.getFamilies().size());
+            phase.setBytes(new File(filename).length());
             System.out.println("Sauvegarde réussie !");
         }
     }
-}
\ No newline at end of file
+
+    /**
+     * Réécrit le graphe au format GEDCOM à l'appel de la commande EXPORT.
+     * Affiche le débit obtenu pour pouvoir le comparer au temps de chargement.
+     * @param arguments Le fichier de destination, suivi éventuellement de PARALLEL.
+     * @throws Exception
+     */
+    private void exportGedcom(String arguments) throws Exception {
+        boolean parallel = false;
+        if (arguments.toUpperCase().endsWith(" PARALLEL")) {
+            parallel = true;
+            arguments = arguments.substring(0, arguments.length() - " PARALLEL".length()).trim();
+        }
+        if (arguments.isEmpty()) {
+            System.out.println("Veuillez spécifier un fichier.");
+            return;
+        }
+        System.out.println("Export GEDCOM dans " + arguments + "...");
+        long debut = System.nanoTime();
+        GedcomWriter writer = new GedcomWriter();
+        try (Phase phase = Perf.start("export")) {
+            writer.write(this.graph, arguments, parallel);
+            phase.setItems(writer.getLines());
+            phase.setBytes(writer.getBytes());
+        }
+        long duree = Math.max(1, (System.nanoTime() - debut) / 1_000_000);
+        System.out.println("Export réussi : " + writer.getLines() + " lignes, " + writer.getBytes() + " octets en "
+                + duree + " ms (" + String.format("%.1f", writer.getBytes() / 1048.576 / duree) + " Mo/s).");
+    }
+
+    /**
+     * Extrait les ancêtres ou les descendants d'une personne, avec leurs familles et conjoints,
+     * dans un fichier GEDCOM autonome. Sans profondeur, toute la branche est extraite.
+     * @param arguments La personne, le sens, éventuellement la profondeur, puis le fichier.
+     * @throws Exception
+     */
+    private void extractBranch(String arguments) throws Exception {
+        // La personne peut contenir des espaces : le sens est le dernier mot-clé ANCESTORS ou DESCENDANTS
+        String majuscules = arguments.toUpperCase();
+        int ancetres = majuscules.lastIndexOf(" ANCESTORS ");
+        int descendants = majuscules.lastIndexOf(" DESCENDANTS ");
+        int position = Math.max(ancetres, descendants);
+        String[] suite = (position < 0) ? new String[0] : arguments.substring(position).trim().split("\\s+");
+        if (suite.length < 2 || suite.length > 3 || (suite.length == 3 && !suite[1].matches("\\d+"))) {
+            System.out.println("Usage : EXTRACT <id ou nom> ANCESTORS|DESCENDANTS [profondeur] <fichier.ged>");
+            return;
+        }
+        SubtreeWriter.Direction sens = (position == ancetres) ? SubtreeWriter.Direction.ANCESTORS : SubtreeWriter.Direction.DESCENDANTS;
+        int profondeur = (suite.length == 3) ? Integer.parseInt(suite[1]) : Integer.MAX_VALUE;
+        String fichier = suite[suite.length - 1];
+        Individual racine = findIndividual(arguments.substring(0, position).trim());
+
+        SubtreeWriter writer = new SubtreeWriter(sens, profondeur);
+        long debut = System.nanoTime();
+        try (Phase phase = Perf.start("extract")) {
+            writer.write(this.graph, racine, fichier);
+            phase.setItems(writer.getIndividuals() + writer.getFamilies());
+            phase.setBytes(writer.getBytes());
+        }
+        long duree = (System.nanoTime() - debut) / 1_000_000;
+        System.out.println("Extraction réussie dans " + fichier + " : " + writer.getIndividuals() + " individus, "
+                + writer.getFamilies() + " familles, " + writer.getLines() + " lignes en " + duree + " ms.");
+    }
+
+    /**
+     * Exporte le graphe entier, ou le voisinage d'une personne, au format DOT ou GraphML.
+     * La profondeur (3 par défaut) est le nombre de générations parcourues vers les ancêtres et les descendants.
+     * @param arguments Le format, le fichier, puis éventuellement la personne et la profondeur.
+     * @throws Exception
+     */
+    private void exportGraph(String arguments) throws Exception {
+        String[] args = arguments.trim().split("\\s+", 3);
+        GraphWriter.Format format = null;
+        if (args.length >= 2) {
+            try {
+                format = GraphWriter.Format.valueOf(args[0].toUpperCase());
+            } catch (IllegalArgumentException e) {
+                format = null;
+            }
+        }
+        if (format == null) {
+            System.out.println("Usage : EXPORTGRAPH <DOT|GRAPHML> <fichier> [id ou nom] [profondeur]");
+            return;
+        }
+        String fichier = args[1];
+
+        // La personne peut contenir des espaces : la profondeur est le dernier mot s'il est numérique
+        Individual racine = null;
+        int profondeur = 3;
+        if (args.length > 2) {
+            String personne = args[2].trim();
+            int espace = personne.lastIndexOf(' ');
+            if (espace > 0 && personne.substring(espace + 1).matches("\\d+")) {
+                profondeur = Integer.parseInt(personne.substring(espace + 1));
+                personne = personne.substring(0, espace).trim();
+            }
+            racine = findIndividual(personne);
+        }
+
+        GraphWriter writer = new GraphWriter(format);
+        long debut = System.nanoTime();
+        try (Phase phase = Perf.start("exportgraph")) {
+            if (racine == null) writer.write(this.graph, fichier);
+            else writer.write(this.graph, fichier, racine, profondeur);
+            phase.setItems(writer.getNodes() + writer.getEdges());
+        }
+        long duree = (System.nanoTime() - debut) / 1_000_000;
+        System.out.println("Export " + format + " réussi : " + writer.getNodes() + " noeuds, "
+                + writer.getEdges() + " arcs en " + duree + " ms.");
+    }
+
+    /**
+     * Exporte les tables individuals, families et family_children, en CSV ou au format binaire par colonnes.
+     * Chaque table est découpée en partitions écrites en parallèle (une par processeur par défaut,
+     * TableWriter.MAX_PARTITIONS au plus) ; les partitions d'un export précédent dans le répertoire sont remplacées.
+     * @param arguments Le format, le répertoire de destination, puis éventuellement le nombre de partitions.
+     * @throws Exception
+     */
+    private void exportTables(String arguments) throws Exception {
+        String[] args = arguments.trim().split("\\s+");
+        TableWriter.Format format = null;
+        int partitions = Runtime.getRuntime().availableProcessors();
+        try {
+            if (args.length == 2 || args.length == 3) format = TableWriter.Format.valueOf(args[0].toUpperCase());
+            if (args.length == 3) partitions = Integer.parseInt(args[2]);
+        } catch (IllegalArgumentException e) {
+            format = null;
+        }
+        if (format == null || partitions < 1 || partitions > TableWriter.MAX_PARTITIONS) {
+            System.out.println("Usage : EXPORTTABLE <CSV|COLUMNAR> <répertoire> [partitions, de 1 à " + TableWriter.MAX_PARTITIONS + "]");
+            return;
+        }
+
+        TableWriter writer = new TableWriter(format, partitions);
+        long debut = System.nanoTime();
+        try (Phase phase = Perf.start("exporttable")) {
+            writer.write(this.graph, args[1]);
+            phase.setItems(writer.getRows());
+            phase.setBytes(writer.getBytes());
+        }
+        long duree = Math.max(1, (System.nanoTime() - debut) / 1_000_000);
+        System.out.println("Export " + format + " réussi : " + writer.getRows() + " lignes, " + writer.getBytes()
+                + " octets en " + duree + " ms (" + String.format("%.1f", writer.getBytes() / 1048.576 / duree) + " Mo/s).");
+    }
+
+    /**
+     * Retourne les générations du graphe, calculées au premier appel puis après chaque modification du graphe.
+     * @return Les générations à jour.
+     */
+    private Generations getGenerations() {
+        if (generations == null || generations.getVersion() != graph.getVersion()) {
+            try (Phase phase = Perf.start("generations")) {
+                phase.setItems(graph.getIndividuals().size());
+                generations = new Generations(graph);
+            }
+        }
+        return generations;
+    }
+
+    /**
+     * Affiche la génération d'une personne (0 pour une personne sans parents connus) et sa plus longue lignée.
+     * @param person L'identifiant ou le nom de la personne.
+     * @throws ArgNotFoundErr Si la personne n'est pas trouvée.
+     */
+    private void showGeneration(String person) throws ArgNotFoundErr {
+        Individual ind = findIndividual(person);
+        Generations g = getGenerations();
+        int generation = g.getGeneration(ind.getId());
+        if (generation < 0) {
+            System.out.println(ind.getTagValue("NAME") + " : génération indéterminée (cycle dans ses ascendants).");
+            return;
+        }
+        System.out.println(ind.getTagValue("NAME") + " : génération " + generation
+                + " (0 = sans parents connus, maximum de l'arbre : " + g.getMaxGeneration() + ")");
+        printLineage(g.getLineage(ind.getId()));
+    }
+
+    /**
+     * Affiche les k plus longues lignées de l'arbre (10 par défaut).
+     * @param arguments Vide, ou le nombre de lignées.
+     */
+    private void showLongest(String arguments) {
+        int k = 10;
+        if (!arguments.trim().isEmpty()) {
+            try {
+                k = Integer.parseInt(arguments.trim());
+            } catch (NumberFormatException e) {
+                System.out.println("Usage : LONGEST [nombre de lignées]");
+                return;
+            }
+        }
+        Generations g = getGenerations();
+        if (g.getUnlayered() > 0) {
+            System.out.println(g.getUnlayered() + " individu(s) ignoré(s) : cycle dans leurs ascendants.");
+        }
+        for (Individual ind : g.getDeepest(k)) {
+            System.out.println("Génération " + g.getGeneration(ind.getId()) + " : " + ind.getTagValue("NAME") + " (" + ind.getId() + ")");
+            printLineage(g.getLineage(ind.getId()));
+        }
+    }
+
+    /**
+     * Index phonétique du graphe, reconstruit s'il a changé depuis le dernier calcul.
+     */
+    private PhoneticIndex getPhoneticIndex() {
+        if (phonetic == null || phonetic.getVersion() != graph.getVersion()) {
+            try (Phase phase = Perf.start("index.phonetique")) {
+                phase.setItems(graph.getIndividuals().size());
+                phonetic = new PhoneticIndex(graph);
+            }
+        }
+        return phonetic;
+    }
+
+    /**
+     * Index des préfixes du graphe, reconstruit s'il a changé depuis le dernier calcul.
+     */
+    private PrefixIndex getPrefixIndex() {
+        if (prefixes == null || prefixes.getVersion() != graph.getVersion()) {
+            try (Phase phase = Perf.start("index.prefixes")) {
+                phase.setItems(graph.getIndividuals().size());
+                prefixes = new PrefixIndex(graph);
+            }
+        }
+        return prefixes;
+    }
+
+    /**
+     * Index des années du graphe, reconstruit s'il a changé depuis le dernier calcul.
+     */
+    private YearIndex getYearIndex() {
+        if (years == null || years.getVersion() != graph.getVersion()) {
+            try (Phase phase = Perf.start("index.annees")) {
+                phase.setItems(graph.getIndividuals().size());
+                years = new YearIndex(graph);
+            }
+        }
+        return years;
+    }
+
+    /**
+     * Exécute une requête FIND, page par page comme DESCENDANTS.
+     * Avec EXPLAIN, la requête est exécutée jusqu'au bout (dans la limite de LIMIT) sans afficher les résultats,
+     * puis le plan choisi et les temps mesurés sont affichés.
+     * @param arguments La requête après FIND, suivie des options LIMIT, OFFSET et TO.
+     * @param explain true pour afficher le plan au lieu des résultats.
+     * @throws Exception
+     */
+    private void find(String arguments, boolean explain) throws Exception {
+        QueryOptions options = QueryOptions.parse(arguments);
+        FindQuery query = FindQuery.parse(options.getTarget());
+        QueryPlan plan;
+        try (Phase phase = Perf.start("find.plan")) {
+            plan = new QueryPlan(query, graph, this::getPrefixIndex, this::getYearIndex);
+            phase.setItems(query.getConditions().size());
+        }
+        Cursor<String> result = options.cursor(plan.execute());
+        if (!explain) {
+            runCursor(" -> " + (query.isFamilies() ? "Famille" : "Individu"), result, options);
+            return;
+        }
+
+        long debut = System.nanoTime();
+        long lignes = 0;
+        try (Phase phase = Perf.start("find")) {
+            while (result.hasNext()) {
+                result.next();
+                lignes++;
+            }
+            phase.setItems(plan.getExamined());
+        }
+        double total = (System.nanoTime() - debut) / 1e6;
+        System.out.println("PLAN :");
+        int etape = 1;
+        for (String step : plan.getSteps()) {
+            System.out.println(step.startsWith(" ") ? "   " + step : "  " + (etape++) + ". " + step);
+        }
+        if (options.getOffset() > 0 || options.getLimit() != Cursor.UNLIMITED) {
+            System.out.println("  " + etape + ". OFFSET " + options.getOffset()
+                    + (options.getLimit() == Cursor.UNLIMITED ? "" : ", LIMIT " + options.getLimit()) + " (évaluation arrêtée dès que la limite est atteinte)");
+        }
+        System.out.println(String.format("TEMPS : planification %.2f ms, évaluation %.2f ms (%d série(s) de lots), total %.2f ms",
+                plan.getPlanNanos() / 1e6, plan.getEvalNanos() / 1e6, plan.getBatches(), plan.getPlanNanos() / 1e6 + total));
+        System.out.println("  " + plan.getExamined() + " enregistrement(s) examiné(s), " + plan.getMatched()
+                + " correspondant(s), " + lignes + " rendu(s).");
+    }
+
+    /**
+     * Compare deux versions d'un fichier GEDCOM : enregistrements ajoutés, retirés et modifiés, par ID.
+     * Les fichiers ne sont pas chargés dans des graphes, et le graphe courant n'est pas touché.
+     * @param arguments L'ancien fichier, le nouveau, puis éventuellement LIMIT n (enregistrements listés par catégorie).
+     * @throws Exception
+     */
+    private void diffFiles(String arguments) throws Exception {
+        QueryOptions options = QueryOptions.parse(arguments);
+        String[] fichiers = options.getTarget().trim().split("\\s+");
+        if (fichiers.length != 2) {
+            System.out.println("Usage : DIFF <ancien.ged> <nouveau.ged> [LIMIT n]");
+            return;
+        }
+        int n = (options.getLimit() == Cursor.UNLIMITED) ? DIFF_RESULTS : (int) Math.min(options.getLimit(), Integer.MAX_VALUE);
+
+        long debut = System.nanoTime();
+        GedcomDiff diff;
+        try (Phase phase = Perf.start("diff")) {
+            diff = new GedcomDiff(fichiers[0], fichiers[1], n);
+            phase.setBytes(diff.getBytes());
+            phase.setItems(diff.getAdded().size() + diff.getRemoved().size() + diff.getModified().size());
+        }
+        long duree = Math.max(1, (System.nanoTime() - debut) / 1_000_000);
+
+        System.out.println("Comparaison de " + fichiers[0] + " et " + fichiers[1] + " en " + duree + " ms ("
+                + String.format("%.1f", diff.getBytes() / 1048.576 / duree) + " Mo/s) :");
+        System.out.println("  Individus : " + countChanges(diff.getAdded(), false) + " ajoutés, "
+                + countChanges(diff.getRemoved(), false) + " retirés, " + countChanges(diff.getModified(), false) + " modifiés");
+        System.out.println("  Familles  : " + countChanges(diff.getAdded(), true) + " ajoutées, "
+                + countChanges(diff.getRemoved(), true) + " retirées, " + countChanges(diff.getModified(), true) + " modifiées");
+        printChanges("Ajouts", "+", diff.getAdded(), n);
+        printChanges("Retraits", "-", diff.getRemoved(), n);
+        printChanges("Modifications", "~", diff.getModified(), n);
+    }
+
+    private static int countChanges(List<GedcomDiff.Change> changes, boolean familles) {
+        int count = 0;
+        for (GedcomDiff.Change change : changes) {
+            if (change.isFamily() == familles) count++;
+        }
+        return count;
+    }
+
+    /**
+     * Affiche les n premiers changements d'une catégorie, avec les lignes de tags des enregistrements modifiés.
+     */
+    private static void printChanges(String titre, String signe, List<GedcomDiff.Change> changes, int n) {
+        if (changes.isEmpty()) return;
+        System.out.println(" " + titre + " :");
+        for (int c = 0; c < changes.size() && c < n; c++) {
+            GedcomDiff.Change change = changes.get(c);
+            System.out.println("  " + signe + " " + (change.isFamily() ? "FAM " : "INDI ") + change.getId());
+            if (change.getRemoved() == null) continue;
+            for (String ligne : change.getRemoved()) System.out.println("      - " + ligne);
+            for (String ligne : change.getAdded()) System.out.println("      + " + ligne);
+            if (change.getRemoved().isEmpty() && change.getAdded().isEmpty()) {
+                System.out.println("      (mêmes lignes, dans un autre ordre)");
+            }
+        }
+        if (changes.size() > n) System.out.println("  ... et " + (changes.size() - n) + " autre(s) (LIMIT n pour en voir plus)");
+    }
+
+    /**
+     * Autocomplétion : affiche les individus dont le nom (ou le nom de famille, ou l'ID) commence par le texte donné.
+     * @param arguments Le début du nom ou de l'ID, puis éventuellement LIMIT n.
+     */
+    private void complete(String arguments) {
+        QueryOptions options = QueryOptions.parse(arguments);
+        if (options.getTarget().isEmpty()) {
+            System.out.println("Usage : COMPLETE <début du nom ou de l'ID> [LIMIT n]");
+            return;
+        }
+        int n = (options.getLimit() == Cursor.UNLIMITED) ? COMPLETE_RESULTS : (int) Math.min(options.getLimit(), Integer.MAX_VALUE);
+        PrefixIndex index = getPrefixIndex();
+        long debut = System.nanoTime();
+        List<Individual> found = index.complete(options.getTarget(), n);
+        long micros = (System.nanoTime() - debut) / 1_000;
+        if (found.isEmpty()) {
+            System.out.println(" -> Aucun résultat.");
+        }
+        for (Individual ind : found) {
+            System.out.println("   " + ind.getTagValue("NAME") + " (" + ind.getId() + ")");
+        }
+        System.out.println("(" + found.size() + " proposition(s) en " + micros + " µs)");
+    }
+
+    /**
+     * Recherche phonétique : affiche les individus dont le nom se prononce comme la recherche.
+     * @param arguments ~ suivi du nom recherché, puis éventuellement LIMIT n.
+     */
+    private void searchPhonetic(String arguments) {
+        QueryOptions options = QueryOptions.parse(arguments);
+        String name = options.getTarget();
+        if (!name.startsWith("~") || name.substring(1).trim().isEmpty()) {
+            System.out.println("Usage : SEARCH ~<nom> [LIMIT n]");
+            return;
+        }
+        name = name.substring(1).trim();
+        int k = (options.getLimit() == Cursor.UNLIMITED) ? SEARCH_RESULTS : (int) Math.min(options.getLimit(), Integer.MAX_VALUE);
+
+        StringBuilder codes = new StringBuilder();
+        for (String word : Phonetic.normalize(name).split(" ")) {
+            codes.append(codes.length() == 0 ? "" : " ").append(Phonetic.soundexToString(Phonetic.soundex(word)));
+        }
+        System.out.println("RECHERCHE PHONETIQUE DE : " + name + " (" + codes + ")");
+        List<PhoneticIndex.Match> matches = getPhoneticIndex().search(name, k);
+        if (matches.isEmpty()) {
+            System.out.println(" -> Aucun résultat.");
+            return;
+        }
+        for (int i = 0; i < matches.size(); i++) {
+            Individual ind = matches.get(i).getPerson();
+            System.out.println(String.format(" %2d. %-30s (%s)  score %.2f", i + 1, ind.getTagValue("NAME"), ind.getId(), matches.get(i).getScore()));
+        }
+    }
+
+    /**
+     * Liens de parenté du graphe, reconstruits s'il a changé depuis le dernier calcul.
+     */
+    private Kinship getKinship() {
+        if (kinship == null || kinship.getVersion() != graph.getVersion()) {
+            try (Phase phase = Perf.start("kinship")) {
+                phase.setItems(graph.getIndividuals().size());
+                kinship = new Kinship(graph);
+            }
+        }
+        return kinship;
+    }
+
+    /**
+     * Affiche le plus court chemin de parenté entre deux personnes, étape par étape.
+     * @param arguments Deux IDs ou noms sans espace, ou deux noms séparés par TO.
+     * @throws ArgNotFoundErr Si une personne n'est pas trouvée.
+     */
+    private void showPath(String arguments) throws ArgNotFoundErr {
+        String[] personnes;
+        int to = arguments.toUpperCase().indexOf(" TO ");
+        if (to >= 0) {
+            personnes = new String[] { arguments.substring(0, to).trim(), arguments.substring(to + " TO ".length()).trim() };
+        } else {
+            personnes = arguments.trim().split("\\s+");
+        }
+        if (personnes.length != 2 || personnes[0].isEmpty() || personnes[1].isEmpty()) {
+            System.out.println("Usage : PATH <A> <B> (IDs ou noms sans espace), ou PATH <nom A> TO <nom B>");
+            return;
+        }
+        Individual a = findIndividual(personnes[0]);
+        Individual b = findIndividual(personnes[1]);
+        Kinship k = getKinship();
+
+        long debut = System.nanoTime();
+        List<Kinship.Step> chemin = k.path(a.getId(), b.getId());
+        double duree = (System.nanoTime() - debut) / 1e6;
+        if (chemin == null) {
+            System.out.println("Aucun lien de parenté entre " + a.getTagValue("NAME") + " et " + b.getTagValue("NAME")
+                    + String.format(" (%d individus visités, %.2f ms).", k.getVisited(), duree));
+            return;
+        }
+        System.out.println("Lien entre " + a.getTagValue("NAME") + " et " + b.getTagValue("NAME") + " : "
+                + chemin.size() + String.format(" étape(s) (%d individus visités, %.2f ms)", k.getVisited(), duree));
+        System.out.println("  " + a.getTagValue("NAME") + " (" + a.getId() + ")");
+        for (Kinship.Step etape : chemin) {
+            Individual p = etape.getTo();
+            System.out.println("   -> " + relationLabel(etape.getRelation(), p.getTagValue("SEX"))
+                    + " : " + p.getTagValue("NAME") + " (" + p.getId() + ")");
+        }
+    }
+
+    /**
+     * Nom d'un lien de parenté, accordé au sexe de la personne d'arrivée.
+     */
+    private static String relationLabel(Kinship.Relation relation, String sexe) {
+        boolean homme = "M".equals(sexe);
+        boolean femme = "F".equals(sexe);
+        switch (relation) {
+            case PARENT: return homme ? "père" : femme ? "mère" : "parent";
+            case CHILD:  return homme ? "fils" : femme ? "fille" : "enfant";
+            default:     return homme ? "époux" : femme ? "épouse" : "conjoint(e)";
+        }
+    }
+
+    /**
+     * Affiche une lignée, de la racine au dernier descendant.
+     */
+    private void printLineage(List<Individual> lineage) {
+        StringBuilder sb = new StringBuilder("  ");
+        for (int i = 0; i < lineage.size(); i++) {
+            if (i > 0) sb.append(" -> ");
+            sb.append(lineage.get(i).getTagValue("NAME"));
+        }
+        System.out.println(sb);
+    }
+
+    /**
+     * Affiche les statistiques globales de l'arbre : noms, sexes, durées de vie, naissances, familles.
+     * @param arguments Vide, ou le nombre de noms de famille à afficher (10 par défaut).
+     */
+    private void showSummary(String arguments) {
+        int k = 10;
+        if (!arguments.trim().isEmpty()) {
+            try {
+                k = Integer.parseInt(arguments.trim());
+            } catch (NumberFormatException e) {
+                System.out.println("Usage : SUMMARY [nombre de noms]");
+                return;
+            }
+        }
+
+        GraphSummary summary;
+        try (Phase phase = Perf.start("summary")) {
+            summary = new GraphSummary(this.graph);
+            phase.setItems(summary.getIndividuals() + summary.getFamilies());
+        }
+
+        long n = Math.max(1, summary.getIndividuals());
+        System.out.println("========== STATISTIQUES ==========");
+        System.out.println(" Individus : " + summary.getIndividuals() + ", familles : " + summary.getFamilies()
+                + ", noms de famille distincts : " + summary.getDistinctSurnames());
+        System.out.printf(" Sexe : %d hommes (%.1f %%), %d femmes (%.1f %%), %d inconnus%n",
+                summary.getMales(), 100.0 * summary.getMales() / n,
+                summary.getFemales(), 100.0 * summary.getFemales() / n,
+                summary.getIndividuals() - summary.getMales() - summary.getFemales());
+
+        System.out.println("----------------------------------");
+        System.out.println(" NOMS LES PLUS FREQUENTS :");
+        for (java.util.Map.Entry<String, Long> e : summary.getTopSurnames(k)) {
+            System.out.printf("  %-20s %d%n", e.getKey(), e.getValue());
+        }
+
+        System.out.println("----------------------------------");
+        System.out.printf(" DUREE DE VIE (%d individus) : moyenne %.1f ans, maximum %d ans%n",
+                summary.getLifespanCount(), summary.getAverageLifespan(), summary.getMaxLifespan());
+        long[] vies = summary.getLifespanHistogram();
+        for (int i = 0; i < vies.length; i++) {
+            if (vies[i] > 0) System.out.printf("  %3d-%3d ans : %d%n", i * 10, i * 10 + 9, vies[i]);
+        }
+
+        System.out.println("----------------------------------");
+        System.out.println(" NAISSANCES PAR DECENNIE :");
+        for (java.util.Map.Entry<Integer, Long> e : summary.getBirthsPerDecade().entrySet()) {
+            System.out.printf("  %ds : %d%n", e.getKey(), e.getValue());
+        }
+
+        System.out.println("----------------------------------");
+        System.out.printf(" ENFANTS PAR FAMILLE : %d enfants, moyenne %.2f, maximum %d%n", summary.getChildren(),
+                summary.getFamilies() == 0 ? 0.0 : (double) summary.getChildren() / summary.getFamilies(),
+                summary.getMaxChildren());
+        long[] tailles = summary.getChildrenHistogram();
+        for (int i = 0; i < tailles.length; i++) {
+            if (tailles[i] > 0) {
+                String libelle = (i == GraphSummary.MAX_CHILDREN) ? i + "+" : String.valueOf(i);
+                System.out.printf("  %3s enfant(s) : %d famille(s)%n", libelle, tailles[i]);
+            }
+        }
+        System.out.println(" Remariages : " + summary.getRemarried() + " individu(s), "
+                + summary.getExtraMarriages() + " union(s) supplémentaire(s)");
+        System.out.println("==================================");
+    }
+
+    /**
+     * Affiche les paires d'individus probablement en double, de la plus à la moins probable.
+     * @param arguments Le score minimal (0.85 par défaut) puis le nombre maximal de paires (50 par défaut).
+     */
+    private void findDuplicates(String arguments) {
+        double seuil = 0.85;
+        int max = 50;
+        String[] args = arguments.isEmpty() ? new String[0] : arguments.split("\\s+");
+        try {
+            if (args.length > 0) seuil = Double.parseDouble(args[0]);
+            if (args.length > 1) max = Integer.parseInt(args[1]);
+        } catch (NumberFormatException e) {
+            System.out.println("Usage : DUPLICATES [seuil] [max]");
+            return;
+        }
+
+        System.out.println("Recherche des doublons (score >= " + seuil + ")...");
+        long debut = System.nanoTime();
+        int[] trouves = new int[1];
+        DuplicateFinder finder = new DuplicateFinder(this.graph);
+        long paires = finder.find(seuil, max, match -> {
+            trouves[0]++;
+            System.out.println(String.format("  %.2f : ", match.getScore()) + match.getFirst() + " <-> " + match.getSecond());
+        });
+        long duree = (System.nanoTime() - debut) / 1_000_000;
+        System.out.println(trouves[0] + " doublon(s) probable(s), " + paires + " paires comparées en " + duree + " ms.");
+        if (finder.getSkippedBlocks() > 0) {
+            System.out.println("Attention : " + finder.getSkippedBlocks() + " bloc(s) trop grand(s) ignoré(s) ("
+                    + finder.getSkippedPeople() + " individus), ces paires n'ont pas été comparées.");
+        }
+    }
+
+    /**
+     * Affiche les mesures de performance, les exporte en JSON ou les remet à zéro.
+     * @param arguments Vide pour afficher, "JSON <fichier>" pour exporter, "RESET" pour effacer.
+     * @throws Exception
+     */
+    private void showPerf(String arguments) throws Exception {
+        String[] args = arguments.trim().split("\\s+", 2);
+        String option = args[0].toUpperCase();
+        if (!option.equals("RESET")) {
+            Perf.setCounter("cache.succes", cache.getHits());
+            Perf.setCounter("cache.echecs", cache.getMisses());
+            Perf.setCounter("cache.entrees", cache.getSize());
+            if (store instanceof DiskIndex) {
+                DiskIndex index = (DiskIndex) store;
+                Perf.setCounter("index.pages.succes", index.getPageHits());
+                Perf.setCounter("index.pages.lues", index.getPageMisses());
+                Perf.setCounter("index.pages.octets", index.getCachedBytes());
+            }
+        }
+        if (option.equals("RESET")) {
+            Perf.reset();
+            System.out.println("Mesures effacées.");
+        } else if (option.equals("JSON")) {
+            if (args.length < 2) {
+                System.out.println("Usage : PERF JSON <fichier>");
+                return;
+            }
+            Files.write(Paths.get(args[1]), Perf.toJson().getBytes(StandardCharsets.UTF_8));
+            System.out.println("Mesures exportées dans " + args[1]);
+        } else {
+            System.out.println("========== PERFORMANCES ==========");
+            System.out.print(Perf.report());
+            System.out.println("==================================");
+        }
+    }
+
+    /**
+     * Démarre ou arrête un enregistrement Java Flight Recorder.
+     * Le fichier peut être donné au démarrage (écrit à l'arrêt) ou à l'arrêt.
+     * @param arguments "START [fichier.jfr]" ou "STOP [fichier.jfr]".
+     * @throws Exception
+     */
+    private void profile(String arguments) throws Exception {
+        String[] args = arguments.trim().split("\\s+", 2);
+        String option = args[0].toUpperCase();
+        String fichier = (args.length > 1) ? args[1] : null;
+        if (option.equals("START")) {
+            if (Profiler.start(fichier)) {
+                System.out.println("Enregistrement JFR démarré.");
+            } else {
+                System.out.println("Un enregistrement est déjà en cours.");
+            }
+        } else if (option.equals("STOP")) {
+            java.nio.file.Path ecrit;
+            try {
+                ecrit = Profiler.stop(fichier);
+            } catch (IllegalArgumentException e) {
+                System.out.println("Usage : PROFILE STOP <fichier.jfr>");
+                return;
+            }
+            if (ecrit == null) System.out.println("Aucun enregistrement en cours.");
+            else System.out.println("Enregistrement JFR écrit dans " + ecrit);
+        } else {
+            System.out.println("Usage : PROFILE START [fichier.jfr] | PROFILE STOP [fichier.jfr]");
+        }
+    }
+
+    /**
+     * Affiche un résultat de requête depuis le cache, ou le calcule, l'affiche et le garde.
+     * render écrit le résultat dans le flux qu'il reçoit, qui le garde pour pouvoir le rejouer tel quel ;
+     * la sortie standard n'est jamais détournée, et rien n'est gardé si render échoue.
+     * @param key La clé du résultat (commande et identifiant(s)).
+     * @param render Le calcul et l'affichage du résultat dans le flux donné.
+     */
+    private void printCached(String key, Consumer<PrintStream> render) {
+        String page = cache.get(graph, key);
+        if (page == null) {
+            ByteArrayOutputStream capture = new ByteArrayOutputStream();
+            try (PrintStream out = new PrintStream(capture, true)) {
+                render.accept(out);
+            }
+            page = capture.toString();
+            cache.put(key, page);
+        }
+        System.out.print(page);
+    }
+
+    /**
+     * Affiche les statistiques du cache de résultats, ou le vide.
+     * @param arguments Vide pour afficher, "CLEAR" pour vider.
+     */
+    private void showCache(String arguments) {
+        if (arguments.trim().equalsIgnoreCase("CLEAR")) {
+            cache.clear();
+            System.out.println("Cache vidé.");
+            return;
+        }
+        System.out.println("========== CACHE ==========");
+        System.out.printf(" Entrées      : %d (%.1f / %.1f Mo)%n", cache.getSize(), cache.getBytes() / 1e6, cache.getMaxBytes() / 1e6);
+        System.out.printf(" Succès       : %d%n", cache.getHits());
+        System.out.printf(" Échecs       : %d%n", cache.getMisses());
+        System.out.printf(" Taux         : %.1f %%%n", cache.getHitRatio() * 100);
+        System.out.printf(" Évictions    : %d%n", cache.getEvictions());
+        System.out.printf(" Invalidations: %d%n", cache.getInvalidations());
+        System.out.println("===========================");
+    }
+
+    /**
+     * Affiche tous les descendants d'une personne, génération par génération, page par page.
+     * @param arguments La personne, suivie des options LIMIT, OFFSET et TO.
+     * @throws Exception
+     */
+    private void showDescendants(String arguments) throws Exception {
+        QueryOptions options = QueryOptions.parse(arguments);
+        if (options.getTarget().isEmpty()) {
+            System.out.println("Usage : DESCENDANTS <id ou nom> [LIMIT n] [OFFSET n] [TO \"fichier\"]");
+            return;
+        }
+        Individual ind = findIndividual(options.getTarget());
+        System.out.println("DESCENDANTS DE : " + ind.getTagValue("NAME"));
+        Adjacency adj = graph.peekAdjacency();
+        runCursor(" -> Descendant", options.cursor(adj != null ? Lineage.descendants(adj, ind) : Lineage.descendants(graph, ind)), options);
+    }
+
+    /**
+     * Consomme un résultat paginé : écrit tout dans le fichier de l'option TO,
+     * ou affiche la première page et garde le curseur pour NEXT.
+     * @param role Le libellé affiché devant chaque personne.
+     * @param result Le curseur du résultat.
+     * @param options Les options de la requête.
+     * @throws IOException En cas d'erreur d'écriture du fichier.
+     */
+    private void runCursor(String role, Cursor<String> result, QueryOptions options) throws IOException {
+        if (options.getOutput() != null) {
+            // Ecriture en flux : une ligne par personne, sans garder le résultat en mémoire
+            long lignes = 0;
+            try (java.io.BufferedWriter out = Files.newBufferedWriter(Paths.get(options.getOutput()), StandardCharsets.UTF_8)) {
+                while (result.hasNext()) {
+                    String id = result.next();
+                    String nom = displayName(id);
+                    out.write(id);
+                    out.write('\t');
+                    out.write(nom == null ? "" : nom);
+                    out.newLine();
+                    lignes++;
+                }
+            }
+            System.out.println(lignes + " ligne(s) écrite(s) dans " + options.getOutput());
+            cursor = null;
+            return;
+        }
+        cursor = result;
+        cursorRole = role;
+        cursorVersion = graph.getVersion();
+        printPage(PAGE_SIZE);
+    }
+
+    /**
+     * Affiche la page suivante du dernier résultat paginé.
+     * @param arguments Vide, ou la taille de la page.
+     */
+    private void showNextPage(String arguments) {
+        if (cursor == null) {
+            System.out.println("Aucun résultat en cours.");
+            return;
+        }
+        if (cursorVersion != graph.getVersion()) {
+            cursor = null;
+            System.out.println("Le graphe a changé depuis la requête, veuillez la relancer.");
+            return;
+        }
+        int taille = PAGE_SIZE;
+        if (!arguments.trim().isEmpty()) {
+            try {
+                taille = Integer.parseInt(arguments.trim());
+            } catch (NumberFormatException e) {
+                System.out.println("Usage : NEXT [taille de page]");
+                return;
+            }
+        }
+        printPage(taille);
+    }
+
+    /**
+     * Affiche au plus size lignes du curseur courant, et indique s'il reste une suite.
+     */
+    private void printPage(int size) {
+        long debut = cursor.getPosition();
+        List<String> page = cursor.fetch(size);
+        for (String id : page) {
+            printPersonName(System.out, cursorRole, id);
+        }
+        if (page.isEmpty()) {
+            System.out.println(" -> Aucun résultat.");
+        }
+        if (cursor.hasNext()) {
+            System.out.println(" [" + (debut + 1) + "-" + cursor.getPosition() + "] ... NEXT pour la suite.");
+        } else {
+            cursor = null;
+        }
+    }
+}
@@ -0,0 +1,138 @@
+package genealogy.console;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+
+import genealogy.graph.Graph;
+import genealogy.parsing.StringPool;
+import genealogy.storage.RecordStore;
+
+/**
+ * Espace de travail : plusieurs graphes chargés en même temps, chacun sous un nom
+ * (ex: deux versions d'un arbre à comparer). Un seul est courant, c'est lui que les commandes interrogent.
+ * Chaque chargement a sa propre réserve de chaînes (newStringPool()), reliée à une table commune :
+ * les IDs, noms, lieux et dates communs à plusieurs versions ne sont gardés qu'une fois en mémoire,
+ * et les chaînes d'un graphe remplacé ou abandonné sont libérées avec lui.
+ */
+public class Workspace {
+
+    /** * Nom du graphe créé au démarrage. */
+    public static final String DEFAULT = "principal";
+
+    /** * Graphes par nom, dans l'ordre de création. */
+    private final Map<String, Graph> graphs = new LinkedHashMap<>();
+
+    /** * Stockage (hors tas ou index) des graphes chargés avec OFFHEAP ou INDEXED. */
+    private final Map<String, RecordStore> stores = new HashMap<>();
+
+    /** * Chaînes encore utilisées par les graphes, commune à tous les chargements. */
+    private final StringPool.Shared strings = new StringPool.Shared();
+
+    private String current = DEFAULT;
+
+    /**
+     * Constructeur.
+     * @param graph Le graphe de départ, enregistré sous le nom DEFAULT.
+     */
+    public Workspace(Graph graph) {
+        graphs.put(DEFAULT, graph);
+    }
+
+    /**
+     * @return Le nom du graphe courant.
+     */
+    public String getCurrent() {
+        return current;
+    }
+
+    /**
+     * @return Les noms des graphes, dans l'ordre de création.
+     */
+    public Set<String> getNames() {
+        return graphs.keySet();
+    }
+
+    /**
+     * @param name Le nom d'un graphe.
+     * @return true si un graphe porte ce nom.
+     */
+    public boolean contains(String name) {
+        return graphs.containsKey(name);
+    }
+
+    /**
+     * @param name Le nom d'un graphe.
+     * @return Le graphe, ou null s'il n'existe pas.
+     */
+    public Graph getGraph(String name) {
+        return graphs.get(name);
+    }
+
+    /**
+     * @param name Le nom d'un graphe.
+     * @return Son stockage, ou null s'il est entièrement en mémoire.
+     */
+    public RecordStore getStore(String name) {
+        return stores.get(name);
+    }
+
+    /**
+     * @return Une nouvelle réserve de chaînes pour un chargement, à donner aux parseurs.
+     */
+    public StringPool newStringPool() {
+        return new StringPool(strings);
+    }
+
+    /**
+     * @return La table des chaînes partagées entre les graphes (statistiques).
+     */
+    public StringPool.Shared getStrings() {
+        return strings;
+    }
+
+    /**
+     * Enregistre (ou remplace) un graphe sous un nom, sans fermer l'éventuel stockage remplacé.
+     * @param name Le nom du graphe.
+     * @param graph Le graphe.
+     * @param store Son stockage, null s'il est entièrement en mémoire.
+     */
+    public void put(String name, Graph graph, RecordStore store) {
+        graphs.put(name, graph);
+        if (store == null) stores.remove(name);
+        else stores.put(name, store);
+    }
+
+    /**
+     * Retire un graphe de l'espace de travail (sans fermer son stockage). Le graphe courant ne peut pas être retiré.
+     * @param name Le nom du graphe.
+     */
+    public void remove(String name) {
+        if (name.equals(current)) throw new IllegalArgumentException("Le graphe courant ne peut pas être retiré : " + name);
+        graphs.remove(name);
+        stores.remove(name);
+    }
+
+    /**
+     * Change de graphe courant ; un nom inconnu crée un graphe vide.
+     * @param name Le nom du graphe.
+     * @return true si le graphe vient d'être créé.
+     */
+    public boolean use(String name) {
+        boolean created = !graphs.containsKey(name);
+        if (created) graphs.put(name, new Graph());
+        current = name;
+        return created;
+    }
+
+    /**
+     * Ferme les stockages de tous les graphes.
+     * @throws IOException Si un stockage ne peut pas être fermé.
+     */
+    public void close() throws IOException {
+        for (RecordStore store : stores.values()) store.close();
+        stores.clear();
+    }
+}
@@ -0,0 +1,19 @@
+package genealogy.exceptions.exceptconsole;
+
+import genealogy.exceptions.GenealogyErr;
+
+/**
+ * Exception pour une requête FIND mal formée.
+ */
+public class QueryErr extends GenealogyErr {
+
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * Lève une erreur si la requête ne respecte pas la syntaxe de FIND.
+     * @param detail Ce qui n'a pas pu être compris.
+     */
+    public QueryErr(String detail) {
+        super("Requête invalide : " + detail + ".");
+    }
+}
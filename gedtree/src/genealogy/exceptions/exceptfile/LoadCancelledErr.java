@@ -0,0 +1,19 @@
+package genealogy.exceptions.exceptfile;
+
+import genealogy.exceptions.GenealogyErr;
+
+/**
+ * Exception dans le cas d'un chargement interrompu à la demande de l'utilisateur.
+ */
+public class LoadCancelledErr extends GenealogyErr {
+
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * Constructeur.
+     * @param phase La phase en cours au moment de l'interruption (lecture, validation...).
+     */
+    public LoadCancelledErr(String phase) {
+        super("Chargement annulé pendant la phase \"" + phase + "\" : le graphe courant n'a pas été modifié.");
+    }
+}
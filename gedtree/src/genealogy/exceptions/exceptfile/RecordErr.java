@@ -0,0 +1,22 @@
+package genealogy.exceptions.exceptfile;
+
+import genealogy.exceptions.GenealogyErr;
+
+/**
+ * Exception dans le cas d'un enregistrement qui ne peut pas être décodé au premier accès
+ * (chargement paresseux ou stockage hors tas) : l'entité garde son enregistrement brut.
+ */
+public class RecordErr extends GenealogyErr {
+
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * Constructeur.
+     * @param entityId L'identifiant de l'entité.
+     * @param cause L'erreur rencontrée pendant le décodage.
+     */
+    public RecordErr(String entityId, GenealogyErr cause) {
+        super("Enregistrement illisible pour l'entité " + entityId + " : " + cause.getMessage());
+        initCause(cause);
+    }
+}
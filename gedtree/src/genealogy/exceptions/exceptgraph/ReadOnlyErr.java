@@ -0,0 +1,20 @@
+package genealogy.exceptions.exceptgraph;
+
+import genealogy.exceptions.GenealogyErr;
+
+/**
+ * Exception dans le cas d'une modification d'un graphe en lecture seule (chargé avec OFFHEAP ou INDEXED).
+ */
+public class ReadOnlyErr extends GenealogyErr {
+
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * Lève une erreur si une commande doit modifier un graphe dont les entités sont lues dans un stockage.
+     * @param command La commande refusée.
+     */
+    public ReadOnlyErr(String command) {
+        super("Le graphe courant est en lecture seule (chargé avec OFFHEAP ou INDEXED) : " + command
+                + " impossible. Rechargez le fichier avec LOAD, ou utilisez un autre graphe (USE).");
+    }
+}
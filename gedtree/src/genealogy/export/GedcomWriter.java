@@ -0,0 +1,375 @@
+package genealogy.export;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.function.Predicate;
+import java.util.stream.IntStream;
+
+import genealogy.graph.Entity;
+import genealogy.graph.Graph;
+import genealogy.graph.Individual;
+import genealogy.tags.CompositeTag;
+import genealogy.tags.Tag;
+import genealogy.tags.simple.NameTag;
+
+/**
+ * Réécrit un graphe au format GEDCOM, dans le jeu de caractères par défaut de la JVM : c'est celui avec lequel
+ * le parseur, les index sur disque et DIFF relisent les fichiers, et l'en-tête CHAR l'annonce.
+ * Les lignes sont encodées directement dans un grand buffer d'octets réutilisé,
+ * vidé dans un FileChannel lorsqu'il est plein : aucune String n'est construite par ligne.
+ * L'ordre des tags et l'imbrication des CompositeTag sont conservés.
+ */
+public class GedcomWriter {
+
+    /** * Taille par défaut du buffer d'écriture (1 Mo). */
+    private static final int BUFFER_SIZE = 1 << 20;
+
+    /** * Nombre d'enregistrements encodés ensemble en mode parallèle. */
+    private static final int BATCH_SIZE = 4096;
+
+    /** * Jeu de caractères du fichier écrit, le même que celui des lecteurs. */
+    private static final Charset CHARSET = Charset.defaultCharset();
+
+    /** * true si le jeu de caractères est UTF-8, encodé caractère par caractère sans getBytes(). */
+    private static final boolean UTF8 = CHARSET.equals(StandardCharsets.UTF_8);
+
+    /** * Buffer d'écriture réutilisé pour tout le fichier. */
+    private ByteBuffer buffer;
+
+    /** * Canal vers le fichier de sortie, null pendant l'encodage d'un enregistrement isolé. */
+    private FileChannel channel;
+
+    /** * Liens à garder (FAMC, FAMS, HUSB, WIFE, CHIL), testés sur l'ID visé ; null pour tout écrire. */
+    private Predicate<String> links;
+
+    /** * Nombre de lignes écrites. */
+    private long lines;
+
+    /** * Nombre d'octets écrits. */
+    private long bytes;
+
+    /**
+     * Constructeur avec un buffer de taille par défaut.
+     */
+    public GedcomWriter() {
+        this(BUFFER_SIZE);
+    }
+
+    /**
+     * Constructeur.
+     * @param bufferSize La taille du buffer d'écriture en octets.
+     */
+    public GedcomWriter(int bufferSize) {
+        this.buffer = ByteBuffer.allocate(bufferSize);
+    }
+
+    /**
+     * Écrit tout le graphe dans un fichier GEDCOM.
+     * @param graph Le graphe à exporter.
+     * @param filePath Le fichier de destination (écrasé s'il existe).
+     * @param parallel true pour encoder les enregistrements en parallèle avant l'écriture séquentielle.
+     * @throws IOException En cas de problème d'écriture.
+     */
+    public void write(Graph graph, String filePath, boolean parallel) throws IOException {
+        List<Entity> records = new ArrayList<>(graph.getIndividuals().size() + graph.getFamilies().size());
+        records.addAll(graph.getIndividuals().values());
+        records.addAll(graph.getFamilies().values());
+        write(records, filePath, parallel);
+    }
+
+    /**
+     * Écrit une liste d'enregistrements dans un fichier GEDCOM, encadrée par HEAD et TRLR.
+     * @param records Les individus et familles à écrire, dans l'ordre de sortie.
+     * @param filePath Le fichier de destination (écrasé s'il existe).
+     * @param parallel true pour encoder les enregistrements en parallèle avant l'écriture séquentielle.
+     * @throws IOException En cas de problème d'écriture.
+     */
+    public void write(List<? extends Entity> records, String filePath, boolean parallel) throws IOException {
+        lines = 0;
+        bytes = 0;
+        buffer.clear();
+        try (FileChannel out = FileChannel.open(Paths.get(filePath), StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            this.channel = out;
+            writeHeader();
+
+            if (parallel) {
+                for (int from = 0; from < records.size(); from += BATCH_SIZE) {
+                    int to = Math.min(from + BATCH_SIZE, records.size());
+                    final int offset = from;
+                    // Chaque enregistrement est encodé par son propre GedcomWriter, l'écriture reste ordonnée.
+                    byte[][] encoded = IntStream.range(0, to - from).parallel()
+                            .mapToObj(i -> encodeRecord(records.get(offset + i)))
+                            .toArray(byte[][]::new);
+                    for (byte[] record : encoded) {
+                        putBytes(record);
+                        for (byte b : record) {
+                            if (b == '\n') lines++;
+                        }
+                    }
+                }
+            } else {
+                for (Entity entity : records) {
+                    writeRecord(entity);
+                }
+            }
+
+            putLine(0, null, "TRLR", null);
+            flush();
+        } finally {
+            this.channel = null;
+        }
+    }
+
+    /**
+     * Écrit des enregistrements au fil d'un itérateur, sans les rassembler en mémoire.
+     * Les liens vers une entité absente de l'export sont retirés des enregistrements écrits.
+     * @param records Les individus et familles à écrire, dans l'ordre de sortie.
+     * @param filePath Le fichier de destination (écrasé s'il existe).
+     * @param links Vrai pour l'ID d'une entité écrite : les liens vers les autres IDs sont omis.
+     * @throws IOException En cas de problème d'écriture.
+     */
+    public void write(Iterator<? extends Entity> records, String filePath, Predicate<String> links) throws IOException {
+        lines = 0;
+        bytes = 0;
+        buffer.clear();
+        try (FileChannel out = FileChannel.open(Paths.get(filePath), StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            this.channel = out;
+            this.links = links;
+            writeHeader();
+            while (records.hasNext()) {
+                writeRecord(records.next());
+            }
+            putLine(0, null, "TRLR", null);
+            flush();
+        } finally {
+            this.channel = null;
+            this.links = null;
+        }
+    }
+
+    /**
+     * Nombre de lignes écrites lors du dernier export.
+     * @return Le nombre de lignes.
+     */
+    public long getLines() {
+        return lines;
+    }
+
+    /**
+     * Nombre d'octets écrits lors du dernier export.
+     * @return Le nombre d'octets.
+     */
+    public long getBytes() {
+        return bytes;
+    }
+
+    /**
+     * Encode un enregistrement dans un tableau d'octets indépendant (mode parallèle).
+     */
+    private static byte[] encodeRecord(Entity entity) {
+        GedcomWriter local = new GedcomWriter(8192);
+        local.writeRecordTo(entity);
+        return local.toByteArray();
+    }
+
+    /**
+     * Variante sans canal utilisée par encodeRecord : le buffer grandit au lieu d'être vidé.
+     */
+    private void writeRecordTo(Entity entity) {
+        try {
+            writeRecord(entity);
+        } catch (IOException e) {
+            // Impossible sans canal : le buffer est agrandi par makeRoom.
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private byte[] toByteArray() {
+        byte[] result = new byte[buffer.position()];
+        System.arraycopy(buffer.array(), 0, result, 0, result.length);
+        return result;
+    }
+
+    /**
+     * Écrit l'en-tête minimal d'un fichier GEDCOM 5.5.1.
+     */
+    private void writeHeader() throws IOException {
+        putLine(0, null, "HEAD", null);
+        putLine(1, null, "GEDC", null);
+        putLine(2, null, "VERS", "5.5.1");
+        putLine(2, null, "FORM", "LINEAGE-LINKED");
+        putLine(1, null, "CHAR", charName());
+    }
+
+    /**
+     * Écrit un enregistrement de niveau 0 et tout son arbre de tags.
+     */
+    private void writeRecord(Entity entity) throws IOException {
+        putLine(0, entity.getId(), entity instanceof Individual ? "INDI" : "FAM", null);
+        for (Tag tag : entity.getProperties()) {
+            if (links != null && isLink(tag) && !links.test(tag.getValueOrNull())) continue;
+            writeTag(tag, 1);
+        }
+    }
+
+    /**
+     * Indique si un tag de niveau 1 est un lien entre individus et familles.
+     */
+    private static boolean isLink(Tag tag) {
+        switch (tag.getName()) {
+            case "FAMC":
+            case "FAMS":
+            case "HUSB":
+            case "WIFE":
+            case "CHIL":
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    /**
+     * Écrit un tag puis, récursivement, ses enfants au niveau suivant.
+     * Le niveau écrit est la profondeur réelle dans l'arbre, pas le niveau par défaut de la classe du tag.
+     */
+    private void writeTag(Tag tag, int level) throws IOException {
+        String value = tag.getValueOrNull();
+        int newline = (value == null) ? -1 : value.indexOf('\n');
+        NameTag name = NameTag.of(tag);
+        if (name != null) {
+            // On remet les / autour du nom de famille, retirés au parsing
+            putLine(level, null, tag.getName(), name.getGedcomValue());
+        } else if (newline < 0) {
+            putLine(level, null, tag.getName(), value);
+        } else {
+            // Valeur sur plusieurs lignes : reconstruite avec des lignes CONT au niveau suivant
+            putLine(level, null, tag.getName(), value.substring(0, newline));
+            while (newline >= 0) {
+                int next = value.indexOf('\n', newline + 1);
+                putLine(level + 1, null, "CONT", value.substring(newline + 1, next < 0 ? value.length() : next));
+                newline = next;
+            }
+        }
+        if (tag instanceof CompositeTag) {
+            for (Tag child : ((CompositeTag) tag).getChildren()) {
+                writeTag(child, level + 1);
+            }
+        }
+    }
+
+    /**
+     * Encode une ligne "niveau [xref] tag [valeur]" dans le buffer.
+     */
+    private void putLine(int level, String xref, String tag, String value) throws IOException {
+        putInt(level);
+        if (xref != null) {
+            putByte(' ');
+            putChars(xref);
+        }
+        putByte(' ');
+        putChars(tag);
+        if (value != null && !value.isEmpty()) {
+            putByte(' ');
+            putChars(value);
+        }
+        putByte('\n');
+        lines++;
+    }
+
+    private void putInt(int value) throws IOException {
+        if (value >= 10) putInt(value / 10);
+        putByte('0' + value % 10);
+    }
+
+    /**
+     * @return La valeur de CHAR pour le jeu de caractères écrit (ANSI pour les jeux sur un octet comme windows-1252).
+     */
+    private static String charName() {
+        if (UTF8) return "UTF-8";
+        if (CHARSET.equals(StandardCharsets.US_ASCII)) return "ASCII";
+        if (CHARSET.name().startsWith("UTF-16")) return "UNICODE";
+        return "ANSI";
+    }
+
+    /**
+     * Encode une chaîne : en UTF-8, caractère par caractère sans passer par getBytes().
+     */
+    private void putChars(String s) throws IOException {
+        if (!UTF8) {
+            putBytes(s.getBytes(CHARSET));
+            return;
+        }
+        int length = s.length();
+        for (int i = 0; i < length; i++) {
+            char c = s.charAt(i);
+            if (c < 0x80) {
+                putByte(c);
+            } else if (c < 0x800) {
+                putByte(0xC0 | (c >> 6));
+                putByte(0x80 | (c & 0x3F));
+            } else if (Character.isHighSurrogate(c) && i + 1 < length && Character.isLowSurrogate(s.charAt(i + 1))) {
+                int cp = Character.toCodePoint(c, s.charAt(++i));
+                putByte(0xF0 | (cp >> 18));
+                putByte(0x80 | ((cp >> 12) & 0x3F));
+                putByte(0x80 | ((cp >> 6) & 0x3F));
+                putByte(0x80 | (cp & 0x3F));
+            } else {
+                putByte(0xE0 | (c >> 12));
+                putByte(0x80 | ((c >> 6) & 0x3F));
+                putByte(0x80 | (c & 0x3F));
+            }
+        }
+    }
+
+    private void putByte(int b) throws IOException {
+        if (!buffer.hasRemaining()) makeRoom(1);
+        buffer.put((byte) b);
+        bytes++;
+    }
+
+    private void putBytes(byte[] data) throws IOException {
+        int offset = 0;
+        while (offset < data.length) {
+            if (!buffer.hasRemaining()) makeRoom(data.length - offset);
+            int chunk = Math.min(buffer.remaining(), data.length - offset);
+            buffer.put(data, offset, chunk);
+            offset += chunk;
+        }
+        bytes += data.length;
+    }
+
+    /**
+     * Libère de la place dans le buffer : vidage dans le canal, ou agrandissement s'il n'y a pas de canal.
+     */
+    private void makeRoom(int needed) throws IOException {
+        if (channel != null) {
+            flush();
+        } else {
+            ByteBuffer larger = ByteBuffer.allocate(Math.max(buffer.capacity() * 2, buffer.capacity() + needed));
+            buffer.flip();
+            larger.put(buffer);
+            buffer = larger;
+        }
+    }
+
+    /**
+     * Vide le contenu du buffer dans le canal.
+     */
+    private void flush() throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        buffer.clear();
+    }
+}
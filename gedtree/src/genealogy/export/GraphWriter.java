@@ -0,0 +1,310 @@
+package genealogy.export;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayDeque;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.Set;
+import java.util.function.Predicate;
+
+import genealogy.graph.Family;
+import genealogy.graph.Graph;
+import genealogy.graph.Individual;
+
+/**
+ * Exporte la structure du graphe (individus et familles reliés) pour les outils de visualisation.
+ * Deux formats sont proposés : DOT (Graphviz) et GraphML.
+ * Chaque individu et chaque famille est un noeud ; les arcs vont des époux vers leur famille
+ * et de la famille vers chacun de ses enfants.
+ * Le document est écrit au fil du parcours dans un flux bufferisé : pour un export complet,
+ * rien n'est gardé en mémoire en dehors du buffer d'écriture.
+ */
+public class GraphWriter {
+
+    /**
+     * Les formats de sortie disponibles.
+     */
+    public enum Format { DOT, GRAPHML }
+
+    /** * Taille du buffer d'écriture (1 Mo). */
+    private static final int BUFFER_SIZE = 1 << 20;
+
+    private final Format format;
+    private Writer out;
+    private long nodes;
+    private long edges;
+
+    /**
+     * Constructeur.
+     * @param format Le format de sortie.
+     */
+    public GraphWriter(Format format) {
+        this.format = format;
+    }
+
+    /**
+     * Exporte tout le graphe.
+     * @param graph Le graphe à exporter.
+     * @param filePath Le fichier de destination (écrasé s'il existe).
+     * @throws IOException En cas de problème d'écriture.
+     */
+    public void write(Graph graph, String filePath) throws IOException {
+        write(filePath, graph.getIndividuals().values(), graph.getFamilies().values(),
+                id -> graph.getIndividual(id) != null);
+    }
+
+    /**
+     * Exporte le voisinage d'une personne : ses ancêtres et ses descendants sur depth générations,
+     * avec les familles qui les relient et les conjoints de ces familles.
+     * @param graph Le graphe.
+     * @param filePath Le fichier de destination (écrasé s'il existe).
+     * @param root La personne au centre de l'export.
+     * @param depth Le nombre de générations à parcourir vers le haut et vers le bas.
+     * @throws IOException En cas de problème d'écriture.
+     */
+    public void write(Graph graph, String filePath, Individual root, int depth) throws IOException {
+        Set<Individual> individus = new LinkedHashSet<>();
+        Set<Family> familles = new LinkedHashSet<>();
+        individus.add(root);
+
+        // Ancêtres : on remonte par la famille parentale (FAMC)
+        ArrayDeque<Individual> file = new ArrayDeque<>();
+        file.add(root);
+        for (int generation = 0; generation < depth && !file.isEmpty(); generation++) {
+            for (int n = file.size(); n > 0; n--) {
+                Individual ind = file.poll();
+                Family fam = (ind.getFamc() == null) ? null : graph.getFamily(ind.getFamc());
+                if (fam == null) continue;
+                familles.add(fam);
+                for (String parentId : new String[] { fam.getHusb(), fam.getWife() }) {
+                    Individual parent = (parentId == null) ? null : graph.getIndividual(parentId);
+                    if (parent != null && individus.add(parent)) file.add(parent);
+                }
+            }
+        }
+
+        // Descendants : on descend par les familles fondées (FAMS)
+        file.clear();
+        file.add(root);
+        for (int generation = 0; generation < depth && !file.isEmpty(); generation++) {
+            for (int n = file.size(); n > 0; n--) {
+                Individual ind = file.poll();
+                for (String famsId : ind.getFams()) {
+                    Family fam = graph.getFamily(famsId);
+                    if (fam == null) continue;
+                    familles.add(fam);
+                    for (String conjointId : new String[] { fam.getHusb(), fam.getWife() }) {
+                        Individual conjoint = (conjointId == null) ? null : graph.getIndividual(conjointId);
+                        if (conjoint != null) individus.add(conjoint);
+                    }
+                    for (String enfantId : fam.getChildren()) {
+                        Individual enfant = graph.getIndividual(enfantId);
+                        if (enfant != null && individus.add(enfant)) file.add(enfant);
+                    }
+                }
+            }
+        }
+
+        Set<String> ids = new HashSet<>();
+        for (Individual ind : individus) ids.add(ind.getId());
+        write(filePath, individus, familles, ids::contains);
+    }
+
+    /**
+     * @return Le nombre de noeuds écrits par le dernier export.
+     */
+    public long getNodes() {
+        return nodes;
+    }
+
+    /**
+     * @return Le nombre d'arcs écrits par le dernier export.
+     */
+    public long getEdges() {
+        return edges;
+    }
+
+    /**
+     * Écrit les noeuds puis les arcs. Les arcs vers une personne absente de l'export sont ignorés.
+     */
+    private void write(String filePath, Collection<Individual> individus, Collection<Family> familles,
+                       Predicate<String> present) throws IOException {
+        nodes = 0;
+        edges = 0;
+        try (Writer writer = new BufferedWriter(new OutputStreamWriter(
+                Files.newOutputStream(Paths.get(filePath)), StandardCharsets.UTF_8), BUFFER_SIZE)) {
+            out = writer;
+            begin();
+            for (Individual ind : individus) {
+                String naissance = ind.getSubTagValue("BIRT", "DATE");
+                String deces = ind.getSubTagValue("DEAT", "DATE");
+                String nom = ind.getTagValue("NAME");
+                String sexe = ind.getTagValue("SEX");
+                individualNode(ind.getId(), nom.equals("Unknown") ? null : nom,
+                        sexe.equals("Unknown") ? null : sexe, naissance, deces);
+            }
+            for (Family fam : familles) {
+                familyNode(fam.getId(), fam.getSubTagValue("MARR", "DATE"));
+            }
+            for (Family fam : familles) {
+                if (fam.getHusb() != null && present.test(fam.getHusb())) edge(fam.getHusb(), fam.getId(), "HUSB");
+                if (fam.getWife() != null && present.test(fam.getWife())) edge(fam.getWife(), fam.getId(), "WIFE");
+                for (String enfantId : fam.getChildren()) {
+                    if (present.test(enfantId)) edge(fam.getId(), enfantId, "CHIL");
+                }
+            }
+            end();
+        } finally {
+            out = null;
+        }
+    }
+
+    /**
+     * En-tête du document (déclaration des attributs pour GraphML).
+     */
+    private void begin() throws IOException {
+        if (format == Format.DOT) {
+            out.write("digraph gedcom {\n");
+            out.write("  node [shape=box];\n");
+        } else {
+            out.write("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n");
+            out.write("<graphml xmlns=\"http://graphml.graphdrawing.org/xmlns\">\n");
+            out.write("  <key id=\"type\" for=\"node\" attr.name=\"type\" attr.type=\"string\"/>\n");
+            out.write("  <key id=\"name\" for=\"node\" attr.name=\"name\" attr.type=\"string\"/>\n");
+            out.write("  <key id=\"sex\" for=\"node\" attr.name=\"sex\" attr.type=\"string\"/>\n");
+            out.write("  <key id=\"birth\" for=\"node\" attr.name=\"birth\" attr.type=\"string\"/>\n");
+            out.write("  <key id=\"death\" for=\"node\" attr.name=\"death\" attr.type=\"string\"/>\n");
+            out.write("  <key id=\"marriage\" for=\"node\" attr.name=\"marriage\" attr.type=\"string\"/>\n");
+            out.write("  <key id=\"role\" for=\"edge\" attr.name=\"role\" attr.type=\"string\"/>\n");
+            out.write("  <graph id=\"gedcom\" edgedefault=\"directed\">\n");
+        }
+    }
+
+    /**
+     * Noeud d'un individu, avec les attributs connus (les valeurs null sont omises).
+     */
+    private void individualNode(String id, String nom, String sexe, String naissance, String deces) throws IOException {
+        nodes++;
+        if (format == Format.DOT) {
+            StringBuilder label = new StringBuilder(nom == null ? id : nom);
+            if (naissance != null || deces != null) {
+                label.append('\n').append(naissance == null ? "?" : naissance)
+                     .append(" - ").append(deces == null ? "?" : deces);
+            }
+            out.write("  " + dotId(id) + " [label=" + dotString(label.toString()));
+            if ("M".equals(sexe)) out.write(", color=blue");
+            else if ("F".equals(sexe)) out.write(", color=red");
+            out.write("];\n");
+        } else {
+            out.write("    <node id=" + xmlAttr(id) + ">");
+            data("type", "INDI");
+            data("name", nom);
+            data("sex", sexe);
+            data("birth", naissance);
+            data("death", deces);
+            out.write("</node>\n");
+        }
+    }
+
+    /**
+     * Noeud d'une famille.
+     */
+    private void familyNode(String id, String mariage) throws IOException {
+        nodes++;
+        if (format == Format.DOT) {
+            out.write("  " + dotId(id) + " [shape=ellipse, label=" + dotString(mariage == null ? id.replace("@", "") : id.replace("@", "") + "\n" + mariage) + "];\n");
+        } else {
+            out.write("    <node id=" + xmlAttr(id) + ">");
+            data("type", "FAM");
+            data("marriage", mariage);
+            out.write("</node>\n");
+        }
+    }
+
+    /**
+     * Arc entre deux noeuds, avec le rôle du lien (HUSB, WIFE ou CHIL).
+     */
+    private void edge(String from, String to, String role) throws IOException {
+        edges++;
+        if (format == Format.DOT) {
+            out.write("  " + dotId(from) + " -> " + dotId(to) + ";\n");
+        } else {
+            out.write("    <edge source=" + xmlAttr(from) + " target=" + xmlAttr(to) + ">");
+            data("role", role);
+            out.write("</edge>\n");
+        }
+    }
+
+    /**
+     * Fin du document.
+     */
+    private void end() throws IOException {
+        if (format == Format.DOT) {
+            out.write("}\n");
+        } else {
+            out.write("  </graph>\n</graphml>\n");
+        }
+    }
+
+    /**
+     * Attribut GraphML d'un noeud ou d'un arc, omis si la valeur est absente.
+     */
+    private void data(String key, String value) throws IOException {
+        if (value == null || value.isEmpty()) return;
+        out.write("<data key=\"" + key + "\">" + xmlEscape(value) + "</data>");
+    }
+
+    /**
+     * Identifiant DOT : l'ID GEDCOM sans les @, entre guillemets.
+     */
+    private static String dotId(String id) {
+        return dotString(id.replace("@", ""));
+    }
+
+    /**
+     * Chaîne DOT entre guillemets, retours à la ligne compris.
+     */
+    private static String dotString(String s) {
+        StringBuilder sb = new StringBuilder("\"");
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            if (c == '"' || c == '\\') sb.append('\\').append(c);
+            else if (c == '\n') sb.append("\\n");
+            else sb.append(c);
+        }
+        return sb.append('"').toString();
+    }
+
+    /**
+     * Valeur d'attribut XML entre guillemets.
+     */
+    private static String xmlAttr(String s) {
+        return "\"" + xmlEscape(s) + "\"";
+    }
+
+    /**
+     * Échappe les caractères spéciaux XML.
+     */
+    private static String xmlEscape(String s) {
+        StringBuilder sb = new StringBuilder(s.length() + 8);
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            switch (c) {
+                case '<': sb.append("&lt;"); break;
+                case '>': sb.append("&gt;"); break;
+                case '&': sb.append("&amp;"); break;
+                case '"': sb.append("&quot;"); break;
+                case '\n': sb.append("&#10;"); break;
+                default: sb.append(c);
+            }
+        }
+        return sb.toString();
+    }
+}
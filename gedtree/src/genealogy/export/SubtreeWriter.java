@@ -0,0 +1,198 @@
+package genealogy.export;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+import genealogy.graph.Adjacency;
+import genealogy.graph.Entity;
+import genealogy.graph.Graph;
+import genealogy.graph.Individual;
+
+/**
+ * Extrait une branche du graphe dans un fichier GEDCOM autonome : les ancêtres ou les descendants
+ * d'une personne, avec les familles qui les relient et les conjoints de ces familles.
+ * La branche est collectée par un seul parcours en largeur dans l'index des liens du graphe :
+ * les individus et familles retenus sont marqués dans deux BitSet, la file est un tableau d'entiers.
+ * Les enregistrements sont ensuite écrits au fil des bits marqués, dans l'ordre du graphe, avec leur
+ * arbre de tags complet ; les liens vers des entités hors de la branche sont retirés.
+ */
+public class SubtreeWriter {
+
+    /**
+     * Sens de l'extraction.
+     */
+    public enum Direction { ANCESTORS, DESCENDANTS }
+
+    private final Direction direction;
+
+    /** * Nombre maximal de générations parcourues (Integer.MAX_VALUE : sans limite). */
+    private final int depth;
+
+    private final GedcomWriter writer = new GedcomWriter();
+
+    private int individuals;
+    private int families;
+
+    /**
+     * Constructeur.
+     * @param direction Le sens de l'extraction.
+     * @param depth Le nombre maximal de générations parcourues depuis la personne.
+     */
+    public SubtreeWriter(Direction direction, int depth) {
+        this.direction = direction;
+        this.depth = depth;
+    }
+
+    /**
+     * Extrait la branche d'une personne dans un fichier GEDCOM.
+     * @param graph Le graphe.
+     * @param root La personne d'où part l'extraction.
+     * @param filePath Le fichier de destination (écrasé s'il existe).
+     * @throws IOException En cas de problème d'écriture.
+     */
+    public void write(Graph graph, Individual root, String filePath) throws IOException {
+        Adjacency adj = graph.getAdjacency();
+        BitSet people = new BitSet(adj.getIndividualCount());
+        BitSet fams = new BitSet(adj.getFamilyCount());
+        int start = adj.indexOf(root);
+        if (start >= 0) {
+            people.set(start);
+            if (direction == Direction.ANCESTORS) ancestors(adj, start, people, fams);
+            else descendants(adj, start, people, fams);
+        }
+        individuals = people.cardinality();
+        families = fams.cardinality();
+
+        // Un lien n'est gardé que si l'entité visée est marquée
+        writer.write(new Marked(adj, people, fams), filePath, id -> {
+            int i = adj.indexOf(id);
+            if (i >= 0) return people.get(i);
+            int f = adj.familyIndexOf(id);
+            return f >= 0 && fams.get(f);
+        });
+    }
+
+    /**
+     * Ancêtres : on remonte par la famille parentale (FAMC), dont les deux parents sont retenus.
+     */
+    private void ancestors(Adjacency adj, int start, BitSet people, BitSet fams) {
+        int[] file = { start };
+        int head = 0, tail = 1;
+        for (int generation = 0; generation < depth && head < tail; generation++) {
+            for (int end = tail; head < end; head++) {
+                int f = adj.famc(file[head]);
+                if (f < 0 || fams.get(f)) continue;
+                fams.set(f);
+                for (int k = 0; k < 2; k++) {
+                    int parent = (k == 0) ? adj.husb(f) : adj.wife(f);
+                    if (parent < 0 || people.get(parent)) continue;
+                    people.set(parent);
+                    if (tail == file.length) file = Arrays.copyOf(file, tail * 2);
+                    file[tail++] = parent;
+                }
+            }
+        }
+    }
+
+    /**
+     * Descendants : on descend par les familles fondées (FAMS) ; les conjoints sont retenus sans être suivis.
+     * Un conjoint peut aussi être un descendant (mariage entre cousins) : les individus déjà mis dans la file
+     * sont marqués à part, pour qu'un descendant marqué d'abord comme conjoint soit quand même suivi.
+     */
+    private void descendants(Adjacency adj, int start, BitSet people, BitSet fams) {
+        BitSet enqueued = new BitSet(adj.getIndividualCount());
+        enqueued.set(start);
+        int[] file = { start };
+        int head = 0, tail = 1;
+        for (int generation = 0; generation < depth && head < tail; generation++) {
+            for (int end = tail; head < end; head++) {
+                int i = file[head];
+                for (int e = adj.famsStart(i); e < adj.famsEnd(i); e++) {
+                    int f = adj.fams(e);
+                    if (f < 0 || fams.get(f)) continue;
+                    fams.set(f);
+                    if (adj.husb(f) >= 0) people.set(adj.husb(f));
+                    if (adj.wife(f) >= 0) people.set(adj.wife(f));
+                    for (int c = adj.childStart(f); c < adj.childEnd(f); c++) {
+                        int child = adj.child(c);
+                        if (child < 0 || enqueued.get(child)) continue;
+                        enqueued.set(child);
+                        people.set(child);
+                        if (tail == file.length) file = Arrays.copyOf(file, tail * 2);
+                        file[tail++] = child;
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Les individus marqués puis les familles marquées, dans l'ordre du graphe.
+     */
+    private static class Marked implements Iterator<Entity> {
+        private final Adjacency adj;
+        private final BitSet people;
+        private final BitSet fams;
+        private int person;
+        private int family;
+
+        Marked(Adjacency adj, BitSet people, BitSet fams) {
+            this.adj = adj;
+            this.people = people;
+            this.fams = fams;
+            this.person = people.nextSetBit(0);
+            this.family = fams.nextSetBit(0);
+        }
+
+        @Override
+        public boolean hasNext() {
+            return person >= 0 || family >= 0;
+        }
+
+        @Override
+        public Entity next() {
+            if (person >= 0) {
+                Entity ind = adj.individual(person);
+                person = people.nextSetBit(person + 1);
+                return ind;
+            }
+            if (family >= 0) {
+                Entity fam = adj.family(family);
+                family = fams.nextSetBit(family + 1);
+                return fam;
+            }
+            throw new NoSuchElementException();
+        }
+    }
+
+    /**
+     * @return Le nombre d'individus de la dernière extraction.
+     */
+    public int getIndividuals() {
+        return individuals;
+    }
+
+    /**
+     * @return Le nombre de familles de la dernière extraction.
+     */
+    public int getFamilies() {
+        return families;
+    }
+
+    /**
+     * @return Le nombre de lignes écrites par la dernière extraction.
+     */
+    public long getLines() {
+        return writer.getLines();
+    }
+
+    /**
+     * @return Le nombre d'octets écrits par la dernière extraction.
+     */
+    public long getBytes() {
+        return writer.getBytes();
+    }
+}
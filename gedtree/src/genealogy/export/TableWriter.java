@@ -0,0 +1,350 @@
+package genealogy.export;
+
+import java.io.BufferedOutputStream;
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+import java.util.regex.Pattern;
+
+import genealogy.graph.Entity;
+import genealogy.graph.Family;
+import genealogy.graph.Graph;
+import genealogy.graph.Individual;
+
+/**
+ * Exporte le graphe sous forme de tables pour les outils d'analyse :
+ * _ individuals : id, name, sex, birth_date, birth_place, death_date, death_place, famc,
+ * _ families : id, husb, wife, marr_date, marr_place,
+ * _ family_children : family, child, position (rang de l'enfant dans la famille).
+ * Chaque table est découpée en partitions écrites en parallèle, un fichier par partition
+ * (ex: individuals-00003.csv) ; les partitions d'un export précédent de ces tables sont supprimées
+ * avant l'écriture. Deux formats sont disponibles :
+ * _ CSV (UTF-8, avec en-tête, valeurs entre guillemets si nécessaire),
+ * _ COLUMNAR, un format binaire par colonnes décrit dans ColumnarSink.
+ */
+public class TableWriter {
+
+    /**
+     * Les formats de sortie disponibles.
+     */
+    public enum Format { CSV, COLUMNAR }
+
+    public static final String[] INDIVIDUAL_COLUMNS = {
+        "id", "name", "sex", "birth_date", "birth_place", "death_date", "death_place", "famc"
+    };
+    public static final String[] FAMILY_COLUMNS = { "id", "husb", "wife", "marr_date", "marr_place" };
+    public static final String[] CHILD_COLUMNS = { "family", "child", "position" };
+
+    /** * Nombre maximal de partitions par table (chacune garde un buffer et un fichier ouverts). */
+    public static final int MAX_PARTITIONS = 256;
+
+    /** * Nom d'un fichier de partition : table, numéro sur 5 chiffres, extension d'un des formats. */
+    private static final Pattern PARTITION = Pattern.compile("(individuals|families|family_children)-\\d{5}\\.(csv|col)");
+
+    /** * Taille du buffer d'écriture de chaque partition (512 Ko). */
+    private static final int BUFFER_SIZE = 1 << 19;
+
+    /** * Nombre maximal de lignes d'un groupe de lignes du format COLUMNAR. */
+    private static final int ROW_GROUP = 65536;
+
+    private final Format format;
+    private final int partitions;
+    private final AtomicLong rows = new AtomicLong();
+    private final AtomicLong bytes = new AtomicLong();
+
+    /**
+     * Constructeur.
+     * @param format Le format de sortie.
+     * @param partitions Le nombre de partitions par table (et de threads d'écriture), ramené à MAX_PARTITIONS au plus.
+     */
+    public TableWriter(Format format, int partitions) {
+        this.format = format;
+        this.partitions = Math.min(MAX_PARTITIONS, Math.max(1, partitions));
+    }
+
+    /**
+     * Écrit les trois tables dans un répertoire (créé s'il n'existe pas).
+     * @param graph Le graphe à exporter.
+     * @param directory Le répertoire de destination.
+     * @throws IOException En cas de problème d'écriture.
+     */
+    public void write(Graph graph, String directory) throws IOException {
+        Path dir = Paths.get(directory);
+        Files.createDirectories(dir);
+        deletePartitions(dir);
+        rows.set(0);
+        bytes.set(0);
+
+        List<Individual> individus = new ArrayList<>(graph.getIndividuals().values());
+        List<Family> familles = new ArrayList<>(graph.getFamilies().values());
+
+        ExecutorService pool = Executors.newFixedThreadPool(Math.min(partitions, Runtime.getRuntime().availableProcessors()));
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            submit(pool, futures, dir, "individuals", INDIVIDUAL_COLUMNS, individus, TableWriter::individualRow);
+            submit(pool, futures, dir, "families", FAMILY_COLUMNS, familles, TableWriter::familyRow);
+            submit(pool, futures, dir, "family_children", CHILD_COLUMNS, familles, TableWriter::childRows);
+            for (Future<?> future : futures) {
+                try {
+                    future.get();
+                } catch (ExecutionException e) {
+                    Throwable cause = e.getCause();
+                    if (cause instanceof UncheckedIOException) cause = cause.getCause();
+                    if (cause instanceof IOException) throw (IOException) cause;
+                    throw new IllegalStateException(cause);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new IOException("Export interrompu", e);
+                }
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    /**
+     * Supprime les partitions laissées par un export précédent dans le répertoire : avec moins de partitions
+     * ou dans l'autre format, elles seraient lues avec les nouvelles par un outil qui prend tout le répertoire.
+     */
+    private static void deletePartitions(Path dir) throws IOException {
+        List<Path> anciennes = new ArrayList<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(dir)) {
+            for (Path file : stream) {
+                if (PARTITION.matcher(file.getFileName().toString()).matches()) anciennes.add(file);
+            }
+        }
+        for (Path file : anciennes) {
+            Files.delete(file);
+        }
+    }
+
+    /**
+     * @return Le nombre de lignes écrites par le dernier export, toutes tables confondues.
+     */
+    public long getRows() {
+        return rows.get();
+    }
+
+    /**
+     * @return Le nombre d'octets écrits par le dernier export.
+     */
+    public long getBytes() {
+        return bytes.get();
+    }
+
+    /**
+     * Soumet une tâche par partition d'une table. La partition p couvre une tranche contiguë des entités.
+     */
+    private <E extends Entity> void submit(ExecutorService pool, List<Future<?>> futures, Path dir, String table,
+                                           String[] columns, List<E> entities, BiConsumer<E, Consumer<String[]>> rowsOf) {
+        int n = entities.size();
+        for (int p = 0; p < partitions; p++) {
+            int from = (int) ((long) n * p / partitions);
+            int to = (int) ((long) n * (p + 1) / partitions);
+            String extension = (format == Format.CSV) ? ".csv" : ".col";
+            Path file = dir.resolve(String.format("%s-%05d%s", table, p, extension));
+            futures.add(pool.submit(() -> {
+                try (Sink sink = (format == Format.CSV) ? new CsvSink(file, columns) : new ColumnarSink(file, columns)) {
+                    for (int i = from; i < to; i++) {
+                        rowsOf.accept(entities.get(i), sink::row);
+                    }
+                    rows.addAndGet(sink.rowCount);
+                }
+                bytes.addAndGet(Files.size(file));
+                return null;
+            }));
+        }
+    }
+
+    /**
+     * Ligne de la table individuals.
+     */
+    private static void individualRow(Individual ind, Consumer<String[]> out) {
+        out.accept(new String[] {
+            ind.getId(), value(ind.getTagValue("NAME")), value(ind.getTagValue("SEX")),
+            ind.getSubTagValue("BIRT", "DATE"), ind.getSubTagValue("BIRT", "PLAC"),
+            ind.getSubTagValue("DEAT", "DATE"), ind.getSubTagValue("DEAT", "PLAC"),
+            ind.getFamc()
+        });
+    }
+
+    /**
+     * Ligne de la table families.
+     */
+    private static void familyRow(Family fam, Consumer<String[]> out) {
+        out.accept(new String[] {
+            fam.getId(), fam.getHusb(), fam.getWife(),
+            fam.getSubTagValue("MARR", "DATE"), fam.getSubTagValue("MARR", "PLAC")
+        });
+    }
+
+    /**
+     * Lignes de la table family_children : une par enfant de la famille.
+     */
+    private static void childRows(Family fam, Consumer<String[]> out) {
+        List<String> enfants = fam.getChildren();
+        for (int i = 0; i < enfants.size(); i++) {
+            out.accept(new String[] { fam.getId(), enfants.get(i), Integer.toString(i + 1) });
+        }
+    }
+
+    /**
+     * getTagValue() renvoie "Unknown" pour un tag absent : on le remplace par une valeur vide (null).
+     */
+    private static String value(String tagValue) {
+        return "Unknown".equals(tagValue) ? null : tagValue;
+    }
+
+    /**
+     * Destination des lignes d'une partition.
+     */
+    private abstract static class Sink implements Closeable {
+        long rowCount;
+
+        abstract void row(String[] values);
+    }
+
+    /**
+     * Partition au format CSV : en-tête puis une ligne par enregistrement.
+     * Les valeurs contenant une virgule, un guillemet ou un retour à la ligne sont mises entre guillemets,
+     * une valeur absente est un champ vide.
+     */
+    private static class CsvSink extends Sink {
+        private final Writer out;
+
+        CsvSink(Path file, String[] columns) throws IOException {
+            out = new BufferedWriter(new OutputStreamWriter(Files.newOutputStream(file), StandardCharsets.UTF_8), BUFFER_SIZE);
+            out.write(String.join(",", columns));
+            out.write('\n');
+        }
+
+        @Override
+        void row(String[] values) {
+            try {
+                for (int i = 0; i < values.length; i++) {
+                    if (i > 0) out.write(',');
+                    if (values[i] != null) writeField(values[i]);
+                }
+                out.write('\n');
+                rowCount++;
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        private void writeField(String value) throws IOException {
+            boolean quote = false;
+            for (int i = 0; i < value.length() && !quote; i++) {
+                char c = value.charAt(i);
+                quote = (c == ',' || c == '"' || c == '\n' || c == '\r');
+            }
+            if (!quote) {
+                out.write(value);
+                return;
+            }
+            out.write('"');
+            out.write(value.replace("\"", "\"\""));
+            out.write('"');
+        }
+
+        @Override
+        public void close() throws IOException {
+            out.close();
+        }
+    }
+
+    /**
+     * Partition au format binaire par colonnes (entiers en big-endian) :
+     * <pre>
+     * fichier     := "GEDCOL01" | int nbColonnes | nbColonnes x nom (UTF modifié) | groupe* | int 0
+     * groupe      := int nbLignes | nbColonnes x colonne
+     * colonne     := octets nuls[(nbLignes + 7) / 8] | int fins[nbLignes] | octets UTF-8
+     * </pre>
+     * Dans une colonne, les valeurs sont mises bout à bout : fins[i] est la position de fin
+     * de la valeur i, et le bit i des octets nuls vaut 1 si la valeur est absente.
+     * Un groupe compte au plus ROW_GROUP lignes, ce qui borne la mémoire de chaque partition.
+     */
+    private static class ColumnarSink extends Sink {
+        private static final byte[] MAGIC = "GEDCOL01".getBytes(StandardCharsets.US_ASCII);
+
+        private final DataOutputStream out;
+        private final String[][] group;
+        private int size;
+
+        ColumnarSink(Path file, String[] columns) throws IOException {
+            out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(file), BUFFER_SIZE));
+            out.write(MAGIC);
+            out.writeInt(columns.length);
+            for (String column : columns) out.writeUTF(column);
+            group = new String[columns.length][ROW_GROUP];
+        }
+
+        @Override
+        void row(String[] values) {
+            for (int c = 0; c < group.length; c++) {
+                group[c][size] = values[c];
+            }
+            size++;
+            rowCount++;
+            if (size == ROW_GROUP) {
+                try {
+                    flushGroup();
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }
+        }
+
+        private void flushGroup() throws IOException {
+            if (size == 0) return;
+            out.writeInt(size);
+            for (String[] column : group) {
+                byte[] nulls = new byte[(size + 7) / 8];
+                byte[][] encoded = new byte[size][];
+                for (int i = 0; i < size; i++) {
+                    if (column[i] == null) nulls[i >> 3] |= (byte) (1 << (i & 7));
+                    else encoded[i] = column[i].getBytes(StandardCharsets.UTF_8);
+                }
+                out.write(nulls);
+                int end = 0;
+                for (int i = 0; i < size; i++) {
+                    if (encoded[i] != null) end += encoded[i].length;
+                    out.writeInt(end);
+                }
+                for (int i = 0; i < size; i++) {
+                    if (encoded[i] != null) out.write(encoded[i]);
+                    column[i] = null;
+                }
+            }
+            size = 0;
+        }
+
+        @Override
+        public void close() throws IOException {
+            try {
+                flushGroup();
+                out.writeInt(0);
+            } finally {
+                out.close();
+            }
+        }
+    }
+}
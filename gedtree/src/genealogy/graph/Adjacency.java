@@ -0,0 +1,312 @@
+package genealogy.graph;
+
+import java.util.Arrays;
+
+/**
+ * Index des liens du graphe, précalculé une fois par version du graphe.
+ * Les entités sont désignées par leur numéro (voir Numbering) : chaque lien (FAMC, FAMS, HUSB, WIFE, CHIL)
+ * est résolu une seule fois en numéro, et la navigation (parents, conjoints, enfants, frères et soeurs) se fait
+ * ensuite dans des tableaux, sans recherche dans les tables du graphe. Les listes (familles de chaque individu,
+ * enfants de chaque famille) sont des tranches de tableaux d'entiers (format CSR) dans le même ordre que les
+ * listes d'IDs des entités. L'index ne garde que des entiers : les entités sont lues dans la numérotation.
+ * Un ID référencé mais absent du graphe est noté MISSING, ce qui permet à la validation de le signaler.
+ */
+public class Adjacency {
+
+    /** * Pas de lien (ex: individu sans famille parentale). */
+    public static final int NONE = -1;
+
+    /** * Lien vers un ID absent du graphe. */
+    public static final int MISSING = -2;
+
+    /** * Numérotation des entités du graphe : le numéro sert d'identifiant entier. */
+    private final Numbering entities;
+
+    /** * Famille parentale de chaque individu (indice, NONE ou MISSING). */
+    private final int[] famc;
+
+    /** * Familles où chaque individu est parent : fams[famsStart[i]..famsStart[i+1]-1]. */
+    private final int[] famsStart;
+    private final int[] fams;
+
+    /** * Mari et femme de chaque famille (indice, NONE ou MISSING). */
+    private final int[] husb;
+    private final int[] wife;
+
+    /** * Enfants de chaque famille : children[childStart[f]..childStart[f+1]-1]. */
+    private final int[] childStart;
+    private final int[] children;
+
+    /** * Version du graphe au moment de la construction. */
+    private final long version;
+
+    /**
+     * Résout tous les liens du graphe, dans sa numérotation.
+     * @param graph Le graphe.
+     */
+    public Adjacency(Graph graph) {
+        this.version = graph.getVersion();
+        this.entities = graph.getNumbering();
+        int people = entities.getIndividualCount();
+        int families = entities.getFamilyCount();
+
+        // Liens des individus
+        famc = new int[people];
+        famsStart = new int[people + 1];
+        int[] liens = new int[Math.max(16, people)];
+        for (int i = 0; i < people; i++) {
+            famc[i] = entities.famc(i);
+            int[] familles = entities.fams(i);
+            liens = append(liens, famsStart[i], familles);
+            famsStart[i + 1] = famsStart[i] + familles.length;
+        }
+        fams = Arrays.copyOf(liens, famsStart[people]);
+
+        // Liens des familles
+        husb = new int[families];
+        wife = new int[families];
+        childStart = new int[families + 1];
+        liens = new int[Math.max(16, families * 2)];
+        for (int f = 0; f < families; f++) {
+            husb[f] = entities.husb(f);
+            wife[f] = entities.wife(f);
+            int[] enfants = entities.children(f);
+            liens = append(liens, childStart[f], enfants);
+            childStart[f + 1] = childStart[f] + enfants.length;
+        }
+        children = Arrays.copyOf(liens, childStart[families]);
+    }
+
+    /**
+     * Copie des numéros à la position at d'un tableau, agrandi si besoin.
+     */
+    private static int[] append(int[] array, int at, int[] values) {
+        if (at + values.length > array.length) array = Arrays.copyOf(array, Math.max(array.length * 2, at + values.length));
+        System.arraycopy(values, 0, array, at, values.length);
+        return array;
+    }
+
+    /**
+     * @return La version du graphe pour laquelle l'index a été construit.
+     */
+    public long getVersion() {
+        return version;
+    }
+
+    /**
+     * @return Le nombre d'individus indexés (les indices vont de 0 à ce nombre - 1).
+     */
+    public int getIndividualCount() {
+        return famc.length;
+    }
+
+    /**
+     * @return Le nombre de familles indexées.
+     */
+    public int getFamilyCount() {
+        return husb.length;
+    }
+
+    /**
+     * @param id L'identifiant d'un individu.
+     * @return Son indice, ou NONE s'il est inconnu.
+     */
+    public int indexOf(String id) {
+        return entities.indexOf(id);
+    }
+
+    /**
+     * @param id L'identifiant d'une famille.
+     * @return Son indice, ou NONE si elle est inconnue.
+     */
+    public int familyIndexOf(String id) {
+        return entities.familyIndexOf(id);
+    }
+
+    /**
+     * @param ind Un individu du graphe.
+     * @return Son indice (lu dans l'individu, sans recherche par ID), ou NONE s'il n'est pas dans le graphe.
+     */
+    public int indexOf(Individual ind) {
+        return entities.indexOf(ind);
+    }
+
+    /**
+     * @param fam Une famille du graphe.
+     * @return Son indice, ou NONE si elle n'est pas dans le graphe.
+     */
+    public int indexOf(Family fam) {
+        return entities.indexOf(fam);
+    }
+
+    public Individual individual(int i) {
+        return entities.individual(i);
+    }
+
+    public Family family(int f) {
+        return entities.family(f);
+    }
+
+    /**
+     * @return La famille parentale de l'individu i (indice, NONE ou MISSING).
+     */
+    public int famc(int i) {
+        return famc[i];
+    }
+
+    public int famsStart(int i) {
+        return famsStart[i];
+    }
+
+    public int famsEnd(int i) {
+        return famsStart[i + 1];
+    }
+
+    /**
+     * @return La famille à la position e du tableau des familles (entre famsStart et famsEnd d'un individu).
+     */
+    public int fams(int e) {
+        return fams[e];
+    }
+
+    public int husb(int f) {
+        return husb[f];
+    }
+
+    public int wife(int f) {
+        return wife[f];
+    }
+
+    public int childStart(int f) {
+        return childStart[f];
+    }
+
+    public int childEnd(int f) {
+        return childStart[f + 1];
+    }
+
+    /**
+     * @return L'enfant à la position e du tableau des enfants (entre childStart et childEnd d'une famille).
+     */
+    public int child(int e) {
+        return children[e];
+    }
+
+    /**
+     * Indique si une famille liste un individu parmi ses enfants.
+     * @param f L'indice de la famille.
+     * @param i L'indice de l'individu.
+     * @return true si i est un enfant de f.
+     */
+    public boolean isChild(int f, int i) {
+        for (int e = childStart[f]; e < childStart[f + 1]; e++) {
+            if (children[e] == i) return true;
+        }
+        return false;
+    }
+
+    /**
+     * @param ind Un individu du graphe.
+     * @return Sa famille parentale, ou null si elle est inconnue.
+     */
+    public Family getParentFamily(Individual ind) {
+        int i = indexOf(ind);
+        return (i < 0 || famc[i] < 0) ? null : family(famc[i]);
+    }
+
+    /**
+     * @param fam Une famille du graphe.
+     * @return Le mari, ou null s'il est inconnu.
+     */
+    public Individual getHusband(Family fam) {
+        int f = indexOf(fam);
+        return (f < 0 || husb[f] < 0) ? null : individual(husb[f]);
+    }
+
+    /**
+     * @param fam Une famille du graphe.
+     * @return La femme, ou null si elle est inconnue.
+     */
+    public Individual getWife(Family fam) {
+        int f = indexOf(fam);
+        return (f < 0 || wife[f] < 0) ? null : individual(wife[f]);
+    }
+
+    /**
+     * @param ind Un individu du graphe.
+     * @return Ses familles (FAMS) présentes dans le graphe, dans l'ordre du fichier.
+     */
+    public Family[] getFamilies(Individual ind) {
+        int i = indexOf(ind);
+        if (i < 0) return new Family[0];
+        Family[] result = new Family[famsStart[i + 1] - famsStart[i]];
+        int n = 0;
+        for (int e = famsStart[i]; e < famsStart[i + 1]; e++) {
+            if (fams[e] >= 0) result[n++] = family(fams[e]);
+        }
+        return Arrays.copyOf(result, n);
+    }
+
+    /**
+     * @param ind Un individu du graphe.
+     * @param fam Une de ses familles.
+     * @return L'autre parent de la famille, ou null s'il est inconnu.
+     */
+    public Individual getSpouse(Individual ind, Family fam) {
+        int f = indexOf(fam);
+        if (f < 0) return null;
+        int other = (husb[f] >= 0 && husb[f] == indexOf(ind)) ? wife[f] : husb[f];
+        return (other < 0) ? null : individual(other);
+    }
+
+    /**
+     * @param fam Une famille du graphe.
+     * @return Ses enfants présents dans le graphe, dans l'ordre du fichier.
+     */
+    public Individual[] getChildren(Family fam) {
+        int f = indexOf(fam);
+        return (f < 0) ? new Individual[0] : collect(childStart[f], childStart[f + 1], NONE);
+    }
+
+    /**
+     * @param ind Un individu du graphe.
+     * @return Ses enfants, toutes familles confondues.
+     */
+    public Individual[] getChildren(Individual ind) {
+        int i = indexOf(ind);
+        if (i < 0) return new Individual[0];
+        int count = 0;
+        for (int e = famsStart[i]; e < famsStart[i + 1]; e++) {
+            if (fams[e] >= 0) count += childStart[fams[e] + 1] - childStart[fams[e]];
+        }
+        Individual[] result = new Individual[count];
+        int n = 0;
+        for (int e = famsStart[i]; e < famsStart[i + 1]; e++) {
+            int f = fams[e];
+            if (f < 0) continue;
+            for (int c = childStart[f]; c < childStart[f + 1]; c++) {
+                if (children[c] >= 0) result[n++] = individual(children[c]);
+            }
+        }
+        return Arrays.copyOf(result, n);
+    }
+
+    /**
+     * @param ind Un individu du graphe.
+     * @return Les autres enfants de sa famille parentale.
+     */
+    public Individual[] getSiblings(Individual ind) {
+        int i = indexOf(ind);
+        if (i < 0 || famc[i] < 0) return new Individual[0];
+        return collect(childStart[famc[i]], childStart[famc[i] + 1], i);
+    }
+
+    private Individual[] collect(int from, int to, int except) {
+        Individual[] result = new Individual[to - from];
+        int n = 0;
+        for (int e = from; e < to; e++) {
+            if (children[e] >= 0 && children[e] != except) result[n++] = individual(children[e]);
+        }
+        return Arrays.copyOf(result, n);
+    }
+}
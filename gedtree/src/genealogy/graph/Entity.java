@@ -1,12 +1,19 @@
 package genealogy.graph;
 
+import java.io.PrintStream;
 import java.io.Serializable;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
 import genealogy.interfaces.Identifiable;
 import genealogy.interfaces.Displayable;
+import genealogy.interfaces.Value;
 import genealogy.tags.Tag;
+import genealogy.tags.CompositeTag;
+import genealogy.parsing.RawRecord;
+import genealogy.exceptions.GenealogyErr;
 import genealogy.exceptions.exceptfile.DupTagErr;
+import genealogy.exceptions.exceptfile.RecordErr;
 
 /**
  * Classe abstraite représentant une entité GEDCOM.
@@ -25,6 +32,16 @@ public abstract class Entity implements Identifiable, Displayable, Serializable
      */
     protected List<Tag> properties; 
 
+    /** * Enregistrement brut pas encore décodé (mode de chargement paresseux).
+     * Vaut null si tous les tags de l'entité sont déjà construits.
+     */
+    private volatile RawRecord pending;
+
+    /** * Numéro de l'entité dans la dernière numérotation de son graphe (voir GraphNumbering).
+     * Il n'est valable que si la numérotation range bien cette entité à ce numéro.
+     */
+    transient int slot;
+
     /**
      * Constructeur de base.
      * Initialise l'identifiant et crée une liste vide pour les propriétés.
@@ -68,6 +85,68 @@ public abstract class Entity implements Identifiable, Displayable, Serializable
         this.properties.add(tag);
     }
 
+    /**
+     * Associe à l'entité son enregistrement brut, décodé au premier accès.
+     * En mode paresseux, seuls les tags NAME et SEX sont construits au chargement.
+     * @param record L'enregistrement brut de l'entité.
+     */
+    public void setPending(RawRecord record) {
+        this.pending = record;
+    }
+
+    /**
+     * Indique si l'arbre de tags de l'entité reste à décoder.
+     * @return true si l'entité a encore un enregistrement brut en attente.
+     */
+    public boolean isPending() {
+        return pending != null;
+    }
+
+    /**
+     * Décode l'enregistrement brut en attente s'il y en a un.
+     * Les tags construits au chargement sont remplacés par l'arbre complet, dans l'ordre du fichier.
+     * L'arbre est construit à part puis publié d'un coup, pour que les lectures concurrentes
+     * de NAME ou SEX ne voient jamais une liste à moitié remplie.
+     * Les tags dupliqués sont déjà signalés par le chargement paresseux : une erreur découverte
+     * à ce moment, qui ne devrait donc plus se produire, est remontée sous forme de RecordErr.
+     * L'enregistrement brut est gardé : chaque accès suivant signale la même erreur au lieu
+     * de rendre une entité réduite à NAME et SEX.
+     */
+    protected void materialize() {
+        if (pending == null) return;
+        synchronized (this) {
+            if (pending == null) return;
+            Entity scratch = (this instanceof Individual) ? new Individual(id) : new Family(id);
+            try {
+                pending.materialize(scratch);
+            } catch (GenealogyErr e) {
+                throw Entity.<RuntimeException>undeclared(new RecordErr(id, e));
+            }
+            this.properties = scratch.properties;
+            // Écriture volatile après la publication : qui voit pending à null voit aussi l'arbre complet.
+            pending = null;
+        }
+    }
+
+    /**
+     * Lève une GenealogyErr sans la déclarer : display(), getTagValue()... sont appelés partout, jusque
+     * dans des lambdas, et ne déclarent pas d'exception. La console l'attrape comme toute GenealogyErr.
+     * Les entités en lecture seule s'en servent aussi pour refuser une modification.
+     */
+    @SuppressWarnings("unchecked")
+    protected static <E extends Exception> E undeclared(GenealogyErr e) throws E {
+        throw (E) e;
+    }
+
+    /**
+     * Retourne la liste ordonnée des tags de l'entité (décode l'enregistrement brut si besoin).
+     * @return La liste des tags de niveau 1, dans l'ordre du fichier.
+     */
+    public List<Tag> getProperties() {
+        materialize();
+        return properties;
+    }
+
     /**
      * Méthode pour récupérer la valeur textuelle d'un tag simple (ex: "NAME", "SEX").
      * Parcourt la liste des propriétés pour trouver le premier tag correspondant.
@@ -75,6 +154,10 @@ public abstract class Entity implements Identifiable, Displayable, Serializable
      * @return La valeur du tag si trouvé, sinon la chaîne "Unknown".
      */
     public String getTagValue(String tagName) {
+        // NAME et SEX sont toujours décodés au chargement, inutile de matérialiser pour eux.
+        if (pending != null && !tagName.equals("NAME") && !tagName.equals("SEX")) {
+            materialize();
+        }
         for (Tag t : properties) {
             if (t.getName().equals(tagName)) {
                 // On utilise getValueOrNull() défini dans Tag et surchargé dans SimpleTag
@@ -88,16 +171,84 @@ public abstract class Entity implements Identifiable, Displayable, Serializable
     }
 
     /**
-     * Affiche l'entité sur la sortie.
+     * Récupère la valeur d'un sous-tag d'un tag composite (ex: la DATE de BIRT).
+     * @param tagName Le nom du tag composite de niveau 1 (ex: "BIRT").
+     * @param subTagName Le nom du sous-tag recherché (ex: "DATE").
+     * @return La valeur du premier sous-tag correspondant, ou null s'il n'existe pas.
+     */
+    public String getSubTagValue(String tagName, String subTagName) {
+        materialize();
+        for (Tag t : properties) {
+            if (t.getName().equals(tagName) && t instanceof CompositeTag) {
+                for (Tag child : ((CompositeTag) t).getChildren()) {
+                    if (child.getName().equals(subTagName) && child.getValueOrNull() != null) {
+                        return child.getValueOrNull();
+                    }
+                }
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Renomme les identifiants de l'entité selon la table donnée : son propre ID
+     * et les références vers une entité renommée, c'est-à-dire les liens (FAMC, FAMS, HUSB, WIFE, CHIL)
+     * et les valeurs de la forme @ID@. Un texte libre (NOTE, NAME...) égal à un ID n'est pas modifié.
+     * L'entité ne doit pas être rangée dans un graphe pendant le renommage.
+     * @param ids Table ancien ID -> nouvel ID.
+     */
+    public void remapIds(Map<String, String> ids) {
+        String newId = ids.get(id);
+        if (newId != null) this.id = newId;
+        remapTags(getProperties(), ids);
+    }
+
+    /**
+     * Parcourt récursivement les tags pour remplacer les références renommées.
+     */
+    private static void remapTags(List<Tag> tags, Map<String, String> ids) {
+        for (Tag t : tags) {
+            if (t instanceof Value && isPointer(t)) {
+                Value v = (Value) t;
+                String newRef = (v.getValue() == null) ? null : ids.get(v.getValue());
+                if (newRef != null) v.setValue(newRef);
+            }
+            if (t instanceof CompositeTag) {
+                remapTags(((CompositeTag) t).getChildren(), ids);
+            }
+        }
+    }
+
+    /**
+     * Indique si la valeur d'un tag désigne une autre entité : tag de lien, ou valeur de la forme @ID@.
+     */
+    private static boolean isPointer(Tag tag) {
+        switch (tag.getName()) {
+            case "FAMC":
+            case "FAMS":
+            case "HUSB":
+            case "WIFE":
+            case "CHIL":
+                return true;
+            default:
+                String value = ((Value) tag).getValue();
+                return value != null && value.length() > 2 && value.startsWith("@") && value.endsWith("@");
+        }
+    }
+
+    /**
+     * Affiche l'entité sur le flux donné.
      * Affiche d'abord l'ID, puis demande récursivement à chaque propriété de s'afficher.
+     * @param out Le flux de sortie.
      * @param indentation Le niveau d'indentation actuel (pour l'affichage hiérarchique).
      */
     @Override
-    public void display(int indentation) {
-        System.out.println("ID: " + id);
+    public void display(PrintStream out, int indentation) {
+        materialize();
+        out.println("ID: " + id);
         // Délégation de l'affichage à chaque tag enfant
         for (Tag t : properties) {
-            t.display(indentation + 1);
+            t.display(out, indentation + 1);
         }
     }
 }
\ No newline at end of file
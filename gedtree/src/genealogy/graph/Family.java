@@ -2,6 +2,7 @@ package genealogy.graph;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
 
 /**
  * Représente une famille.
@@ -83,4 +84,16 @@ public class Family extends Entity {
     public List<String> getChildren() { 
         return childrenIds; 
     }
-}
\ No newline at end of file
+
+    /**
+     * Renomme la famille et ses liens HUSB / WIFE / CHIL selon la table donnée.
+     * @param ids Table ancien ID -> nouvel ID.
+     */
+    @Override
+    public void remapIds(Map<String, String> ids) {
+        super.remapIds(ids);
+        if (husbId != null) husbId = ids.getOrDefault(husbId, husbId);
+        if (wifeId != null) wifeId = ids.getOrDefault(wifeId, wifeId);
+        childrenIds.replaceAll(child -> ids.getOrDefault(child, child));
+    }
+}
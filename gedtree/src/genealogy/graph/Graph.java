@@ -1,9 +1,17 @@
 package genealogy.graph;
 
 import java.io.Serializable;
-import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import genealogy.perf.CycleCheckEvent;
+import genealogy.perf.Perf;
+import genealogy.perf.Phase;
+import genealogy.perf.ValidationEvent;
+import genealogy.progress.ProgressTracker;
 import genealogy.exceptions.exceptfile.DuplicationErr;
+import genealogy.exceptions.exceptfile.LoadCancelledErr;
 import genealogy.exceptions.exceptfile.MissingEntityErr;
 import genealogy.exceptions.exceptgraph.GenderErr;
 import genealogy.exceptions.exceptgraph.CycleErr;
@@ -28,13 +36,40 @@ public class Graph implements Serializable {
      */
     private Map<String, Family> families;
 
+    /** * Compteur commun à tous les graphes : deux graphes n'ont jamais la même version,
+     * un cache calculé sur un graphe remplacé par un autre est donc toujours invalidé.
+     */
+    private static final AtomicLong VERSIONS = new AtomicLong();
+
+    /** * Numéro de version, changé à chaque modification du graphe.
+     * Permet aux caches de résultats de savoir s'ils sont encore valides.
+     */
+    private transient long version;
+
+    /** * Index des liens, calculé à la demande pour une version du graphe (jamais sérialisé). */
+    private transient volatile Adjacency adjacency;
+
     /**
      * Constructeur par défaut.
-     * Initialise les structures de données (HashMap) pour stocker les entités.
+     * Initialise les structures de données (LinkedHashMap) pour stocker les entités.
+     * L'ordre d'insertion est conservé, ce qui permet de réécrire le fichier dans son ordre d'origine.
      */
     public Graph() {
-        this.individuals = new HashMap<>();
-        this.families = new HashMap<>();
+        this.individuals = new LinkedHashMap<>();
+        this.families = new LinkedHashMap<>();
+        this.version = VERSIONS.incrementAndGet();
+    }
+
+    /**
+     * Construit un graphe sur des tables déjà remplies (ex: vues sur un stockage hors tas).
+     * Les tables doivent conserver l'ordre du fichier ; si elles sont en lecture seule, le graphe l'est aussi.
+     * @param individuals Les individus, par ID.
+     * @param families Les familles, par ID.
+     */
+    public Graph(Map<String, Individual> individuals, Map<String, Family> families) {
+        this.individuals = individuals;
+        this.families = families;
+        this.version = VERSIONS.incrementAndGet();
     }
 
     /**
@@ -48,6 +83,7 @@ public class Graph implements Serializable {
             throw new DuplicationErr(ind.getId());
         }
         individuals.put(ind.getId(), ind);
+        version = VERSIONS.incrementAndGet();
     }
 
     /**
@@ -61,6 +97,33 @@ public class Graph implements Serializable {
             throw new DuplicationErr(fam.getId());
         }
         families.put(fam.getId(), fam);
+        version = VERSIONS.incrementAndGet();
+    }
+
+    /**
+     * Ajoute en bloc tous les individus et familles d'un autre graphe.
+     * Les identifiants sont vérifiés avant toute insertion : en cas de doublon, le graphe n'est pas modifié.
+     * @param other Le graphe à verser dans celui-ci.
+     * @throws DuplicationErr Si un identifiant de l'autre graphe existe déjà dans celui-ci.
+     */
+    public void addAll(Graph other) throws DuplicationErr {
+        for (String id : other.individuals.keySet()) {
+            if (individuals.containsKey(id)) throw new DuplicationErr(id);
+        }
+        for (String id : other.families.keySet()) {
+            if (families.containsKey(id)) throw new DuplicationErr(id);
+        }
+        individuals.putAll(other.individuals);
+        families.putAll(other.families);
+        version = VERSIONS.incrementAndGet();
+    }
+
+    /**
+     * Retourne le numéro de version du graphe, qui change à chaque ajout ou modification.
+     * @return La version courante.
+     */
+    public long getVersion() {
+        return version;
     }
 
     /**
@@ -90,6 +153,14 @@ public class Graph implements Serializable {
         return individuals; 
     }
 
+    /**
+     * Retourne la map complète des familles.
+     * @return La Map contenant toutes les familles.
+     */
+    public Map<String, Family> getFamilies() { 
+        return families; 
+    }
+
     /**
      * Vérifie la cohérence du graphe.
      * Effectue les vérifications suivantes :
@@ -103,117 +174,216 @@ public class Graph implements Serializable {
      * @throws CycleErr Si un cycle est détecté.
      */
     public void validate() throws MissingEntityErr, GenderErr, MissingLinkErr, CycleErr {
+        try {
+            validate(ProgressTracker.none());
+        } catch (LoadCancelledErr e) {
+            // Impossible : un suivi sans jeton d'annulation ne lève jamais cette exception
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Valide le graphe en publiant l'avancement de chaque phase (entités vérifiées).
+     * La validation ne modifie pas le graphe : une annulation le laisse tel quel.
+     * @param progress Le suivi du chargement.
+     * @throws LoadCancelledErr Si l'annulation a été demandée.
+     * @see #validate()
+     */
+    public void validate(ProgressTracker progress) throws MissingEntityErr, GenderErr, MissingLinkErr, CycleErr, LoadCancelledErr {
         
+        // Tous les liens sont résolus une fois en indices ; les vérifications se font ensuite sur des tableaux
+        Adjacency adj = getAdjacency();
+
+        // Détection de Cycle, dans sa propre phase pour pouvoir la mesurer à part
+        // On cherche le premier individu dont les ancêtres forment un cycle. L'erreur est levée en arrivant à cet
+        // individu ci-dessous, après ses vérifications de liens : les erreurs restent signalées dans l'ordre des individus.
+        CycleCheckEvent cycleEvent = new CycleCheckEvent();
+        cycleEvent.begin();
+        progress.phase("validation.cycles", "entités", individuals.size());
+        int cycle;
+        try (Phase phase = Perf.start("validate.cycles")) {
+            phase.setItems(adj.getIndividualCount());
+            cycle = findCycle(adj, progress, cycleEvent);
+            cycleEvent.cycleFound = cycle >= 0;
+        } finally {
+            cycleEvent.commit();
+        }
+
         // Vérifications centrées sur les individus
-        for (Individual ind : individuals.values()) {
+        ValidationEvent event = new ValidationEvent();
+        event.phase = "individuals";
+        progress.phase("validation.individus", "entités", individuals.size());
+        event.begin();
+        try (Phase phase = Perf.start("validate.individuals")) {
+            phase.setItems(adj.getIndividualCount());
+            for (int i = 0; i < adj.getIndividualCount(); i++) {
+                if ((event.entities % ProgressTracker.STRIDE) == 0) progress.update(event.entities);
+                else progress.checkCancelled();
+                Individual ind = adj.individual(i);
             
-            // Vérification de la famille parentale (FAMC)
-            if (ind.getFamc() != null) {
-                Family fam = families.get(ind.getFamc());
+                // Vérification de la famille parentale (FAMC)
+                int f = adj.famc(i);
                 
                 // Si la famille n'existe pas dans le graphe -> Erreur
-                if (fam == null) {
+                if (f == Adjacency.MISSING) {
                     throw new MissingEntityErr(ind.getId(), "Famille parentale " + ind.getFamc());
                 }
                 
                 // Vérification de la symétrie du lien Enfant -> Famille
-                if (!fam.getChildren().contains(ind.getId())) {
+                if (f >= 0 && !adj.isChild(f, i)) {
+                    Family fam = adj.family(f);
                     throw new MissingLinkErr(ind.getId(), fam.getId(), "Enfant -> Famille (L'enfant référence la famille, mais la famille ne le liste pas)");
                 }
-            }
 
-            // Détection de Cycle
-            // On vérifie qu'aucun ancêtre de cet individu n'est l'individu lui-même.
-            if (hasCycle(ind, new java.util.HashSet<>())) {
-                throw new CycleErr(ind.getId());
+                // Cycle dans les ancêtres de cet individu
+                if (i == cycle) {
+                    throw new CycleErr(ind.getId());
+                }
+                event.entities++;
             }
+        } finally {
+            event.commit();
         }
 
         // Vérifications centrées sur les FAMILLES
-        for (Family fam : families.values()) {
+        event = new ValidationEvent();
+        event.phase = "families";
+        progress.phase("validation.familles", "entités", families.size());
+        event.begin();
+        try (Phase phase = Perf.start("validate.families")) {
+            phase.setItems(adj.getFamilyCount());
+            for (int f = 0; f < adj.getFamilyCount(); f++) {
+                if ((event.entities % ProgressTracker.STRIDE) == 0) progress.update(event.entities);
+                else progress.checkCancelled();
+                event.entities++;
+                Family fam = adj.family(f);
             
-            // Vérification du Mari (HUSB)
-            if (fam.getHusb() != null) {
-                Individual mari = individuals.get(fam.getHusb());
-                if (mari != null) {
-                    String sexe = mari.getTagValue("SEX");
+                // Vérification du Mari (HUSB)
+                int mari = adj.husb(f);
+                if (mari >= 0) {
+                    String sexe = adj.individual(mari).getTagValue("SEX");
                     if (sexe != null && !sexe.isEmpty() && !sexe.equals("M")) {
-                        throw new GenderErr(mari.getId(), "HUSB (Mari)");
+                        throw new GenderErr(fam.getHusb(), "HUSB (Mari)");
                     }
-                } else {
-                     // Si le mari est référencé mais n'existe pas
-                     throw new MissingEntityErr(fam.getHusb(), "Mari de la famille " + fam.getId());
+                } else if (mari == Adjacency.MISSING) {
+                    // Si le mari est référencé mais n'existe pas
+                    throw new MissingEntityErr(fam.getHusb(), "Mari de la famille " + fam.getId());
                 }
-            }
 
-            // Vérification de la Femme (WIFE)
-            if (fam.getWife() != null) {
-                Individual femme = individuals.get(fam.getWife());
-                if (femme != null) {
-                    String sexe = femme.getTagValue("SEX");
+                // Vérification de la Femme (WIFE)
+                int femme = adj.wife(f);
+                if (femme >= 0) {
+                    String sexe = adj.individual(femme).getTagValue("SEX");
                     if (sexe != null && !sexe.isEmpty() && !sexe.equals("F")) {
-                        throw new GenderErr(femme.getId(), "WIFE (Femme)");
+                        throw new GenderErr(fam.getWife(), "WIFE (Femme)");
                     }
-                } else {
+                } else if (femme == Adjacency.MISSING) {
                     // Si la femme est référencée mais n'existe pas
                     throw new MissingEntityErr(fam.getWife(), "Femme de la famille " + fam.getId());
                 }
-            }
             
-            // Vérification de la symétrie Famille -> Enfant
-            for (String childId : fam.getChildren()) {
-                Individual child = individuals.get(childId);
-                if (child == null) {
-                    throw new MissingEntityErr(childId, "Enfant listé dans la famille " + fam.getId());
-                }
+                // Vérification de la symétrie Famille -> Enfant
+                List<String> enfants = fam.getChildren();
+                for (int e = adj.childStart(f); e < adj.childEnd(f); e++) {
+                    int child = adj.child(e);
+                    String childId = enfants.get(e - adj.childStart(f));
+                    if (child == Adjacency.MISSING) {
+                        throw new MissingEntityErr(childId, "Enfant listé dans la famille " + fam.getId());
+                    }
                 
-                // Si l'enfant ne connait pas sa famille ou pointe vers une autre
-                if (child.getFamc() == null || !child.getFamc().equals(fam.getId())) {
-                     throw new MissingLinkErr(fam.getId(), childId, "Famille -> Enfant (La famille liste l'enfant, mais l'enfant ne référence pas cette famille)");
+                    // Si l'enfant ne connait pas sa famille ou pointe vers une autre
+                    if (adj.famc(child) != f) {
+                         throw new MissingLinkErr(fam.getId(), childId, "Famille -> Enfant (La famille liste l'enfant, mais l'enfant ne référence pas cette famille)");
+                    }
                 }
             }
+        } finally {
+            event.commit();
         }
     }
 
     /**
-     * Méthode récursive pour détecter les cycles.
-     * @param current L'individu en cours d'analyse.
-     * @param visited La liste des IDs déjà visités dans cette branche de récursion.
-     * @return true si un cycle est détecté.
+     * Numérotation des entités, sur laquelle sont construits les index du graphe.
+     * Un graphe en mémoire numérote ses entités dans son ordre : les numéros ne changent pas tant que
+     * le graphe ne change pas. Un graphe lu dans un stockage les numérote aussi dans son ordre (celui du fichier).
+     * @return La numérotation de la version courante.
      */
-    private boolean hasCycle(Individual current, java.util.Set<String> visited) {
-        // Si on retombe sur un ID déjà visité dans la branche courante, c'est un cycle.
-        if (visited.contains(current.getId())) {
-            return true;
-        }
-
-        // Si l'individu n'a pas de parents connus, la branche s'arrête (pas de cycle ici).
-        if (current.getFamc() == null) {
-            return false;
-        }
-
-        Family fam = families.get(current.getFamc());
-        if (fam == null) return false; // Géré par MissingEntityErr ailleurs
-
-        // On ajoute l'individu courant aux visités pour la suite de l'exploration
-        visited.add(current.getId());
+    public Numbering getNumbering() {
+        return new GraphNumbering(this);
+    }
 
-        // On remonte vers le père
-        if (fam.getHusb() != null) {
-            Individual father = individuals.get(fam.getHusb());
-            if (father != null && hasCycle(father, new java.util.HashSet<>(visited))) {
-                return true;
+    /**
+     * Index des liens du graphe, reconstruit s'il a changé depuis le dernier calcul.
+     * @return L'index des parents, conjoints et enfants de chaque individu.
+     */
+    public Adjacency getAdjacency() {
+        Adjacency adj = adjacency;
+        if (adj == null || adj.getVersion() != version) {
+            try (Phase phase = Perf.start("adjacency")) {
+                phase.setItems(individuals.size() + families.size());
+                adj = new Adjacency(this);
             }
+            adjacency = adj;
         }
+        return adj;
+    }
+
+    /**
+     * Index des liens s'il a déjà été construit pour la version courante (par la validation), sans le construire.
+     * Un graphe lu dans un stockage (OFFHEAP, INDEXED) n'en garde jamais : ses commandes lisent les liens dans le stockage.
+     * @return L'index, ou null.
+     */
+    public Adjacency peekAdjacency() {
+        Adjacency adj = adjacency;
+        return (adj != null && adj.getVersion() == version) ? adj : null;
+    }
 
-        // On remonte vers la mère
-        if (fam.getWife() != null) {
-            Individual mother = individuals.get(fam.getWife());
-            if (mother != null && hasCycle(mother, new java.util.HashSet<>(visited))) {
-                return true;
+    /**
+     * Cherche un individu dont les ancêtres (liens FAMC puis HUSB / WIFE) forment un cycle.
+     * Parcours en profondeur itératif avec trois états par individu (non vu, sur le chemin courant, terminé) :
+     * chaque individu et chaque lien ne sont traités qu'une fois, même quand des ancêtres
+     * sont atteints par plusieurs chemins (mariages entre cousins).
+     * @return Le premier individu, dans l'ordre du graphe, qui mène à un cycle ; -1 s'il n'y en a pas.
+     */
+    private static int findCycle(Adjacency adj, ProgressTracker progress, CycleCheckEvent event) throws LoadCancelledErr {
+        final byte unseen = 0, onPath = 1, done = 2;
+        int n = adj.getIndividualCount();
+        byte[] state = new byte[n];
+        int[] stack = new int[n];
+        byte[] step = new byte[n]; // 0 : père à visiter, 1 : mère à visiter, 2 : fini
+        for (int start = 0; start < n; start++) {
+            if ((event.individuals % ProgressTracker.STRIDE) == 0) progress.update(event.individuals);
+            else progress.checkCancelled();
+            event.individuals++;
+            if (state[start] != unseen) continue;
+            int top = 0;
+            stack[0] = start;
+            state[start] = onPath;
+            step[start] = 0;
+            while (top >= 0) {
+                int i = stack[top];
+                int f = adj.famc(i);
+                int parent = -1;
+                if (f >= 0 && step[i] < 2) {
+                    parent = (step[i] == 0) ? adj.husb(f) : adj.wife(f);
+                    step[i]++;
+                } else {
+                    step[i] = 2;
+                }
+                if (step[i] == 2 && parent < 0) {
+                    // Tous les parents ont été explorés
+                    state[i] = done;
+                    top--;
+                } else if (parent >= 0) {
+                    if (state[parent] == onPath) return start;
+                    if (state[parent] == unseen) {
+                        state[parent] = onPath;
+                        step[parent] = 0;
+                        stack[++top] = parent;
+                    }
+                }
             }
         }
-
-        return false;
+        return -1;
     }
-}
\ No newline at end of file
+}
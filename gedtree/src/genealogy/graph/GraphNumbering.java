@@ -0,0 +1,109 @@
+package genealogy.graph;
+
+import java.util.List;
+
+/**
+ * Numérotation d'un graphe en mémoire : le numéro d'une entité est son rang dans l'ordre du graphe.
+ * Les entités sont rangées dans deux tableaux et chacune garde son numéro (Entity.slot) : le numéro
+ * d'une entité se lit sans recherche, et les IDs des liens sont résolus par les tables du graphe.
+ * Tant que le graphe ne change pas, deux numérotations donnent les mêmes numéros.
+ */
+class GraphNumbering implements Numbering {
+
+    private final Graph graph;
+    private final Individual[] people;
+    private final Family[] families;
+
+    GraphNumbering(Graph graph) {
+        this.graph = graph;
+        this.people = graph.getIndividuals().values().toArray(new Individual[0]);
+        this.families = graph.getFamilies().values().toArray(new Family[0]);
+        for (int i = 0; i < people.length; i++) people[i].slot = i;
+        for (int f = 0; f < families.length; f++) families[f].slot = f;
+    }
+
+    @Override
+    public int getIndividualCount() {
+        return people.length;
+    }
+
+    @Override
+    public int getFamilyCount() {
+        return families.length;
+    }
+
+    @Override
+    public Individual individual(int i) {
+        return people[i];
+    }
+
+    @Override
+    public Family family(int f) {
+        return families[f];
+    }
+
+    @Override
+    public int indexOf(String id) {
+        Individual ind = (id == null) ? null : graph.getIndividual(id);
+        return (ind != null && ind.slot < people.length && people[ind.slot] == ind) ? ind.slot : Adjacency.NONE;
+    }
+
+    @Override
+    public int familyIndexOf(String id) {
+        Family fam = (id == null) ? null : graph.getFamily(id);
+        return (fam != null && fam.slot < families.length && families[fam.slot] == fam) ? fam.slot : Adjacency.NONE;
+    }
+
+    /**
+     * Le numéro gardé par l'individu est vérifié : un individu partagé avec un autre graphe (MERGE)
+     * a pu être renuméroté par celui-ci, il est alors cherché par son ID.
+     */
+    @Override
+    public int indexOf(Individual ind) {
+        return (ind.slot < people.length && people[ind.slot] == ind) ? ind.slot : indexOf(ind.getId());
+    }
+
+    @Override
+    public int indexOf(Family fam) {
+        return (fam.slot < families.length && families[fam.slot] == fam) ? fam.slot : familyIndexOf(fam.getId());
+    }
+
+    @Override
+    public int famc(int i) {
+        return link(familyIndexOf(people[i].getFamc()), people[i].getFamc());
+    }
+
+    @Override
+    public int[] fams(int i) {
+        List<String> ids = people[i].getFams();
+        int[] result = new int[ids.size()];
+        for (int k = 0; k < result.length; k++) result[k] = link(familyIndexOf(ids.get(k)), ids.get(k));
+        return result;
+    }
+
+    @Override
+    public int husb(int f) {
+        return link(indexOf(families[f].getHusb()), families[f].getHusb());
+    }
+
+    @Override
+    public int wife(int f) {
+        return link(indexOf(families[f].getWife()), families[f].getWife());
+    }
+
+    @Override
+    public int[] children(int f) {
+        List<String> ids = families[f].getChildren();
+        int[] result = new int[ids.size()];
+        for (int k = 0; k < result.length; k++) result[k] = link(indexOf(ids.get(k)), ids.get(k));
+        return result;
+    }
+
+    /**
+     * Numéro d'un lien : NONE s'il n'y a pas de lien, MISSING si l'ID visé est absent du graphe.
+     */
+    private static int link(int found, String id) {
+        if (id == null) return Adjacency.NONE;
+        return (found < 0) ? Adjacency.MISSING : found;
+    }
+}
@@ -2,6 +2,11 @@ package genealogy.graph;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
+
+import genealogy.tags.Tag;
+import genealogy.tags.simple.DateTag;
+import genealogy.tags.simple.NameTag;
 
 /**
  * Représente un individu (Tag GEDCOM : INDI).
@@ -68,6 +73,69 @@ public class Individual extends Entity {
         return famsIds; 
     }
 
+    /**
+     * Retourne le nom de famille de l'individu.
+     * Utilise le nom délimité par des / dans le fichier, sinon le dernier mot du nom.
+     * Ne nécessite pas de décoder un enregistrement chargé en mode paresseux.
+     * @return Le nom de famille, ou une chaîne vide si l'individu n'a pas de nom.
+     */
+    public String getSurname() {
+        for (Tag t : properties) {
+            NameTag name = NameTag.of(t);
+            if (name != null && name.getSurname() != null) {
+                return name.getSurname();
+            }
+        }
+        String name = getTagValue("NAME");
+        if (name.equals("Unknown")) return "";
+        int space = name.lastIndexOf(' ');
+        return (space < 0) ? name : name.substring(space + 1);
+    }
+
+    /**
+     * Retourne les prénoms de l'individu (le nom complet privé du nom de famille).
+     * @return Les prénoms, ou une chaîne vide.
+     */
+    public String getGivenNames() {
+        for (Tag t : properties) {
+            NameTag name = NameTag.of(t);
+            if (name != null && name.getGivenNames() != null) {
+                return name.getGivenNames();
+            }
+        }
+        String name = getTagValue("NAME");
+        if (name.equals("Unknown")) return "";
+        int space = name.lastIndexOf(' ');
+        return (space < 0) ? "" : name.substring(0, space);
+    }
+
+    /**
+     * Retourne l'année de naissance (tag DATE sous BIRT).
+     * @return L'année, ou -1 si elle est inconnue.
+     */
+    public int getBirthYear() {
+        return DateTag.parseYear(getSubTagValue("BIRT", "DATE"));
+    }
+
+    /**
+     * Retourne l'année de décès (tag DATE sous DEAT).
+     * @return L'année, ou -1 si elle est inconnue.
+     */
+    public int getDeathYear() {
+        return DateTag.parseYear(getSubTagValue("DEAT", "DATE"));
+    }
+
+    /**
+     * Renomme l'individu et ses liens FAMC / FAMS selon la table donnée.
+     * @param ids Table ancien ID -> nouvel ID.
+     */
+    @Override
+    public void remapIds(Map<String, String> ids) {
+        super.remapIds(ids);
+        if (famcId != null) famcId = ids.getOrDefault(famcId, famcId);
+        famsIds.replaceAll(fams -> ids.getOrDefault(fams, fams));
+    }
+
     /**
       * Redéfinission de l'affichage de l'individu.
      * "Nom Prenom (@ID@)"
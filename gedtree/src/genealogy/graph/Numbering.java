@@ -0,0 +1,75 @@
+package genealogy.graph;
+
+/**
+ * Numérotation des individus et des familles d'un graphe, sur laquelle sont construits les index (liens, noms).
+ * Les numéros vont de 0 au nombre d'entités - 1 ; une entité retrouve son numéro sans recherche par ID.
+ * Les liens (FAMC, FAMS, HUSB, WIFE, CHIL) sont rendus déjà résolus en numéros, pour l'index des liens.
+ * @see Adjacency
+ */
+public interface Numbering {
+
+    int getIndividualCount();
+
+    int getFamilyCount();
+
+    /**
+     * @param i Un numéro d'individu.
+     * @return L'individu.
+     */
+    Individual individual(int i);
+
+    /**
+     * @param f Un numéro de famille.
+     * @return La famille.
+     */
+    Family family(int f);
+
+    /**
+     * @param id L'identifiant d'un individu.
+     * @return Son numéro, ou Adjacency.NONE s'il est inconnu.
+     */
+    int indexOf(String id);
+
+    /**
+     * @param id L'identifiant d'une famille.
+     * @return Son numéro, ou Adjacency.NONE si elle est inconnue.
+     */
+    int familyIndexOf(String id);
+
+    /**
+     * @param ind Un individu du graphe.
+     * @return Son numéro, ou Adjacency.NONE s'il n'est pas dans le graphe.
+     */
+    int indexOf(Individual ind);
+
+    /**
+     * @param fam Une famille du graphe.
+     * @return Son numéro, ou Adjacency.NONE si elle n'est pas dans le graphe.
+     */
+    int indexOf(Family fam);
+
+    /**
+     * @return La famille parentale de l'individu i (numéro, Adjacency.NONE ou Adjacency.MISSING).
+     */
+    int famc(int i);
+
+    /**
+     * @return Les familles de l'individu i (numéros ou Adjacency.MISSING), dans l'ordre de ses FAMS.
+     */
+    int[] fams(int i);
+
+    /**
+     * @return Le mari de la famille f (numéro, Adjacency.NONE ou Adjacency.MISSING).
+     */
+    int husb(int f);
+
+    /**
+     * @return La femme de la famille f (numéro, Adjacency.NONE ou Adjacency.MISSING).
+     */
+    int wife(int f);
+
+    /**
+     * @return Les enfants de la famille f (numéros ou Adjacency.MISSING), dans l'ordre de ses CHIL.
+     */
+    int[] children(int f);
+}
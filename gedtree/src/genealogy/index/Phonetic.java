@@ -0,0 +1,122 @@
+package genealogy.index;
+
+import java.text.Normalizer;
+
+/**
+ * Fonctions de normalisation et de codage phonétique des noms.
+ * Les codes sont des entiers, pour pouvoir servir de clés primitives dans les index.
+ */
+public class Phonetic {
+
+    /** * Chiffre Soundex de chaque lettre de A à Z (0 : lettre ignorée). */
+    private static final String SOUNDEX_DIGITS = "01230120022455012623010202";
+
+    /**
+     * Normalise un nom pour les comparaisons : minuscules, accents retirés,
+     * tout ce qui n'est pas une lettre remplacé par un espace simple.
+     * @param name Le nom à normaliser (peut être null).
+     * @return Le nom normalisé, ou une chaîne vide.
+     */
+    public static String normalize(String name) {
+        if (name == null) return "";
+        String decomposed = Normalizer.normalize(name, Normalizer.Form.NFD);
+        StringBuilder sb = new StringBuilder(decomposed.length());
+        boolean space = false;
+        for (int i = 0; i < decomposed.length(); i++) {
+            char c = decomposed.charAt(i);
+            if (Character.getType(c) == Character.NON_SPACING_MARK) continue;
+            if (Character.isLetter(c)) {
+                if (space && sb.length() > 0) sb.append(' ');
+                sb.append(Character.toLowerCase(c));
+                space = false;
+            } else {
+                space = true;
+            }
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Calcule le code Soundex d'un mot (ex: "Dupont" et "Dupond" donnent tous deux D153).
+     * Le code est rendu sous forme d'entier : rang de la lettre * 1000 + les trois chiffres.
+     * @param word Le mot à coder (normalisé ou non).
+     * @return Le code Soundex, ou -1 si le mot ne contient aucune lettre de A à Z.
+     */
+    public static int soundex(String word) {
+        String normalized = normalize(word);
+        int code = -1;
+        int digits = 0;
+        char last = 0;
+        for (int i = 0; i < normalized.length() && digits < 3; i++) {
+            char c = normalized.charAt(i);
+            if (c < 'a' || c > 'z') continue;
+            char digit = SOUNDEX_DIGITS.charAt(c - 'a');
+            if (code < 0) {
+                code = (c - 'a') * 1000;
+                last = digit;
+                continue;
+            }
+            // H et W ne séparent pas deux consonnes de même code, contrairement aux voyelles.
+            if (c == 'h' || c == 'w') continue;
+            if (digit != '0' && digit != last) {
+                digits++;
+                code += (digit - '0') * (digits == 1 ? 100 : digits == 2 ? 10 : 1);
+            }
+            last = digit;
+        }
+        return code;
+    }
+
+    /**
+     * Représentation textuelle d'un code Soundex (ex: "D153").
+     * @param code Le code calculé par soundex().
+     * @return Le code lisible, ou "?" pour -1.
+     */
+    public static String soundexToString(int code) {
+        if (code < 0) return "?";
+        return (char) ('A' + code / 1000) + String.format("%03d", code % 1000);
+    }
+
+    /**
+     * Similarité de Jaro-Winkler entre deux chaînes (1 : identiques, 0 : rien en commun).
+     * @param a La première chaîne.
+     * @param b La seconde chaîne.
+     * @return Le score de similarité entre 0 et 1.
+     */
+    public static double similarity(String a, String b) {
+        if (a.isEmpty() || b.isEmpty()) return a.equals(b) ? 1.0 : 0.0;
+        if (a.equals(b)) return 1.0;
+        int window = Math.max(0, Math.max(a.length(), b.length()) / 2 - 1);
+        boolean[] matchedA = new boolean[a.length()];
+        boolean[] matchedB = new boolean[b.length()];
+        int matches = 0;
+        for (int i = 0; i < a.length(); i++) {
+            int from = Math.max(0, i - window);
+            int to = Math.min(b.length() - 1, i + window);
+            for (int j = from; j <= to; j++) {
+                if (!matchedB[j] && a.charAt(i) == b.charAt(j)) {
+                    matchedA[i] = true;
+                    matchedB[j] = true;
+                    matches++;
+                    break;
+                }
+            }
+        }
+        if (matches == 0) return 0.0;
+        int transpositions = 0;
+        int k = 0;
+        for (int i = 0; i < a.length(); i++) {
+            if (!matchedA[i]) continue;
+            while (!matchedB[k]) k++;
+            if (a.charAt(i) != b.charAt(k)) transpositions++;
+            k++;
+        }
+        double m = matches;
+        double jaro = (m / a.length() + m / b.length() + (m - transpositions / 2.0) / m) / 3.0;
+        int prefix = 0;
+        while (prefix < 4 && prefix < a.length() && prefix < b.length() && a.charAt(prefix) == b.charAt(prefix)) {
+            prefix++;
+        }
+        return jaro + prefix * 0.1 * (1.0 - jaro);
+    }
+}
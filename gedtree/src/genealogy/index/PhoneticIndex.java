@@ -0,0 +1,196 @@
+package genealogy.index;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.PriorityQueue;
+
+import genealogy.graph.Graph;
+import genealogy.graph.Individual;
+import genealogy.graph.Numbering;
+
+/**
+ * Index phonétique des noms d'un graphe, pour retrouver "Dupont" en cherchant "Dupond".
+ * Le code Soundex de chaque nom de famille et de chaque prénom est calculé une seule fois,
+ * à la construction. Comme un code est un entier de 0 à 25999, l'index est une table à accès direct :
+ * pour chaque code, la liste des individus qui le portent est une tranche d'un tableau d'entiers
+ * (format CSR, sans objet par entrée). Une recherche ne parcourt que les individus des codes cherchés.
+ */
+public class PhoneticIndex {
+
+    /** * Nombre de codes Soundex possibles (26 lettres x 1000). */
+    private static final int CODES = 26 * 1000;
+
+    /** * Poids d'un mot de la recherche retrouvé dans le nom de famille, puis dans les prénoms. */
+    private static final int SURNAME_HIT = 2;
+    private static final int GIVEN_HIT = 1;
+
+    /**
+     * Individu trouvé, avec son score (mots retrouvés, puis ressemblance du nom complet).
+     */
+    public static class Match {
+        private final Individual person;
+        private final double score;
+
+        public Match(Individual person, double score) {
+            this.person = person;
+            this.score = score;
+        }
+
+        public Individual getPerson() {
+            return person;
+        }
+
+        public double getScore() {
+            return score;
+        }
+    }
+
+    /** * Numérotation des individus : le numéro sert d'identifiant entier (un graphe stocké crée ses vues à la demande). */
+    private final Numbering people;
+
+    /** * Individus par code du nom de famille : ceux du code c sont surnames[surnameStart[c]..surnameStart[c+1]-1]. */
+    private final int[] surnameStart;
+    private final int[] surnames;
+
+    /** * Individus par code de prénom, même organisation. */
+    private final int[] givenStart;
+    private final int[] given;
+
+    /** * Points de chaque individu pendant une recherche, remis à zéro après. */
+    private final int[] hits;
+
+    /** * Version du graphe au moment de la construction. */
+    private final long version;
+
+    /**
+     * Construit l'index des noms du graphe.
+     * @param graph Le graphe.
+     */
+    public PhoneticIndex(Graph graph) {
+        this.version = graph.getVersion();
+        this.people = graph.getNumbering();
+        int n = people.getIndividualCount();
+        this.hits = new int[n];
+
+        // Codes de chaque individu : un pour le nom de famille, un par prénom distinct
+        int[] surnameCode = new int[n];
+        int[][] givenCodes = new int[n][];
+        int[] surnameCount = new int[CODES + 1];
+        int[] givenCount = new int[CODES + 1];
+        for (int i = 0; i < n; i++) {
+            Individual ind = people.individual(i);
+            surnameCode[i] = Phonetic.soundex(ind.getSurname());
+            if (surnameCode[i] >= 0) surnameCount[surnameCode[i] + 1]++;
+            givenCodes[i] = givenCodes(ind.getGivenNames());
+            for (int code : givenCodes[i]) givenCount[code + 1]++;
+        }
+
+        // Tableaux CSR : sommes cumulées puis remplissage (les individus restent dans l'ordre du graphe)
+        for (int c = 0; c < CODES; c++) {
+            surnameCount[c + 1] += surnameCount[c];
+            givenCount[c + 1] += givenCount[c];
+        }
+        this.surnameStart = surnameCount;
+        this.givenStart = givenCount;
+        this.surnames = new int[surnameStart[CODES]];
+        this.given = new int[givenStart[CODES]];
+        int[] surnameFill = Arrays.copyOf(surnameStart, CODES);
+        int[] givenFill = Arrays.copyOf(givenStart, CODES);
+        for (int i = 0; i < n; i++) {
+            if (surnameCode[i] >= 0) surnames[surnameFill[surnameCode[i]]++] = i;
+            for (int code : givenCodes[i]) given[givenFill[code]++] = i;
+        }
+    }
+
+    /**
+     * Codes distincts des prénoms.
+     */
+    private static int[] givenCodes(String givenNames) {
+        String normalized = Phonetic.normalize(givenNames);
+        if (normalized.isEmpty()) return new int[0];
+        String[] words = normalized.split(" ");
+        int[] codes = new int[words.length];
+        int count = 0;
+        for (String word : words) {
+            int code = Phonetic.soundex(word);
+            boolean seen = code < 0;
+            for (int j = 0; j < count && !seen; j++) seen = codes[j] == code;
+            if (!seen) codes[count++] = code;
+        }
+        return Arrays.copyOf(codes, count);
+    }
+
+    /**
+     * @return La version du graphe pour laquelle l'index a été construit.
+     */
+    public long getVersion() {
+        return version;
+    }
+
+    /**
+     * @return Le nombre de noms de famille et de prénoms indexés.
+     */
+    public int getEntries() {
+        return surnames.length + given.length;
+    }
+
+    /**
+     * Recherche phonétique : chaque mot de la recherche est comparé par son code Soundex aux noms
+     * de famille (2 points) et aux prénoms (1 point) ; à points égaux, les individus sont classés
+     * par ressemblance (Jaro-Winkler) entre la recherche et leur nom complet.
+     * @param query Le nom recherché (ex: "Jean Dupond").
+     * @param k Le nombre maximal de résultats.
+     * @return Les individus trouvés, du plus au moins ressemblant.
+     */
+    public synchronized List<Match> search(String query, int k) {
+        String normalized = Phonetic.normalize(query);
+        List<Match> result = new ArrayList<>();
+        if (normalized.isEmpty() || k <= 0) return result;
+
+        // Points de chaque individu retrouvé, en ne visitant que les listes des codes cherchés
+        int[] touched = new int[16];
+        int count = 0;
+        int maxHits = 0;
+        for (String word : normalized.split(" ")) {
+            int code = Phonetic.soundex(word);
+            if (code < 0) continue;
+            for (int pass = 0; pass < 2; pass++) {
+                int[] start = (pass == 0) ? surnameStart : givenStart;
+                int[] list = (pass == 0) ? surnames : given;
+                int weight = (pass == 0) ? SURNAME_HIT : GIVEN_HIT;
+                for (int e = start[code]; e < start[code + 1]; e++) {
+                    int p = list[e];
+                    if (hits[p] == 0) {
+                        if (count == touched.length) touched = Arrays.copyOf(touched, count * 2);
+                        touched[count++] = p;
+                    }
+                    hits[p] += weight;
+                    maxHits = Math.max(maxHits, hits[p]);
+                }
+            }
+        }
+
+        // Les individus sont traités par points décroissants : la ressemblance (entre 0 et 1) ne peut
+        // pas compenser un point d'écart, on s'arrête dès que les k meilleurs ne peuvent plus changer.
+        int[] byHits = new int[maxHits + 2];
+        for (int t = 0; t < count; t++) byHits[hits[touched[t]] + 1]++;
+        for (int h = 0; h <= maxHits; h++) byHits[h + 1] += byHits[h];
+        int[] sorted = new int[count];
+        for (int t = 0; t < count; t++) sorted[byHits[hits[touched[t]]]++] = touched[t];
+
+        PriorityQueue<Match> best = new PriorityQueue<>((a, b) -> Double.compare(a.score, b.score));
+        for (int j = count - 1; j >= 0; j--) {
+            int p = sorted[j];
+            if (best.size() == k && hits[p] + 1 <= best.peek().score) break;
+            Individual ind = people.individual(p);
+            String name = Phonetic.normalize(ind.getGivenNames() + " " + ind.getSurname());
+            best.add(new Match(ind, hits[p] + Phonetic.similarity(normalized, name)));
+            if (best.size() > k) best.poll();
+        }
+        for (int t = 0; t < count; t++) hits[touched[t]] = 0;
+
+        while (!best.isEmpty()) result.add(0, best.poll());
+        return result;
+    }
+}
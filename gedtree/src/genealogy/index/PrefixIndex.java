@@ -0,0 +1,253 @@
+package genealogy.index;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.List;
+
+import genealogy.graph.Graph;
+import genealogy.graph.Individual;
+import genealogy.graph.Numbering;
+
+/**
+ * Index des préfixes de noms et d'identifiants, pour l'autocomplétion.
+ * Chaque individu a trois clés : son nom normalisé ("jean dupont"), son nom de famille suivi
+ * des prénoms ("dupont jean") et son ID en minuscules ("@i1@"). Les clés triées sont rangées
+ * dans un seul tableau d'octets, par blocs de 16 : dans un bloc, chaque clé ne garde que ce qui
+ * la distingue de la précédente (longueur du préfixe commun, puis suffixe), comme dans les
+ * dictionnaires de termes des moteurs de recherche. Une recherche est une dichotomie sur
+ * les premières clés des blocs, suivie de la lecture des clés qui commencent par le préfixe.
+ * L'index n'est jamais modifié après sa construction : les lectures concurrentes se font sans verrou.
+ * <pre>
+ * clé := varint préfixeCommun | varint longueurSuffixe | suffixe (UTF-8) | varint individu
+ * </pre>
+ */
+public class PrefixIndex {
+
+    /** * Nombre de clés par bloc. */
+    private static final int BLOCK = 16;
+
+    /** * Numérotation des individus : le numéro sert d'identifiant entier (un graphe stocké crée ses vues à la demande). */
+    private final Numbering people;
+
+    /** * Clés codées, bloc après bloc. */
+    private final byte[] data;
+
+    /** * Position du début de chaque bloc dans data. */
+    private final int[] blocks;
+
+    private final int keys;
+
+    /** * Version du graphe au moment de la construction. */
+    private final long version;
+
+    /**
+     * Construit l'index des noms et identifiants du graphe.
+     * @param graph Le graphe.
+     */
+    public PrefixIndex(Graph graph) {
+        this.version = graph.getVersion();
+        this.people = graph.getNumbering();
+
+        // Clés provisoires (octets UTF-8 + individu), triées par octets
+        int n = people.getIndividualCount();
+        List<Key> all = new ArrayList<>(n * 3);
+        for (int i = 0; i < n; i++) {
+            Individual ind = people.individual(i);
+            String name = Phonetic.normalize(ind.getTagValue("NAME"));
+            String surnameFirst = Phonetic.normalize(ind.getSurname() + " " + ind.getGivenNames());
+            if (!name.isEmpty() && !name.equals("unknown")) all.add(new Key(name, i));
+            if (!surnameFirst.isEmpty() && !surnameFirst.equals(name)) all.add(new Key(surnameFirst, i));
+            all.add(new Key(ind.getId().toLowerCase(), i));
+        }
+        Key[] sorted = all.toArray(new Key[0]);
+        Arrays.parallelSort(sorted, (a, b) -> {
+            int cmp = compare(a.bytes, b.bytes, a.bytes.length);
+            return (cmp != 0) ? cmp : Integer.compare(a.person, b.person);
+        });
+
+        // Codage par blocs, avec préfixes partagés
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        this.keys = sorted.length;
+        this.blocks = new int[(keys + BLOCK - 1) / BLOCK];
+        byte[] previous = new byte[0];
+        for (int k = 0; k < keys; k++) {
+            byte[] key = sorted[k].bytes;
+            int shared = 0;
+            if (k % BLOCK == 0) {
+                blocks[k / BLOCK] = out.size();
+            } else {
+                int max = Math.min(previous.length, key.length);
+                while (shared < max && previous[shared] == key[shared]) shared++;
+            }
+            writeVarint(out, shared);
+            writeVarint(out, key.length - shared);
+            out.write(key, shared, key.length - shared);
+            writeVarint(out, sorted[k].person);
+            previous = key;
+        }
+        this.data = out.toByteArray();
+    }
+
+    /**
+     * Clé provisoire utilisée pendant la construction.
+     */
+    private static class Key {
+        final byte[] bytes;
+        final int person;
+
+        Key(String key, int person) {
+            this.bytes = key.getBytes(StandardCharsets.UTF_8);
+            this.person = person;
+        }
+    }
+
+    /**
+     * @return La version du graphe pour laquelle l'index a été construit.
+     */
+    public long getVersion() {
+        return version;
+    }
+
+    /**
+     * @return Le nombre de clés indexées.
+     */
+    public int getKeys() {
+        return keys;
+    }
+
+    /**
+     * @return La taille des clés codées, en octets.
+     */
+    public int getBytes() {
+        return data.length + blocks.length * 4;
+    }
+
+    /**
+     * Les individus dont une clé commence par le préfixe, dans l'ordre alphabétique des clés.
+     * Un préfixe qui commence par @ est cherché parmi les IDs, les autres parmi les noms normalisés.
+     * @param prefix Le début du nom ou de l'ID.
+     * @param n Le nombre maximal d'individus.
+     * @return Les individus trouvés (chacun une seule fois).
+     */
+    public List<Individual> complete(String prefix, int n) {
+        List<Individual> result = new ArrayList<>();
+        BitSet seen = new BitSet(people.getIndividualCount());
+        scan(prefix, (key, person) -> {
+            if (!seen.get(person)) {
+                seen.set(person);
+                result.add(people.individual(person));
+            }
+            return result.size() < n;
+        });
+        return result;
+    }
+
+    /**
+     * Tous les individus dont une clé commence par le préfixe.
+     * @param prefix Le début du nom ou de l'ID.
+     * @return Les numéros des individus, dans l'ordre du graphe au moment de la construction.
+     */
+    public BitSet matching(String prefix) {
+        BitSet result = new BitSet(people.getIndividualCount());
+        scan(prefix, (key, person) -> {
+            result.set(person);
+            return true;
+        });
+        return result;
+    }
+
+    /**
+     * Traitement d'une clé trouvée ; renvoie false pour arrêter la lecture.
+     */
+    private interface Visitor {
+        boolean visit(byte[] key, int person);
+    }
+
+    /**
+     * Lit dans l'ordre toutes les clés qui commencent par le préfixe.
+     */
+    private void scan(String prefix, Visitor visitor) {
+        String normalized = prefix.trim().startsWith("@") ? prefix.trim().toLowerCase() : Phonetic.normalize(prefix);
+        if (normalized.isEmpty() || keys == 0) return;
+        byte[] p = normalized.getBytes(StandardCharsets.UTF_8);
+
+        // Dernier bloc dont la première clé est inférieure au préfixe (les clés égales peuvent commencer avant)
+        int low = 0, high = blocks.length - 1, block = 0;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            byte[] first = firstKey(mid);
+            if (compare(first, p, first.length) < 0) {
+                block = mid;
+                low = mid + 1;
+            } else {
+                high = mid - 1;
+            }
+        }
+
+        // Décodage séquentiel depuis ce bloc
+        byte[] key = new byte[64];
+        int[] pos = { blocks[block] };
+        for (int k = block * BLOCK; k < keys; k++) {
+            int shared = readVarint(pos);
+            int suffix = readVarint(pos);
+            if (shared + suffix > key.length) key = Arrays.copyOf(key, Math.max(key.length * 2, shared + suffix));
+            System.arraycopy(data, pos[0], key, shared, suffix);
+            pos[0] += suffix;
+            int person = readVarint(pos);
+            int length = shared + suffix;
+            if (startsWith(key, length, p)) {
+                if (!visitor.visit(key, person)) return;
+            } else if (compare(key, p, length) > 0) {
+                // Les clés sont triées : toutes les suivantes sont aussi après le préfixe
+                return;
+            }
+        }
+    }
+
+    private byte[] firstKey(int block) {
+        int[] pos = { blocks[block] };
+        readVarint(pos);
+        int length = readVarint(pos);
+        return Arrays.copyOfRange(data, pos[0], pos[0] + length);
+    }
+
+    private static boolean startsWith(byte[] key, int length, byte[] prefix) {
+        if (length < prefix.length) return false;
+        for (int i = 0; i < prefix.length; i++) {
+            if (key[i] != prefix[i]) return false;
+        }
+        return true;
+    }
+
+    /**
+     * Compare deux suites d'octets (non signés), la première limitée à length octets.
+     */
+    private static int compare(byte[] a, byte[] b, int length) {
+        int n = Math.min(Math.min(a.length, length), b.length);
+        for (int i = 0; i < n; i++) {
+            int cmp = (a[i] & 0xFF) - (b[i] & 0xFF);
+            if (cmp != 0) return cmp;
+        }
+        return Math.min(a.length, length) - b.length;
+    }
+
+    private static void writeVarint(ByteArrayOutputStream out, int value) {
+        while ((value & ~0x7F) != 0) {
+            out.write((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        out.write(value);
+    }
+
+    private int readVarint(int[] pos) {
+        int value = 0;
+        for (int shift = 0; ; shift += 7) {
+            byte b = data[pos[0]++];
+            value |= (b & 0x7F) << shift;
+            if (b >= 0) return value;
+        }
+    }
+}
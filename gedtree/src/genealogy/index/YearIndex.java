@@ -0,0 +1,137 @@
+package genealogy.index;
+
+import java.util.Arrays;
+import java.util.BitSet;
+
+import genealogy.graph.Graph;
+import genealogy.graph.Individual;
+import genealogy.graph.Numbering;
+
+/**
+ * Index des années de naissance et de décès, pour les recherches par intervalle de dates.
+ * Pour chaque événement, les individus dont l'année est connue sont triés par année : deux tableaux
+ * d'entiers alignés (années, individus). Le nombre d'individus d'un intervalle s'obtient par deux
+ * dichotomies, sans rien parcourir ; les individus de l'intervalle sont une tranche contiguë.
+ */
+public class YearIndex {
+
+    /**
+     * Événement indexé, avec son tag dans le fichier.
+     */
+    public enum Event {
+        BIRTH("BIRT"), DEATH("DEAT");
+
+        private final String tag;
+
+        Event(String tag) {
+            this.tag = tag;
+        }
+
+        public String getTag() {
+            return tag;
+        }
+    }
+
+    /** * Années triées et individus correspondants, par événement. */
+    private final int[][] years = new int[2][];
+    private final int[][] people = new int[2][];
+
+    private final int size;
+
+    /** * Version du graphe au moment de la construction. */
+    private final long version;
+
+    /**
+     * Construit l'index des années du graphe.
+     * @param graph Le graphe.
+     */
+    public YearIndex(Graph graph) {
+        this.version = graph.getVersion();
+        Numbering all = graph.getNumbering();
+        this.size = all.getIndividualCount();
+
+        // Année et numéro rangés dans un même long : le tri par année garde l'ordre du graphe à année égale
+        long[][] keys = new long[2][size];
+        int[] counts = new int[2];
+        for (int i = 0; i < size; i++) {
+            Individual ind = all.individual(i);
+            int birth = ind.getBirthYear();
+            int death = ind.getDeathYear();
+            if (birth >= 0) keys[Event.BIRTH.ordinal()][counts[Event.BIRTH.ordinal()]++] = ((long) birth << 32) | i;
+            if (death >= 0) keys[Event.DEATH.ordinal()][counts[Event.DEATH.ordinal()]++] = ((long) death << 32) | i;
+        }
+        for (Event event : Event.values()) {
+            int count = counts[event.ordinal()];
+            long[] sorted = Arrays.copyOf(keys[event.ordinal()], count);
+            keys[event.ordinal()] = null;
+            Arrays.parallelSort(sorted);
+            int[] y = new int[count];
+            int[] p = new int[count];
+            for (int k = 0; k < count; k++) {
+                y[k] = (int) (sorted[k] >>> 32);
+                p[k] = (int) sorted[k];
+            }
+            years[event.ordinal()] = y;
+            people[event.ordinal()] = p;
+        }
+    }
+
+    /**
+     * @return La version du graphe pour laquelle l'index a été construit.
+     */
+    public long getVersion() {
+        return version;
+    }
+
+    /**
+     * @param event L'événement.
+     * @return Le nombre d'individus dont l'année de l'événement est connue.
+     */
+    public int getEntries(Event event) {
+        return years[event.ordinal()].length;
+    }
+
+    /**
+     * Nombre d'individus dont l'année de l'événement est dans l'intervalle.
+     * @param event L'événement.
+     * @param from La première année (incluse).
+     * @param to La dernière année (incluse).
+     * @return Le nombre d'individus.
+     */
+    public int count(Event event, int from, int to) {
+        if (from > to) return 0;
+        int[] y = years[event.ordinal()];
+        return lowerBound(y, to + 1L) - lowerBound(y, from);
+    }
+
+    /**
+     * Individus dont l'année de l'événement est dans l'intervalle.
+     * @param event L'événement.
+     * @param from La première année (incluse).
+     * @param to La dernière année (incluse).
+     * @return Les numéros des individus, dans l'ordre du graphe au moment de la construction.
+     */
+    public BitSet range(Event event, int from, int to) {
+        BitSet result = new BitSet(size);
+        if (from > to) return result;
+        int[] y = years[event.ordinal()];
+        int[] p = people[event.ordinal()];
+        for (int k = lowerBound(y, from), end = lowerBound(y, to + 1L); k < end; k++) {
+            result.set(p[k]);
+        }
+        return result;
+    }
+
+    /**
+     * Première position dont l'année est supérieure ou égale à year.
+     */
+    private static int lowerBound(int[] y, long year) {
+        int low = 0, high = y.length;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (y[mid] < year) low = mid + 1;
+            else high = mid;
+        }
+        return low;
+    }
+}
@@ -1,5 +1,7 @@
 package genealogy.interfaces;
 
+import java.io.PrintStream;
+
 /**
  * Interface pour les objets qui doivent pouvoir s'afficher dans la console.
  * La méthode display est obligatoire pour tous les Tags, Individuals, et Families.
@@ -10,5 +12,14 @@ public interface Displayable {
      * Affiche l'objet.
      * @param indentation Niveau de décalage pour visualiser la structure hiérarchique.
      */
-    void display(int indentation);
+    default void display(int indentation) {
+        display(System.out, indentation);
+    }
+
+    /**
+     * Affiche l'objet sur le flux donné (ex: une page de résultat mise en cache).
+     * @param out Le flux de sortie.
+     * @param indentation Niveau de décalage pour visualiser la structure hiérarchique.
+     */
+    void display(PrintStream out, int indentation);
 }
\ No newline at end of file
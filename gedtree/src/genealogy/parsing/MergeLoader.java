@@ -0,0 +1,172 @@
+package genealogy.parsing;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import genealogy.graph.Family;
+import genealogy.graph.Graph;
+import genealogy.graph.Individual;
+import genealogy.exceptions.GenealogyErr;
+
+/**
+ * Charge plusieurs fichiers GEDCOM dans un même graphe.
+ * Chaque fichier est lu en parallèle dans son propre graphe (son espace de noms),
+ * puis ses identifiants déjà pris sont renommés (ex: @I1@ devient @I1_2@ pour le 2e fichier)
+ * en réécrivant de façon cohérente les liens FAMC / FAMS / HUSB / WIFE / CHIL.
+ * Les entités sont enfin versées en bloc dans le graphe cible, qui n'est validé qu'une fois.
+ */
+public class MergeLoader {
+
+    /** * Nombre d'identifiants renommés lors de la dernière fusion. */
+    private int renamed;
+
+    /** * Nombre d'individus lus dans chaque fichier lors de la dernière fusion. */
+    private final List<Integer> counts = new ArrayList<>();
+
+    /** * Réserve de chaînes de la fusion, commune aux parseurs de tous les fichiers, null si aucune. */
+    private StringPool strings;
+
+    /**
+     * Fait partager les chaînes lues avec les autres graphes de la réserve.
+     * @param strings La réserve de chaînes.
+     */
+    public void setStringPool(StringPool strings) {
+        this.strings = strings;
+    }
+
+    /**
+     * Lit les fichiers en parallèle puis les fusionne, dans l'ordre donné, dans le graphe cible.
+     * @param files Les chemins des fichiers à fusionner.
+     * @param target Le graphe qui reçoit toutes les entités (il peut déjà en contenir).
+     * @throws IOException En cas de problème de lecture d'un fichier.
+     * @throws GenealogyErr En cas d'erreur de formatage dans un fichier.
+     */
+    public void merge(List<String> files, Graph target) throws IOException, GenealogyErr {
+        renamed = 0;
+        counts.clear();
+
+        List<Graph> graphs = parseAll(files);
+        for (int n = 0; n < graphs.size(); n++) {
+            Graph source = graphs.get(n);
+            counts.add(source.getIndividuals().size());
+            Map<String, String> ids = renameTable(source, target, n + 1);
+            if (!ids.isEmpty()) {
+                renamed += ids.size();
+                source = rename(source, ids);
+            }
+            target.addAll(source);
+        }
+    }
+
+    /**
+     * Nombre d'identifiants renommés lors de la dernière fusion.
+     * @return Le nombre d'individus et familles renommés.
+     */
+    public int getRenamed() {
+        return renamed;
+    }
+
+    /**
+     * Nombre d'individus lus dans chaque fichier, dans l'ordre des fichiers.
+     * @return La liste des nombres d'individus.
+     */
+    public List<Integer> getCounts() {
+        return counts;
+    }
+
+    /**
+     * Lit chaque fichier dans un graphe indépendant, un thread par fichier (dans la limite des processeurs).
+     */
+    private List<Graph> parseAll(List<String> files) throws IOException, GenealogyErr {
+        int threads = Math.max(1, Math.min(files.size(), Runtime.getRuntime().availableProcessors()));
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<Graph>> futures = new ArrayList<>();
+            for (String file : files) {
+                futures.add(pool.submit(() -> {
+                    Graph graph = new Graph();
+                    Parser parser = new Parser();
+                    parser.setStringPool(strings);
+                    parser.parse(file, graph);
+                    return graph;
+                }));
+            }
+            List<Graph> graphs = new ArrayList<>();
+            for (int i = 0; i < futures.size(); i++) {
+                try {
+                    graphs.add(futures.get(i).get());
+                } catch (ExecutionException e) {
+                    Throwable cause = e.getCause();
+                    if (cause instanceof GenealogyErr) {
+                        throw new GenealogyErr(files.get(i) + " : " + cause.getMessage());
+                    }
+                    if (cause instanceof IOException) throw (IOException) cause;
+                    throw new IllegalStateException(cause);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new IOException("Fusion interrompue", e);
+                }
+            }
+            return graphs;
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    /**
+     * Construit la table des renommages : chaque ID déjà présent dans la cible reçoit
+     * le suffixe du numéro de fichier, en évitant aussi les ID du fichier lui-même.
+     */
+    private Map<String, String> renameTable(Graph source, Graph target, int fileNumber) {
+        Map<String, String> ids = new HashMap<>();
+        Set<String> taken = new HashSet<>(source.getIndividuals().keySet());
+        taken.addAll(source.getFamilies().keySet());
+        for (String id : source.getIndividuals().keySet()) {
+            if (target.getIndividual(id) != null) ids.put(id, freshId(id, fileNumber, target, taken));
+        }
+        for (String id : source.getFamilies().keySet()) {
+            if (target.getFamily(id) != null) ids.put(id, freshId(id, fileNumber, target, taken));
+        }
+        return ids;
+    }
+
+    /**
+     * Génère un identifiant libre à partir de l'ancien : @I1@ -> @I1_2@ (puis @I1_2_2@ si besoin...).
+     */
+    private String freshId(String id, int fileNumber, Graph target, Set<String> taken) {
+        String base = id.endsWith("@") ? id.substring(0, id.length() - 1) : id;
+        String candidate = base + "_" + fileNumber + "@";
+        while (taken.contains(candidate) || target.getIndividual(candidate) != null || target.getFamily(candidate) != null) {
+            base = candidate.substring(0, candidate.length() - 1);
+            candidate = base + "_" + fileNumber + "@";
+        }
+        taken.add(candidate);
+        return candidate;
+    }
+
+    /**
+     * Applique la table de renommage à toutes les entités du graphe source.
+     * Les entités sont rangées dans un nouveau graphe, sous leur nouvel identifiant.
+     */
+    private Graph rename(Graph source, Map<String, String> ids) throws GenealogyErr {
+        Graph renamedGraph = new Graph();
+        for (Individual ind : source.getIndividuals().values()) {
+            ind.remapIds(ids);
+            renamedGraph.addIndividual(ind);
+        }
+        for (Family fam : source.getFamilies().values()) {
+            fam.remapIds(ids);
+            renamedGraph.addFamily(fam);
+        }
+        return renamedGraph;
+    }
+}
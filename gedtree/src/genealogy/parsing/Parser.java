@@ -1,8 +1,21 @@
 package genealogy.parsing;
 
+import java.io.BufferedInputStream;
 import java.io.BufferedReader;
-import java.io.FileReader;
+import java.io.ByteArrayOutputStream;
+import java.io.FileInputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.channels.Channels;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
 
 import genealogy.graph.Graph;
 import genealogy.graph.Individual;
@@ -11,6 +24,12 @@ import genealogy.graph.Entity;
 import genealogy.tags.*;
 import genealogy.tags.simple.*;
 import genealogy.tags.composite.*;
+import genealogy.interfaces.Value;
+import genealogy.perf.CountingInputStream;
+import genealogy.perf.FileLoadEvent;
+import genealogy.perf.Perf;
+import genealogy.perf.Phase;
+import genealogy.progress.ProgressTracker;
 import genealogy.exceptions.GenealogyErr;
 import genealogy.exceptions.exceptfile.LineErr;
 
@@ -18,103 +37,415 @@ import genealogy.exceptions.exceptfile.LineErr;
  * Classe responsable de la lecture et de l'analyse d'un fichier GEDCOM.
  * Le parseur lit le fichier ligne par ligne, interprète le niveau hiérarchique
  * et instancie les objets correspondants entités ou tags pour remplir le graph.
+ * Les tags sont imbriqués à n'importe quelle profondeur par un RecordBuilder.
  */
 public class Parser {
 
+    /** * Tags de 4 lettres décodés dès le chargement en mode paresseux (SEX est traité à part). */
+    private static final String[] EAGER_TAGS = { "NAME", "FAMC", "FAMS", "HUSB", "WIFE", "CHIL" };
+
+    /** * Suivi de l'avancement et de l'annulation (aucun par défaut). */
+    private ProgressTracker progress = ProgressTracker.none();
+
+    /**
+     * Fait publier l'avancement de la lecture, qui peut alors aussi être annulée.
+     * @param progress Le suivi du chargement.
+     */
+    public void setProgress(ProgressTracker progress) {
+        this.progress = progress;
+    }
+
+    /** * Réserve de chaînes du chargement, null si aucune. */
+    private StringPool strings;
+
+    /**
+     * Fait partager les IDs, noms de tags et valeurs courtes lus avec les autres graphes de la réserve.
+     * @param strings La réserve de chaînes.
+     */
+    public void setStringPool(StringPool strings) {
+        this.strings = strings;
+    }
+
+    /**
+     * Exemplaire partagé d'une chaîne lue, ou la chaîne elle-même sans réserve.
+     */
+    String share(String s) {
+        return (strings == null) ? s : strings.intern(s);
+    }
+
     /**
      * Lit un fichier GEDCOM et remplit le graphe avec les données extraites.
-     * La méthode utilise un BufferedReader pour lire le fichier ligne par ligne.
+     * Les fichiers compressés (.gz ou .zip) sont reconnus et décompressés à la volée.
      * * @param filePath Le chemin absolu ou relatif vers le fichier .ged à lire.
      * @param graph L'instance du graphe à remplir. Les individus et familles créés y seront ajoutés.
      * @throws IOException En cas de problème d'accès au fichier (fichier introuvable, lecture impossible).
      * @throws GenealogyErr En cas d'erreur de formatage dans le fichier
      */
     public void parse(String filePath, Graph graph) throws IOException, GenealogyErr {
-            
-        // Utilisation de BufferedReader pour une lecture ligne par ligne
-        BufferedReader reader = new BufferedReader(new FileReader(filePath));
-        String line;
+        long size = Files.size(Paths.get(filePath));
+        try (InputStream in = new FileInputStream(filePath)) {
+            parse(in, graph, filePath, size);
+        }
+    }
+
+    /**
+     * Lit un GEDCOM depuis un canal quelconque (tube, socket...).
+     * @param channel Le canal à lire. Il est fermé à la fin de la lecture.
+     * @param graph L'instance du graphe à remplir.
+     * @throws IOException En cas de problème de lecture.
+     * @throws GenealogyErr En cas d'erreur de formatage dans le fichier
+     */
+    public void parse(ReadableByteChannel channel, Graph graph) throws IOException, GenealogyErr {
+        parse(Channels.newInputStream(channel), graph);
+    }
+
+    /**
+     * Lit un GEDCOM depuis un flux quelconque et remplit le graphe.
+     * La méthode utilise un BufferedReader pour lire le flux ligne par ligne.
+     * Si le flux est compressé (gzip ou zip), la décompression tourne sur son propre thread
+     * et alimente le parseur au travers d'une file de blocs bornée.
+     * @param in Le flux à lire. Il est fermé à la fin de la lecture.
+     * @param graph L'instance du graphe à remplir.
+     * @throws IOException En cas de problème de lecture.
+     * @throws GenealogyErr En cas d'erreur de formatage dans le fichier
+     */
+    public void parse(InputStream in, Graph graph) throws IOException, GenealogyErr {
+        parse(in, graph, "<flux>", -1);
+    }
+
+    /**
+     * Corps de la lecture d'un flux, avec le nom de la source pour l'événement JFR de chargement
+     * et sa taille (-1 si inconnue) pour l'estimation du temps restant.
+     */
+    private void parse(InputStream in, Graph graph, String source, long size) throws IOException, GenealogyErr {
+
+        FileLoadEvent event = new FileLoadEvent();
+        event.source = source;
+        event.begin();
+        int before = graph.getIndividuals().size() + graph.getFamilies().size();
+
+        // Les octets lus (compressés ou non) sont comptés pour les mesures de débit
+        CountingInputStream counted = new CountingInputStream(in);
+        progress.phase("lecture", "octets", size);
+        long records = 0;
+
+        // Utilisation de BufferedReader pour une lecture ligne par ligne (fermé même en cas d'erreur)
+        try (Phase phase = Perf.start("parse");
+             BufferedReader reader = new BufferedReader(new InputStreamReader(openSource(counted), Charset.defaultCharset()))) {
+            String line;
         
-        // Attributs d'état pour le parsing :
-        Entity currentEntity = null;    // L'individu ou la famille en cours de construction (Niveau 0)
-        CompositeTag currentTag = null; // Le tag composite en cours (Niveau 1) qui reçoit les sous-tags
+            // Constructeur de l'arbre de tags de l'entité en cours (Niveau 0), réutilisé pour tout le fichier
+            RecordBuilder builder = new RecordBuilder(this, true);
         
-        // Compteur de lignes pour le rapport d'erreurs
-        int lineCount = 0; 
+            // Compteur de lignes pour le rapport d'erreurs
+            int lineCount = 0; 
 
-        while ((line = reader.readLine()) != null) {
-            lineCount++; // On incrémente à chaque lecture
+            while ((line = reader.readLine()) != null) {
+                lineCount++; // On incrémente à chaque lecture
+                if ((lineCount % ProgressTracker.STRIDE) == 0) {
+                    progress.update(counted.getCount(), records);
+                }
             
-            line = line.trim(); 
-            if (line.isEmpty()) continue;
+                line = line.trim(); 
+                if (line.isEmpty()) continue;
+
+                // Séparation : Niveau / Tag / Valeur
+                int level = builder.tokenize(line, lineCount);
 
-            // Tentative de séparation : Niveau / Tag / Valeur
-            String[] parts = line.split(" ", 3);
-            int level;
-            try {
-                level = Integer.parseInt(parts[0]);
-            } catch (NumberFormatException e) {
-                // On passe le numéro de ligne ET le message pour l'erreur
-                throw new LineErr(lineCount, "Le niveau n'est pas un entier valide : " + line);
+                // Niveau 0 
+                if (level == 0) {
+                    Entity currentEntity = null;
+                
+                    // Format attendu : 0 @ID@ TYPE
+                    String id = share(builder.getTag());
+                    String type = builder.getValue();
+                    if (id != null && type != null && id.startsWith("@")) {
+                        if (type.equals("INDI")) {
+                            currentEntity = new Individual(id);
+                            graph.addIndividual((Individual) currentEntity);
+                        } else if (type.equals("FAM")) {
+                            currentEntity = new Family(id);
+                            graph.addFamily((Family) currentEntity);
+                        }
+                        if (currentEntity != null) records++;
+                    }
+                    builder.begin(currentEntity);
+                }
+            
+                // Niveaux 1 et plus, à n'importe quelle profondeur
+                else {
+                    builder.add(level, builder.getTag(), builder.getValue());
+                }
+            }
+            builder.end();
+            progress.update(counted.getCount(), records);
+
+            phase.setItems(lineCount);
+            phase.setBytes(counted.getCount());
+            Perf.setCounter("parse.lignes", lineCount);
+            Perf.setCounter("parse.tags", builder.getTagCount());
+            event.lines = lineCount;
+        } finally {
+            event.bytes = counted.getCount();
+            event.records = graph.getIndividuals().size() + graph.getFamilies().size() - before;
+            event.commit();
+        }
+    }
+
+    /**
+     * Lit un fichier GEDCOM en mode normal ou paresseux (lazy).
+     * En mode paresseux, le fichier est chargé en un seul buffer d'octets et chaque entité
+     * ne garde que la plage de son enregistrement. Seuls les liens (FAMC, FAMS, HUSB, WIFE, CHIL)
+     * et les tags NAME et SEX sont décodés immédiatement, le reste l'est au premier accès.
+     * @param filePath Le chemin vers le fichier .ged à lire.
+     * @param graph L'instance du graphe à remplir.
+     * @param lazy true pour différer la construction des tags.
+     * @throws IOException En cas de problème d'accès au fichier.
+     * @throws GenealogyErr En cas d'erreur de formatage dans le fichier
+     */
+    public void parse(String filePath, Graph graph, boolean lazy) throws IOException, GenealogyErr {
+        if (!lazy) {
+            parse(filePath, graph);
+            return;
+        }
+
+        FileLoadEvent event = new FileLoadEvent();
+        event.source = filePath;
+        event.lazy = true;
+        event.begin();
+        int before = graph.getIndividuals().size() + graph.getFamilies().size();
+        try (Phase phase = Perf.start("parse.lazy")) {
+            int lines = parseLazy(filePath, graph);
+            phase.setItems(lines);
+            phase.setBytes(Files.size(Paths.get(filePath)));
+            Perf.setCounter("parse.lignes", lines);
+            event.lines = lines;
+            event.bytes = Files.size(Paths.get(filePath));
+        } finally {
+            event.records = graph.getIndividuals().size() + graph.getFamilies().size() - before;
+            event.commit();
+        }
+    }
+
+    /**
+     * Corps du chargement paresseux.
+     * @return Le nombre de lignes lues.
+     */
+    private int parseLazy(String filePath, Graph graph) throws IOException, GenealogyErr {
+        // Même jeu de caractères que le lecteur du mode normal.
+        Charset charset = Charset.defaultCharset();
+        byte[] data;
+        try (InputStream file = new FileInputStream(filePath);
+             InputStream in = openSource(file)) {
+            // Un fichier non compressé est lu d'un bloc à sa taille, un flux décompressé jusqu'au bout.
+            long expected = (in instanceof PipelinedInputStream) ? -1 : Files.size(Paths.get(filePath));
+            data = readAll(in, expected);
+        }
+
+        Entity currentEntity = null;
+        RecordChecker checker = new RecordChecker(data, charset);
+        int recordStart = 0;
+        int recordLine = 0;
+        int lineCount = 0;
+        int pos = 0;
+        long records = 0;
+        progress.phase("lecture", "octets", data.length);
+
+        while (pos < data.length) {
+            // Délimitation de la ligne courante (fins de ligne \n, \r\n ou \r)
+            int lineStart = pos;
+            int eol = pos;
+            while (eol < data.length && data[eol] != '\n' && data[eol] != '\r') eol++;
+            pos = eol + 1;
+            if (eol < data.length && data[eol] == '\r' && pos < data.length && data[pos] == '\n') pos++;
+            lineCount++;
+            if ((lineCount % ProgressTracker.STRIDE) == 0) {
+                progress.update(pos, records);
+            }
+
+            // Équivalent de trim() sans créer de String
+            int s = lineStart;
+            int e = eol;
+            while (s < e && data[s] <= ' ') s++;
+            while (e > s && data[e - 1] <= ' ') e--;
+            if (s == e) continue;
+
+            // Lecture du niveau
+            int level = 0;
+            int i = s;
+            while (i < e && data[i] != ' ') {
+                int digit = data[i] - '0';
+                if (digit < 0 || digit > 9) {
+                    throw new LineErr(lineCount, "Le niveau n'est pas un entier valide : " + new String(data, s, e - s, charset));
+                }
+                level = level * 10 + digit;
+                i++;
             }
 
-            // Niveau 0 
             if (level == 0) {
+                // Fin de l'enregistrement précédent
+                if (currentEntity != null) {
+                    currentEntity.setPending(new RawRecord(data, recordStart, lineStart, charset, recordLine));
+                }
                 currentEntity = null;
-                currentTag = null;
-                
-                // Format attendu : 0 @ID@ TYPE
-                if (parts.length >= 3 && parts[1].startsWith("@")) {
-                    String id = parts[1];
-                    String type = parts[2];
+                recordStart = lineStart;
+                recordLine = lineCount;
 
-                    if (type.equals("INDI")) {
-                        currentEntity = new Individual(id);
+                String[] parts = new String(data, s, e - s, charset).split(" ", 3);
+                if (parts.length >= 3 && parts[1].startsWith("@")) {
+                    parts[1] = share(parts[1]);
+                    if (parts[2].equals("INDI")) {
+                        currentEntity = new Individual(parts[1]);
                         graph.addIndividual((Individual) currentEntity);
-                    } else if (type.equals("FAM")) {
-                        currentEntity = new Family(id);
+                    } else if (parts[2].equals("FAM")) {
+                        currentEntity = new Family(parts[1]);
                         graph.addFamily((Family) currentEntity);
                     }
+                    if (currentEntity != null) records++;
+                }
+                checker.begin((currentEntity == null) ? null : currentEntity.getId());
+            } else if (currentEntity != null) {
+                int tagStart = i + 1;
+                int tagEnd = tagStart;
+                while (tagEnd < e && data[tagEnd] != ' ') tagEnd++;
+                // Les tags dupliqués sont signalés dès le chargement, comme en mode normal
+                checker.check(level, tagStart, tagEnd);
+                // Seuls les tags décodés immédiatement donnent lieu à la création d'une String.
+                if (level == 1 && isEagerTag(data, tagStart, tagEnd)) {
+                    String[] parts = new String(data, s, e - s, charset).split(" ", 3);
+                    String tagName = share(parts[1]);
+                    String value = (parts.length > 2) ? parts[2] : null;
+                    if (tagName.equals("NAME") || tagName.equals("SEX")) {
+                        Tag tag = createTag(tagName, level);
+                        tag.parse(value);
+                        // Seule la valeur nettoyée par le tag est gardée, c'est elle qui est partagée
+                        Value simple = (Value) tag;
+                        simple.setValue(share(simple.getValue()));
+                        currentEntity.addProperty(tag);
+                    } else {
+                        updateLinks(currentEntity, tagName, value);
+                    }
                 }
             }
-            
-            //Niveau 1 
-            else if (level == 1 && currentEntity != null) {
-                currentTag = null; // Fin du tag composite précédent éventuel
-
-                String tagName = parts[1];
-                String value = (parts.length > 2) ? parts[2] : null;
-
-                Tag tag = createTag(tagName, level); // Appel à la Factory
-                
-                if (tag != null) {
-                    tag.parse(value); 
-                    currentEntity.addProperty(tag); 
+        }
+        if (currentEntity != null) {
+            currentEntity.setPending(new RawRecord(data, recordStart, data.length, charset, recordLine));
+        }
+        progress.update(data.length, records);
+        return lineCount;
+    }
 
-                    // Mise à jour des références croisées (champs rapides)
-                    updateLinks(currentEntity, tagName, value);
+    /**
+     * Prépare le flux à parser : détecte une compression gzip ou zip grâce aux premiers octets.
+     * Pour un flux compressé, la décompression est confiée à un PipelinedInputStream.
+     * @param in Le flux brut.
+     * @return Le flux des octets GEDCOM.
+     * @throws IOException En cas de problème de lecture.
+     */
+    static InputStream openSource(InputStream in) throws IOException {
+        BufferedInputStream buffered = new BufferedInputStream(in, 64 * 1024);
+        buffered.mark(4);
+        int b0 = buffered.read();
+        int b1 = buffered.read();
+        int b2 = buffered.read();
+        int b3 = buffered.read();
+        buffered.reset();
 
-                    // Si c'est un tag composite, on le garde en mémoire pour y ajouter les enfants (niv 2)
-                    if (tag instanceof CompositeTag) {
-                        currentTag = (CompositeTag) tag;
-                    }
+        if (b0 == 0x1F && b1 == 0x8B) {
+            return new PipelinedInputStream(new GZIPInputStream(buffered, 64 * 1024));
+        }
+        if (b0 == 'P' && b1 == 'K' && b2 == 3 && b3 == 4) {
+            ZipInputStream zip = new ZipInputStream(buffered);
+            // On lit la première entrée de l'archive qui n'est pas un dossier.
+            ZipEntry entry;
+            while ((entry = zip.getNextEntry()) != null) {
+                if (!entry.isDirectory()) {
+                    return new PipelinedInputStream(zip);
                 }
             }
-            
-            // Niveau 2 
-            else if (level == 2 && currentTag != null) {
-                String tagName = parts[1];
-                String value = (parts.length > 2) ? parts[2] : null;
+            zip.close();
+            throw new IOException("Aucun fichier dans l'archive zip");
+        }
+        return buffered;
+    }
 
-                Tag subTag = createTag(tagName, level);
-                
-                if (subTag != null) {
-                    subTag.parse(value);
-                    currentTag.addChild(subTag); 
-                }
+    /**
+     * Lit un flux jusqu'à la fin dans un tableau d'octets.
+     * @param expected La taille attendue (-1 si inconnue) : le tableau est alors alloué une seule fois.
+     */
+    private byte[] readAll(InputStream in, long expected) throws IOException {
+        byte[] first = new byte[0];
+        if (expected >= 0 && expected < Integer.MAX_VALUE - 8) {
+            first = in.readNBytes((int) expected);
+            if (first.length < expected) return first;
+            int next = in.read();
+            if (next < 0) return first;
+            // Le fichier a grandi depuis la mesure de sa taille : on lit la suite
+            first = Arrays.copyOf(first, first.length + 1);
+            first[first.length - 1] = (byte) next;
+        }
+        ByteArrayOutputStream out = new ByteArrayOutputStream(Math.max(1 << 20, first.length * 2));
+        out.write(first);
+        byte[] chunk = new byte[64 * 1024];
+        int n;
+        while ((n = in.read(chunk)) > 0) {
+            out.write(chunk, 0, n);
+        }
+        return out.toByteArray();
+    }
+
+    /**
+     * Construit l'arbre de tags d'un enregistrement chargé en mode paresseux.
+     * Les liens de l'entité ne sont pas mis à jour : ils l'ont été au chargement.
+     * @param record L'enregistrement brut.
+     * @param entity L'entité à compléter.
+     * @throws GenealogyErr En cas d'erreur de formatage dans l'enregistrement.
+     */
+    void decodeRecord(RawRecord record, Entity entity) throws GenealogyErr {
+        byte[] data = record.getData();
+        Charset charset = record.getCharset();
+        RecordBuilder builder = new RecordBuilder(this, false);
+        builder.begin(entity);
+        int lineCount = record.getFirstLine() - 1;
+        int pos = record.getStart();
+
+        while (pos < record.getEnd()) {
+            int lineStart = pos;
+            int eol = pos;
+            while (eol < record.getEnd() && data[eol] != '\n' && data[eol] != '\r') eol++;
+            pos = eol + 1;
+            if (eol < record.getEnd() && data[eol] == '\r' && pos < record.getEnd() && data[pos] == '\n') pos++;
+            lineCount++;
+
+            String line = new String(data, lineStart, eol - lineStart, charset).trim();
+            if (line.isEmpty()) continue;
+
+            int level = builder.tokenize(line, lineCount);
+            // La ligne de niveau 0 a déjà été traitée au chargement.
+            if (level == 0) continue;
+
+            builder.add(level, builder.getTag(), builder.getValue());
+        }
+        builder.end();
+    }
+
+    /**
+     * Indique si le tag situé entre start et end doit être décodé dès le chargement paresseux.
+     * La comparaison se fait directement sur les octets pour éviter de créer une String par ligne.
+     */
+    private boolean isEagerTag(byte[] data, int start, int end) {
+        int length = end - start;
+        if (length == 3) {
+            return data[start] == 'S' && data[start + 1] == 'E' && data[start + 2] == 'X';
+        }
+        if (length != 4) return false;
+        for (String tag : EAGER_TAGS) {
+            if (data[start] == tag.charAt(0) && data[start + 1] == tag.charAt(1)
+                    && data[start + 2] == tag.charAt(2) && data[start + 3] == tag.charAt(3)) {
+                return true;
             }
         }
-        reader.close();
+        return false;
     }
 
     /**
@@ -123,7 +454,7 @@ public class Parser {
      * @param level Le niveau hiérarchique du tag, utilisé pour les tags génériques.
      * @return Une instance concrète de Tag ou un StringTag si aucune classe spécifique n'existe.
      */
-    private Tag createTag(String tagName, int level) {
+    Tag createTag(String tagName, int level) {
         switch (tagName) {
             // Tags Simples 
             case "NAME": return new NameTag();
@@ -162,9 +493,10 @@ public class Parser {
      * Cela permet une navigation plus rapide dans le graphe sans devoir parcourir la liste des tags à chaque fois.
      * @param entity L'entité en cours de modification.
      * @param tag Le nom du tag rencontré.
-     * @param value La valeur du tag.
+     * @param value La valeur du tag (l'identifiant gardé est l'exemplaire partagé).
      */
-    private void updateLinks(Entity entity, String tag, String value) {
+    void updateLinks(Entity entity, String tag, String value) {
+        value = share(value);
         if (entity instanceof Individual) {
             Individual ind = (Individual) entity;
             if (tag.equals("FAMC")) ind.setFamc(value);
@@ -0,0 +1,138 @@
+package genealogy.parsing;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+/**
+ * Flux d'entrée alimenté par un thread dédié.
+ * Le thread producteur lit (et décompresse) la source dans des blocs d'octets réutilisés,
+ * transmis au lecteur par une file bornée : la décompression et le parsing se recouvrent,
+ * sans fichier temporaire et avec une mémoire limitée au nombre de blocs.
+ */
+public class PipelinedInputStream extends InputStream {
+
+    /** * Taille d'un bloc transmis entre les deux threads (64 Ko). */
+    private static final int CHUNK_SIZE = 64 * 1024;
+
+    /** * Nombre de blocs en circulation entre le producteur et le lecteur. */
+    private static final int CHUNK_COUNT = 8;
+
+    /**
+     * Bloc d'octets échangé entre les threads. Une longueur négative marque la fin du flux.
+     */
+    private static final class Chunk {
+        final byte[] data = new byte[CHUNK_SIZE];
+        int length;
+    }
+
+    /** * Blocs remplis, en attente de lecture. */
+    private final BlockingQueue<Chunk> full = new ArrayBlockingQueue<>(CHUNK_COUNT + 1);
+
+    /** * Blocs vides, prêts à être remplis par le producteur. */
+    private final BlockingQueue<Chunk> free = new ArrayBlockingQueue<>(CHUNK_COUNT);
+
+    /** * La source lue par le producteur. */
+    private final InputStream source;
+
+    /** * Le thread producteur. */
+    private final Thread producer;
+
+    /** * Erreur éventuelle du producteur, remontée au lecteur. */
+    private volatile IOException failure;
+
+    /** * Bloc en cours de lecture, et position dans ce bloc. */
+    private Chunk current;
+    private int position;
+    private boolean finished;
+
+    /**
+     * Constructeur. Démarre immédiatement le thread producteur.
+     * @param source Le flux à lire en arrière-plan (par exemple un GZIPInputStream).
+     */
+    public PipelinedInputStream(InputStream source) {
+        this.source = source;
+        for (int i = 0; i < CHUNK_COUNT; i++) {
+            free.add(new Chunk());
+        }
+        this.producer = new Thread(this::produce, "gedcom-decompression");
+        this.producer.setDaemon(true);
+        this.producer.start();
+    }
+
+    /**
+     * Boucle du thread producteur : remplit les blocs libres jusqu'à la fin de la source.
+     */
+    private void produce() {
+        Chunk end = new Chunk();
+        end.length = -1;
+        try {
+            while (true) {
+                Chunk chunk = free.take();
+                int n = source.read(chunk.data, 0, CHUNK_SIZE);
+                if (n < 0) break;
+                chunk.length = n;
+                full.put(chunk);
+            }
+        } catch (IOException e) {
+            failure = e;
+        } catch (InterruptedException e) {
+            // Fermeture demandée par le lecteur.
+            return;
+        }
+        try {
+            full.put(end);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Passe au bloc suivant si le bloc courant est épuisé.
+     * @return false si la fin du flux est atteinte.
+     */
+    private boolean fill() throws IOException {
+        while (!finished && (current == null || position >= current.length)) {
+            if (current != null) free.add(current);
+            try {
+                current = full.take();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IOException("Lecture interrompue", e);
+            }
+            position = 0;
+            if (current.length < 0) {
+                finished = true;
+                current = null;
+            }
+        }
+        if (finished && failure != null) throw failure;
+        return !finished;
+    }
+
+    @Override
+    public int read() throws IOException {
+        if (!fill()) return -1;
+        return current.data[position++] & 0xFF;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        if (len == 0) return 0;
+        if (!fill()) return -1;
+        int n = Math.min(len, current.length - position);
+        System.arraycopy(current.data, position, b, off, n);
+        position += n;
+        return n;
+    }
+
+    /**
+     * Arrête le producteur et ferme la source.
+     */
+    @Override
+    public void close() throws IOException {
+        producer.interrupt();
+        source.close();
+    }
+}
@@ -0,0 +1,104 @@
+package genealogy.parsing;
+
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.nio.charset.Charset;
+
+import genealogy.graph.Entity;
+import genealogy.exceptions.GenealogyErr;
+
+/**
+ * Représente un enregistrement GEDCOM (niveau 0) qui n'a pas encore été décodé.
+ * Utilisé par le mode de chargement paresseux (lazy) du Parser : l'entité ne garde
+ * que la plage d'octets [start, end[ de son enregistrement dans le buffer source.
+ * L'arbre de tags complet n'est construit qu'au premier accès.
+ * À la sérialisation (SAVE), seule la plage de l'enregistrement est écrite, pas le fichier entier.
+ */
+public class RawRecord implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    /** * Buffer source partagé par tous les enregistrements d'un même fichier (écrit à part, voir writeObject). */
+    private transient byte[] data;
+
+    /** * Position du premier octet de l'enregistrement (ligne de niveau 0 incluse). */
+    private int start;
+
+    /** * Position qui suit le dernier octet de l'enregistrement. */
+    private int end;
+
+    /** * Nom du jeu de caractères utilisé pour décoder les lignes. */
+    private final String charsetName;
+
+    /** * Numéro de la ligne de niveau 0 dans le fichier, pour le rapport d'erreurs. */
+    private final int firstLine;
+
+    /**
+     * Constructeur.
+     * @param data Le buffer contenant le fichier complet.
+     * @param start Début de l'enregistrement dans le buffer.
+     * @param end Fin (exclue) de l'enregistrement dans le buffer.
+     * @param charset Le jeu de caractères du fichier.
+     * @param firstLine Le numéro de la ligne de niveau 0 de l'enregistrement.
+     */
+    public RawRecord(byte[] data, int start, int end, Charset charset, int firstLine) {
+        this.data = data;
+        this.start = start;
+        this.end = end;
+        this.charsetName = charset.name();
+        this.firstLine = firstLine;
+    }
+
+    public byte[] getData() {
+        return data;
+    }
+
+    public int getStart() {
+        return start;
+    }
+
+    public int getEnd() {
+        return end;
+    }
+
+    public Charset getCharset() {
+        return Charset.forName(charsetName);
+    }
+
+    public int getFirstLine() {
+        return firstLine;
+    }
+
+    /**
+     * Sérialisation : seuls les octets de l'enregistrement suivent les champs.
+     */
+    private void writeObject(ObjectOutputStream out) throws IOException {
+        out.defaultWriteObject();
+        out.writeInt(end - start);
+        out.write(data, start, end - start);
+    }
+
+    /**
+     * Désérialisation : l'enregistrement relu a son propre buffer, qui commence à 0.
+     */
+    private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+        in.defaultReadObject();
+        data = new byte[in.readInt()];
+        in.readFully(data);
+        end = data.length;
+        start = 0;
+    }
+
+    /**
+     * Construit l'arbre de tags complet de l'enregistrement dans l'entité donnée.
+     * Les liens (FAMC, FAMS, HUSB, WIFE, CHIL) ont déjà été décodés au chargement
+     * et ne sont pas mis à jour une seconde fois.
+     * @param entity L'entité à compléter.
+     * @throws GenealogyErr En cas d'erreur de formatage dans l'enregistrement.
+     */
+    public void materialize(Entity entity) throws GenealogyErr {
+        new Parser().decodeRecord(this, entity);
+    }
+}
@@ -0,0 +1,252 @@
+package genealogy.parsing;
+
+import java.util.Arrays;
+
+import genealogy.graph.Entity;
+import genealogy.interfaces.Value;
+import genealogy.tags.CompositeTag;
+import genealogy.tags.Tag;
+import genealogy.tags.composite.StructureTag;
+import genealogy.exceptions.GenealogyErr;
+import genealogy.exceptions.exceptfile.LineErr;
+
+/**
+ * Construit l'arbre de tags d'un enregistrement GEDCOM, quelle que soit sa profondeur.
+ * Le constructeur garde une pile explicite des tags composites ouverts (un par niveau)
+ * et une ligne d'avance : un tag n'est créé que lorsque la ligne suivante est connue.
+ * Cela permet :
+ * _ de transformer un tag simple en conteneur (StructureTag) s'il reçoit des sous-tags,
+ * _ de rassembler les lignes CONT/CONC dans la valeur du tag, avec un StringBuilder réutilisé.
+ * Le même objet est réutilisé pour tous les enregistrements d'un fichier.
+ */
+public class RecordBuilder {
+
+    /** * Le parseur qui fournit la Factory de tags et la mise à jour des liens. */
+    private final Parser parser;
+
+    /** * true pour mettre à jour les liens rapides (FAMC, FAMS, HUSB, WIFE, CHIL) de l'entité. */
+    private final boolean links;
+
+    /** * L'entité en cours de construction, null hors d'un INDI ou d'un FAM. */
+    private Entity entity;
+
+    /** * Pile des tags composites ouverts : stack[n] est le conteneur de niveau n (n >= 1). */
+    private CompositeTag[] stack = new CompositeTag[8];
+
+    /** * Niveau du conteneur le plus profond encore ouvert (0 : seulement l'entité). */
+    private int depth;
+
+    /** * Ligne en attente : niveau (-1 si aucune), tag et valeur. */
+    private int pendingLevel = -1;
+    private String pendingName;
+    private String pendingValue;
+
+    /** * Valeur en cours d'assemblage si la ligne en attente a des CONT/CONC. */
+    private final StringBuilder continuation = new StringBuilder();
+    private boolean continued;
+
+    /** * Nombre de tags créés depuis la création du constructeur. */
+    private long tagCount;
+
+    /** * Résultat du dernier appel à tokenize() : tag et valeur de la ligne. */
+    private String tag;
+    private String value;
+
+    /**
+     * Constructeur.
+     * @param parser Le parseur qui fournit la Factory de tags.
+     * @param links true pour mettre à jour les liens rapides des entités.
+     */
+    public RecordBuilder(Parser parser, boolean links) {
+        this.parser = parser;
+        this.links = links;
+    }
+
+    /**
+     * Découpe une ligne (déjà trimée et non vide) en niveau / tag / valeur, sans expression régulière.
+     * Le tag et la valeur sont ensuite disponibles via getTag() et getValue().
+     * @param line La ligne à découper.
+     * @param lineCount Le numéro de la ligne, pour le rapport d'erreurs.
+     * @return Le niveau de la ligne.
+     * @throws LineErr Si le niveau n'est pas un entier valide.
+     */
+    public int tokenize(String line, int lineCount) throws LineErr {
+        int length = line.length();
+        int level = 0;
+        int i = 0;
+        while (i < length && line.charAt(i) != ' ') {
+            int digit = line.charAt(i) - '0';
+            if (digit < 0 || digit > 9) {
+                throw new LineErr(lineCount, "Le niveau n'est pas un entier valide : " + line);
+            }
+            level = level * 10 + digit;
+            i++;
+        }
+        if (i == 0) {
+            throw new LineErr(lineCount, "Le niveau n'est pas un entier valide : " + line);
+        }
+        if (i >= length) {
+            tag = null;
+            value = null;
+            return level;
+        }
+        int space = line.indexOf(' ', i + 1);
+        if (space < 0) {
+            tag = line.substring(i + 1);
+            value = null;
+        } else {
+            tag = line.substring(i + 1, space);
+            value = line.substring(space + 1);
+        }
+        return level;
+    }
+
+    /**
+     * Le tag (ou l'identifiant pour une ligne de niveau 0) de la dernière ligne découpée.
+     * @return Le deuxième champ de la ligne, ou null.
+     */
+    public String getTag() {
+        return tag;
+    }
+
+    /**
+     * La valeur de la dernière ligne découpée.
+     * @return Le reste de la ligne après le tag, ou null.
+     */
+    public String getValue() {
+        return value;
+    }
+
+    /**
+     * Nombre de tags créés par ce constructeur, tous enregistrements confondus.
+     * @return Le nombre de tags.
+     */
+    public long getTagCount() {
+        return tagCount;
+    }
+
+    /**
+     * Commence un nouvel enregistrement (termine le précédent).
+     * @param entity L'entité à remplir, ou null pour ignorer les lignes jusqu'au prochain niveau 0.
+     * @throws GenealogyErr Si la fin de l'enregistrement précédent provoque une erreur.
+     */
+    public void begin(Entity entity) throws GenealogyErr {
+        end();
+        this.entity = entity;
+    }
+
+    /**
+     * Termine l'enregistrement en cours : crée le tag en attente et vide la pile.
+     * @throws GenealogyErr Si un tag non répétable est dupliqué.
+     */
+    public void end() throws GenealogyErr {
+        if (pendingLevel >= 0) flush(false);
+        Arrays.fill(stack, 0, depth + 1, null);
+        depth = 0;
+        entity = null;
+    }
+
+    /**
+     * Ajoute une ligne de niveau 1 ou plus à l'enregistrement en cours.
+     * Les lignes dont le parent n'existe pas (saut de niveau) sont ignorées.
+     * @param level Le niveau de la ligne.
+     * @param name Le tag de la ligne.
+     * @param lineValue La valeur de la ligne (peut être null).
+     * @throws GenealogyErr Si un tag non répétable est dupliqué.
+     */
+    public void add(int level, String name, String lineValue) throws GenealogyErr {
+        if (entity == null || name == null) return;
+
+        if (pendingLevel >= 0) {
+            // Suite de la valeur du tag en attente
+            if (level == pendingLevel + 1 && isContinuation(name)) {
+                if (!continued) {
+                    continuation.setLength(0);
+                    if (pendingValue != null) continuation.append(pendingValue);
+                    continued = true;
+                }
+                appendContinuation(continuation, name, lineValue);
+                return;
+            }
+            // Une ligne plus profonde fait du tag en attente un conteneur
+            flush(level > pendingLevel);
+        }
+
+        if (level < 1 || level > depth + 1) return;
+
+        // Suite de la valeur d'un conteneur déjà créé (CONT après d'autres sous-tags)
+        if (level >= 2 && isContinuation(name) && stack[level - 1] instanceof Value) {
+            Value parent = (Value) stack[level - 1];
+            StringBuilder sb = new StringBuilder();
+            if (parent.getValue() != null) sb.append(parent.getValue());
+            appendContinuation(sb, name, lineValue);
+            parent.setValue(sb.toString());
+            return;
+        }
+
+        // On referme les conteneurs de niveau supérieur ou égal
+        while (depth >= level) {
+            stack[depth--] = null;
+        }
+        pendingLevel = level;
+        pendingName = name;
+        pendingValue = lineValue;
+    }
+
+    /**
+     * Crée le tag en attente et le rattache à son parent.
+     * @param container true si la ligne suivante est un sous-tag du tag en attente.
+     */
+    private void flush(boolean container) throws GenealogyErr {
+        int level = pendingLevel;
+        String name = parser.share(pendingName);
+        String rawValue = continued ? continuation.toString() : pendingValue;
+        pendingLevel = -1;
+        pendingName = null;
+        pendingValue = null;
+        continued = false;
+
+        Tag tag = parser.createTag(name, level);
+        tag.parse(rawValue);
+        if (tag instanceof Value) {
+            // La valeur nettoyée par le tag (trim, NAME sans les /) est une nouvelle chaîne
+            Value simple = (Value) tag;
+            simple.setValue(parser.share(simple.getValue()));
+        }
+        tagCount++;
+        if (container && !(tag instanceof CompositeTag)) {
+            // On garde le tag spécifique et sa valeur nettoyée (ex: NAME sans les /, nom de famille)
+            tag = new StructureTag(name, level, tag);
+        }
+
+        if (level == 1) {
+            entity.addProperty(tag);
+            if (links) parser.updateLinks(entity, name, rawValue);
+        } else {
+            stack[level - 1].addChild(tag);
+        }
+
+        if (tag instanceof CompositeTag) {
+            if (level >= stack.length) {
+                stack = Arrays.copyOf(stack, stack.length * 2);
+            }
+            stack[level] = (CompositeTag) tag;
+            depth = level;
+        }
+    }
+
+    /**
+     * Indique si un tag est une ligne de continuation de valeur.
+     */
+    private static boolean isContinuation(String name) {
+        return name.equals("CONT") || name.equals("CONC");
+    }
+
+    /**
+     * CONT ajoute un retour à la ligne avant la suite de la valeur, CONC la colle directement.
+     */
+    private static void appendContinuation(StringBuilder sb, String name, String lineValue) {
+        if (name.equals("CONT")) sb.append('\n');
+        if (lineValue != null) sb.append(lineValue);
+    }
+}
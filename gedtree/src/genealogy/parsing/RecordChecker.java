@@ -0,0 +1,136 @@
+package genealogy.parsing;
+
+import java.nio.charset.Charset;
+import java.util.Arrays;
+
+import genealogy.exceptions.exceptfile.DupTagErr;
+
+/**
+ * Vérifie, pendant le chargement paresseux, les règles de non-répétition que le RecordBuilder
+ * appliquera au décodage : un tag dupliqué fait échouer le LOAD comme en mode normal,
+ * au lieu d'être découvert au premier affichage de l'entité.
+ * La vérification se fait sur les octets du fichier, sans créer de tag ni de String par ligne :
+ * _ au niveau 1, seuls FAMS, CHIL et NOTE peuvent être répétés,
+ * _ sous BIRT, DEAT, MARR et OBJE, seuls NOTE, SOUR, CONT et CONC peuvent l'être,
+ * _ les enfants des autres tags (qui deviennent des StructureTag) ne sont pas vérifiés.
+ * Comme dans le RecordBuilder, les lignes CONT/CONC de niveau 2 ou plus et les sauts de niveau sont ignorés.
+ */
+class RecordChecker {
+
+    /** * Tags de niveau 1 répétables dans une entité (voir Entity.addProperty). */
+    private static final String[] ENTITY_REPEATABLE = { "FAMS", "CHIL", "NOTE" };
+
+    /** * Tags répétables dans un composite spécifique (voir CompositeTag.isRepeatable). */
+    private static final String[] COMPOSITE_REPEATABLE = { "NOTE", "SOUR", "CONT", "CONC" };
+
+    /** * Composites spécifiques créés par le parseur, les seuls dont les enfants sont vérifiés. */
+    private static final String[] COMPOSITES = { "BIRT", "DEAT", "MARR", "OBJE" };
+
+    private final byte[] data;
+    private final Charset charset;
+
+    /** * Identifiant de l'entité en cours, pour le message d'erreur. */
+    private String entity;
+
+    /** * Niveau du dernier tag retenu (0 : seulement l'entité). */
+    private int last;
+
+    /** * Pour chaque niveau n : true si les tags de niveau n sont vérifiés. */
+    private boolean[] checked = new boolean[8];
+
+    /** * Pour chaque niveau n : début du tag parent (composite de niveau n-1) dans data. */
+    private int[] parent = new int[8];
+
+    /** * Pour chaque niveau n : positions (début, fin) des tags déjà vus, et leur nombre. */
+    private int[][] seen = new int[8][8];
+    private int[] count = new int[8];
+
+    /**
+     * Constructeur.
+     * @param data Le buffer du fichier.
+     * @param charset Le jeu de caractères, pour les messages d'erreur.
+     */
+    RecordChecker(byte[] data, Charset charset) {
+        this.data = data;
+        this.charset = charset;
+    }
+
+    /**
+     * Commence un nouvel enregistrement.
+     * @param entity L'identifiant de l'entité, ou null pour ignorer les lignes jusqu'au prochain niveau 0.
+     */
+    void begin(String entity) {
+        this.entity = entity;
+        this.last = 0;
+        this.checked[1] = true;
+        this.count[1] = 0;
+    }
+
+    /**
+     * Vérifie une ligne de niveau 1 ou plus de l'enregistrement en cours.
+     * @param level Le niveau de la ligne.
+     * @param start Début du tag dans data.
+     * @param end Fin (exclue) du tag dans data.
+     * @throws DupTagErr Si le tag n'est pas répétable et qu'il est déjà présent au même endroit.
+     */
+    void check(int level, int start, int end) throws DupTagErr {
+        if (entity == null || start >= end || level > last + 1) return;
+        if (level >= 2 && (is(start, end, "CONT") || is(start, end, "CONC"))) return;
+
+        if (checked[level]) {
+            String[] repeatable = (level == 1) ? ENTITY_REPEATABLE : COMPOSITE_REPEATABLE;
+            if (!isAny(start, end, repeatable)) {
+                int[] s = seen[level];
+                for (int k = 0; k < count[level]; k += 2) {
+                    if (Arrays.equals(data, s[k], s[k + 1], data, start, end)) {
+                        String name = new String(data, start, end - start, charset);
+                        throw new DupTagErr(name, (level == 1) ? "Entity " + entity : parentName(level));
+                    }
+                }
+                if (count[level] + 2 > s.length) seen[level] = s = Arrays.copyOf(s, s.length * 2);
+                s[count[level]++] = start;
+                s[count[level]++] = end;
+            }
+        }
+
+        // Les enfants de ce tag forment une nouvelle portée
+        last = level;
+        int child = level + 1;
+        if (child >= checked.length) {
+            checked = Arrays.copyOf(checked, checked.length * 2);
+            parent = Arrays.copyOf(parent, parent.length * 2);
+            count = Arrays.copyOf(count, count.length * 2);
+            int old = seen.length;
+            seen = Arrays.copyOf(seen, old * 2);
+            for (int n = old; n < seen.length; n++) seen[n] = new int[8];
+        }
+        checked[child] = isAny(start, end, COMPOSITES);
+        parent[child] = start;
+        count[child] = 0;
+    }
+
+    /**
+     * Nom du composite qui contient les tags du niveau donné.
+     */
+    private String parentName(int level) {
+        int start = parent[level];
+        int end = start;
+        while (end < data.length && data[end] > ' ') end++;
+        return new String(data, start, end - start, charset);
+    }
+
+    private boolean isAny(int start, int end, String[] names) {
+        for (String name : names) {
+            if (is(start, end, name)) return true;
+        }
+        return false;
+    }
+
+    private boolean is(int start, int end, String name) {
+        if (end - start != name.length()) return false;
+        for (int i = 0; i < name.length(); i++) {
+            if (data[start + i] != name.charAt(i)) return false;
+        }
+        return true;
+    }
+}
@@ -0,0 +1,305 @@
+package genealogy.parsing;
+
+import java.io.BufferedReader;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.Charset;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Empreintes des enregistrements d'un fichier GEDCOM, sans construire de graphe.
+ * Le fichier est lu par blocs d'environ 1 Mo coupés sur une ligne de niveau 0 : chaque bloc ne contient
+ * que des enregistrements entiers, et son empreinte est calculée par un pool de threads pendant que
+ * la lecture continue. L'empreinte d'un individu ou d'une famille est un hachage sur 64 bits de ses lignes
+ * (sans les espaces en début et fin de ligne, quelle que soit la fin de ligne) : seule la table
+ * ID -> empreinte est gardée en mémoire.
+ * Une ligne CONC est hachée comme la suite de la ligne précédente, comme le parseur la recolle : un fichier
+ * et son EXPORT (qui réécrit les valeurs sans CONC) ont ainsi les mêmes empreintes.
+ */
+public class RecordHasher {
+
+    /** * Taille visée d'un bloc haché d'un seul tenant (1 Mo). */
+    private static final int BLOCK_SIZE = 1 << 20;
+
+    /** * Constantes du hachage FNV-1a sur 64 bits. */
+    private static final long FNV_OFFSET = 0xcbf29ce484222325L;
+    private static final long FNV_PRIME = 0x100000001b3L;
+
+    /**
+     * Empreintes d'un fichier : une table par type d'enregistrement, dans l'ordre du fichier.
+     */
+    public static class Fingerprints {
+        private final Map<String, Long> individuals = new LinkedHashMap<>();
+        private final Map<String, Long> families = new LinkedHashMap<>();
+        private long bytes;
+
+        public Map<String, Long> getIndividuals() {
+            return individuals;
+        }
+
+        public Map<String, Long> getFamilies() {
+            return families;
+        }
+
+        /**
+         * @return Le nombre d'octets lus (après décompression éventuelle).
+         */
+        public long getBytes() {
+            return bytes;
+        }
+    }
+
+    /**
+     * Empreintes des enregistrements d'un bloc, dans l'ordre du bloc.
+     */
+    private static class Block {
+        final List<String> ids = new ArrayList<>();
+        final List<Boolean> families = new ArrayList<>();
+        long[] hashes = new long[64];
+    }
+
+    private final int threads;
+
+    /**
+     * Constructeur avec un thread de hachage par processeur.
+     */
+    public RecordHasher() {
+        this(Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * Constructeur.
+     * @param threads Le nombre de threads de hachage.
+     */
+    public RecordHasher(int threads) {
+        this.threads = Math.max(1, threads);
+    }
+
+    /**
+     * Calcule l'empreinte de chaque individu et de chaque famille d'un fichier (compressé ou non).
+     * @param filePath Le fichier GEDCOM.
+     * @return Les empreintes, par ID.
+     * @throws IOException En cas de problème de lecture.
+     */
+    public Fingerprints hash(String filePath) throws IOException {
+        Fingerprints result = new Fingerprints();
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        // Blocs en cours de hachage, fusionnés dans l'ordre du fichier ; leur nombre borne la mémoire utilisée
+        ArrayDeque<Future<Block>> pending = new ArrayDeque<>();
+        try (InputStream in = Parser.openSource(new FileInputStream(filePath))) {
+            byte[] data = new byte[BLOCK_SIZE];
+            int length = 0;
+            boolean eof = false;
+            while (!eof) {
+                int n = in.read(data, length, data.length - length);
+                if (n < 0) eof = true;
+                else length += n;
+                if (length < data.length && !eof) continue;
+                if (length == 0) break;
+
+                // Coupure avant la dernière ligne de niveau 0 du bloc (tout le bloc à la fin du fichier)
+                int cut = eof ? length : lastRecordStart(data, length);
+                if (cut <= 0) {
+                    // Un seul enregistrement plus grand que le bloc : on agrandit
+                    data = Arrays.copyOf(data, data.length * 2);
+                    continue;
+                }
+                byte[] chunk = Arrays.copyOf(data, cut);
+                pending.add(pool.submit(() -> hashBlock(chunk)));
+                System.arraycopy(data, cut, data, 0, length - cut);
+                length -= cut;
+                result.bytes += cut;
+                while (pending.size() > threads * 2) merge(pending.poll(), result);
+            }
+            while (!pending.isEmpty()) merge(pending.poll(), result);
+        } finally {
+            pool.shutdownNow();
+        }
+        return result;
+    }
+
+    private static void merge(Future<Block> future, Fingerprints result) throws IOException {
+        Block block;
+        try {
+            block = future.get();
+        } catch (ExecutionException e) {
+            throw new IllegalStateException(e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Lecture interrompue", e);
+        }
+        for (int r = 0; r < block.ids.size(); r++) {
+            Map<String, Long> table = block.families.get(r) ? result.families : result.individuals;
+            table.put(block.ids.get(r), block.hashes[r]);
+        }
+    }
+
+    /**
+     * Position de la dernière ligne de niveau 0 du buffer, ou 0 s'il n'y en a qu'une (au début).
+     */
+    private static int lastRecordStart(byte[] data, int length) {
+        for (int i = length - 1; i > 0; i--) {
+            if (data[i - 1] != '\n' && data[i - 1] != '\r') continue;
+            int s = i;
+            while (s < length && (data[s] == ' ' || data[s] == '\t')) s++;
+            if (s + 1 < length && data[s] == '0' && data[s + 1] == ' ') return i;
+        }
+        return 0;
+    }
+
+    /**
+     * Hache les enregistrements INDI et FAM d'un bloc d'enregistrements entiers.
+     */
+    private static Block hashBlock(byte[] data) {
+        Block block = new Block();
+        long hash = 0;
+        boolean inRecord = false;
+        // true si la dernière ligne hachée a une valeur : sinon la valeur d'un CONC en est séparée par un espace
+        boolean hasValue = false;
+        int pos = 0;
+        while (pos < data.length) {
+            int eol = pos;
+            while (eol < data.length && data[eol] != '\n' && data[eol] != '\r') eol++;
+            int s = pos;
+            int e = eol;
+            pos = eol + 1;
+            while (s < e && data[s] <= ' ') s++;
+            while (e > s && data[e - 1] <= ' ') e--;
+            if (s == e) continue;
+
+            if (data[s] == '0' && s + 1 < e && data[s + 1] == ' ') {
+                if (inRecord) block.hashes[block.ids.size() - 1] = finish(hash);
+                inRecord = false;
+                // "0 @ID@ INDI" ou "0 @ID@ FAM" : les autres enregistrements (HEAD, SOUR, TRLR...) sont ignorés
+                int idStart = s + 2;
+                int idEnd = idStart;
+                while (idEnd < e && data[idEnd] != ' ') idEnd++;
+                if (idStart >= e || data[idStart] != '@') continue;
+                String type = new String(data, idEnd, e - idEnd, Charset.defaultCharset()).trim();
+                if (!type.equals("INDI") && !type.equals("FAM")) continue;
+                if (block.ids.size() == block.hashes.length) block.hashes = Arrays.copyOf(block.hashes, block.hashes.length * 2);
+                block.ids.add(new String(data, idStart, idEnd - idStart, Charset.defaultCharset()));
+                block.families.add(type.equals("FAM"));
+                hash = FNV_OFFSET;
+                inRecord = true;
+            } else if (inRecord) {
+                // Le séparateur est haché avant la ligne, pour qu'une ligne CONC prolonge la précédente
+                int conc = concValue(data, s, e);
+                if (conc < 0) {
+                    hash = (hash ^ '\n') * FNV_PRIME;
+                    hasValue = hasValue(data, s, e);
+                } else if (conc < e && !hasValue) {
+                    hash = (hash ^ ' ') * FNV_PRIME;
+                    hasValue = true;
+                }
+                for (int i = conc < 0 ? s : conc; i < e; i++) {
+                    hash = (hash ^ (data[i] & 0xFF)) * FNV_PRIME;
+                }
+            }
+        }
+        if (inRecord) block.hashes[block.ids.size() - 1] = finish(hash);
+        return block;
+    }
+
+    /**
+     * Début de la valeur d'une ligne "N CONC valeur" (la fin de ligne si elle est vide), ou -1 pour une autre ligne.
+     */
+    private static int concValue(byte[] data, int s, int e) {
+        int t = s;
+        while (t < e && data[t] >= '0' && data[t] <= '9') t++;
+        if (t == s || t + 5 > e || data[t] != ' ' || data[t + 1] != 'C' || data[t + 2] != 'O'
+                || data[t + 3] != 'N' || data[t + 4] != 'C') return -1;
+        if (t + 5 == e) return e;
+        return data[t + 5] == ' ' ? t + 6 : -1;
+    }
+
+    /**
+     * @return true si la ligne "N TAG valeur" a une valeur (au moins deux espaces après le niveau).
+     */
+    private static boolean hasValue(byte[] data, int s, int e) {
+        int spaces = 0;
+        for (int i = s; i < e && spaces < 2; i++) {
+            if (data[i] == ' ') spaces++;
+        }
+        return spaces == 2;
+    }
+
+    /**
+     * Mélange final des bits (celui de MurmurHash3), pour que des lignes proches donnent des empreintes éloignées.
+     */
+    private static long finish(long h) {
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return h;
+    }
+
+    /**
+     * Relit les lignes de quelques enregistrements, pour détailler leurs différences.
+     * Chaque ligne est rendue sous la forme "CHEMIN valeur", où le chemin réunit les tags parents
+     * (ex: "BIRT.DATE 1850") ; la ligne de niveau 0 est omise et les lignes CONC sont recollées à la précédente.
+     * @param filePath Le fichier GEDCOM.
+     * @param ids Les IDs des enregistrements à relire.
+     * @return Les lignes de chaque enregistrement trouvé, par ID.
+     * @throws IOException En cas de problème de lecture.
+     */
+    public static Map<String, List<String>> lines(String filePath, Set<String> ids) throws IOException {
+        Map<String, List<String>> result = new HashMap<>();
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(
+                Parser.openSource(new FileInputStream(filePath)), Charset.defaultCharset()))) {
+            List<String> current = null;
+            String[] path = new String[16];
+            String line;
+            while ((line = reader.readLine()) != null) {
+                line = line.trim();
+                if (line.isEmpty()) continue;
+                // Hors des enregistrements cherchés, seules les lignes de niveau 0 sont découpées
+                boolean levelZero = line.charAt(0) == '0' && (line.length() == 1 || line.charAt(1) == ' ');
+                if (current == null && !levelZero) continue;
+                String[] parts = line.split(" ", 3);
+                int level;
+                try {
+                    level = Integer.parseInt(parts[0]);
+                } catch (NumberFormatException e) {
+                    continue;
+                }
+                if (level == 0) {
+                    current = (parts.length > 1 && ids.contains(parts[1])) ? new ArrayList<>() : null;
+                    if (current != null) result.put(parts[1], current);
+                } else if (current != null && parts.length > 1 && parts[1].equals("CONC") && !current.isEmpty()) {
+                    if (parts.length > 2) {
+                        String last = current.get(current.size() - 1);
+                        current.set(current.size() - 1, last + (last.indexOf(' ') < 0 ? " " : "") + parts[2]);
+                    }
+                } else if (current != null && parts.length > 1) {
+                    if (level > path.length) path = Arrays.copyOf(path, level * 2);
+                    path[level - 1] = parts[1];
+                    if (level < path.length) path[level] = null;
+                    StringBuilder key = new StringBuilder();
+                    for (int l = 0; l < level; l++) {
+                        if (l > 0) key.append('.');
+                        key.append(path[l] == null ? "?" : path[l]);
+                    }
+                    if (parts.length > 2) key.append(' ').append(parts[2]);
+                    current.add(key.toString());
+                }
+            }
+        }
+        return result;
+    }
+}
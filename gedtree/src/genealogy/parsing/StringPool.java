@@ -0,0 +1,101 @@
+package genealogy.parsing;
+
+import java.lang.ref.WeakReference;
+import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Réserve de chaînes d'un chargement (LOAD, ou MERGE de plusieurs fichiers lus en parallèle).
+ * Le parseur y fait passer les IDs, les noms de tags et les valeurs courtes (noms, lieux, dates) :
+ * une chaîne déjà vue est remplacée par l'exemplaire de la réserve, et la copie lue dans le fichier
+ * est aussitôt libérée. Les valeurs longues (notes) sont rarement répétées et ne sont pas partagées.
+ * La réserve ne vit que le temps du chargement : une fois le fichier lu, seuls les graphes gardent les chaînes.
+ * Pour que plusieurs graphes (ex: deux versions d'un même arbre) partagent leurs chaînes, chaque chaîne
+ * nouvelle pour le chargement est cherchée dans une table commune (Shared) aux références faibles :
+ * une chaîne qu'aucun graphe n'utilise plus en disparaît d'elle-même.
+ * La réserve peut être utilisée par plusieurs parseurs en même temps.
+ */
+public class StringPool {
+
+    /** * Longueur maximale d'une valeur partagée. */
+    public static final int MAX_LENGTH = 64;
+
+    /**
+     * Table des chaînes encore utilisées par au moins un graphe, commune à tous les chargements.
+     * Elle n'est consultée qu'une fois par chaîne distincte d'un chargement.
+     */
+    public static class Shared {
+        private final Map<String, WeakReference<String>> strings = new WeakHashMap<>();
+
+        /** * Nombre de chaînes lues remplacées par un exemplaire partagé, tous chargements confondus. */
+        private final LongAdder hits = new LongAdder();
+
+        private synchronized String intern(String s) {
+            WeakReference<String> ref = strings.get(s);
+            String shared = (ref == null) ? null : ref.get();
+            if (shared != null) return shared;
+            strings.put(s, new WeakReference<>(s));
+            return s;
+        }
+
+        /**
+         * @return Le nombre de chaînes distinctes encore utilisées.
+         */
+        public synchronized int size() {
+            return strings.size();
+        }
+
+        /**
+         * @return Le nombre de chaînes lues remplacées par un exemplaire partagé.
+         */
+        public long getHits() {
+            return hits.sum();
+        }
+    }
+
+    /** * Chaînes déjà vues par ce chargement. */
+    private final ConcurrentHashMap<String, String> strings = new ConcurrentHashMap<>();
+
+    private final Shared shared;
+
+    /**
+     * Réserve d'un chargement isolé, qui ne partage rien avec les autres graphes.
+     */
+    public StringPool() {
+        this(new Shared());
+    }
+
+    /**
+     * Réserve d'un chargement qui partage ses chaînes avec les graphes de la table commune.
+     * @param shared La table commune.
+     */
+    public StringPool(Shared shared) {
+        this.shared = shared;
+    }
+
+    /**
+     * Renvoie l'exemplaire partagé d'une chaîne, en l'ajoutant à la réserve si besoin.
+     * @param s La chaîne lue (peut être null).
+     * @return L'exemplaire partagé, ou s elle-même si elle est null ou trop longue.
+     */
+    public String intern(String s) {
+        if (s == null || s.length() > MAX_LENGTH) return s;
+        String known = strings.get(s);
+        if (known == null) {
+            known = shared.intern(s);
+            String other = strings.putIfAbsent(s, known);
+            if (other != null) known = other;
+        }
+        if (known != s) shared.hits.increment();
+        return known;
+    }
+
+    /**
+     * @return Le nombre de chaînes distinctes vues par ce chargement.
+     */
+    public int size() {
+        return strings.size();
+    }
+}
@@ -0,0 +1,26 @@
+package genealogy.perf;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * Événement Java Flight Recorder : exécution d'une commande de la console.
+ */
+@Name("genealogy.Command")
+@Label("Commande console")
+@Category("GedTree")
+@Description("Exécution d'une commande de la console.")
+public class CommandEvent extends Event {
+
+    @Label("Commande")
+    public String command;
+
+    @Label("Arguments")
+    public String arguments;
+
+    @Label("Succès")
+    public boolean success;
+}
@@ -0,0 +1,50 @@
+package genealogy.perf;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Flux d'entrée qui compte les octets lus, pour mesurer le débit du parseur.
+ */
+public class CountingInputStream extends FilterInputStream {
+
+    /** * Nombre d'octets lus depuis la création du flux. */
+    private long count;
+
+    /**
+     * Constructeur.
+     * @param in Le flux à compter.
+     */
+    public CountingInputStream(InputStream in) {
+        super(in);
+    }
+
+    /**
+     * @return Le nombre d'octets lus jusqu'ici.
+     */
+    public long getCount() {
+        return count;
+    }
+
+    @Override
+    public int read() throws IOException {
+        int b = super.read();
+        if (b >= 0) count++;
+        return b;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        int n = super.read(b, off, len);
+        if (n > 0) count += n;
+        return n;
+    }
+
+    @Override
+    public long skip(long n) throws IOException {
+        long skipped = super.skip(n);
+        count += skipped;
+        return skipped;
+    }
+}
@@ -0,0 +1,23 @@
+package genealogy.perf;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * Événement Java Flight Recorder : recherche de cycles généalogiques sur tous les individus.
+ */
+@Name("genealogy.CycleCheck")
+@Label("Détection de cycles")
+@Category("GedTree")
+@Description("Recherche de cycles généalogiques sur tous les individus.")
+public class CycleCheckEvent extends Event {
+
+    @Label("Individus vérifiés")
+    public long individuals;
+
+    @Label("Cycle trouvé")
+    public boolean cycleFound;
+}
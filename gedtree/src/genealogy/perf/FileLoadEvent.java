@@ -0,0 +1,34 @@
+package genealogy.perf;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * Événement Java Flight Recorder : lecture d'un fichier GEDCOM par le parseur.
+ */
+@Name("genealogy.FileLoad")
+@Label("Chargement GEDCOM")
+@Category("GedTree")
+@Description("Lecture d'un fichier GEDCOM par le parseur.")
+public class FileLoadEvent extends Event {
+
+    @Label("Source")
+    public String source;
+
+    @Label("Mode paresseux")
+    public boolean lazy;
+
+    @Label("Octets lus")
+    @DataAmount
+    public long bytes;
+
+    @Label("Lignes")
+    public long lines;
+
+    @Label("Enregistrements")
+    public long records;
+}
@@ -0,0 +1,101 @@
+package genealogy.perf;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Histogramme de durées à mémoire fixe, dans l'esprit de HdrHistogram.
+ * Chaque puissance de 2 est découpée en 32 intervalles égaux : l'erreur relative
+ * sur un percentile est donc d'au plus 1/32 (environ 3 %), quelle que soit l'échelle.
+ * L'enregistrement est sans verrou et peut se faire depuis plusieurs threads.
+ */
+public class Histogram {
+
+    /** * Nombre de bits de précision par puissance de 2 (32 sous-intervalles). */
+    private static final int SUB_BITS = 5;
+    private static final int SUB = 1 << SUB_BITS;
+
+    /** * Nombre total d'intervalles pour couvrir toutes les valeurs positives d'un long. */
+    private static final int BUCKETS = SUB + (63 - SUB_BITS) * SUB;
+
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+    private final AtomicLong total = new AtomicLong();
+    private final AtomicLong sum = new AtomicLong();
+    private final AtomicLong max = new AtomicLong();
+
+    /**
+     * Enregistre une valeur (par exemple une durée en nanosecondes).
+     * @param value La valeur, ramenée à 0 si elle est négative.
+     */
+    public void record(long value) {
+        if (value < 0) value = 0;
+        counts.incrementAndGet(indexOf(value));
+        total.incrementAndGet();
+        sum.addAndGet(value);
+        long current;
+        while (value > (current = max.get()) && !max.compareAndSet(current, value)) {
+            // on réessaie jusqu'à ce que le maximum soit à jour
+        }
+    }
+
+    /**
+     * @return Le nombre de valeurs enregistrées.
+     */
+    public long getCount() {
+        return total.get();
+    }
+
+    /**
+     * @return La moyenne des valeurs, ou 0 si l'histogramme est vide.
+     */
+    public double getMean() {
+        long n = total.get();
+        return n == 0 ? 0.0 : (double) sum.get() / n;
+    }
+
+    /**
+     * @return La plus grande valeur enregistrée.
+     */
+    public long getMax() {
+        return max.get();
+    }
+
+    /**
+     * Estime un percentile : borne haute de l'intervalle qui le contient.
+     * @param percentile Le percentile voulu, entre 0 et 100.
+     * @return La valeur estimée, ou 0 si l'histogramme est vide.
+     */
+    public long getPercentile(double percentile) {
+        long n = total.get();
+        if (n == 0) return 0;
+        long target = Math.max(1, (long) Math.ceil(percentile / 100.0 * n));
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += counts.get(i);
+            if (seen >= target) return Math.min(upperBound(i), max.get());
+        }
+        return max.get();
+    }
+
+    /**
+     * Intervalle qui contient la valeur : linéaire sous 32, puis 32 intervalles par puissance de 2.
+     */
+    private static int indexOf(long value) {
+        if (value < SUB) return (int) value;
+        int exponent = 63 - Long.numberOfLeadingZeros(value);
+        int shift = exponent - SUB_BITS;
+        int mantissa = (int) (value >>> shift) - SUB;
+        return SUB + shift * SUB + mantissa;
+    }
+
+    /**
+     * Plus grande valeur contenue dans l'intervalle donné.
+     */
+    private static long upperBound(int index) {
+        if (index < SUB) return index;
+        int shift = (index - SUB) / SUB;
+        int mantissa = (index - SUB) % SUB;
+        long lower = (long) (SUB + mantissa) << shift;
+        return lower + (1L << shift) - 1;
+    }
+}
@@ -0,0 +1,26 @@
+package genealogy.perf;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * Événement Java Flight Recorder : recherche d'une personne par identifiant ou par nom dans la console.
+ */
+@Name("genealogy.NameSearch")
+@Label("Recherche de personne")
+@Category("GedTree")
+@Description("Recherche d'une personne par identifiant ou par nom dans la console.")
+public class NameSearchEvent extends Event {
+
+    @Label("Recherche")
+    public String query;
+
+    @Label("Individus parcourus")
+    public long scanned;
+
+    @Label("Trouvé")
+    public boolean found;
+}
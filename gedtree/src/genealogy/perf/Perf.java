@@ -0,0 +1,226 @@
+package genealogy.perf;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentSkipListMap;
+
+/**
+ * Registre des mesures de performance de l'application.
+ * Le parseur, la validation du graphe, la sauvegarde et la console y enregistrent :
+ * _ la durée, les octets alloués et le débit de chaque phase (dernière exécution et cumul),
+ * _ un histogramme de latence par commande de la console,
+ * _ des compteurs (nombre d'entités, de tags...).
+ * Le contenu est affiché par la commande PERF et peut être exporté en JSON.
+ */
+public class Perf {
+
+    /**
+     * Statistiques cumulées d'une phase.
+     */
+    public static class PhaseStats {
+        private long count;
+        private long totalNanos;
+        private long lastNanos;
+        private long lastAllocated;
+        private long totalAllocated;
+        private long lastItems;
+        private long lastBytes;
+
+        private synchronized void add(long nanos, long allocated, long items, long bytes) {
+            count++;
+            totalNanos += nanos;
+            lastNanos = nanos;
+            lastAllocated = allocated;
+            if (allocated > 0) totalAllocated += allocated;
+            lastItems = items;
+            lastBytes = bytes;
+        }
+
+        public synchronized long getCount() { return count; }
+        public synchronized long getTotalNanos() { return totalNanos; }
+        public synchronized long getLastNanos() { return lastNanos; }
+        public synchronized long getLastAllocated() { return lastAllocated; }
+        public synchronized long getTotalAllocated() { return totalAllocated; }
+        public synchronized long getLastItems() { return lastItems; }
+        public synchronized long getLastBytes() { return lastBytes; }
+
+        /**
+         * @return Le débit de la dernière exécution en éléments par seconde.
+         */
+        public synchronized double getItemsPerSecond() {
+            return lastNanos == 0 ? 0.0 : lastItems * 1e9 / lastNanos;
+        }
+
+        /**
+         * @return Le débit de la dernière exécution en octets par seconde.
+         */
+        public synchronized double getBytesPerSecond() {
+            return lastNanos == 0 ? 0.0 : lastBytes * 1e9 / lastNanos;
+        }
+    }
+
+    /** * Phases mesurées, triées par nom. */
+    private static final Map<String, PhaseStats> PHASES = new ConcurrentSkipListMap<>();
+
+    /** * Latence de chaque commande de la console, en nanosecondes. */
+    private static final Map<String, Histogram> COMMANDS = new ConcurrentSkipListMap<>();
+
+    /** * Compteurs divers (dernière valeur connue). */
+    private static final Map<String, Long> COUNTERS = new ConcurrentSkipListMap<>();
+
+    /**
+     * Démarre la mesure d'une phase, à fermer avec un try-with-resources.
+     * @param name Le nom de la phase (ex: "parse", "validate.families").
+     * @return La phase en cours.
+     */
+    public static Phase start(String name) {
+        return new Phase(name);
+    }
+
+    /**
+     * Enregistre une exécution de phase (appelé par Phase.close()).
+     */
+    static void recordPhase(String name, long nanos, long allocated, long items, long bytes) {
+        PHASES.computeIfAbsent(name, n -> new PhaseStats()).add(nanos, allocated, items, bytes);
+    }
+
+    /**
+     * Enregistre la durée d'une commande de la console.
+     * @param command Le nom de la commande.
+     * @param nanos La durée en nanosecondes.
+     */
+    public static void recordCommand(String command, long nanos) {
+        COMMANDS.computeIfAbsent(command, c -> new Histogram()).record(nanos);
+    }
+
+    /**
+     * Met à jour un compteur.
+     * @param name Le nom du compteur.
+     * @param value Sa nouvelle valeur.
+     */
+    public static void setCounter(String name, long value) {
+        COUNTERS.put(name, value);
+    }
+
+    /**
+     * @return Les statistiques de chaque phase, triées par nom.
+     */
+    public static Map<String, PhaseStats> getPhases() {
+        return PHASES;
+    }
+
+    /**
+     * @return Les histogrammes de latence des commandes, triés par nom.
+     */
+    public static Map<String, Histogram> getCommands() {
+        return COMMANDS;
+    }
+
+    /**
+     * @return Les compteurs, triés par nom.
+     */
+    public static Map<String, Long> getCounters() {
+        return COUNTERS;
+    }
+
+    /**
+     * Efface toutes les mesures.
+     */
+    public static void reset() {
+        PHASES.clear();
+        COMMANDS.clear();
+        COUNTERS.clear();
+    }
+
+    /**
+     * Produit un rapport lisible de toutes les mesures.
+     * @return Le rapport, sur plusieurs lignes.
+     */
+    public static String report() {
+        StringBuilder sb = new StringBuilder();
+        sb.append(" PHASES (dernière exécution) :\n");
+        if (PHASES.isEmpty()) sb.append("  Aucune mesure.\n");
+        for (Map.Entry<String, PhaseStats> e : PHASES.entrySet()) {
+            PhaseStats p = e.getValue();
+            sb.append(String.format("  %-22s %8.1f ms  x%-4d", e.getKey(), p.getLastNanos() / 1e6, p.getCount()));
+            if (p.getLastItems() > 0) sb.append(String.format("  %,12.0f elt/s", p.getItemsPerSecond()));
+            if (p.getLastBytes() > 0) sb.append(String.format("  %8.1f Mo/s", p.getBytesPerSecond() / 1e6));
+            if (p.getLastAllocated() >= 0) sb.append(String.format("  %8.1f Mo alloués", p.getLastAllocated() / 1e6));
+            sb.append('\n');
+        }
+        sb.append(" COMMANDES (latence) :\n");
+        if (COMMANDS.isEmpty()) sb.append("  Aucune mesure.\n");
+        for (Map.Entry<String, Histogram> e : COMMANDS.entrySet()) {
+            Histogram h = e.getValue();
+            sb.append(String.format("  %-12s n=%-6d moy=%8.2f ms  p50=%8.2f ms  p99=%8.2f ms  max=%8.2f ms%n",
+                    e.getKey(), h.getCount(), h.getMean() / 1e6, h.getPercentile(50) / 1e6,
+                    h.getPercentile(99) / 1e6, h.getMax() / 1e6));
+        }
+        if (!COUNTERS.isEmpty()) {
+            sb.append(" COMPTEURS :\n");
+            for (Map.Entry<String, Long> e : COUNTERS.entrySet()) {
+                sb.append(String.format("  %-22s %,d%n", e.getKey(), e.getValue()));
+            }
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Produit toutes les mesures au format JSON (durées en nanosecondes).
+     * @return Le document JSON.
+     */
+    public static String toJson() {
+        StringBuilder sb = new StringBuilder("{\n  \"phases\": {");
+        String sep = "\n";
+        for (Map.Entry<String, PhaseStats> e : PHASES.entrySet()) {
+            PhaseStats p = e.getValue();
+            sb.append(sep).append("    ").append(quote(e.getKey())).append(": {")
+              .append("\"count\": ").append(p.getCount())
+              .append(", \"lastNanos\": ").append(p.getLastNanos())
+              .append(", \"totalNanos\": ").append(p.getTotalNanos())
+              .append(", \"lastAllocatedBytes\": ").append(p.getLastAllocated())
+              .append(", \"totalAllocatedBytes\": ").append(p.getTotalAllocated())
+              .append(", \"lastItems\": ").append(p.getLastItems())
+              .append(", \"lastBytes\": ").append(p.getLastBytes())
+              .append(", \"itemsPerSecond\": ").append((long) p.getItemsPerSecond())
+              .append(", \"bytesPerSecond\": ").append((long) p.getBytesPerSecond())
+              .append('}');
+            sep = ",\n";
+        }
+        sb.append("\n  },\n  \"commands\": {");
+        sep = "\n";
+        for (Map.Entry<String, Histogram> e : COMMANDS.entrySet()) {
+            Histogram h = e.getValue();
+            sb.append(sep).append("    ").append(quote(e.getKey())).append(": {")
+              .append("\"count\": ").append(h.getCount())
+              .append(", \"meanNanos\": ").append((long) h.getMean())
+              .append(", \"p50Nanos\": ").append(h.getPercentile(50))
+              .append(", \"p90Nanos\": ").append(h.getPercentile(90))
+              .append(", \"p99Nanos\": ").append(h.getPercentile(99))
+              .append(", \"maxNanos\": ").append(h.getMax())
+              .append('}');
+            sep = ",\n";
+        }
+        sb.append("\n  },\n  \"counters\": {");
+        sep = "\n";
+        for (Map.Entry<String, Long> e : COUNTERS.entrySet()) {
+            sb.append(sep).append("    ").append(quote(e.getKey())).append(": ").append(e.getValue());
+            sep = ",\n";
+        }
+        sb.append("\n  }\n}\n");
+        return sb.toString();
+    }
+
+    /**
+     * Met une chaîne entre guillemets JSON en échappant les caractères spéciaux.
+     */
+    private static String quote(String s) {
+        StringBuilder sb = new StringBuilder("\"");
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            if (c == '"' || c == '\\') sb.append('\\').append(c);
+            else if (c < 0x20) sb.append(String.format("\\u%04x", (int) c));
+            else sb.append(c);
+        }
+        return sb.append('"').toString();
+    }
+}
@@ -0,0 +1,77 @@
+package genealogy.perf;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+
+/**
+ * Mesure d'une phase de traitement (parsing, validation, sauvegarde...).
+ * S'utilise dans un try-with-resources : la durée et les octets alloués par le thread courant
+ * sont enregistrés dans Perf à la fermeture, avec les compteurs fournis pendant la phase.
+ */
+public class Phase implements AutoCloseable {
+
+    /** * Accès aux compteurs d'allocation par thread, s'ils sont disponibles sur cette JVM. */
+    private static final com.sun.management.ThreadMXBean THREADS = allocationBean();
+
+    private final String name;
+    private final long startNanos;
+    private final long startAllocated;
+    private long items;
+    private long bytes;
+
+    /**
+     * Démarre une phase. Préférer Perf.start(name).
+     * @param name Le nom de la phase.
+     */
+    public Phase(String name) {
+        this.name = name;
+        this.startAllocated = allocatedBytes();
+        this.startNanos = System.nanoTime();
+    }
+
+    /**
+     * Indique le nombre d'éléments traités (lignes, entités...) pour calculer un débit.
+     * @param items Le nombre d'éléments.
+     */
+    public void setItems(long items) {
+        this.items = items;
+    }
+
+    /**
+     * Indique le nombre d'octets lus ou écrits pour calculer un débit.
+     * @param bytes Le nombre d'octets.
+     */
+    public void setBytes(long bytes) {
+        this.bytes = bytes;
+    }
+
+    /**
+     * Termine la phase et l'enregistre.
+     */
+    @Override
+    public void close() {
+        long nanos = System.nanoTime() - startNanos;
+        long allocated = (startAllocated < 0) ? -1 : allocatedBytes() - startAllocated;
+        Perf.recordPhase(name, nanos, allocated, items, bytes);
+    }
+
+    /**
+     * Octets alloués depuis le démarrage du thread courant, ou -1 si la mesure n'est pas disponible.
+     */
+    private static long allocatedBytes() {
+        if (THREADS == null) return -1;
+        return THREADS.getThreadAllocatedBytes(Thread.currentThread().getId());
+    }
+
+    private static com.sun.management.ThreadMXBean allocationBean() {
+        ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        if (bean instanceof com.sun.management.ThreadMXBean) {
+            com.sun.management.ThreadMXBean sunBean = (com.sun.management.ThreadMXBean) bean;
+            if (sunBean.isThreadAllocatedMemorySupported()) {
+                sunBean.setThreadAllocatedMemoryEnabled(true);
+                return sunBean;
+            }
+        }
+        return null;
+    }
+}
@@ -0,0 +1,77 @@
+package genealogy.perf;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.text.ParseException;
+
+import jdk.jfr.Configuration;
+import jdk.jfr.Recording;
+
+/**
+ * Enregistrement Java Flight Recorder piloté depuis la console (PROFILE START / PROFILE STOP).
+ * L'enregistrement utilise la configuration "profile" du JDK et active en plus les événements
+ * de l'application (chargement, validation, cycles, recherche, commandes).
+ * Un seul enregistrement peut être actif à la fois.
+ */
+public class Profiler {
+
+    /** * Événements propres à l'application, activés dans chaque enregistrement. */
+    private static final Class<?>[] EVENTS = {
+        FileLoadEvent.class, ValidationEvent.class, CycleCheckEvent.class,
+        NameSearchEvent.class, CommandEvent.class
+    };
+
+    /** * Enregistrement en cours, null si aucun. */
+    private static Recording recording;
+
+    /**
+     * Démarre un enregistrement.
+     * @param destination Le fichier .jfr à écrire à l'arrêt, ou null pour le donner à l'arrêt.
+     * @return false si un enregistrement est déjà en cours.
+     * @throws IOException Si la destination n'est pas accessible.
+     * @throws ParseException Si la configuration "profile" du JDK est illisible.
+     */
+    public static synchronized boolean start(String destination) throws IOException, ParseException {
+        if (recording != null) return false;
+        Recording r = new Recording(Configuration.getConfiguration("profile"));
+        r.setName("GedTree");
+        for (Class<?> event : EVENTS) {
+            r.enable(event.getName());
+        }
+        if (destination != null) r.setDestination(Paths.get(destination));
+        r.start();
+        recording = r;
+        return true;
+    }
+
+    /**
+     * Arrête l'enregistrement en cours et l'écrit sur le disque.
+     * @param destination Le fichier .jfr à écrire, ou null pour celui donné au démarrage.
+     * @return Le fichier écrit, ou null si aucun enregistrement n'était en cours.
+     * @throws IOException En cas d'erreur d'écriture.
+     * @throws IllegalArgumentException Si aucun fichier n'a été donné, ni au démarrage ni à l'arrêt.
+     */
+    public static synchronized Path stop(String destination) throws IOException {
+        if (recording == null) return null;
+        Path path = (destination != null) ? Paths.get(destination) : recording.getDestination();
+        if (path == null) {
+            throw new IllegalArgumentException("Aucun fichier de destination pour l'enregistrement.");
+        }
+        try {
+            recording.stop();
+            if (destination != null) recording.dump(path);
+        } finally {
+            recording.close();
+            recording = null;
+        }
+        return path;
+    }
+
+    /**
+     * @return true si un enregistrement est en cours.
+     */
+    public static synchronized boolean isRecording() {
+        return recording != null;
+    }
+}
@@ -0,0 +1,23 @@
+package genealogy.perf;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * Événement Java Flight Recorder : une phase de la validation du graphe (individus, familles).
+ */
+@Name("genealogy.Validation")
+@Label("Validation du graphe")
+@Category("GedTree")
+@Description("Une phase de la validation du graphe (individus, familles).")
+public class ValidationEvent extends Event {
+
+    @Label("Phase")
+    public String phase;
+
+    @Label("Entités vérifiées")
+    public long entities;
+}
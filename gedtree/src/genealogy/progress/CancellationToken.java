@@ -0,0 +1,36 @@
+package genealogy.progress;
+
+import genealogy.exceptions.exceptfile.LoadCancelledErr;
+
+/**
+ * Demande d'annulation partagée entre le thread qui charge et celui qui peut l'interrompre.
+ * Le chargement consulte le jeton aux mêmes points que ceux où il publie son avancement,
+ * et s'arrête par une LoadCancelledErr : rien n'est écrit dans le graphe courant avant la fin.
+ */
+public class CancellationToken {
+
+    private volatile boolean cancelled;
+
+    /**
+     * Demande l'arrêt du chargement ; il sera effectif au prochain point de contrôle.
+     */
+    public void cancel() {
+        cancelled = true;
+    }
+
+    /**
+     * @return true si l'annulation a été demandée.
+     */
+    public boolean isCancelled() {
+        return cancelled;
+    }
+
+    /**
+     * Lève une exception si l'annulation a été demandée.
+     * @param phase La phase en cours, pour le message d'erreur.
+     * @throws LoadCancelledErr Si l'annulation a été demandée.
+     */
+    public void check(String phase) throws LoadCancelledErr {
+        if (cancelled) throw new LoadCancelledErr(phase);
+    }
+}
@@ -0,0 +1,74 @@
+package genealogy.progress;
+
+/**
+ * Échantillon de l'avancement d'un chargement : phase en cours, quantité traitée
+ * (octets lus ou entités validées), enregistrements créés et temps écoulé dans la phase.
+ */
+public class Progress {
+
+    private final String phase;
+    private final String unit;
+    private final long done;
+    private final long total;
+    private final long records;
+    private final long elapsedNanos;
+
+    /**
+     * Constructeur.
+     * @param phase Le nom de la phase (ex: "lecture").
+     * @param unit L'unité de done et total ("octets" ou "entités").
+     * @param done La quantité déjà traitée dans la phase.
+     * @param total La quantité totale de la phase, -1 si elle est inconnue.
+     * @param records Le nombre d'enregistrements (INDI, FAM) créés depuis le début du chargement.
+     * @param elapsedNanos Le temps écoulé depuis le début de la phase.
+     */
+    public Progress(String phase, String unit, long done, long total, long records, long elapsedNanos) {
+        this.phase = phase;
+        this.unit = unit;
+        this.done = done;
+        this.total = total;
+        this.records = records;
+        this.elapsedNanos = elapsedNanos;
+    }
+
+    public String getPhase() {
+        return phase;
+    }
+
+    public String getUnit() {
+        return unit;
+    }
+
+    public long getDone() {
+        return done;
+    }
+
+    public long getTotal() {
+        return total;
+    }
+
+    public long getRecords() {
+        return records;
+    }
+
+    public long getElapsedMillis() {
+        return elapsedNanos / 1_000_000;
+    }
+
+    /**
+     * @return La part traitée de la phase, entre 0 et 1, ou -1 si le total est inconnu.
+     */
+    public double getFraction() {
+        if (total <= 0) return -1;
+        return Math.min(1.0, (double) done / total);
+    }
+
+    /**
+     * Temps restant estimé en supposant que le débit observé depuis le début de la phase se maintient.
+     * @return Le temps restant en millisecondes, ou -1 s'il ne peut pas encore être estimé.
+     */
+    public long getEtaMillis() {
+        if (total <= 0 || done <= 0) return -1;
+        return (long) (getElapsedMillis() * (double) Math.max(0, total - done) / done);
+    }
+}
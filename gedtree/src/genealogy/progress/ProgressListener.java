@@ -0,0 +1,21 @@
+package genealogy.progress;
+
+/**
+ * Destinataire de l'avancement d'un chargement.
+ * Il est appelé à intervalle fixe par le thread d'échantillonnage d'un ProgressTracker,
+ * jamais par le thread qui lit le fichier : un affichage lent ne ralentit donc pas la lecture.
+ */
+public interface ProgressListener {
+
+    /**
+     * Nouvel échantillon de l'avancement.
+     * @param progress L'état du chargement au moment de l'échantillon.
+     */
+    void progress(Progress progress);
+
+    /**
+     * Fin du chargement (réussi, en erreur ou annulé), après le dernier échantillon.
+     */
+    default void finished() {
+    }
+}
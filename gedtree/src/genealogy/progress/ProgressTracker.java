@@ -0,0 +1,129 @@
+package genealogy.progress;
+
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import genealogy.exceptions.exceptfile.LoadCancelledErr;
+
+/**
+ * Suivi de l'avancement d'un chargement.
+ * Le parseur et la validation appellent update() toutes les quelques milliers de lignes ou d'entités :
+ * cela ne coûte que quelques écritures de champs volatils et la lecture du jeton d'annulation.
+ * Entre deux, la validation lit le jeton à chaque entité (checkCancelled()).
+ * Un thread démon lit ces champs à intervalle fixe et transmet un échantillon au ProgressListener ;
+ * la fréquence d'affichage ne dépend donc pas de la taille du fichier.
+ */
+public class ProgressTracker implements AutoCloseable {
+
+    /** * Intervalle par défaut entre deux échantillons, en millisecondes. */
+    public static final long DEFAULT_PERIOD = 200;
+
+    /** * Nombre de lignes ou d'entités traitées entre deux appels à update(). */
+    public static final int STRIDE = 4096;
+
+    private final ProgressListener listener;
+    private final CancellationToken token;
+    private final ScheduledExecutorService sampler;
+
+    private volatile String phase = "";
+    private volatile String unit = "";
+    private volatile long total = -1;
+    private volatile long done;
+    private volatile long records;
+    private volatile long phaseStart = System.nanoTime();
+
+    /**
+     * Crée un suivi et démarre l'échantillonnage.
+     * @param listener Le destinataire des échantillons, null pour aucun affichage.
+     * @param period L'intervalle entre deux échantillons, en millisecondes.
+     * @param token Le jeton d'annulation, null si le chargement ne peut pas être annulé.
+     */
+    public ProgressTracker(ProgressListener listener, long period, CancellationToken token) {
+        this.listener = listener;
+        this.token = token;
+        if (listener == null) {
+            this.sampler = null;
+        } else {
+            this.sampler = Executors.newSingleThreadScheduledExecutor(r -> {
+                Thread t = new Thread(r, "gedcom-progress");
+                t.setDaemon(true);
+                return t;
+            });
+            sampler.scheduleAtFixedRate(() -> listener.progress(snapshot()), period, period, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * @return Un suivi sans affichage ni annulation, pour les appels qui n'en ont pas besoin.
+     */
+    public static ProgressTracker none() {
+        return new ProgressTracker(null, DEFAULT_PERIOD, null);
+    }
+
+    /**
+     * Commence une nouvelle phase ; la quantité traitée repart de zéro.
+     * @param name Le nom de la phase.
+     * @param unit L'unité de la quantité traitée ("octets" ou "entités").
+     * @param total La quantité totale, -1 si elle est inconnue.
+     */
+    public void phase(String name, String unit, long total) {
+        this.done = 0;
+        this.total = total;
+        this.unit = unit;
+        this.phaseStart = System.nanoTime();
+        this.phase = name;
+    }
+
+    /**
+     * Publie l'avancement de la phase en cours et vérifie le jeton d'annulation.
+     * @param done La quantité traitée depuis le début de la phase.
+     * @param records Le nombre d'enregistrements créés depuis le début du chargement.
+     * @throws LoadCancelledErr Si l'annulation a été demandée.
+     */
+    public void update(long done, long records) throws LoadCancelledErr {
+        this.done = done;
+        this.records = records;
+        if (token != null) token.check(phase);
+    }
+
+    /**
+     * Publie l'avancement sans changer le nombre d'enregistrements (ex: pendant la validation).
+     * @param done La quantité traitée depuis le début de la phase.
+     * @throws LoadCancelledErr Si l'annulation a été demandée.
+     */
+    public void update(long done) throws LoadCancelledErr {
+        update(done, records);
+    }
+
+    /**
+     * Vérifie le jeton d'annulation sans publier d'avancement. La validation l'appelle pour chaque entité,
+     * entre deux update() : le contrôle d'une entité peut décoder ses tags (mode paresseux ou stockage).
+     * @throws LoadCancelledErr Si l'annulation a été demandée.
+     */
+    public void checkCancelled() throws LoadCancelledErr {
+        if (token != null) token.check(phase);
+    }
+
+    /**
+     * @return L'état courant du chargement.
+     */
+    public Progress snapshot() {
+        return new Progress(phase, unit, done, total, records, System.nanoTime() - phaseStart);
+    }
+
+    /**
+     * Arrête l'échantillonnage et prévient le destinataire de la fin du chargement.
+     */
+    @Override
+    public void close() {
+        if (sampler == null) return;
+        sampler.shutdownNow();
+        try {
+            sampler.awaitTermination(1, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        listener.finished();
+    }
+}
@@ -0,0 +1,93 @@
+package genealogy.query;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+/**
+ * Curseur sur le résultat d'une requête, évalué au fur et à mesure de la lecture.
+ * Le curseur enveloppe un itérateur paresseux : les OFFSET premiers éléments sont sautés
+ * au premier accès, puis au plus LIMIT éléments sont rendus. Le résultat complet n'est
+ * jamais construit en mémoire, ce qui permet de parcourir des résultats de toute taille
+ * page par page (commande NEXT) ou de les écrire dans un fichier.
+ * @param <T> Le type des éléments du résultat.
+ */
+public class Cursor<T> implements Iterator<T> {
+
+    /** * Valeur de LIMIT signifiant "sans limite". */
+    public static final long UNLIMITED = Long.MAX_VALUE;
+
+    private final Iterator<T> source;
+    private final long offset;
+    private long remaining;
+
+    /** * Nombre d'éléments déjà rendus par le curseur. */
+    private long position;
+    private boolean skipped;
+
+    /**
+     * Constructeur.
+     * @param source L'itérateur paresseux qui produit le résultat.
+     * @param offset Le nombre d'éléments à sauter au début.
+     * @param limit Le nombre maximal d'éléments à rendre (UNLIMITED pour tous).
+     */
+    public Cursor(Iterator<T> source, long offset, long limit) {
+        this.source = source;
+        this.offset = Math.max(0, offset);
+        this.remaining = Math.max(0, limit);
+    }
+
+    /**
+     * Curseur sans OFFSET ni LIMIT.
+     * @param source L'itérateur paresseux qui produit le résultat.
+     */
+    public Cursor(Iterator<T> source) {
+        this(source, 0, UNLIMITED);
+    }
+
+    @Override
+    public boolean hasNext() {
+        skipOffset();
+        return remaining > 0 && source.hasNext();
+    }
+
+    @Override
+    public T next() {
+        if (!hasNext()) throw new NoSuchElementException();
+        remaining--;
+        position++;
+        return source.next();
+    }
+
+    /**
+     * Lit la page suivante.
+     * @param size Le nombre maximal d'éléments de la page.
+     * @return Les éléments lus, éventuellement moins que size en fin de résultat.
+     */
+    public List<T> fetch(int size) {
+        List<T> page = new ArrayList<>(Math.min(size, 1024));
+        while (page.size() < size && hasNext()) {
+            page.add(next());
+        }
+        return page;
+    }
+
+    /**
+     * @return Le rang (depuis le début du résultat, OFFSET compris) du prochain élément.
+     */
+    public long getPosition() {
+        return offset + position;
+    }
+
+    /**
+     * Saute les OFFSET premiers éléments, une seule fois.
+     */
+    private void skipOffset() {
+        if (skipped) return;
+        skipped = true;
+        for (long i = 0; i < offset && source.hasNext(); i++) {
+            source.next();
+        }
+    }
+}
@@ -0,0 +1,306 @@
+package genealogy.query;
+
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import genealogy.exceptions.exceptconsole.QueryErr;
+import genealogy.graph.Entity;
+import genealogy.graph.Individual;
+import genealogy.tags.simple.DateTag;
+
+/**
+ * Requête déclarative sur les individus ou les familles d'un graphe :
+ * <pre>
+ * INDI|FAM [WHERE condition [AND condition]...]
+ * condition := champ opérateur valeur
+ * </pre>
+ * Un champ est id, name, surname, given, sex, ou un chemin de tags : "birth.date", "death.place",
+ * "marriage.date", "NOTE", "OCCU"... (birth, death, marriage, date et place sont les noms des tags
+ * BIRT, DEAT, MARR, DATE et PLAC). Les opérateurs sont =, !=, &lt;, &lt;=, &gt;, &gt;=, ~ (contient)
+ * et ^= (commence par) ; les valeurs qui contiennent des espaces s'écrivent entre guillemets.
+ * Les comparaisons ignorent la casse et les accents ; sur un champ DATE, elles portent sur l'année.
+ * Une valeur absente ne vérifie aucune condition.
+ * Exemple : INDI WHERE sex=F AND birth.date&lt;1850 AND birth.place~"Lyon"
+ */
+public class FindQuery {
+
+    /**
+     * Opérateurs de comparaison, avec leur symbole dans la requête.
+     */
+    public enum Operator {
+        EQ("="), NE("!="), LT("<"), LE("<="), GT(">"), GE(">="), CONTAINS("~"), STARTS("^=");
+
+        private final String symbol;
+
+        Operator(String symbol) {
+            this.symbol = symbol;
+        }
+
+        public String getSymbol() {
+            return symbol;
+        }
+
+        static Operator of(String symbol) {
+            for (Operator op : values()) {
+                if (op.symbol.equals(symbol)) return op;
+            }
+            return null;
+        }
+    }
+
+    /** * Une condition : champ, opérateur (les symboles de deux caractères d'abord), valeur éventuellement entre guillemets. */
+    private static final Pattern CONDITION = Pattern.compile("^\\s*([A-Za-z_][\\w.]*)\\s*(<=|>=|!=|\\^=|=|<|>|~)\\s*(\"[^\"]*\"|\\S+)\\s*$");
+
+    /** * Début de la requête : le type d'enregistrement, puis les conditions éventuelles. */
+    private static final Pattern QUERY = Pattern.compile("(?is)^\\s*(INDI|FAM)\\s*(?:WHERE\\s+(.*))?$");
+
+    /**
+     * Condition sur un champ d'un individu ou d'une famille.
+     */
+    public static class Condition {
+        private final String field;
+        private final Operator operator;
+        private final String value;
+
+        /** * Tag et sous-tag lus (sous-tag null pour un tag de niveau 1), null pour les champs calculés. */
+        private final String tag;
+        private final String subTag;
+
+        /** * Année de la valeur, pour les comparaisons sur un champ DATE (-1 sinon). */
+        private final int year;
+
+        /** * Valeur sans casse ni accents. */
+        private final String folded;
+
+        Condition(String field, Operator operator, String value) throws QueryErr {
+            this.field = field.toLowerCase();
+            this.operator = operator;
+            this.value = value;
+            this.folded = fold(value);
+            String[] path = this.field.split("\\.");
+            if (path.length > 2) throw new QueryErr("champ " + field + " (un tag et au plus un sous-tag)");
+            boolean computed = path.length == 1 && (this.field.equals("id") || this.field.equals("name")
+                    || this.field.equals("surname") || this.field.equals("given") || this.field.equals("sex"));
+            this.tag = computed ? null : tagName(path[0]);
+            this.subTag = (computed || path.length == 1) ? null : tagName(path[1]);
+            if (isDate() && operator != Operator.CONTAINS && operator != Operator.STARTS) {
+                this.year = DateTag.parseYear(value);
+                if (year < 0) throw new QueryErr("année attendue pour " + field + " (" + value + ")");
+            } else {
+                this.year = -1;
+            }
+        }
+
+        private static String tagName(String name) {
+            switch (name) {
+                case "birth": return "BIRT";
+                case "death": return "DEAT";
+                case "marriage": return "MARR";
+                case "date": return "DATE";
+                case "place": return "PLAC";
+                default: return name.toUpperCase();
+            }
+        }
+
+        public String getField() {
+            return field;
+        }
+
+        public Operator getOperator() {
+            return operator;
+        }
+
+        public String getValue() {
+            return value;
+        }
+
+        /**
+         * @return true si la condition porte sur un tag DATE (comparaisons par année).
+         */
+        public boolean isDate() {
+            return "DATE".equals(subTag) || (subTag == null && "DATE".equals(tag));
+        }
+
+        /**
+         * @return L'année comparée, ou -1 si la condition ne compare pas d'année.
+         */
+        public int getYear() {
+            return year;
+        }
+
+        /**
+         * @return Le tag de niveau 1 lu par la condition, ou null pour id, name, surname, given et sex.
+         */
+        public String getTag() {
+            return tag;
+        }
+
+        /**
+         * @return Le sous-tag lu par la condition, ou null.
+         */
+        public String getSubTag() {
+            return subTag;
+        }
+
+        /**
+         * Coût relatif de l'évaluation : les champs calculés sont lus sans décoder
+         * l'arbre de tags d'une entité chargée en mode paresseux.
+         */
+        int cost() {
+            return (tag == null) ? 0 : 1;
+        }
+
+        /**
+         * Évalue la condition sur une entité.
+         * @param entity L'individu ou la famille.
+         * @return true si la condition est vérifiée.
+         */
+        public boolean test(Entity entity) {
+            String actual = read(entity);
+            if (actual == null) return false;
+            if (year >= 0) {
+                int y = DateTag.parseYear(actual);
+                return y >= 0 && compare(Integer.compare(y, year));
+            }
+            switch (operator) {
+                case CONTAINS: return fold(actual).contains(folded);
+                case STARTS: return fold(actual).startsWith(folded);
+                case EQ: return fold(actual).equals(folded);
+                case NE: return !fold(actual).equals(folded);
+                default:
+                    // Comparaison numérique si les deux valeurs sont des nombres, alphabétique sinon
+                    try {
+                        return compare(Long.compare(Long.parseLong(actual.trim()), Long.parseLong(value.trim())));
+                    } catch (NumberFormatException e) {
+                        return compare(fold(actual).compareTo(folded));
+                    }
+            }
+        }
+
+        private boolean compare(int cmp) {
+            switch (operator) {
+                case EQ: return cmp == 0;
+                case NE: return cmp != 0;
+                case LT: return cmp < 0;
+                case LE: return cmp <= 0;
+                case GT: return cmp > 0;
+                default: return cmp >= 0;
+            }
+        }
+
+        /**
+         * Valeur du champ pour une entité, ou null si elle est absente.
+         */
+        private String read(Entity entity) {
+            if (tag == null) {
+                switch (field) {
+                    case "id": return entity.getId();
+                    case "surname": return (entity instanceof Individual) ? emptyToNull(((Individual) entity).getSurname()) : null;
+                    case "given": return (entity instanceof Individual) ? emptyToNull(((Individual) entity).getGivenNames()) : null;
+                    default: return tagValue(entity, field.toUpperCase());
+                }
+            }
+            return (subTag == null) ? tagValue(entity, tag) : entity.getSubTagValue(tag, subTag);
+        }
+
+        private static String tagValue(Entity entity, String tagName) {
+            String v = entity.getTagValue(tagName);
+            return v.equals("Unknown") ? null : v;
+        }
+
+        private static String emptyToNull(String s) {
+            return (s == null || s.isEmpty()) ? null : s;
+        }
+
+        @Override
+        public String toString() {
+            return field + " " + operator.symbol + " \"" + value + "\"";
+        }
+    }
+
+    private final boolean families;
+    private final List<Condition> conditions;
+
+    private FindQuery(boolean families, List<Condition> conditions) {
+        this.families = families;
+        this.conditions = conditions;
+    }
+
+    /**
+     * Lit une requête.
+     * @param text La requête, sans le mot FIND (ex: "INDI WHERE sex=F").
+     * @return La requête lue.
+     * @throws QueryErr Si la requête est mal formée.
+     */
+    public static FindQuery parse(String text) throws QueryErr {
+        Matcher m = QUERY.matcher(text);
+        if (!m.matches()) throw new QueryErr("INDI ou FAM attendu, suivi de WHERE <conditions>");
+        boolean families = m.group(1).equalsIgnoreCase("FAM");
+        List<Condition> conditions = new ArrayList<>();
+        if (m.group(2) != null) {
+            for (String part : splitAnd(m.group(2))) {
+                Matcher c = CONDITION.matcher(part);
+                if (!c.matches()) throw new QueryErr("condition '" + part.trim() + "'");
+                String value = c.group(3);
+                if (value.length() >= 2 && value.startsWith("\"") && value.endsWith("\"")) {
+                    value = value.substring(1, value.length() - 1);
+                }
+                conditions.add(new Condition(c.group(1), Operator.of(c.group(2)), value));
+            }
+        }
+        return new FindQuery(families, Collections.unmodifiableList(conditions));
+    }
+
+    /**
+     * Découpe les conditions sur les mots AND situés hors des guillemets.
+     */
+    private static List<String> splitAnd(String text) throws QueryErr {
+        List<String> parts = new ArrayList<>();
+        boolean quoted = false;
+        int start = 0;
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (c == '"') quoted = !quoted;
+            if (!quoted && Character.isWhitespace(c) && text.regionMatches(true, i + 1, "AND", 0, 3)
+                    && i + 4 < text.length() && Character.isWhitespace(text.charAt(i + 4))) {
+                parts.add(text.substring(start, i));
+                start = i + 4;
+                i += 3;
+            }
+        }
+        if (quoted) throw new QueryErr("guillemet non fermé");
+        parts.add(text.substring(start));
+        return parts;
+    }
+
+    /**
+     * Minuscules sans accents, pour comparer des valeurs saisies à la main.
+     */
+    static String fold(String s) {
+        String decomposed = Normalizer.normalize(s, Normalizer.Form.NFD);
+        StringBuilder sb = new StringBuilder(decomposed.length());
+        for (int i = 0; i < decomposed.length(); i++) {
+            char c = decomposed.charAt(i);
+            if (Character.getType(c) != Character.NON_SPACING_MARK) sb.append(Character.toLowerCase(c));
+        }
+        return sb.toString().trim();
+    }
+
+    /**
+     * @return true pour une requête sur les familles, false pour les individus.
+     */
+    public boolean isFamilies() {
+        return families;
+    }
+
+    /**
+     * @return Les conditions, dans l'ordre de la requête.
+     */
+    public List<Condition> getConditions() {
+        return conditions;
+    }
+}
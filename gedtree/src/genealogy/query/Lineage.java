@@ -0,0 +1,234 @@
+package genealogy.query;
+
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+import genealogy.graph.Adjacency;
+import genealogy.graph.Family;
+import genealogy.graph.Graph;
+import genealogy.graph.Individual;
+
+/**
+ * Requêtes de parenté sous forme d'itérateurs paresseux d'identifiants d'individus.
+ * Chaque élément n'est calculé qu'au moment où il est demandé : ces itérateurs sont
+ * destinés à être enveloppés dans un Cursor.
+ * Chaque requête existe en deux versions : sur l'index des liens (Adjacency) d'un graphe validé,
+ * sans recherche par ID, et sur le graphe seul, en résolvant les IDs au fur et à mesure.
+ */
+public class Lineage {
+
+    /**
+     * Enfants d'une personne, toutes familles (FAMS) confondues.
+     * @param graph Le graphe.
+     * @param ind La personne.
+     * @return Les identifiants des enfants.
+     */
+    public static Iterator<String> children(Graph graph, Individual ind) {
+        return new ChildIterator(graph, ind.getFams().iterator());
+    }
+
+    /**
+     * Frères et soeurs d'une personne (autres enfants de sa famille parentale).
+     * @param graph Le graphe.
+     * @param ind La personne.
+     * @return Les identifiants des frères et soeurs.
+     */
+    public static Iterator<String> siblings(Graph graph, Individual ind) {
+        Family fam = (ind.getFamc() == null) ? null : graph.getFamily(ind.getFamc());
+        if (fam == null) return Collections.emptyIterator();
+        return fam.getChildren().stream().filter(id -> !id.equals(ind.getId())).iterator();
+    }
+
+    /**
+     * Petits-enfants d'une personne : les enfants de chacun de ses enfants.
+     * @param graph Le graphe.
+     * @param ind La personne.
+     * @return Les identifiants des petits-enfants.
+     */
+    public static Iterator<String> grandchildren(Graph graph, Individual ind) {
+        Iterator<String> enfants = children(graph, ind);
+        return new Iterator<String>() {
+            private Iterator<String> current = Collections.emptyIterator();
+
+            @Override
+            public boolean hasNext() {
+                while (!current.hasNext() && enfants.hasNext()) {
+                    Individual enfant = graph.getIndividual(enfants.next());
+                    if (enfant != null) current = children(graph, enfant);
+                }
+                return current.hasNext();
+            }
+
+            @Override
+            public String next() {
+                if (!hasNext()) throw new NoSuchElementException();
+                return current.next();
+            }
+        };
+    }
+
+    /**
+     * Tous les descendants d'une personne, génération par génération (parcours en largeur).
+     * Chaque descendant n'est rendu qu'une fois, même s'il est atteint par plusieurs chemins.
+     * @param graph Le graphe.
+     * @param ind La personne.
+     * @return Les identifiants des descendants.
+     */
+    public static Iterator<String> descendants(Graph graph, Individual ind) {
+        return new Iterator<String>() {
+            private final ArrayDeque<String> file = new ArrayDeque<>();
+            private final Set<String> vus = new HashSet<>();
+            private Iterator<String> current = children(graph, ind);
+            private String suivant;
+
+            {
+                vus.add(ind.getId());
+            }
+
+            @Override
+            public boolean hasNext() {
+                while (suivant == null) {
+                    if (current.hasNext()) {
+                        String id = current.next();
+                        if (vus.add(id)) {
+                            file.add(id);
+                            suivant = id;
+                        }
+                    } else if (!file.isEmpty()) {
+                        Individual parent = graph.getIndividual(file.poll());
+                        if (parent != null) current = children(graph, parent);
+                    } else {
+                        return false;
+                    }
+                }
+                return true;
+            }
+
+            @Override
+            public String next() {
+                if (!hasNext()) throw new NoSuchElementException();
+                String id = suivant;
+                suivant = null;
+                return id;
+            }
+        };
+    }
+
+    /**
+     * Enfants d'une personne, toutes familles (FAMS) confondues, lus dans l'index des liens.
+     * @param adj L'index des liens du graphe.
+     * @param ind La personne.
+     * @return Les identifiants des enfants.
+     */
+    public static Iterator<String> children(Adjacency adj, Individual ind) {
+        return ids(adj.getChildren(ind));
+    }
+
+    /**
+     * Frères et soeurs d'une personne, lus dans l'index des liens.
+     * @param adj L'index des liens du graphe.
+     * @param ind La personne.
+     * @return Les identifiants des frères et soeurs.
+     */
+    public static Iterator<String> siblings(Adjacency adj, Individual ind) {
+        return ids(adj.getSiblings(ind));
+    }
+
+    /**
+     * Tous les descendants d'une personne, génération par génération, dans l'index des liens.
+     * La file et les individus déjà vus sont des tableaux d'entiers et un BitSet : aucune recherche par ID.
+     * @param adj L'index des liens du graphe.
+     * @param ind La personne.
+     * @return Les identifiants des descendants.
+     */
+    public static Iterator<String> descendants(Adjacency adj, Individual ind) {
+        int start = adj.indexOf(ind);
+        if (start < 0) return Collections.emptyIterator();
+        return new Iterator<String>() {
+            private final BitSet vus = new BitSet(adj.getIndividualCount());
+            private int[] file = new int[16];
+            private int head, tail;
+            /** * Position dans les familles (FAMS) puis dans les enfants de la personne en cours. */
+            private int parent = start, fams = adj.famsStart(start), child, childEnd;
+            private int suivant = -1;
+
+            {
+                vus.set(start);
+            }
+
+            @Override
+            public boolean hasNext() {
+                while (suivant < 0) {
+                    if (child < childEnd) {
+                        int c = adj.child(child++);
+                        if (c >= 0 && !vus.get(c)) {
+                            vus.set(c);
+                            if (tail == file.length) file = Arrays.copyOf(file, tail * 2);
+                            file[tail++] = c;
+                            suivant = c;
+                        }
+                    } else if (fams < adj.famsEnd(parent)) {
+                        int f = adj.fams(fams++);
+                        if (f >= 0) {
+                            child = adj.childStart(f);
+                            childEnd = adj.childEnd(f);
+                        }
+                    } else if (head < tail) {
+                        parent = file[head++];
+                        fams = adj.famsStart(parent);
+                    } else {
+                        return false;
+                    }
+                }
+                return true;
+            }
+
+            @Override
+            public String next() {
+                if (!hasNext()) throw new NoSuchElementException();
+                String id = adj.individual(suivant).getId();
+                suivant = -1;
+                return id;
+            }
+        };
+    }
+
+    private static Iterator<String> ids(Individual[] people) {
+        return Arrays.stream(people).map(Individual::getId).iterator();
+    }
+
+    /**
+     * Parcourt les enfants des familles données, une famille après l'autre.
+     */
+    private static class ChildIterator implements Iterator<String> {
+        private final Graph graph;
+        private final Iterator<String> familles;
+        private Iterator<String> current = Collections.emptyIterator();
+
+        ChildIterator(Graph graph, Iterator<String> familles) {
+            this.graph = graph;
+            this.familles = familles;
+        }
+
+        @Override
+        public boolean hasNext() {
+            while (!current.hasNext() && familles.hasNext()) {
+                Family fam = graph.getFamily(familles.next());
+                if (fam != null) current = fam.getChildren().iterator();
+            }
+            return current.hasNext();
+        }
+
+        @Override
+        public String next() {
+            if (!hasNext()) throw new NoSuchElementException();
+            return current.next();
+        }
+    }
+}
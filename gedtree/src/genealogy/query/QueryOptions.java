@@ -0,0 +1,101 @@
+package genealogy.query;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Options de pagination placées à la fin des arguments d'une commande :
+ * LIMIT n, OFFSET n et TO "fichier", dans n'importe quel ordre.
+ * Exemple : "Jean Dupont OFFSET 100 LIMIT 20" donne la cible "Jean Dupont".
+ * Un mot-clé n'est une option que suivi d'une valeur de la bonne forme : un entier pour LIMIT
+ * et OFFSET, un chemin entre guillemets pour TO. Le texte entre guillemets de la cible n'est
+ * jamais découpé : "DESCENDANTS Jean To Lam" ou name~"de To Lam" gardent leur cible entière.
+ */
+public class QueryOptions {
+
+    private String target;
+    private long offset;
+    private long limit = Cursor.UNLIMITED;
+    private String output;
+    private boolean paged;
+
+    /**
+     * Sépare la cible de la requête de ses options.
+     * @param arguments Les arguments de la commande.
+     * @return Les options lues.
+     * @throws NumberFormatException Si la valeur de LIMIT ou OFFSET dépasse un long.
+     */
+    public static QueryOptions parse(String arguments) {
+        QueryOptions options = new QueryOptions();
+        String rest = arguments.trim();
+        List<int[]> words = split(rest);
+
+        // Les options sont lues depuis la fin, par paires mot-clé / valeur ; la cible garde au moins un mot
+        int n = (words == null) ? 0 : words.size();
+        while (n >= 3) {
+            String keyword = word(rest, words.get(n - 2)).toUpperCase();
+            String value = word(rest, words.get(n - 1));
+            boolean number = value.chars().allMatch(Character::isDigit);
+            boolean quoted = value.length() >= 2 && value.startsWith("\"") && value.endsWith("\"");
+            if (keyword.equals("LIMIT") && number) options.limit = Long.parseLong(value);
+            else if (keyword.equals("OFFSET") && number) options.offset = Long.parseLong(value);
+            else if (keyword.equals("TO") && quoted) options.output = value.substring(1, value.length() - 1);
+            else break;
+            options.paged = true;
+            n -= 2;
+        }
+        options.target = (words == null || n == words.size()) ? rest : rest.substring(0, words.get(n - 1)[1]);
+        return options;
+    }
+
+    /**
+     * Découpe une ligne en mots séparés par des espaces, sans couper le texte entre guillemets.
+     * @return Les positions (début, fin) des mots, ou null si un guillemet n'est pas fermé.
+     */
+    private static List<int[]> split(String line) {
+        List<int[]> words = new ArrayList<>();
+        boolean quoted = false;
+        int start = -1;
+        for (int i = 0; i <= line.length(); i++) {
+            boolean end = i == line.length();
+            char c = end ? ' ' : line.charAt(i);
+            if (c == '"') quoted = !quoted;
+            if (Character.isWhitespace(c) && (!quoted || end)) {
+                if (start >= 0) words.add(new int[] { start, i });
+                start = -1;
+            } else if (start < 0) {
+                start = i;
+            }
+        }
+        return quoted ? null : words;
+    }
+
+    private static String word(String line, int[] span) {
+        return line.substring(span[0], span[1]);
+    }
+
+    /**
+     * Enveloppe un résultat paresseux dans un curseur avec ces options.
+     * @param <T> Le type des éléments.
+     * @param source Le résultat.
+     * @return Le curseur.
+     */
+    public <T> Cursor<T> cursor(java.util.Iterator<T> source) {
+        return new Cursor<>(source, offset, limit);
+    }
+
+    /** * @return Les arguments sans les options (la personne visée). */
+    public String getTarget() { return target; }
+
+    /** * @return Le nombre d'éléments à sauter. */
+    public long getOffset() { return offset; }
+
+    /** * @return Le nombre maximal d'éléments, Cursor.UNLIMITED si absent. */
+    public long getLimit() { return limit; }
+
+    /** * @return Le fichier de sortie (option TO), ou null pour la console. */
+    public String getOutput() { return output; }
+
+    /** * @return true si au moins une option a été donnée. */
+    public boolean isPaged() { return paged; }
+}
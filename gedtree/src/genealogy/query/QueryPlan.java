@@ -0,0 +1,309 @@
+package genealogy.query;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.function.IntFunction;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import genealogy.graph.Entity;
+import genealogy.graph.Graph;
+import genealogy.graph.Numbering;
+import genealogy.index.Phonetic;
+import genealogy.index.PrefixIndex;
+import genealogy.index.YearIndex;
+
+/**
+ * Plan d'exécution d'une requête FIND.
+ * Le planificateur choisit d'abord un chemin d'accès : une condition id = ... lit directement l'entité ;
+ * sinon, chaque condition qu'un index sait traiter (name ou surname avec = ou ^= dans l'index des préfixes,
+ * birth.date ou death.date avec =, &lt;, &lt;=, &gt;, &gt;= dans l'index des années) donne une estimation
+ * du nombre de candidats, et la plus sélective est retenue si elle écarte au moins la moitié des
+ * enregistrements. À défaut, tous les enregistrements sont parcourus.
+ * Toutes les conditions sont ensuite vérifiées sur les candidats, les moins coûteuses d'abord, en
+ * s'arrêtant à la première fausse. Les candidats sont évalués par lots, un lot par processeur en parallèle,
+ * et les résultats sont rendus dans l'ordre du graphe : un curseur avec LIMIT n'évalue que les lots nécessaires.
+ */
+public class QueryPlan {
+
+    /** * Nombre d'enregistrements d'un lot évalué par un thread. */
+    private static final int BATCH = 4096;
+
+    /** * Un index n'est retenu que s'il garde au plus cette fraction des enregistrements. */
+    private static final double MAX_SELECTIVITY = 0.5;
+
+    /** * Enregistrements du type cherché, par numéro dans l'ordre du graphe (ou la seule entité d'un accès par ID).
+     * Un graphe stocké crée ses vues à la demande : seules celles du lot en cours sont en mémoire.
+     */
+    private final IntFunction<Entity> rows;
+    private final int rowCount;
+
+    /** * Candidats donnés par l'index retenu (numéros des enregistrements), null pour un parcours complet. */
+    private final BitSet selected;
+
+    /** * Conditions vérifiées sur chaque candidat, dans l'ordre d'évaluation. */
+    private final FindQuery.Condition[] filter;
+
+    /** * Description du plan, une ligne par étape. */
+    private final List<String> steps = new ArrayList<>();
+
+    private final int parallelism = Runtime.getRuntime().availableProcessors();
+    private final long planNanos;
+    private long evalNanos;
+    private long examined;
+    private long matched;
+    private int batches;
+
+    /**
+     * Choisit le plan d'une requête.
+     * @param query La requête.
+     * @param graph Le graphe interrogé.
+     * @param prefixes L'index des préfixes de noms, à jour pour le graphe (construit seulement s'il sert).
+     * @param years L'index des années, à jour pour le graphe (construit seulement s'il sert).
+     */
+    public QueryPlan(FindQuery query, Graph graph, Supplier<PrefixIndex> prefixes, Supplier<YearIndex> years) {
+        long debut = System.nanoTime();
+        List<FindQuery.Condition> conditions = query.getConditions();
+
+        // Conditions les moins coûteuses d'abord (tri stable : l'ordre de la requête est gardé à coût égal)
+        List<FindQuery.Condition> ordered = new ArrayList<>(conditions);
+        ordered.sort(Comparator.comparingInt(FindQuery.Condition::cost));
+        this.filter = ordered.toArray(new FindQuery.Condition[0]);
+
+        FindQuery.Condition byId = null;
+        for (FindQuery.Condition c : conditions) {
+            if (c.getField().equals("id") && c.getOperator() == FindQuery.Operator.EQ) byId = c;
+        }
+        if (byId != null) {
+            Entity found = query.isFamilies() ? graph.getFamily(byId.getValue()) : graph.getIndividual(byId.getValue());
+            this.rows = i -> found;
+            this.rowCount = (found == null) ? 0 : 1;
+            this.selected = null;
+            steps.add("Accès direct par ID : " + byId + " -> " + rowCount + " candidat(s)");
+        } else {
+            Numbering numbering = graph.getNumbering();
+            if (query.isFamilies()) {
+                this.rows = numbering::family;
+                this.rowCount = numbering.getFamilyCount();
+            } else {
+                this.rows = numbering::individual;
+                this.rowCount = numbering.getIndividualCount();
+            }
+            this.selected = query.isFamilies() ? null : chooseIndex(conditions, prefixes, years);
+            if (selected == null) {
+                steps.add(0, "Parcours complet : " + rowCount + " " + (query.isFamilies() ? "familles" : "individus"));
+            }
+        }
+
+        StringBuilder f = new StringBuilder();
+        for (FindQuery.Condition c : filter) {
+            if (f.length() > 0) f.append(" ET ");
+            f.append(c);
+        }
+        steps.add("Filtre (" + parallelism + " threads, lots de " + BATCH + ", arrêt à la première condition fausse) : "
+                + (filter.length == 0 ? "aucun" : f));
+        this.planNanos = System.nanoTime() - debut;
+    }
+
+    /**
+     * Estime les candidats de chaque condition indexable et retient la plus sélective.
+     * @return Les candidats de l'index retenu, ou null si aucun index n'est assez sélectif.
+     */
+    private BitSet chooseIndex(List<FindQuery.Condition> conditions, Supplier<PrefixIndex> prefixes, Supplier<YearIndex> years) {
+        BitSet best = null;
+        String bestStep = null;
+        for (FindQuery.Condition c : conditions) {
+            long debut = System.nanoTime();
+            BitSet candidates;
+            String index;
+            if (isPrefixIndexed(c)) {
+                candidates = prefixes.get().matching(c.getValue());
+                index = "index des préfixes";
+            } else if (yearEvent(c) != null) {
+                YearIndex.Event event = yearEvent(c);
+                int[] range = yearRange(c);
+                YearIndex idx = years.get();
+                // L'estimation est exacte et ne coûte que deux dichotomies : la tranche n'est lue que si elle peut servir
+                int count = idx.count(event, range[0], range[1]);
+                boolean useful = count <= rowCount * MAX_SELECTIVITY && (best == null || count < best.cardinality());
+                candidates = useful ? idx.range(event, range[0], range[1]) : null;
+                index = "index des années";
+                if (candidates == null) {
+                    steps.add("  (écarté) " + index + " : " + c + " -> " + count + " candidat(s)");
+                    continue;
+                }
+            } else {
+                continue;
+            }
+            String step = index + " : " + c + " -> " + candidates.cardinality() + " candidat(s) sur " + rowCount
+                    + String.format(" (%.2f ms)", (System.nanoTime() - debut) / 1e6);
+            if (candidates.cardinality() <= rowCount * MAX_SELECTIVITY && (best == null || candidates.cardinality() < best.cardinality())) {
+                if (bestStep != null) steps.add("  (écarté) " + bestStep);
+                best = candidates;
+                bestStep = step;
+            } else {
+                steps.add("  (écarté) " + step);
+            }
+        }
+        if (best != null) steps.add(0, "Accès par " + bestStep);
+        return best;
+    }
+
+    /**
+     * Une condition name ou surname (= ou ^=) est traitée par l'index des préfixes : les individus
+     * qu'il rend sont un sur-ensemble des individus qui la vérifient.
+     */
+    private static boolean isPrefixIndexed(FindQuery.Condition c) {
+        boolean field = c.getTag() == null && (c.getField().equals("name") || c.getField().equals("surname"));
+        boolean op = c.getOperator() == FindQuery.Operator.EQ || c.getOperator() == FindQuery.Operator.STARTS;
+        return field && op && !Phonetic.normalize(c.getValue()).isEmpty();
+    }
+
+    /**
+     * Événement de l'index des années pour une condition birth.date ou death.date comparée à une année.
+     */
+    private static YearIndex.Event yearEvent(FindQuery.Condition c) {
+        if (c.getYear() < 0 || c.getOperator() == FindQuery.Operator.NE || !"DATE".equals(c.getSubTag())) return null;
+        for (YearIndex.Event event : YearIndex.Event.values()) {
+            if (event.getTag().equals(c.getTag())) return event;
+        }
+        return null;
+    }
+
+    /**
+     * Intervalle d'années (bornes incluses) d'une condition de l'index des années.
+     */
+    private static int[] yearRange(FindQuery.Condition c) {
+        int y = c.getYear();
+        switch (c.getOperator()) {
+            case LT: return new int[] { Integer.MIN_VALUE, y - 1 };
+            case LE: return new int[] { Integer.MIN_VALUE, y };
+            case GT: return new int[] { y + 1, Integer.MAX_VALUE };
+            case GE: return new int[] { y, Integer.MAX_VALUE };
+            default: return new int[] { y, y };
+        }
+    }
+
+    /**
+     * Résultat de la requête, évalué lot par lot au fur et à mesure de la lecture.
+     * @return Les identifiants des enregistrements trouvés, dans l'ordre du graphe.
+     */
+    public Iterator<String> execute() {
+        return new Iterator<String>() {
+            /** * Prochain enregistrement à examiner. */
+            private int position = 0;
+            private final ArrayDeque<String> ready = new ArrayDeque<>();
+
+            @Override
+            public boolean hasNext() {
+                while (ready.isEmpty() && position < rowCount) {
+                    position = evaluate(position, ready);
+                }
+                return !ready.isEmpty();
+            }
+
+            @Override
+            public String next() {
+                if (!hasNext()) throw new NoSuchElementException();
+                return ready.poll();
+            }
+        };
+    }
+
+    /**
+     * Évalue un lot par thread à partir de la position donnée et ajoute les résultats, dans l'ordre.
+     * @return La position qui suit le dernier enregistrement examiné.
+     */
+    private int evaluate(int position, ArrayDeque<String> ready) {
+        long debut = System.nanoTime();
+        int[] positions = new int[BATCH * parallelism];
+        int n = 0;
+        while (n < positions.length && position < rowCount) {
+            if (selected == null) {
+                positions[n++] = position++;
+            } else {
+                int p = selected.nextSetBit(position);
+                if (p < 0 || p >= rowCount) {
+                    position = rowCount;
+                    break;
+                }
+                positions[n++] = p;
+                position = p + 1;
+            }
+        }
+        final int count = n;
+        List<List<String>> found = IntStream.range(0, (count + BATCH - 1) / BATCH).parallel()
+                .mapToObj(b -> {
+                    List<String> ids = new ArrayList<>();
+                    for (int k = b * BATCH; k < Math.min(count, (b + 1) * BATCH); k++) {
+                        Entity row = rows.apply(positions[k]);
+                        if (accept(row)) ids.add(row.getId());
+                    }
+                    return ids;
+                })
+                .collect(Collectors.toList());
+        for (List<String> ids : found) {
+            ready.addAll(ids);
+            matched += ids.size();
+        }
+        examined += count;
+        batches++;
+        evalNanos += System.nanoTime() - debut;
+        return position;
+    }
+
+    private boolean accept(Entity row) {
+        for (FindQuery.Condition c : filter) {
+            if (!c.test(row)) return false;
+        }
+        return true;
+    }
+
+    /**
+     * @return Les étapes du plan, dans l'ordre d'exécution.
+     */
+    public List<String> getSteps() {
+        return steps;
+    }
+
+    /**
+     * @return Le temps de planification (lectures d'index comprises), en nanosecondes.
+     */
+    public long getPlanNanos() {
+        return planNanos;
+    }
+
+    /**
+     * @return Le temps passé à évaluer les conditions jusqu'ici, en nanosecondes.
+     */
+    public long getEvalNanos() {
+        return evalNanos;
+    }
+
+    /**
+     * @return Le nombre d'enregistrements examinés jusqu'ici.
+     */
+    public long getExamined() {
+        return examined;
+    }
+
+    /**
+     * @return Le nombre d'enregistrements trouvés jusqu'ici.
+     */
+    public long getMatched() {
+        return matched;
+    }
+
+    /**
+     * @return Le nombre de séries de lots évaluées jusqu'ici.
+     */
+    public int getBatches() {
+        return batches;
+    }
+}
@@ -0,0 +1,624 @@
+package genealogy.storage;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import genealogy.exceptions.GenealogyErr;
+import genealogy.exceptions.exceptfile.DuplicationErr;
+import genealogy.parsing.RawRecord;
+
+/**
+ * Index persistant d'un fichier GEDCOM, rangé à côté de lui (fichier.ged.idx).
+ * L'index est construit en un seul passage sur le fichier, puis réutilisé tant que le fichier
+ * ne change pas (même taille, même date de modification). Il contient, triés par ID :
+ * _ la position et la longueur de chaque enregistrement INDI et FAM dans le fichier,
+ * _ le NAME et le SEX des individus,
+ * _ les liens FAMC, FAMS, HUSB, WIFE et CHIL.
+ * Les requêtes lisent l'index et le fichier d'origine par lectures positionnelles (PagedFile),
+ * avec un cache de pages de taille fixe : un fichier plus gros que le tas peut être interrogé.
+ * <pre>
+ * en-tête     := "GEDIDX02" | long tailleGed | long dateGed | int nbIndi | int nbFam
+ *                | long individus | long familles | long ordreIndi | long ordreFam | long liens | long chaines
+ *                | long rangIndi | long rangFam
+ * individu    := long position | int longueur | int ligne | ref id | ref NAME | int FAMC | int debutFAMS | int nbFAMS | byte SEX | 3 octets
+ * famille     := long position | int longueur | int ligne | ref id | int HUSB | int WIFE | int debutCHIL | int nbCHIL
+ * ordre       := int[n] (numéro de fiche du i-ème enregistrement du fichier)
+ * rang        := int[n] (rang dans le fichier de chaque fiche, inverse de l'ordre)
+ * lien        := ref (ID désigné)
+ * ref         := long (position dans les chaînes << 16 | longueur), -1 si absente
+ * </pre>
+ * Les liens FAMC, HUSB et WIFE sont des numéros de lien, -1 si absents. Les entiers sont en big-endian.
+ */
+public class DiskIndex extends RecordStore {
+
+    private static final byte[] MAGIC = "GEDIDX02".getBytes(StandardCharsets.US_ASCII);
+    private static final int HEADER = 96;
+    static final int INDI_ENTRY = 48;
+    static final int FAM_ENTRY = 40;
+
+    /** * Décalages des champs dans une fiche. */
+    static final int REC_OFF = 0, REC_LEN = 8, LINE = 12, ID = 16;
+    static final int NAME = 24, FAMC = 32, FAMS_START = 36, FAMS_COUNT = 40, SEX = 44;
+    static final int HUSB = 24, WIFE = 28, CHIL_START = 32, CHIL_COUNT = 36;
+
+    /** * Longueur maximale d'une chaîne de l'index (les NAME plus longs sont tronqués). */
+    private static final int MAX_STRING = 0xFFFF;
+
+    private final Charset charset;
+    private final Path indexFile;
+    private final PagedFile index;
+    private final PagedFile ged;
+    private final boolean rebuilt;
+    private final int individualCount, familyCount;
+    private final long individualTable, familyTable, individualOrder, familyOrder, linkTable, strings;
+    private final long individualRank, familyRank;
+
+    private DiskIndex(Path indexFile, PagedFile index, PagedFile ged, boolean rebuilt) throws IOException {
+        this.charset = Charset.defaultCharset();
+        this.indexFile = indexFile;
+        this.index = index;
+        this.ged = ged;
+        this.rebuilt = rebuilt;
+        this.individualCount = index.readInt(24);
+        this.familyCount = index.readInt(28);
+        this.individualTable = index.readLong(32);
+        this.familyTable = index.readLong(40);
+        this.individualOrder = index.readLong(48);
+        this.familyOrder = index.readLong(56);
+        this.linkTable = index.readLong(64);
+        this.strings = index.readLong(72);
+        this.individualRank = index.readLong(80);
+        this.familyRank = index.readLong(88);
+    }
+
+    /**
+     * Ouvre l'index d'un fichier GEDCOM, en le (re)construisant s'il n'existe pas ou si le fichier a changé.
+     * @param filePath Le fichier GEDCOM (non compressé).
+     * @param budget La mémoire des caches de pages, en octets (partagée entre l'index et le fichier).
+     * @return L'index ouvert.
+     * @throws IOException En cas de problème de lecture ou d'écriture.
+     * @throws GenealogyErr Si le fichier est mal formé ou contient un ID en double.
+     */
+    public static DiskIndex open(String filePath, long budget) throws IOException, GenealogyErr {
+        Path gedFile = Paths.get(filePath);
+        Path indexFile = Paths.get(filePath + ".idx");
+        boolean rebuilt = !isUpToDate(indexFile, gedFile);
+        if (rebuilt) build(gedFile, indexFile);
+        PagedFile index = new PagedFile(indexFile, budget / 2);
+        try {
+            return new DiskIndex(indexFile, index, new PagedFile(gedFile, budget / 2), rebuilt);
+        } catch (IOException | RuntimeException e) {
+            index.close();
+            throw e;
+        }
+    }
+
+    /**
+     * @return true si l'index vient d'être construit, false s'il existait déjà.
+     */
+    public boolean isRebuilt() {
+        return rebuilt;
+    }
+
+    public Path getIndexFile() {
+        return indexFile;
+    }
+
+    /**
+     * @return La mémoire occupée par les pages en cache (index et fichier), en octets.
+     */
+    public long getCachedBytes() {
+        return index.getCachedBytes() + ged.getCachedBytes();
+    }
+
+    /**
+     * @return Le nombre de pages lues sur le disque (index et fichier).
+     */
+    public long getPageMisses() {
+        return index.getMisses() + ged.getMisses();
+    }
+
+    /**
+     * @return Le nombre de pages trouvées dans le cache (index et fichier).
+     */
+    public long getPageHits() {
+        return index.getHits() + ged.getHits();
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            index.close();
+        } finally {
+            ged.close();
+        }
+    }
+
+    @Override
+    public int getIndividualCount() { return individualCount; }
+    @Override
+    public int getFamilyCount() { return familyCount; }
+
+    @Override
+    public int findIndividual(String id) {
+        return find(individualTable, INDI_ENTRY, individualCount, id);
+    }
+
+    @Override
+    public int findFamily(String id) {
+        return find(familyTable, FAM_ENTRY, familyCount, id);
+    }
+
+    @Override
+    int individualInFileOrder(int rank) {
+        return readInt(individualOrder + 4L * rank);
+    }
+
+    @Override
+    int familyInFileOrder(int rank) {
+        return readInt(familyOrder + 4L * rank);
+    }
+
+    @Override
+    int individualRank(int i) {
+        return readInt(individualRank + 4L * i);
+    }
+
+    @Override
+    int familyRank(int i) {
+        return readInt(familyRank + 4L * i);
+    }
+
+    // ---------------------------------------------------------------- accès utilisés par les vues
+
+    private long individualEntry(int i) { return individualTable + (long) INDI_ENTRY * i; }
+    private long familyEntry(int i) { return familyTable + (long) FAM_ENTRY * i; }
+
+    @Override
+    String individualId(int i) {
+        return string(readLong(individualEntry(i) + ID));
+    }
+
+    @Override
+    String individualName(int i) {
+        return string(readLong(individualEntry(i) + NAME));
+    }
+
+    @Override
+    byte individualSex(int i) {
+        try {
+            byte[] b = new byte[1];
+            index.read(individualEntry(i) + SEX, b, 0, 1);
+            return b[0];
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @Override
+    String individualFamc(int i) {
+        return link(readInt(individualEntry(i) + FAMC));
+    }
+
+    @Override
+    List<String> individualFams(int i) {
+        return links(readInt(individualEntry(i) + FAMS_START), readInt(individualEntry(i) + FAMS_COUNT));
+    }
+
+    @Override
+    RawRecord individualRecord(int i) {
+        return record(individualEntry(i));
+    }
+
+    @Override
+    String familyId(int i) {
+        return string(readLong(familyEntry(i) + ID));
+    }
+
+    @Override
+    String familyHusb(int i) {
+        return link(readInt(familyEntry(i) + HUSB));
+    }
+
+    @Override
+    String familyWife(int i) {
+        return link(readInt(familyEntry(i) + WIFE));
+    }
+
+    @Override
+    List<String> familyChildren(int i) {
+        return links(readInt(familyEntry(i) + CHIL_START), readInt(familyEntry(i) + CHIL_COUNT));
+    }
+
+    @Override
+    RawRecord familyRecord(int i) {
+        return record(familyEntry(i));
+    }
+
+    /**
+     * Recherche dichotomique d'un ID dans une table triée.
+     */
+    private int find(long table, int entrySize, int count, String id) {
+        if (id == null) return -1;
+        byte[] key = id.getBytes(charset);
+        int low = 0, high = count - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            int cmp = compare(bytes(readLong(table + (long) entrySize * mid + ID)), key);
+            if (cmp < 0) low = mid + 1;
+            else if (cmp > 0) high = mid - 1;
+            else return mid;
+        }
+        return -1;
+    }
+
+    /**
+     * Enregistrement brut lu dans le fichier d'origine, prêt à être décodé par le Parser.
+     */
+    private RawRecord record(long entry) {
+        try {
+            byte[] bytes = new byte[index.readInt(entry + REC_LEN)];
+            ged.read(index.readLong(entry + REC_OFF), bytes, 0, bytes.length);
+            return new RawRecord(bytes, 0, bytes.length, charset, index.readInt(entry + LINE));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private String link(int n) {
+        return (n < 0) ? null : string(readLong(linkTable + 8L * n));
+    }
+
+    private List<String> links(int start, int count) {
+        List<String> ids = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) ids.add(link(start + i));
+        return Collections.unmodifiableList(ids);
+    }
+
+    private String string(long ref) {
+        return (ref < 0) ? null : new String(bytes(ref), charset);
+    }
+
+    private byte[] bytes(long ref) {
+        try {
+            byte[] b = new byte[(int) (ref & MAX_STRING)];
+            index.read(strings + (ref >>> 16), b, 0, b.length);
+            return b;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private int readInt(long position) {
+        try {
+            return index.readInt(position);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private long readLong(long position) {
+        try {
+            return index.readLong(position);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Ordre des IDs dans l'index : octets comparés un à un (non signés), puis longueur.
+     */
+    static int compare(byte[] a, byte[] b) {
+        int n = Math.min(a.length, b.length);
+        for (int i = 0; i < n; i++) {
+            int cmp = (a[i] & 0xFF) - (b[i] & 0xFF);
+            if (cmp != 0) return cmp;
+        }
+        return a.length - b.length;
+    }
+
+    // ---------------------------------------------------------------- construction
+
+    private static boolean isUpToDate(Path indexFile, Path gedFile) throws IOException {
+        if (!Files.isRegularFile(indexFile) || Files.size(indexFile) < HEADER) return false;
+        try (InputStream in = Files.newInputStream(indexFile)) {
+            byte[] header = new byte[24];
+            if (in.readNBytes(header, 0, header.length) != header.length) return false;
+            ByteBuffer b = ByteBuffer.wrap(header);
+            return Arrays.equals(Arrays.copyOf(header, MAGIC.length), MAGIC)
+                    && b.getLong(8) == Files.size(gedFile)
+                    && b.getLong(16) == Files.getLastModifiedTime(gedFile).toMillis();
+        }
+    }
+
+    /**
+     * Construit l'index d'un fichier : un passage de lecture qui range les fiches dans des zones
+     * hors tas temporaires, un tri des fiches par ID, puis l'écriture de l'index.
+     * L'index est écrit dans un fichier temporaire puis renommé, un index à moitié écrit n'est jamais lu.
+     */
+    private static void build(Path gedFile, Path indexFile) throws IOException, GenealogyErr {
+        long size = Files.size(gedFile);
+        long modified = Files.getLastModifiedTime(gedFile).toMillis();
+        Path tmp = indexFile.resolveSibling(indexFile.getFileName() + ".tmp");
+        try (Builder builder = new Builder(Charset.defaultCharset())) {
+            try (InputStream in = new FileInputStream(gedFile.toFile())) {
+                long end = builder.scan(in);
+                builder.finishRecord(end);
+            }
+            builder.write(tmp, size, modified);
+            Files.move(tmp, indexFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(tmp);
+        }
+    }
+
+    /**
+     * Lecture du fichier pour l'index : les fiches sont d'abord écrites dans l'ordre du fichier,
+     * dans des zones hors tas, puis triées par ID au moment de l'écriture.
+     * Seuls les tableaux de tri (un int par entité) sont sur le tas.
+     */
+    private static class Builder extends GedcomScanner implements AutoCloseable {
+        private final OffHeapBuffer strings = new OffHeapBuffer("gedtree-idx-str");
+        private final OffHeapBuffer individuals = new OffHeapBuffer("gedtree-idx-indi");
+        private final OffHeapBuffer families = new OffHeapBuffer("gedtree-idx-fam");
+        private final OffHeapBuffer links = new OffHeapBuffer("gedtree-idx-links");
+        private long stringsSize;
+        private int individualCount, familyCount, linkCount;
+
+        /** * Enregistrement en cours : type (0 aucun, 1 INDI, 2 FAM), position, ligne, ID, NAME, SEX. */
+        private int type;
+        private long recordOffset, idRef, nameRef = -1;
+        private int firstLine;
+        private byte sex;
+
+        /** * Références de l'enregistrement en cours : type de tag et chaîne désignée. */
+        private int[] refTag = new int[16];
+        private long[] refValue = new long[16];
+        private int refCount;
+
+        private static final int REF_FAMC = 1, REF_FAMS = 2, REF_HUSB = 3, REF_WIFE = 4, REF_CHIL = 5;
+
+        Builder(Charset charset) throws IOException {
+            super(charset);
+        }
+
+        @Override
+        protected void line() throws IOException {
+            if (level == 0) {
+                finishRecord(lineOffset);
+                if (isXref()) {
+                    if (valueIs("INDI")) type = 1;
+                    else if (valueIs("FAM")) type = 2;
+                }
+                if (type == 0) return;
+                recordOffset = lineOffset;
+                firstLine = lineNumber;
+                idRef = string(tagStart, tagEnd);
+            } else if (type != 0 && level == 1) {
+                if (tagIs("NAME")) {
+                    if (nameRef < 0) nameRef = string(valueStart, end);
+                } else if (tagIs("SEX")) {
+                    if (valueStart < end) sex = line[valueStart];
+                } else if (tagIs("FAMC")) ref(REF_FAMC);
+                else if (tagIs("FAMS")) ref(REF_FAMS);
+                else if (tagIs("HUSB")) ref(REF_HUSB);
+                else if (tagIs("WIFE")) ref(REF_WIFE);
+                else if (tagIs("CHIL")) ref(REF_CHIL);
+            }
+        }
+
+        private void ref(int tag) throws IOException {
+            if (refCount == refTag.length) {
+                refTag = Arrays.copyOf(refTag, refCount * 2);
+                refValue = Arrays.copyOf(refValue, refCount * 2);
+            }
+            refTag[refCount] = tag;
+            refValue[refCount] = string(valueStart, end);
+            refCount++;
+        }
+
+        /**
+         * Copie une partie de la ligne en cours dans la zone des chaînes.
+         * @return La référence de la chaîne.
+         */
+        private long string(int from, int to) throws IOException {
+            int length = Math.min(to - from, MAX_STRING);
+            long at = strings.append(line, from, length);
+            stringsSize = at + length;
+            return (at << 16) | length;
+        }
+
+        /**
+         * Écrit la fiche de l'enregistrement en cours, qui se termine à la position end du fichier.
+         */
+        void finishRecord(long end) throws IOException {
+            if (type == 1) {
+                long e = individuals.allocate(INDI_ENTRY);
+                header(individuals, e, end);
+                individuals.putLong(e + NAME, nameRef);
+                individuals.putInt(e + FAMC, -1);
+                individuals.putInt(e + FAMS_START, linkCount);
+                int fams = 0;
+                for (int r = 0; r < refCount; r++) {
+                    if (refTag[r] == REF_FAMS) { link(r); fams++; }
+                }
+                individuals.putInt(e + FAMS_COUNT, fams);
+                for (int r = 0; r < refCount; r++) {
+                    if (refTag[r] == REF_FAMC) individuals.putInt(e + FAMC, link(r));
+                }
+                individuals.put(e + SEX, sex);
+                individualCount++;
+            } else if (type == 2) {
+                long e = families.allocate(FAM_ENTRY);
+                header(families, e, end);
+                families.putInt(e + HUSB, -1);
+                families.putInt(e + WIFE, -1);
+                families.putInt(e + CHIL_START, linkCount);
+                int children = 0;
+                for (int r = 0; r < refCount; r++) {
+                    if (refTag[r] == REF_CHIL) { link(r); children++; }
+                }
+                families.putInt(e + CHIL_COUNT, children);
+                for (int r = 0; r < refCount; r++) {
+                    if (refTag[r] == REF_HUSB) families.putInt(e + HUSB, link(r));
+                    if (refTag[r] == REF_WIFE) families.putInt(e + WIFE, link(r));
+                }
+                familyCount++;
+            }
+            type = 0;
+            refCount = 0;
+            nameRef = -1;
+            sex = 0;
+        }
+
+        private void header(OffHeapBuffer table, long e, long end) {
+            table.putLong(e + REC_OFF, recordOffset);
+            table.putInt(e + REC_LEN, (int) (end - recordOffset));
+            table.putInt(e + LINE, firstLine);
+            table.putLong(e + ID, idRef);
+        }
+
+        private int link(int r) throws IOException {
+            long at = links.allocate(8);
+            links.putLong(at, refValue[r]);
+            return linkCount++;
+        }
+
+        /**
+         * Trie les fiches par ID et écrit l'index.
+         */
+        void write(Path file, long gedSize, long gedModified) throws IOException, DuplicationErr {
+            int[] individualSort = sort(individuals, INDI_ENTRY, individualCount);
+            int[] familySort = sort(families, FAM_ENTRY, familyCount);
+
+            long individualTable = HEADER;
+            long familyTable = individualTable + (long) INDI_ENTRY * individualCount;
+            long individualOrder = familyTable + (long) FAM_ENTRY * familyCount;
+            long familyOrder = individualOrder + 4L * individualCount;
+            long individualRank = familyOrder + 4L * familyCount;
+            long familyRank = individualRank + 4L * individualCount;
+            long linkTable = familyRank + 4L * familyCount;
+            long stringTable = linkTable + 8L * linkCount;
+
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(file), 1 << 16))) {
+                out.write(MAGIC);
+                out.writeLong(gedSize);
+                out.writeLong(gedModified);
+                out.writeInt(individualCount);
+                out.writeInt(familyCount);
+                out.writeLong(individualTable);
+                out.writeLong(familyTable);
+                out.writeLong(individualOrder);
+                out.writeLong(familyOrder);
+                out.writeLong(linkTable);
+                out.writeLong(stringTable);
+                out.writeLong(individualRank);
+                out.writeLong(familyRank);
+
+                copyEntries(out, individuals, INDI_ENTRY, individualSort);
+                copyEntries(out, families, FAM_ENTRY, familySort);
+                writeOrder(out, individualSort);
+                writeOrder(out, familySort);
+                for (int r : individualSort) out.writeInt(r);
+                for (int r : familySort) out.writeInt(r);
+                for (int i = 0; i < linkCount; i++) {
+                    out.writeLong(links.getLong(OffHeapBuffer.slot(i, 8)));
+                }
+                // Les chaînes sont recopiées telles quelles (fins de blocs vides comprises) : les références restent valables
+                byte[] chunk = new byte[1 << 16];
+                for (long at = 0; at < stringsSize; at += chunk.length) {
+                    int n = (int) Math.min(chunk.length, stringsSize - at);
+                    strings.get(at, chunk, 0, n);
+                    out.write(chunk, 0, n);
+                }
+            }
+        }
+
+        /**
+         * Tri fusion des fiches par ID.
+         * @return Les numéros de fiche (ordre du fichier) dans l'ordre des IDs.
+         * @throws DuplicationErr Si deux fiches ont le même ID.
+         */
+        private int[] sort(OffHeapBuffer table, int entrySize, int count) throws DuplicationErr {
+            int[] order = new int[count];
+            for (int i = 0; i < count; i++) order[i] = i;
+            int[] tmp = new int[count];
+            for (int width = 1; width < count; width *= 2) {
+                for (int lo = 0; lo < count - width; lo += 2 * width) {
+                    int mid = lo + width, hi = Math.min(lo + 2 * width, count);
+                    int i = lo, j = mid, k = lo;
+                    while (i < mid && j < hi) {
+                        tmp[k++] = (compareIds(table, entrySize, order[i], order[j]) <= 0) ? order[i++] : order[j++];
+                    }
+                    while (i < mid) tmp[k++] = order[i++];
+                    while (j < hi) tmp[k++] = order[j++];
+                    System.arraycopy(tmp, lo, order, lo, hi - lo);
+                }
+            }
+            for (int p = 1; p < count; p++) {
+                if (compareIds(table, entrySize, order[p - 1], order[p]) == 0) {
+                    long ref = table.getLong(OffHeapBuffer.slot(order[p], entrySize) + ID);
+                    byte[] id = new byte[(int) (ref & MAX_STRING)];
+                    strings.get(ref >>> 16, id, 0, id.length);
+                    throw new DuplicationErr(new String(id, charset));
+                }
+            }
+            return order;
+        }
+
+        /**
+         * Compare les IDs de deux fiches directement dans la zone des chaînes, sans copie (même ordre que compare()).
+         */
+        private int compareIds(OffHeapBuffer table, int entrySize, int a, int b) {
+            long refA = table.getLong(OffHeapBuffer.slot(a, entrySize) + ID);
+            long refB = table.getLong(OffHeapBuffer.slot(b, entrySize) + ID);
+            int lenA = (int) (refA & MAX_STRING), lenB = (int) (refB & MAX_STRING);
+            long atA = refA >>> 16, atB = refB >>> 16;
+            for (int i = 0; i < Math.min(lenA, lenB); i++) {
+                int cmp = (strings.get(atA + i) & 0xFF) - (strings.get(atB + i) & 0xFF);
+                if (cmp != 0) return cmp;
+            }
+            return lenA - lenB;
+        }
+
+        private void copyEntries(DataOutputStream out, OffHeapBuffer table, int entrySize, int[] sorted) throws IOException {
+            byte[] entry = new byte[entrySize];
+            for (int i : sorted) {
+                table.get(OffHeapBuffer.slot(i, entrySize), entry, 0, entrySize);
+                out.write(entry);
+            }
+        }
+
+        /**
+         * Écrit, pour chaque enregistrement dans l'ordre du fichier, son numéro de fiche dans la table triée.
+         */
+        private void writeOrder(DataOutputStream out, int[] sorted) throws IOException {
+            int[] position = new int[sorted.length];
+            for (int p = 0; p < sorted.length; p++) position[sorted[p]] = p;
+            for (int p : position) out.writeInt(p);
+        }
+
+        @Override
+        public void close() throws IOException {
+            strings.close();
+            individuals.close();
+            families.close();
+            links.close();
+        }
+    }
+}
@@ -0,0 +1,134 @@
+package genealogy.storage;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.Charset;
+import java.util.Arrays;
+
+import genealogy.exceptions.GenealogyErr;
+import genealogy.exceptions.exceptfile.LineErr;
+
+/**
+ * Lecture d'un fichier GEDCOM ligne par ligne, directement sur les octets, sans créer de String.
+ * Pour chaque ligne non vide, les positions du niveau, du tag et de la valeur sont calculées
+ * puis line() est appelée ; la position de la ligne dans le fichier est aussi connue,
+ * ce qui permet de repérer un enregistrement sans le copier.
+ */
+abstract class GedcomScanner {
+
+    /** * Taille du buffer de lecture (64 Ko). */
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    protected final Charset charset;
+
+    /** * Ligne en cours : octets, bornes (espaces retirés), niveau, tag [tagStart, tagEnd[ et début de la valeur. */
+    protected byte[] line = new byte[256];
+    protected int start, end, level, tagStart, tagEnd, valueStart;
+
+    /** * Position du premier octet de la ligne en cours dans le fichier. */
+    protected long lineOffset;
+
+    /** * Numéro de la ligne en cours (à partir de 1). */
+    protected int lineNumber;
+
+    protected GedcomScanner(Charset charset) {
+        this.charset = charset;
+    }
+
+    /**
+     * Traite la ligne en cours.
+     */
+    protected abstract void line() throws IOException, GenealogyErr;
+
+    /**
+     * Lit tout le flux et appelle line() pour chaque ligne non vide.
+     * @param in Le flux à lire.
+     * @return Le nombre d'octets lus.
+     * @throws IOException En cas de problème de lecture.
+     * @throws GenealogyErr Si un niveau n'est pas valide, ou en cas d'erreur remontée par line().
+     */
+    long scan(InputStream in) throws IOException, GenealogyErr {
+        byte[] buffer = new byte[BUFFER_SIZE];
+        int length = 0;
+        long position = 0;
+        long next = 0;
+        int n;
+        while ((n = in.read(buffer)) > 0) {
+            for (int i = 0; i < n; i++) {
+                byte b = buffer[i];
+                if (b == '\n') {
+                    lineOffset = next;
+                    dispatch(length);
+                    length = 0;
+                    next = position + i + 1;
+                } else if (b != '\r') {
+                    if (length == line.length) line = Arrays.copyOf(line, line.length * 2);
+                    line[length++] = b;
+                }
+            }
+            position += n;
+        }
+        if (length > 0) {
+            lineOffset = next;
+            dispatch(length);
+        }
+        return position;
+    }
+
+    /**
+     * Découpe la ligne (niveau, tag, valeur) puis la transmet à line().
+     */
+    private void dispatch(int length) throws IOException, GenealogyErr {
+        lineNumber++;
+        start = 0;
+        end = length;
+        while (start < end && (line[start] == ' ' || line[start] == '\t')) start++;
+        while (end > start && (line[end - 1] == ' ' || line[end - 1] == '\t')) end--;
+        if (start == end) return;
+
+        level = 0;
+        int i = start;
+        while (i < end && line[i] != ' ') {
+            int digit = line[i] - '0';
+            if (digit < 0 || digit > 9) {
+                throw new LineErr(lineNumber, "Le niveau n'est pas un entier valide : " + new String(line, start, end - start, charset));
+            }
+            level = level * 10 + digit;
+            i++;
+        }
+        tagStart = i + 1;
+        tagEnd = tagStart;
+        while (tagEnd < end && line[tagEnd] != ' ') tagEnd++;
+        valueStart = Math.min(tagEnd + 1, end);
+        line();
+    }
+
+    /**
+     * @return true si le tag de la ligne en cours est un identifiant (@...@), comme sur les lignes 0 @I1@ INDI.
+     */
+    protected boolean isXref() {
+        return tagStart < end && line[tagStart] == '@';
+    }
+
+    /**
+     * @return true si le tag de la ligne en cours est word.
+     */
+    protected boolean tagIs(String word) {
+        return is(tagStart, tagEnd, word);
+    }
+
+    /**
+     * @return true si la valeur de la ligne en cours est word.
+     */
+    protected boolean valueIs(String word) {
+        return is(valueStart, end, word);
+    }
+
+    private boolean is(int from, int to, String word) {
+        if (to - from != word.length()) return false;
+        for (int i = 0; i < word.length(); i++) {
+            if (line[from + i] != word.charAt(i)) return false;
+        }
+        return true;
+    }
+}
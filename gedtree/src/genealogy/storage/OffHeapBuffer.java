@@ -0,0 +1,157 @@
+package genealogy.storage;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Zone mémoire hors du tas Java, adressée par des positions de type long.
+ * La zone est faite de blocs de 64 Mo projetés en mémoire (mmap) depuis un fichier temporaire :
+ * contrairement aux ByteBuffer directs, elle n'est pas limitée par -XX:MaxDirectMemorySize,
+ * et le système peut renvoyer sur le disque les pages peu utilisées.
+ * Une allocation ne chevauche jamais deux blocs, ce qui permet de lire chaque valeur
+ * avec un seul accès absolu au ByteBuffer du bloc.
+ */
+public class OffHeapBuffer implements Closeable {
+
+    /** * Taille d'un bloc (64 Mo). */
+    static final int CHUNK = 1 << 26;
+
+    private final Path file;
+    private final FileChannel channel;
+    private final List<MappedByteBuffer> chunks = new ArrayList<>();
+
+    /** * Position de la prochaine allocation. */
+    private long position;
+
+    /**
+     * Crée une zone vide, adossée à un fichier temporaire supprimé à la fermeture.
+     * @param prefix Le préfixe du nom du fichier temporaire.
+     * @throws IOException Si le fichier temporaire ne peut pas être créé.
+     */
+    public OffHeapBuffer(String prefix) throws IOException {
+        this.file = Files.createTempFile(prefix, ".mem");
+        this.channel = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE);
+    }
+
+    /**
+     * Réserve size octets contigus.
+     * @param size La taille de la réservation (au plus 64 Mo).
+     * @return La position du premier octet réservé.
+     * @throws IOException Si la zone ne peut pas être agrandie.
+     */
+    public long allocate(int size) throws IOException {
+        if (size > CHUNK) throw new IOException("Allocation trop grande : " + size + " octets");
+        long offset = position % CHUNK;
+        if (offset + size > CHUNK) position += CHUNK - offset;
+        long start = position;
+        position += size;
+        while (chunks.size() * (long) CHUNK < position) {
+            chunks.add(channel.map(FileChannel.MapMode.READ_WRITE, chunks.size() * (long) CHUNK, CHUNK));
+        }
+        return start;
+    }
+
+    /**
+     * Copie des octets à la suite de la zone.
+     * @param src Les octets à copier.
+     * @param from La position du premier octet dans src.
+     * @param length Le nombre d'octets.
+     * @return La position de la copie dans la zone.
+     * @throws IOException Si la zone ne peut pas être agrandie.
+     */
+    public long append(byte[] src, int from, int length) throws IOException {
+        long start = allocate(length);
+        ByteBuffer view = chunk(start).duplicate();
+        view.position((int) (start % CHUNK));
+        view.put(src, from, length);
+        return start;
+    }
+
+    /**
+     * Position d'un élément d'un tableau d'éléments de taille fixe alloués un par un avec allocate(slotSize).
+     * @param index L'indice de l'élément.
+     * @param slotSize La taille d'un élément.
+     * @return La position de l'élément.
+     */
+    public static long slot(long index, int slotSize) {
+        int perChunk = CHUNK / slotSize;
+        return (index / perChunk) * CHUNK + (index % perChunk) * slotSize;
+    }
+
+    public void putInt(long at, int value) { chunk(at).putInt((int) (at % CHUNK), value); }
+    public int getInt(long at) { return chunk(at).getInt((int) (at % CHUNK)); }
+    public void putLong(long at, long value) { chunk(at).putLong((int) (at % CHUNK), value); }
+    public long getLong(long at) { return chunk(at).getLong((int) (at % CHUNK)); }
+    public void put(long at, byte value) { chunk(at).put((int) (at % CHUNK), value); }
+    public byte get(long at) { return chunk(at).get((int) (at % CHUNK)); }
+
+    /**
+     * Copie des octets de la zone dans un tableau.
+     * @param at La position du premier octet (les octets doivent venir d'une même allocation).
+     * @param dst Le tableau de destination.
+     * @param from La position dans dst.
+     * @param length Le nombre d'octets.
+     */
+    public void get(long at, byte[] dst, int from, int length) {
+        ByteBuffer view = chunk(at).duplicate();
+        view.position((int) (at % CHUNK));
+        view.get(dst, from, length);
+    }
+
+    /**
+     * Compare des octets de la zone avec un tableau.
+     * @return true si les length octets à la position at sont égaux à ceux de other.
+     */
+    public boolean equals(long at, byte[] other, int length) {
+        if (other.length != length) return false;
+        MappedByteBuffer chunk = chunk(at);
+        int offset = (int) (at % CHUNK);
+        for (int i = 0; i < length; i++) {
+            if (chunk.get(offset + i) != other[i]) return false;
+        }
+        return true;
+    }
+
+    /**
+     * @return Le nombre d'octets réservés (blocs projetés).
+     */
+    public long getReserved() {
+        return chunks.size() * (long) CHUNK;
+    }
+
+    /**
+     * @return Le nombre d'octets utilisés.
+     */
+    public long getUsed() {
+        return position;
+    }
+
+    /**
+     * Libère la zone : les blocs ne sont plus référencés (la mémoire projetée sera rendue au système
+     * par le ramasse-miettes) et le fichier temporaire est supprimé. Un système qui refuse de supprimer
+     * un fichier encore projeté (Windows) n'empêche pas la fermeture : le fichier est alors supprimé
+     * à l'arrêt de la JVM.
+     */
+    @Override
+    public void close() throws IOException {
+        chunks.clear();
+        channel.close();
+        try {
+            Files.deleteIfExists(file);
+        } catch (IOException e) {
+            file.toFile().deleteOnExit();
+        }
+    }
+
+    private MappedByteBuffer chunk(long at) {
+        return chunks.get((int) (at / CHUNK));
+    }
+}
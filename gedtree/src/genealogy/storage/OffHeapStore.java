@@ -0,0 +1,471 @@
+package genealogy.storage;
+
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import genealogy.exceptions.GenealogyErr;
+import genealogy.exceptions.exceptfile.DuplicationErr;
+import genealogy.exceptions.exceptfile.LineErr;
+import genealogy.parsing.RawRecord;
+
+/**
+ * Stockage d'un arbre GEDCOM hors du tas Java.
+ * Le fichier est lu en un seul passage, octet par octet, sans créer d'objet par enregistrement :
+ * _ les octets bruts de chaque enregistrement INDI ou FAM sont copiés dans une zone hors tas,
+ * _ chaque entité a une fiche de taille fixe (position de l'enregistrement, de l'ID, du NAME, sexe...),
+ * _ les liens (FAMC, FAMS, HUSB, WIFE, CHIL) sont des tableaux de références vers les octets des IDs,
+ * _ deux tables de hachage à adressage ouvert (ID -> indice de fiche) remplacent les HashMap.
+ * Le graphe obtenu par toGraph() rend des vues légères (StoredIndividual, StoredFamily) créées
+ * à la demande : le tas ne contient que les objets en cours d'utilisation, quelle que soit la taille de l'arbre.
+ * Le stockage est en lecture seule.
+ */
+public class OffHeapStore extends RecordStore {
+
+    /** * Fiche d'un individu : enregistrement, ID, NAME, ligne, liens, sexe. */
+    static final int INDI_SLOT = 48;
+    /** * Fiche d'une famille : enregistrement, ID, ligne, liens. */
+    static final int FAM_SLOT = 48;
+    /** * Référence vers un ID : position (long) et longueur (int). */
+    static final int LINK_SLOT = 12;
+
+    /** * Décalages des champs dans une fiche. */
+    static final int RAW_OFF = 0, RAW_LEN = 8, ID_REL = 12, ID_LEN = 16, LINE = 20;
+    static final int NAME_REL = 24, NAME_LEN = 28, FAMS_START = 32, FAMS_COUNT = 36, FAMC = 40, SEX = 44;
+    static final int HUSB = 24, WIFE = 28, CHIL_START = 32, CHIL_COUNT = 36;
+
+    private final Charset charset;
+    private final OffHeapBuffer data;
+    private final OffHeapBuffer individuals;
+    private final OffHeapBuffer families;
+    private final OffHeapBuffer links;
+    private OffHeapBuffer individualIndex;
+    private OffHeapBuffer familyIndex;
+    private int individualCount;
+    private int familyCount;
+    private int linkCount;
+    private int individualMask;
+    private int familyMask;
+
+    private OffHeapStore(Charset charset) throws IOException {
+        this.charset = charset;
+        this.data = new OffHeapBuffer("gedtree-data");
+        this.individuals = new OffHeapBuffer("gedtree-indi");
+        this.families = new OffHeapBuffer("gedtree-fam");
+        this.links = new OffHeapBuffer("gedtree-links");
+    }
+
+    /**
+     * Charge un fichier GEDCOM dans un stockage hors tas.
+     * @param filePath Le fichier à lire.
+     * @return Le stockage rempli.
+     * @throws IOException En cas de problème de lecture.
+     * @throws DuplicationErr Si un identifiant est défini deux fois.
+     * @throws LineErr Si un niveau n'est pas un entier valide.
+     */
+    public static OffHeapStore load(String filePath) throws IOException, DuplicationErr, LineErr {
+        OffHeapStore store = new OffHeapStore(Charset.defaultCharset());
+        try (InputStream in = new FileInputStream(filePath)) {
+            new Loader(store).read(in);
+        } catch (IOException | DuplicationErr | LineErr | RuntimeException e) {
+            store.close();
+            throw e;
+        } catch (GenealogyErr e) {
+            store.close();
+            throw new IllegalStateException(e.getMessage(), e);
+        }
+        return store;
+    }
+
+    @Override
+    public int getIndividualCount() { return individualCount; }
+    @Override
+    public int getFamilyCount() { return familyCount; }
+
+    /**
+     * @return La mémoire hors tas utilisée, en octets.
+     */
+    public long getUsedBytes() {
+        return data.getUsed() + individuals.getUsed() + families.getUsed() + links.getUsed()
+                + individualIndex.getUsed() + familyIndex.getUsed();
+    }
+
+    /**
+     * Libère toute la mémoire hors tas. Les vues créées auparavant ne doivent plus être utilisées.
+     */
+    @Override
+    public void close() throws IOException {
+        data.close();
+        individuals.close();
+        families.close();
+        links.close();
+        if (individualIndex != null) individualIndex.close();
+        if (familyIndex != null) familyIndex.close();
+    }
+
+    // ---------------------------------------------------------------- accès utilisés par les vues
+
+    private static long individualSlot(int i) { return OffHeapBuffer.slot(i, INDI_SLOT); }
+    private static long familySlot(int i) { return OffHeapBuffer.slot(i, FAM_SLOT); }
+
+    @Override
+    String individualId(int i) {
+        return id(individuals, individualSlot(i));
+    }
+
+    @Override
+    String individualName(int i) {
+        long slot = individualSlot(i);
+        int nameRel = individuals.getInt(slot + NAME_REL);
+        if (nameRel < 0) return null;
+        return string(individuals.getLong(slot + RAW_OFF) + nameRel, individuals.getInt(slot + NAME_LEN));
+    }
+
+    @Override
+    byte individualSex(int i) {
+        return individuals.get(individualSlot(i) + SEX);
+    }
+
+    @Override
+    String individualFamc(int i) {
+        return link(individuals.getInt(individualSlot(i) + FAMC));
+    }
+
+    @Override
+    List<String> individualFams(int i) {
+        long slot = individualSlot(i);
+        return links(individuals.getInt(slot + FAMS_START), individuals.getInt(slot + FAMS_COUNT));
+    }
+
+    @Override
+    RawRecord individualRecord(int i) {
+        return rawRecord(individuals, individualSlot(i));
+    }
+
+    @Override
+    String familyId(int i) {
+        return id(families, familySlot(i));
+    }
+
+    @Override
+    String familyHusb(int i) {
+        return link(families.getInt(familySlot(i) + HUSB));
+    }
+
+    @Override
+    String familyWife(int i) {
+        return link(families.getInt(familySlot(i) + WIFE));
+    }
+
+    @Override
+    List<String> familyChildren(int i) {
+        long slot = familySlot(i);
+        return links(families.getInt(slot + CHIL_START), families.getInt(slot + CHIL_COUNT));
+    }
+
+    @Override
+    RawRecord familyRecord(int i) {
+        return rawRecord(families, familySlot(i));
+    }
+
+    /**
+     * Chaîne rangée dans les octets d'un enregistrement.
+     */
+    private String string(long offset, int length) {
+        byte[] bytes = new byte[length];
+        data.get(offset, bytes, 0, length);
+        return new String(bytes, charset);
+    }
+
+    /**
+     * Chaîne désignée par une référence du tableau des liens, ou null pour l'indice -1.
+     */
+    private String link(int index) {
+        if (index < 0) return null;
+        long at = OffHeapBuffer.slot(index, LINK_SLOT);
+        return string(links.getLong(at), links.getInt(at + 8));
+    }
+
+    /**
+     * count références consécutives du tableau des liens.
+     */
+    private List<String> links(int start, int count) {
+        List<String> ids = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) ids.add(link(start + i));
+        return Collections.unmodifiableList(ids);
+    }
+
+    /**
+     * ID d'une entité à partir de sa fiche.
+     */
+    private String id(OffHeapBuffer table, long slot) {
+        return string(table.getLong(slot + RAW_OFF) + table.getInt(slot + ID_REL), table.getInt(slot + ID_LEN));
+    }
+
+    /**
+     * Copie de l'enregistrement brut d'une entité, prête à être décodée par le Parser.
+     */
+    private RawRecord rawRecord(OffHeapBuffer table, long slot) {
+        byte[] bytes = new byte[table.getInt(slot + RAW_LEN)];
+        data.get(table.getLong(slot + RAW_OFF), bytes, 0, bytes.length);
+        return new RawRecord(bytes, 0, bytes.length, charset, table.getInt(slot + LINE));
+    }
+
+    @Override
+    public int findIndividual(String id) {
+        return find(individualIndex, individualMask, individuals, INDI_SLOT, id);
+    }
+
+    @Override
+    public int findFamily(String id) {
+        return find(familyIndex, familyMask, families, FAM_SLOT, id);
+    }
+
+    private int find(OffHeapBuffer index, int mask, OffHeapBuffer table, int slotSize, String id) {
+        if (id == null || index == null) return -1;
+        byte[] key = id.getBytes(charset);
+        for (int h = hash(key, 0, key.length) & mask; ; h = (h + 1) & mask) {
+            int entry = index.getInt(OffHeapBuffer.slot(h, 4));
+            if (entry == 0) return -1;
+            long slot = OffHeapBuffer.slot(entry - 1, slotSize);
+            long at = table.getLong(slot + RAW_OFF) + table.getInt(slot + ID_REL);
+            if (data.equals(at, key, table.getInt(slot + ID_LEN))) return entry - 1;
+        }
+    }
+
+    /**
+     * Hachage FNV-1a des octets d'un ID.
+     */
+    static int hash(byte[] bytes, int from, int length) {
+        int h = 0x811C9DC5;
+        for (int i = from; i < from + length; i++) {
+            h = (h ^ (bytes[i] & 0xFF)) * 0x01000193;
+        }
+        return h ^ (h >>> 16);
+    }
+
+    // ---------------------------------------------------------------- chargement
+
+    /**
+     * Lecture du fichier en un passage : l'enregistrement en cours est accumulé dans un tableau réutilisé
+     * puis copié hors tas.
+     */
+    private static class Loader extends GedcomScanner {
+        private final OffHeapStore store;
+        private byte[] record = new byte[1 << 12];
+        private int recordLength;
+
+        /** * Enregistrement en cours : type (0 aucun, 1 INDI, 2 FAM), ID, NAME, SEX, ligne de début. */
+        private int type;
+        private int idRel, idLen, nameRel = -1, nameLen, firstLine;
+        private byte sex;
+
+        /** * Références de l'enregistrement en cours : type de tag, position et longueur de la valeur. */
+        private int[] refTag = new int[16];
+        private int[] refRel = new int[16];
+        private int[] refLen = new int[16];
+        private int refCount;
+
+        /** * Tables de hachage provisoires (sur le tas pendant le chargement, puis copiées hors tas). */
+        private int[] individualHash = new int[1 << 10];
+        private int[] familyHash = new int[1 << 10];
+
+        private static final int REF_FAMC = 1, REF_FAMS = 2, REF_HUSB = 3, REF_WIFE = 4, REF_CHIL = 5;
+
+        Loader(OffHeapStore store) {
+            super(store.charset);
+            this.store = store;
+        }
+
+        void read(InputStream in) throws IOException, GenealogyErr {
+            scan(in);
+            finishRecord();
+            store.individualIndex = copyIndex(individualHash);
+            store.familyIndex = copyIndex(familyHash);
+            store.individualMask = individualHash.length - 1;
+            store.familyMask = familyHash.length - 1;
+            individualHash = null;
+            familyHash = null;
+        }
+
+        /**
+         * Traite une ligne : une ligne de niveau 0 termine l'enregistrement précédent.
+         */
+        @Override
+        protected void line() throws IOException, DuplicationErr {
+            if (level == 0) {
+                finishRecord();
+                firstLine = lineNumber;
+                if (isXref()) {
+                    if (valueIs("INDI")) type = 1;
+                    else if (valueIs("FAM")) type = 2;
+                }
+                if (type == 0) return;
+                idRel = recordLength + (tagStart - start);
+                idLen = tagEnd - tagStart;
+            } else if (type == 0) {
+                return;
+            } else if (level == 1) {
+                int valueRel = recordLength + (valueStart - start);
+                int valueLen = end - valueStart;
+                if (tagIs("NAME")) {
+                    if (nameRel < 0) { nameRel = valueRel; nameLen = valueLen; }
+                } else if (tagIs("SEX")) {
+                    if (valueLen > 0) sex = line[valueStart];
+                } else if (tagIs("FAMC")) ref(REF_FAMC, valueRel, valueLen);
+                else if (tagIs("FAMS")) ref(REF_FAMS, valueRel, valueLen);
+                else if (tagIs("HUSB")) ref(REF_HUSB, valueRel, valueLen);
+                else if (tagIs("WIFE")) ref(REF_WIFE, valueRel, valueLen);
+                else if (tagIs("CHIL")) ref(REF_CHIL, valueRel, valueLen);
+            }
+
+            // La ligne (sans les espaces autour) est ajoutée à l'enregistrement en cours
+            int size = end - start;
+            if (recordLength + size + 1 > record.length) {
+                record = Arrays.copyOf(record, Math.max(record.length * 2, recordLength + size + 1));
+            }
+            System.arraycopy(line, start, record, recordLength, size);
+            recordLength += size;
+            record[recordLength++] = '\n';
+        }
+
+        private void ref(int tag, int rel, int len) {
+            if (refCount == refTag.length) {
+                refTag = Arrays.copyOf(refTag, refCount * 2);
+                refRel = Arrays.copyOf(refRel, refCount * 2);
+                refLen = Arrays.copyOf(refLen, refCount * 2);
+            }
+            refTag[refCount] = tag;
+            refRel[refCount] = rel;
+            refLen[refCount] = len;
+            refCount++;
+        }
+
+        /**
+         * Copie l'enregistrement en cours hors tas, avec sa fiche et ses liens.
+         */
+        private void finishRecord() throws IOException, DuplicationErr {
+            if (type != 0) {
+                long raw = store.data.append(record, 0, recordLength);
+                if (type == 1) {
+                    int index = store.individualCount;
+                    individualHash = insert(individualHash, index, store.individualCount + 1);
+                    long slot = store.individuals.allocate(INDI_SLOT);
+                    OffHeapBuffer t = store.individuals;
+                    writeHeader(t, slot, raw);
+                    t.putInt(slot + NAME_REL, nameRel);
+                    t.putInt(slot + NAME_LEN, nameLen);
+                    t.putInt(slot + FAMC, -1);
+                    t.putInt(slot + FAMS_START, store.linkCount);
+                    int fams = 0;
+                    for (int r = 0; r < refCount; r++) {
+                        if (refTag[r] == REF_FAMS) { link(raw, r); fams++; }
+                    }
+                    t.putInt(slot + FAMS_COUNT, fams);
+                    for (int r = 0; r < refCount; r++) {
+                        if (refTag[r] == REF_FAMC) t.putInt(slot + FAMC, link(raw, r));
+                    }
+                    t.put(slot + SEX, sex);
+                    store.individualCount++;
+                } else {
+                    int index = store.familyCount;
+                    familyHash = insert(familyHash, index, store.familyCount + 1);
+                    long slot = store.families.allocate(FAM_SLOT);
+                    OffHeapBuffer t = store.families;
+                    writeHeader(t, slot, raw);
+                    t.putInt(slot + HUSB, -1);
+                    t.putInt(slot + WIFE, -1);
+                    t.putInt(slot + CHIL_START, store.linkCount);
+                    int children = 0;
+                    for (int r = 0; r < refCount; r++) {
+                        if (refTag[r] == REF_CHIL) { link(raw, r); children++; }
+                    }
+                    t.putInt(slot + CHIL_COUNT, children);
+                    for (int r = 0; r < refCount; r++) {
+                        if (refTag[r] == REF_HUSB) t.putInt(slot + HUSB, link(raw, r));
+                        if (refTag[r] == REF_WIFE) t.putInt(slot + WIFE, link(raw, r));
+                    }
+                    store.familyCount++;
+                }
+            }
+            type = 0;
+            recordLength = 0;
+            refCount = 0;
+            nameRel = -1;
+            nameLen = 0;
+            sex = 0;
+        }
+
+        private void writeHeader(OffHeapBuffer table, long slot, long raw) {
+            table.putLong(slot + RAW_OFF, raw);
+            table.putInt(slot + RAW_LEN, recordLength);
+            table.putInt(slot + ID_REL, idRel);
+            table.putInt(slot + ID_LEN, idLen);
+            table.putInt(slot + LINE, firstLine);
+        }
+
+        /**
+         * Ajoute une référence au tableau des liens.
+         * @return L'indice de la référence.
+         */
+        private int link(long raw, int r) throws IOException {
+            long at = store.links.allocate(LINK_SLOT);
+            store.links.putLong(at, raw + refRel[r]);
+            store.links.putInt(at + 8, refLen[r]);
+            return store.linkCount++;
+        }
+
+        /**
+         * Range l'enregistrement en cours dans une table de hachage (indice + 1, 0 = case vide),
+         * en la doublant si elle est remplie à plus de 50 %.
+         */
+        private int[] insert(int[] table, int index, int count) throws DuplicationErr {
+            if (count * 2 > table.length) table = rehash(table, type == 1 ? store.individuals : store.families,
+                                                          type == 1 ? INDI_SLOT : FAM_SLOT);
+            int mask = table.length - 1;
+            for (int h = hash(record, idRel, idLen) & mask; ; h = (h + 1) & mask) {
+                if (table[h] == 0) {
+                    table[h] = index + 1;
+                    return table;
+                }
+                OffHeapBuffer t = (type == 1) ? store.individuals : store.families;
+                long slot = OffHeapBuffer.slot(table[h] - 1, type == 1 ? INDI_SLOT : FAM_SLOT);
+                byte[] id = Arrays.copyOfRange(record, idRel, idRel + idLen);
+                if (store.data.equals(t.getLong(slot + RAW_OFF) + t.getInt(slot + ID_REL), id, t.getInt(slot + ID_LEN))) {
+                    throw new DuplicationErr(new String(id, store.charset));
+                }
+            }
+        }
+
+        private int[] rehash(int[] table, OffHeapBuffer t, int slotSize) {
+            int[] bigger = new int[table.length * 2];
+            int mask = bigger.length - 1;
+            byte[] id = new byte[64];
+            for (int entry : table) {
+                if (entry == 0) continue;
+                long slot = OffHeapBuffer.slot(entry - 1, slotSize);
+                int len = t.getInt(slot + ID_LEN);
+                if (len > id.length) id = new byte[len];
+                store.data.get(t.getLong(slot + RAW_OFF) + t.getInt(slot + ID_REL), id, 0, len);
+                int h = hash(id, 0, len) & mask;
+                while (bigger[h] != 0) h = (h + 1) & mask;
+                bigger[h] = entry;
+            }
+            return bigger;
+        }
+
+        private OffHeapBuffer copyIndex(int[] table) throws IOException {
+            OffHeapBuffer index = new OffHeapBuffer("gedtree-index");
+            for (int h = 0; h < table.length; h++) {
+                long at = index.allocate(4);
+                index.putInt(at, table[h]);
+            }
+            return index;
+        }
+    }
+}
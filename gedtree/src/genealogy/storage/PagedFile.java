@@ -0,0 +1,132 @@
+package genealogy.storage;
+
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Fichier lu par pages de taille fixe, avec des lectures positionnelles (FileChannel.read(buffer, position)).
+ * Les pages les plus récemment lues sont gardées dans un cache LRU dont la taille totale est bornée :
+ * la mémoire utilisée ne dépend pas de la taille du fichier.
+ * Les méthodes sont synchronisées, le fichier peut être lu par plusieurs threads.
+ */
+public class PagedFile implements Closeable {
+
+    /** * Taille d'une page (64 Ko). */
+    static final int PAGE_SIZE = 1 << 16;
+
+    private final FileChannel channel;
+    private final long size;
+    private final Map<Long, byte[]> pages;
+    private long hits, misses;
+
+    /**
+     * Ouvre un fichier en lecture.
+     * @param file Le fichier.
+     * @param budget La mémoire maximale du cache de pages, en octets (au moins une page).
+     * @throws IOException Si le fichier ne peut pas être ouvert.
+     */
+    public PagedFile(Path file, long budget) throws IOException {
+        this.channel = FileChannel.open(file, StandardOpenOption.READ);
+        this.size = channel.size();
+        int maxPages = (int) Math.max(1, budget / PAGE_SIZE);
+        this.pages = new LinkedHashMap<Long, byte[]>(16, 0.75f, true) {
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Long, byte[]> eldest) {
+                return size() > maxPages;
+            }
+        };
+    }
+
+    /**
+     * Copie des octets du fichier dans un tableau (la lecture peut couvrir plusieurs pages).
+     * @param position La position du premier octet dans le fichier.
+     * @param dst Le tableau de destination.
+     * @param from La position dans dst.
+     * @param length Le nombre d'octets.
+     * @throws IOException Si la lecture dépasse la fin du fichier ou échoue.
+     */
+    public synchronized void read(long position, byte[] dst, int from, int length) throws IOException {
+        if (position < 0 || position + length > size) {
+            throw new EOFException("Lecture hors du fichier : " + position + " + " + length + " > " + size);
+        }
+        while (length > 0) {
+            byte[] page = page(position / PAGE_SIZE);
+            int offset = (int) (position % PAGE_SIZE);
+            int n = Math.min(length, page.length - offset);
+            System.arraycopy(page, offset, dst, from, n);
+            position += n;
+            from += n;
+            length -= n;
+        }
+    }
+
+    /**
+     * Lit un entier (big-endian).
+     */
+    public int readInt(long position) throws IOException {
+        byte[] b = new byte[4];
+        read(position, b, 0, 4);
+        return ((b[0] & 0xFF) << 24) | ((b[1] & 0xFF) << 16) | ((b[2] & 0xFF) << 8) | (b[3] & 0xFF);
+    }
+
+    /**
+     * Lit un entier long (big-endian).
+     */
+    public long readLong(long position) throws IOException {
+        return ((long) readInt(position) << 32) | (readInt(position + 4) & 0xFFFFFFFFL);
+    }
+
+    public long size() {
+        return size;
+    }
+
+    public synchronized long getHits() {
+        return hits;
+    }
+
+    public synchronized long getMisses() {
+        return misses;
+    }
+
+    /**
+     * @return La mémoire occupée par les pages en cache, en octets.
+     */
+    public synchronized long getCachedBytes() {
+        return (long) pages.size() * PAGE_SIZE;
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        pages.clear();
+        channel.close();
+    }
+
+    /**
+     * Page numéro n, lue sur le disque si elle n'est pas en cache.
+     */
+    private byte[] page(long n) throws IOException {
+        byte[] page = pages.get(n);
+        if (page != null) {
+            hits++;
+            return page;
+        }
+        misses++;
+        long start = n * PAGE_SIZE;
+        page = new byte[(int) Math.min(PAGE_SIZE, size - start)];
+        ByteBuffer buffer = ByteBuffer.wrap(page);
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, start + buffer.position()) < 0) throw new EOFException();
+        }
+        pages.put(n, page);
+        return page;
+    }
+}
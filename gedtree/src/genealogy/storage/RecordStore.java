@@ -0,0 +1,307 @@
+package genealogy.storage;
+
+import java.io.Closeable;
+import java.util.AbstractCollection;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.function.IntFunction;
+import java.util.function.IntUnaryOperator;
+import java.util.function.ToIntFunction;
+
+import genealogy.graph.Adjacency;
+import genealogy.graph.Entity;
+import genealogy.graph.Family;
+import genealogy.graph.Graph;
+import genealogy.graph.Individual;
+import genealogy.graph.Numbering;
+import genealogy.parsing.RawRecord;
+import genealogy.perf.Perf;
+import genealogy.perf.Phase;
+
+/**
+ * Arbre GEDCOM rangé hors des HashMap du graphe (hors tas, ou sur disque).
+ * Chaque individu et chaque famille a un numéro de fiche ; le stockage sait retrouver une fiche
+ * à partir d'un ID et lire ses champs et ses liens. toGraph() en fait un graphe en lecture seule
+ * dont les entités (StoredIndividual, StoredFamily) sont des vues créées à la demande.
+ * Le graphe est numéroté dans l'ordre du fichier : une vue connaît son numéro de fiche, dont le rang se lit
+ * sans recherche, et les liens sont résolus en numéros sans créer de vue. Les index (noms, années, liens)
+ * ne gardent donc que des numéros, et aucune vue ne reste en mémoire après usage.
+ */
+public abstract class RecordStore implements Closeable, Numbering {
+
+    public abstract int getIndividualCount();
+    public abstract int getFamilyCount();
+
+    /**
+     * Numéro de la fiche d'un individu.
+     * @param id L'identifiant recherché.
+     * @return Le numéro de fiche, ou -1 si l'individu n'existe pas.
+     */
+    public abstract int findIndividual(String id);
+
+    /**
+     * Numéro de la fiche d'une famille.
+     * @param id L'identifiant recherché.
+     * @return Le numéro de fiche, ou -1 si la famille n'existe pas.
+     */
+    public abstract int findFamily(String id);
+
+    abstract String individualId(int i);
+    /** * @return La valeur brute du NAME, ou null. */
+    abstract String individualName(int i);
+    /** * @return Le premier caractère du SEX, ou 0. */
+    abstract byte individualSex(int i);
+    abstract String individualFamc(int i);
+    abstract List<String> individualFams(int i);
+    abstract RawRecord individualRecord(int i);
+
+    abstract String familyId(int i);
+    abstract String familyHusb(int i);
+    abstract String familyWife(int i);
+    abstract List<String> familyChildren(int i);
+    abstract RawRecord familyRecord(int i);
+
+    /**
+     * Numéro de fiche du rank-ième individu du fichier (par défaut, les fiches sont dans l'ordre du fichier).
+     */
+    int individualInFileOrder(int rank) {
+        return rank;
+    }
+
+    /**
+     * Numéro de fiche de la rank-ième famille du fichier.
+     */
+    int familyInFileOrder(int rank) {
+        return rank;
+    }
+
+    /**
+     * Rang dans le fichier de l'individu de numéro de fiche i (inverse de individualInFileOrder).
+     */
+    int individualRank(int i) {
+        return i;
+    }
+
+    /**
+     * Rang dans le fichier de la famille de numéro de fiche i.
+     */
+    int familyRank(int i) {
+        return i;
+    }
+
+    @Override
+    public Individual individual(int rank) {
+        return new StoredIndividual(this, individualInFileOrder(rank));
+    }
+
+    @Override
+    public Family family(int rank) {
+        return new StoredFamily(this, familyInFileOrder(rank));
+    }
+
+    @Override
+    public int indexOf(String id) {
+        int i = findIndividual(id);
+        return (i < 0) ? Adjacency.NONE : individualRank(i);
+    }
+
+    @Override
+    public int familyIndexOf(String id) {
+        int i = findFamily(id);
+        return (i < 0) ? Adjacency.NONE : familyRank(i);
+    }
+
+    /**
+     * Une vue de ce stockage connaît son numéro de fiche ; un autre individu est cherché par son ID.
+     */
+    @Override
+    public int indexOf(Individual ind) {
+        if (ind instanceof StoredIndividual && ((StoredIndividual) ind).store == this) {
+            return individualRank(((StoredIndividual) ind).index);
+        }
+        return indexOf(ind.getId());
+    }
+
+    @Override
+    public int indexOf(Family fam) {
+        if (fam instanceof StoredFamily && ((StoredFamily) fam).store == this) return familyRank(((StoredFamily) fam).index);
+        return familyIndexOf(fam.getId());
+    }
+
+    @Override
+    public int famc(int rank) {
+        return link(individualFamc(individualInFileOrder(rank)), this::familyIndexOf);
+    }
+
+    @Override
+    public int[] fams(int rank) {
+        return links(individualFams(individualInFileOrder(rank)), this::familyIndexOf);
+    }
+
+    @Override
+    public int husb(int rank) {
+        return link(familyHusb(familyInFileOrder(rank)), this::indexOf);
+    }
+
+    @Override
+    public int wife(int rank) {
+        return link(familyWife(familyInFileOrder(rank)), this::indexOf);
+    }
+
+    @Override
+    public int[] children(int rank) {
+        return links(familyChildren(familyInFileOrder(rank)), this::indexOf);
+    }
+
+    /**
+     * Numéro d'un lien : NONE s'il n'y a pas de lien, MISSING si l'ID visé n'est pas dans le stockage.
+     */
+    private static int link(String id, ToIntFunction<String> finder) {
+        if (id == null) return Adjacency.NONE;
+        int found = finder.applyAsInt(id);
+        return (found < 0) ? Adjacency.MISSING : found;
+    }
+
+    private static int[] links(List<String> ids, ToIntFunction<String> finder) {
+        int[] result = new int[ids.size()];
+        for (int k = 0; k < result.length; k++) result[k] = link(ids.get(k), finder);
+        return result;
+    }
+
+    /**
+     * Graphe dont les individus et familles sont des vues sur ce stockage.
+     * @return Le graphe, en lecture seule.
+     */
+    public Graph toGraph() {
+        return new StoredGraph(this);
+    }
+
+    /**
+     * Graphe sur un stockage, numéroté dans l'ordre du fichier.
+     * L'index des liens n'est pas gardé : la validation le construit et le parcourt une fois, puis les
+     * commandes lisent les liens dans le stockage (EXTRACT le reconstruit à chaque appel, PATH une fois par version).
+     */
+    private static class StoredGraph extends Graph {
+
+        private static final long serialVersionUID = 1L;
+
+        private final transient RecordStore store;
+
+        StoredGraph(RecordStore store) {
+            super(new StoredMap<>(store.getIndividualCount(), store::findIndividual, store::individualInFileOrder,
+                                  i -> new StoredIndividual(store, i)),
+                  new StoredMap<>(store.getFamilyCount(), store::findFamily, store::familyInFileOrder,
+                                  i -> new StoredFamily(store, i)));
+            this.store = store;
+        }
+
+        @Override
+        public Numbering getNumbering() {
+            return store;
+        }
+
+        @Override
+        public Adjacency getAdjacency() {
+            try (Phase phase = Perf.start("adjacency")) {
+                phase.setItems(store.getIndividualCount() + store.getFamilyCount());
+                return new Adjacency(this);
+            }
+        }
+    }
+
+    /**
+     * Map en lecture seule dont les valeurs sont des vues créées à la demande à partir des numéros de fiche.
+     * L'itération suit l'ordre du fichier, comme les LinkedHashMap du graphe.
+     */
+    private static class StoredMap<V extends Entity> extends AbstractMap<String, V> {
+        private final int size;
+        private final ToIntFunction<String> finder;
+        private final IntUnaryOperator fileOrder;
+        private final IntFunction<V> view;
+
+        StoredMap(int size, ToIntFunction<String> finder, IntUnaryOperator fileOrder, IntFunction<V> view) {
+            this.size = size;
+            this.finder = finder;
+            this.fileOrder = fileOrder;
+            this.view = view;
+        }
+
+        @Override
+        public int size() {
+            return size;
+        }
+
+        @Override
+        public V get(Object key) {
+            if (!(key instanceof String)) return null;
+            int i = finder.applyAsInt((String) key);
+            return (i < 0) ? null : view.apply(i);
+        }
+
+        @Override
+        public boolean containsKey(Object key) {
+            return key instanceof String && finder.applyAsInt((String) key) >= 0;
+        }
+
+        @Override
+        public Collection<V> values() {
+            return new AbstractCollection<V>() {
+                @Override
+                public Iterator<V> iterator() {
+                    return new Iterator<V>() {
+                        private int next;
+
+                        @Override
+                        public boolean hasNext() {
+                            return next < size;
+                        }
+
+                        @Override
+                        public V next() {
+                            if (next >= size) throw new NoSuchElementException();
+                            return view.apply(fileOrder.applyAsInt(next++));
+                        }
+                    };
+                }
+
+                @Override
+                public int size() {
+                    return size;
+                }
+            };
+        }
+
+        @Override
+        public Set<Map.Entry<String, V>> entrySet() {
+            return new AbstractSet<Map.Entry<String, V>>() {
+                @Override
+                public Iterator<Map.Entry<String, V>> iterator() {
+                    Iterator<V> values = values().iterator();
+                    return new Iterator<Map.Entry<String, V>>() {
+                        @Override
+                        public boolean hasNext() {
+                            return values.hasNext();
+                        }
+
+                        @Override
+                        public Map.Entry<String, V> next() {
+                            V v = values.next();
+                            return new AbstractMap.SimpleImmutableEntry<>(v.getId(), v);
+                        }
+                    };
+                }
+
+                @Override
+                public int size() {
+                    return size;
+                }
+            };
+        }
+    }
+}
@@ -0,0 +1,116 @@
+package genealogy.storage;
+
+import java.util.List;
+import java.util.Map;
+
+import genealogy.exceptions.exceptgraph.ReadOnlyErr;
+import genealogy.graph.Entity;
+import genealogy.graph.Family;
+import genealogy.tags.Tag;
+
+/**
+ * Vue d'une famille rangée dans un RecordStore (hors tas ou sur disque).
+ * Les liens HUSB, WIFE et CHIL sont lus dans le stockage à chaque appel,
+ * l'arbre de tags complet n'est décodé qu'au premier besoin. La vue est en lecture seule.
+ */
+public class StoredFamily extends Family {
+
+    private static final long serialVersionUID = 1L;
+
+    /** * Stockage et numéro de fiche de l'entité. */
+    final transient RecordStore store;
+    final int index;
+
+    /** * Vrai quand l'enregistrement brut a été copié et confié à Entity pour le décodage. */
+    private volatile boolean decoded;
+
+    StoredFamily(RecordStore store, int index) {
+        super(store.familyId(index));
+        this.store = store;
+        this.index = index;
+    }
+
+    @Override
+    public String getHusb() {
+        return store.familyHusb(index);
+    }
+
+    @Override
+    public String getWife() {
+        return store.familyWife(index);
+    }
+
+    @Override
+    public List<String> getChildren() {
+        return store.familyChildren(index);
+    }
+
+    @Override
+    public String getTagValue(String tagName) {
+        materialize();
+        return super.getTagValue(tagName);
+    }
+
+    /**
+     * Copie l'enregistrement brut depuis le stockage au premier accès, puis le fait décoder par Entity.
+     */
+    @Override
+    protected void materialize() {
+        if (!decoded) {
+            synchronized (this) {
+                if (!decoded) {
+                    setPending(store.familyRecord(index));
+                    decoded = true;
+                }
+            }
+        }
+        super.materialize();
+    }
+
+    @Override
+    public void setHusb(String id) {
+        throw readOnly();
+    }
+
+    @Override
+    public void setWife(String id) {
+        throw readOnly();
+    }
+
+    @Override
+    public void addChild(String id) {
+        throw readOnly();
+    }
+
+    @Override
+    public void addProperty(Tag tag) {
+        throw readOnly();
+    }
+
+    @Override
+    public void remapIds(Map<String, String> ids) {
+        throw readOnly();
+    }
+
+    /**
+     * Refuse une modification de la vue par une ReadOnlyErr, que la console affiche comme toute GenealogyErr.
+     */
+    private RuntimeException readOnly() {
+        return Entity.<RuntimeException>undeclared(new ReadOnlyErr("la modification de " + getId()));
+    }
+
+    /**
+     * Deux vues sont égales si elles désignent la même fiche du même stockage.
+     */
+    @Override
+    public boolean equals(Object o) {
+        if (!(o instanceof StoredFamily)) return false;
+        StoredFamily other = (StoredFamily) o;
+        return other.store == store && other.index == index;
+    }
+
+    @Override
+    public int hashCode() {
+        return index;
+    }
+}
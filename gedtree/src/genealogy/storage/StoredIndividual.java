@@ -0,0 +1,121 @@
+package genealogy.storage;
+
+import java.util.List;
+import java.util.Map;
+
+import genealogy.exceptions.exceptgraph.ReadOnlyErr;
+import genealogy.graph.Entity;
+import genealogy.graph.Individual;
+import genealogy.tags.Tag;
+import genealogy.tags.simple.NameTag;
+import genealogy.tags.simple.SexTag;
+
+/**
+ * Vue d'un individu rangé dans un RecordStore (hors tas ou sur disque).
+ * Seuls l'ID, le NAME et le SEX sont lus à la création de la vue ; les liens sont lus
+ * dans le stockage à chaque appel, et l'arbre de tags complet n'est décodé qu'au premier besoin.
+ * La vue est en lecture seule.
+ */
+public class StoredIndividual extends Individual {
+
+    private static final long serialVersionUID = 1L;
+
+    /** * Stockage et numéro de fiche de l'entité. */
+    final transient RecordStore store;
+    final int index;
+
+    /** * Vrai quand l'enregistrement brut a été copié et confié à Entity pour le décodage. */
+    private volatile boolean decoded;
+
+    StoredIndividual(RecordStore store, int index) {
+        super(store.individualId(index));
+        this.store = store;
+        this.index = index;
+        String value = store.individualName(index);
+        if (value != null) {
+            NameTag name = new NameTag();
+            name.parse(value);
+            properties.add(name);
+        }
+        byte sex = store.individualSex(index);
+        if (sex != 0) {
+            SexTag tag = new SexTag();
+            tag.parse(String.valueOf((char) sex));
+            properties.add(tag);
+        }
+    }
+
+    @Override
+    public String getFamc() {
+        return store.individualFamc(index);
+    }
+
+    @Override
+    public List<String> getFams() {
+        return store.individualFams(index);
+    }
+
+    @Override
+    public String getTagValue(String tagName) {
+        if (!tagName.equals("NAME") && !tagName.equals("SEX")) materialize();
+        return super.getTagValue(tagName);
+    }
+
+    /**
+     * Copie l'enregistrement brut depuis le stockage au premier accès, puis le fait décoder par Entity.
+     */
+    @Override
+    protected void materialize() {
+        if (!decoded) {
+            synchronized (this) {
+                if (!decoded) {
+                    setPending(store.individualRecord(index));
+                    decoded = true;
+                }
+            }
+        }
+        super.materialize();
+    }
+
+    @Override
+    public void setFamc(String famcId) {
+        throw readOnly();
+    }
+
+    @Override
+    public void addFams(String famsId) {
+        throw readOnly();
+    }
+
+    @Override
+    public void addProperty(Tag tag) {
+        throw readOnly();
+    }
+
+    @Override
+    public void remapIds(Map<String, String> ids) {
+        throw readOnly();
+    }
+
+    /**
+     * Refuse une modification de la vue par une ReadOnlyErr, que la console affiche comme toute GenealogyErr.
+     */
+    private RuntimeException readOnly() {
+        return Entity.<RuntimeException>undeclared(new ReadOnlyErr("la modification de " + getId()));
+    }
+
+    /**
+     * Deux vues sont égales si elles désignent la même fiche du même stockage.
+     */
+    @Override
+    public boolean equals(Object o) {
+        if (!(o instanceof StoredIndividual)) return false;
+        StoredIndividual other = (StoredIndividual) o;
+        return other.store == store && other.index == index;
+    }
+
+    @Override
+    public int hashCode() {
+        return index;
+    }
+}
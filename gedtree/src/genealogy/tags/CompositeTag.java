@@ -1,5 +1,6 @@
 package genealogy.tags;
 
+import java.io.PrintStream;
 import java.util.ArrayList;
 import java.util.List;
 import genealogy.exceptions.exceptfile.DupTagErr;
@@ -10,6 +11,8 @@ import genealogy.exceptions.exceptfile.DupTagErr;
  */
 public abstract class CompositeTag extends Tag {
 
+    private static final long serialVersionUID = 1L;
+
     /**
      * Liste qui contient les tags de niveau inférieur (enfants).
      * Les enfants peuvent être des SimpleTag ou d'autres CompositeTag.
@@ -40,11 +43,9 @@ public abstract class CompositeTag extends Tag {
      * Et si le tag existe deja alors il renvois une erreur
      */
     public void addChild(Tag child) throws DupTagErr {
-        // Tags qui SONT répétables dans un composite (ex: NOTE, CONT, CONC)
         String nom = child.getName();
-        boolean estRepetable = nom.equals("NOTE") || nom.equals("CONT") || nom.equals("CONC");
         
-        if (!estRepetable) {
+        if (!isRepeatable(nom)) {
             // Vérification si le tag existe déjà
             for (Tag t : children) {
                 if (t.getName().equals(nom)) {
@@ -55,6 +56,15 @@ public abstract class CompositeTag extends Tag {
         this.children.add(child);
     }
     
+    /**
+     * Indique si un sous-tag peut apparaître plusieurs fois dans ce tag.
+     * @param name Le nom du sous-tag.
+     * @return true pour les tags répétables dans un composite (NOTE, SOUR, CONT, CONC).
+     */
+    protected boolean isRepeatable(String name) {
+        return name.equals("NOTE") || name.equals("SOUR") || name.equals("CONT") || name.equals("CONC");
+    }
+
     /**
      * Renvois La liste des sous-tags de ce tag composite.
      */
@@ -67,14 +77,14 @@ public abstract class CompositeTag extends Tag {
      * L'indentation permet un meilleur affichage sur la console
      */
     @Override
-    public void display(int indentation) {
+    public void display(PrintStream out, int indentation) {
         // Affiche le tag avec l'indentation
-        for(int i=0; i<indentation; i++) System.out.print("  ");
-        System.out.println(getName());
+        for(int i=0; i<indentation; i++) out.print("  ");
+        out.println(getName());
         
         // Appel récursif 
         for (Tag t : children) {
-            t.display(indentation + 1);
+            t.display(out, indentation + 1);
         }
     }
 
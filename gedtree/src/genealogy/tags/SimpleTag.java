@@ -1,11 +1,16 @@
 package genealogy.tags;
 
+import java.io.PrintStream;
+
 import genealogy.interfaces.Value;
 
 /**
  * Classe abstraite mère de tous les tags qui représentent une valeur simple.
  */
 public abstract class SimpleTag extends Tag implements Value {
+
+    private static final long serialVersionUID = 1L;
+
 	/** * La valeur du Tag	 */
     private String value;
 
@@ -53,10 +58,10 @@ public abstract class SimpleTag extends Tag implements Value {
      * Ne fait pas d'appel récursif (c'est une feuille de l'arbre).
      */
     @Override
-    public void display(int indentation) {
+    public void display(PrintStream out, int indentation) {
         // Affichage avec décalage
-        for(int i=0; i<indentation; i++) System.out.print("  ");
-        System.out.println(getName() + ": " + value);
+        for(int i=0; i<indentation; i++) out.print("  ");
+        out.println(getName() + ": " + value);
     }
     
     /**
@@ -1,11 +1,16 @@
 package genealogy.tags;
 
+import java.io.PrintStream;
+import java.io.Serializable;
+
 import genealogy.interfaces.Displayable;
 
 /**
  * Classe mère pour les Tags. Implémente les fonctions communes aux Tags simples et composés.
  */
-public abstract class Tag implements Displayable {
+public abstract class Tag implements Displayable, Serializable {
+
+    private static final long serialVersionUID = 1L;
 
     private String name; // Ex: "NAME"
     private int level;   // Ex: 1
@@ -51,5 +56,5 @@ public abstract class Tag implements Displayable {
     }
     
     @Override
-    public abstract void display(int indentation);
+    public abstract void display(PrintStream out, int indentation);
 }
\ No newline at end of file
@@ -7,6 +7,8 @@ import genealogy.tags.CompositeTag;
  */
 public class MarriageTag extends CompositeTag {
 
+    private static final long serialVersionUID = 1L;
+
     /**
      * Constructeur.
      */
@@ -9,6 +9,8 @@ import genealogy.tags.CompositeTag;
  */
 public class ObjectTag extends CompositeTag {
 
+    private static final long serialVersionUID = 1L;
+
     /**
      * Constructeur.
      */
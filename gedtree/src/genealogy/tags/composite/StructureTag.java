@@ -0,0 +1,84 @@
+package genealogy.tags.composite;
+
+import java.io.PrintStream;
+
+import genealogy.interfaces.Value;
+import genealogy.tags.CompositeTag;
+import genealogy.tags.Tag;
+
+/**
+ * Tag générique qui possède à la fois une valeur et des sous-tags
+ * (ex: "SOUR @S1@" suivi de PAGE, DATA..., ou "NAME" suivi de GIVN/SURN).
+ * Créé par le parseur lorsqu'un tag habituellement simple reçoit des enfants.
+ * Aucune règle de non-répétition n'est appliquée à ses enfants, leur structure n'étant pas connue.
+ * Le tag simple d'origine est conservé : un NAME garde ainsi son nom de famille et ses prénoms.
+ */
+public class StructureTag extends CompositeTag implements Value {
+
+    private static final long serialVersionUID = 1L;
+
+    /** * La valeur portée par la ligne du tag. */
+    private String value;
+
+    /** * Le tag simple créé pour la ligne avant qu'elle ne reçoive des sous-tags. */
+    private final Tag simple;
+
+    /**
+     * Constructeur.
+     * @param name Le nom du tag.
+     * @param level Le niveau du tag dans l'enregistrement.
+     * @param simple Le tag simple déjà parsé (ex: NameTag), dont la valeur nettoyée est reprise.
+     */
+    public StructureTag(String name, int level, Tag simple) {
+        super(name, level);
+        this.simple = simple;
+        this.value = simple.getValueOrNull();
+    }
+
+    /**
+     * Retourne le tag simple d'origine, avec ce que son parsing a extrait (ex: le nom de famille d'un NAME).
+     * @return Le tag simple remplacé par ce conteneur.
+     */
+    public Tag getSimple() {
+        return simple;
+    }
+
+    @Override
+    public String getValue() {
+        return value;
+    }
+
+    @Override
+    public void setValue(String value) {
+        this.value = value;
+    }
+
+    /**
+     * Contrairement aux autres tags composites, la valeur est conservée.
+     */
+    @Override
+    public String getValueOrNull() {
+        return value;
+    }
+
+    /**
+     * Les enfants d'un tag générique peuvent tous être répétés.
+     */
+    @Override
+    protected boolean isRepeatable(String name) {
+        return true;
+    }
+
+    /**
+     * Affiche le tag avec sa valeur, puis ses enfants.
+     */
+    @Override
+    public void display(PrintStream out, int indentation) {
+        for(int i=0; i<indentation; i++) out.print("  ");
+        if (value == null || value.isEmpty()) out.println(getName());
+        else out.println(getName() + ": " + value);
+        for (Tag t : getChildren()) {
+            t.display(out, indentation + 1);
+        }
+    }
+}
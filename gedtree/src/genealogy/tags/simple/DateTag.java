@@ -7,6 +7,8 @@ import genealogy.tags.SimpleTag;
  */
 public class DateTag extends SimpleTag {
 
+    private static final long serialVersionUID = 1L;
+
     /**
      * Constructeur.
      */
@@ -14,4 +16,39 @@ public class DateTag extends SimpleTag {
         // Le niveau 2 est standard pour un sous-tag de BIRT/MARR
         super("DATE", 2); 
     }
-}
\ No newline at end of file
+
+    /**
+     * Retourne l'année de la date (ex: 1850 pour "ABT 12 MAR 1850").
+     * @return L'année, ou -1 si la date n'en contient pas.
+     */
+    public int getYear() {
+        return parseYear(getValue());
+    }
+
+    /**
+     * Extrait l'année d'une date GEDCOM : le premier nombre de 3 ou 4 chiffres.
+     * Les qualificatifs (ABT, BEF, AFT...) sont ignorés ; pour "BET 1850 AND 1860", c'est 1850.
+     * @param date La valeur du tag DATE (peut être null).
+     * @return L'année, ou -1 si elle est introuvable.
+     */
+    public static int parseYear(String date) {
+        if (date == null) return -1;
+        int i = 0;
+        int length = date.length();
+        while (i < length) {
+            if (Character.isDigit(date.charAt(i))) {
+                int number = 0;
+                int digits = 0;
+                while (i < length && Character.isDigit(date.charAt(i))) {
+                    number = number * 10 + (date.charAt(i) - '0');
+                    digits++;
+                    i++;
+                }
+                if (digits == 3 || digits == 4) return number;
+            } else {
+                i++;
+            }
+        }
+        return -1;
+    }
+}
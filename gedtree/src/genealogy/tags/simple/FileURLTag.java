@@ -7,6 +7,8 @@ import genealogy.tags.SimpleTag;
  */
 public class FileURLTag extends SimpleTag {
 
+    private static final long serialVersionUID = 1L;
+
     /**
      * Constructeur.
      */
@@ -1,6 +1,8 @@
 package genealogy.tags.simple;
 
 import genealogy.tags.SimpleTag;
+import genealogy.tags.Tag;
+import genealogy.tags.composite.StructureTag;
 
 /**
  * Représente le Tag GEDCOM "NAME" (Nom complet).
@@ -9,6 +11,17 @@ import genealogy.tags.SimpleTag;
  */
 public class NameTag extends SimpleTag {
 
+    private static final long serialVersionUID = 1L;
+
+    /** * Nom de famille, tel qu'il était délimité par les / dans le fichier. */
+    private String surname;
+
+    /** * Prénoms (le reste de la valeur). */
+    private String givenNames;
+
+    /** * Partie des prénoms qui suivait le nom de famille dans le fichier (ex: "Jr"), vide sinon. */
+    private String suffix;
+
     /**
      * Constructeur. Initialise le tag avec son nom et son niveau standard (1).
      */
@@ -26,8 +39,62 @@ public class NameTag extends SimpleTag {
         // Appelle la méthode standard de SimpleTag pour le nettoyage de base
         super.parse(content); 
         
+        // Le nom de famille est la partie entre les deux /, s'il y en a
+        String raw = getValue();
+        int debut = raw.indexOf('/');
+        int fin = (debut < 0) ? -1 : raw.indexOf('/', debut + 1);
+        if (fin > debut) {
+            this.surname = raw.substring(debut + 1, fin).trim();
+            this.suffix = raw.substring(fin + 1).trim();
+            this.givenNames = (raw.substring(0, debut).trim() + " " + suffix).trim();
+        }
+
         // Logique spécifique : retire les /.../ autour du nom de famille
-        String cleanValue = getValue().replaceAll("/", "");
+        String cleanValue = raw.replace("/", "");
         setValue(cleanValue.trim());
     }
+
+    /**
+     * Retrouve le NameTag d'un tag NAME, qu'il soit simple ou devenu un conteneur (NAME suivi de GIVN, SURN...).
+     * @param tag Un tag de l'entité.
+     * @return Le NameTag, ou null si le tag n'est pas un NAME.
+     */
+    public static NameTag of(Tag tag) {
+        if (tag instanceof NameTag) return (NameTag) tag;
+        if (tag instanceof StructureTag && ((StructureTag) tag).getSimple() instanceof NameTag) {
+            return (NameTag) ((StructureTag) tag).getSimple();
+        }
+        return null;
+    }
+
+    /**
+     * Retourne le nom de famille (partie entre / dans le fichier).
+     * @return Le nom de famille, ou null s'il n'était pas délimité par des /.
+     */
+    public String getSurname() {
+        return surname;
+    }
+
+    /**
+     * Retourne les prénoms (tout ce qui n'est pas entre /).
+     * @return Les prénoms, ou null si le nom de famille n'était pas délimité.
+     */
+    public String getGivenNames() {
+        return givenNames;
+    }
+
+    /**
+     * Retourne la valeur telle qu'elle s'écrit dans un fichier GEDCOM, avec les / autour du nom de famille
+     * (ex: "Jean /Dupont/ Jr"), pour la réécriture du fichier.
+     * @return La valeur au format GEDCOM, ou la valeur nettoyée si le nom de famille n'était pas délimité.
+     */
+    public String getGedcomValue() {
+        if (surname == null) return getValue();
+        String before = givenNames.substring(0, givenNames.length() - suffix.length()).trim();
+        StringBuilder sb = new StringBuilder();
+        if (!before.isEmpty()) sb.append(before).append(' ');
+        sb.append('/').append(surname).append('/');
+        if (!suffix.isEmpty()) sb.append(' ').append(suffix);
+        return sb.toString();
+    }
 }
\ No newline at end of file
@@ -7,6 +7,8 @@ import genealogy.tags.SimpleTag;
  * Elle permet de ne pas créer une classe pour chaque tag simple.
  */
 public class StringTag extends SimpleTag {
+
+    private static final long serialVersionUID = 1L;
     
     /**
      * Constructeur. Permet de définir le nom et le niveau dynamiquement lors de l'instanciation.